@@ -45,6 +45,7 @@ import java.awt.Frame;
 import java.awt.GraphicsEnvironment;
 import java.awt.Rectangle;
 import java.io.File;
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
@@ -79,6 +80,7 @@ import org.argouml.notation.providers.java.InitNotationJava;
 import org.argouml.notation.providers.uml.InitNotationUml;
 import org.argouml.notation.ui.InitNotationUI;
 import org.argouml.persistence.PersistenceManager;
+import org.argouml.persistence.RecoveryJournal;
 import org.argouml.profile.init.InitProfileSubsystem;
 import org.argouml.ui.LookAndFeelMgr;
 import org.argouml.ui.ProjectBrowser;
@@ -194,6 +196,9 @@ public class Main {
                 return;
             }
 
+            // A project asked for on the command line is opened rather
+            // than one recovered
+            boolean offerRecovery = projectName == null;
             if (reloadRecent && projectName == null) {
                 projectName = getMostRecentProject();
             }
@@ -205,7 +210,7 @@ public class Main {
                 fileToOpen = new File(projectName);
             }
 
-            openProject(st, splash, pb, fileToOpen);
+            openProject(st, splash, pb, fileToOpen, offerRecovery);
 
             st.mark("perspectives");
             if (splash != null) {
@@ -464,7 +469,7 @@ public class Main {
 
 
     private static void openProject(SimpleTimer st, SplashScreen splash,
-            ProjectBrowser pb, File fileToOpen) {
+            ProjectBrowser pb, File fileToOpen, boolean offerRecovery) {
         if (splash != null) {
             splash.updateProgress(40);
         }
@@ -474,7 +479,26 @@ public class Main {
         Designer.clearCritiquing();
 
         Project project = null;
-        if (fileToOpen != null) {
+        boolean recovered = false;
+        File recoveredFile = offerRecovery ? getRecoveredFile() : null;
+        if (recoveredFile != null) {
+            RecoveryJournal journal =
+                PersistenceManager.getInstance().getRecoveryJournal();
+            project = pb.recoverProject(recoveredFile,
+                    journal.getRecoveredURI());
+            recovered = project != null;
+            if (!recovered) {
+                File kept = new File(recoveredFile.getParentFile()
+                        .getParentFile(),
+                        "recovered-" + System.currentTimeMillis() + ".uml");
+                recoveredFile.renameTo(kept);
+                LOG.log(Level.WARNING,
+                        "Could not open the recovered project, kept it as {0}",
+                        kept);
+                journal.discardRecovered();
+            }
+        }
+        if (project == null && fileToOpen != null) {
             if (splash != null) {
                 Object[] msgArgs = {projectName};
                 splash.showStatus(
@@ -498,12 +522,51 @@ public class Main {
         }
         ProjectManager.getManager().setCurrentProject(project);
         project.setDirty(false);
+        if (recovered) {
+            // After the save action has been disabled by the load
+            final Project recoveredProject = project;
+            EventQueue.invokeLater(new Runnable() {
+                public void run() {
+                    recoveredProject.setDirty(true);
+                }
+            });
+        }
+        PersistenceManager.getInstance().startAutosave(project);
 
         st.mark("set project");
         Designer.enableCritiquing();
     }
 
 
+    /**
+     * Offer to open the project recovered from the journal left behind by
+     * a session which did not exit normally. The journal is kept until the
+     * next save, also when the user does not want it, so that it is offered
+     * again if this session does not save either.
+     *
+     * @return the recovered .uml file, or null if there is none or the
+     *         user does not want it
+     */
+    private static File getRecoveredFile() {
+        RecoveryJournal journal =
+            PersistenceManager.getInstance().getRecoveryJournal();
+        File file = null;
+        try {
+            file = journal.recover();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to read the recovery journal", e);
+        }
+        if (file != null
+                && JOptionPane.showConfirmDialog(null,
+                        Translator.localize("optionpane.recover-project"),
+                        Translator.localize("optionpane.recover-project-title"),
+                        JOptionPane.YES_NO_OPTION)
+                    == JOptionPane.YES_OPTION) {
+            return file;
+        }
+        return null;
+    }
+
     private static String getMostRecentProject() {
         // If no project was entered on the command line,
         // try to reload the most recent project if that option is true
@@ -47,10 +47,10 @@ import org.argouml.cognitive.Designer;
 import org.argouml.configuration.Configuration;
 import org.argouml.kernel.Project;
 import org.argouml.kernel.ProjectManager;
-import org.argouml.model.Model;
 import org.argouml.pattern.cognitive.critics.InitPatternCritics;
 import org.argouml.uml.cognitive.UMLDecision;
 import org.argouml.uml.cognitive.critics.ChildGenUML;
+import org.argouml.uml.cognitive.critics.CritiqueTriggerListener;
 import org.argouml.uml.cognitive.critics.InitCognitiveCritics;
 
 /**
@@ -78,9 +78,7 @@ public class StartCritics implements Runnable {
         Project p = ProjectManager.getManager().getCurrentProject();
         dsgr.spawnCritiquer(p);
         dsgr.setChildGenerator(new ChildGenUML());
-        for (Object model : p.getUserDefinedModelList()) {
-            Model.getPump().addModelEventListener(dsgr, model);
-        }
+        new CritiqueTriggerListener(dsgr).start();
         LOG.log(Level.INFO, "spawned critiquing thread");
         dsgr.getDecisionModel().startConsidering(UMLDecision.CLASS_SELECTION);
         dsgr.getDecisionModel().startConsidering(UMLDecision.BEHAVIOR);
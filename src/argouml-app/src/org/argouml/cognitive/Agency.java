@@ -41,6 +41,7 @@ package org.argouml.cognitive;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Observable;
@@ -87,8 +88,8 @@ public class Agency extends Observable { //implements java.io.Serialization
      * A registry of all critics that are currently loaded into the
      * design environment.
      */
-    private static Hashtable<Class, List<Critic>> criticRegistry =
-        new Hashtable<Class, List<Critic>>(100);
+    private static Hashtable<Class<?>, List<Critic>> criticRegistry =
+        new Hashtable<Class<?>, List<Critic>>(100);
 
     private static List<Critic> critics = new ArrayList<Critic>();
 
@@ -144,11 +145,19 @@ public class Agency extends Observable { //implements java.io.Serialization
     /**
      * @return the registry.
      */
-    private static Hashtable<Class, List<Critic>> getCriticRegistry() {
+    private static Hashtable<Class<?>, List<Critic>> getCriticRegistry() {
         return criticRegistry;
     }
 
 
+    /**
+     * @return the design material classes critics have been registered
+     *         for
+     */
+    public static Set<Class<?>> getCriticizedClasses() {
+        return new HashSet<Class<?>>(getCriticRegistry().keySet());
+    }
+
     /**
      * @return the critics
      */
@@ -178,7 +187,7 @@ public class Agency extends Observable { //implements java.io.Serialization
      * @param dmClassName the design material class name
      */
     public static void register(String crClassName, String dmClassName) {
-        Class dmClass;
+        Class<?> dmClass;
         try {
             dmClass = Class.forName(dmClassName);
         } catch (java.lang.ClassNotFoundException e) {
@@ -187,7 +196,7 @@ public class Agency extends Observable { //implements java.io.Serialization
         }
         Critic cr = singletonCritics.get(crClassName);
         if (cr == null) {
-            Class crClass;
+            Class<?> crClass;
             try {
                 crClass = Class.forName(crClassName);
             } catch (java.lang.ClassNotFoundException e) {
@@ -222,7 +231,7 @@ public class Agency extends Observable { //implements java.io.Serialization
      * @param cr the critic to register
      * @param clazz the design material class that is to be criticized
      */
-    public static void register(Critic cr, Class clazz) {
+    public static void register(Critic cr, Class<?> clazz) {
         List<Critic> theCritics = getCriticRegistry().get(clazz);
         if (theCritics == null) {
             theCritics = new ArrayList<Critic>();
@@ -237,13 +246,40 @@ public class Agency extends Observable { //implements java.io.Serialization
         }
     }
 
+    /**
+     * Remove a critic from the design material class it was registered
+     * for.
+     *
+     * @param cr the critic to unregister
+     * @param clazz the design material class that was criticized
+     */
+    public static void unregister(Critic cr, Class<?> clazz) {
+        List<Critic> theCritics = getCriticRegistry().get(clazz);
+        if (theCritics != null && theCritics.remove(cr)) {
+            LOG.log(Level.FINE, "Unregistered: {0}", cr);
+            cachedCritics.clear();
+            if (!isRegistered(cr)) {
+                critics.remove(cr);
+            }
+        }
+    }
+
+    private static boolean isRegistered(Critic cr) {
+        for (List<Critic> theCritics : getCriticRegistry().values()) {
+            if (theCritics.contains(cr)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Transitional method for migration purposes.  Don't use!
      * @param cr the critic to register
      * @param clazz the UML class to be criticized
      */
     public static void register(Critic cr, Object clazz) {
-        register(cr, (Class) clazz);
+        register(cr, (Class<?>) clazz);
     }
 
     /**
@@ -259,8 +295,8 @@ public class Agency extends Observable { //implements java.io.Serialization
         }
     }
 
-    private static Hashtable<Class, Collection<Critic>> cachedCritics =
-        new Hashtable<Class, Collection<Critic>>();
+    private static Hashtable<Class<?>, Collection<Critic>> cachedCritics =
+        new Hashtable<Class<?>, Collection<Critic>>();
 
     /**
      * Return a collection of all critics that can be applied to the
@@ -269,19 +305,19 @@ public class Agency extends Observable { //implements java.io.Serialization
      * @param clazz the design material to criticize
      * @return the collection of critics
      */
-    public static Collection<Critic> criticsForClass(Class clazz) {
+    public static Collection<Critic> criticsForClass(Class<?> clazz) {
         Collection<Critic> col = cachedCritics.get(clazz);
         if (col == null) {
             col = new ArrayList<Critic>();
 	    col.addAll(criticListForSpecificClass(clazz));
-	    Collection<Class> classes = new ArrayList<Class>();
+	    Collection<Class<?>> classes = new ArrayList<Class<?>>();
 	    if (clazz.getSuperclass() != null) {
 		classes.add(clazz.getSuperclass());
 	    }
 	    if (clazz.getInterfaces() != null) {
 		classes.addAll(Arrays.asList(clazz.getInterfaces()));
 	    }
-            for (Class c : classes) {
+            for (Class<?> c : classes) {
 		col.addAll(criticsForClass(c));
 	    }
 	    cachedCritics.put(clazz, col);
@@ -300,7 +336,7 @@ public class Agency extends Observable { //implements java.io.Serialization
      * @param clazz the design material
      * @return the critics
      */
-    protected static List<Critic> criticListForSpecificClass(Class clazz) {
+    protected static List<Critic> criticListForSpecificClass(Class<?> clazz) {
         List<Critic> theCritics = getCriticRegistry().get(clazz);
         if (theCritics == null) {
             theCritics = new ArrayList<Critic>();
@@ -321,24 +357,44 @@ public class Agency extends Observable { //implements java.io.Serialization
      * @param dm the design material
      * @param d the designer
      * @param reasonCode the reason
+     * @deprecated for 0.35.2.  Reason codes can't be matched exactly.  Use
+     *             {@link #applyAllCritics(Object, Designer, Set)}.
      */
+    @Deprecated
     public static void applyAllCritics(
         Object dm,
         Designer d,
         long reasonCode) {
-        Class dmClazz = dm.getClass();
+        Class<?> dmClazz = dm.getClass();
         Collection<Critic> c = criticsForClass(dmClazz);
         applyCritics(dm, d, c, reasonCode);
     }
 
+    /**
+     * Apply the critics that read any of the given properties.
+     *
+     * @param dm the design material
+     * @param d the designer
+     * @param changedProperties the names of the properties of dm that
+     *            changed, or null to apply all critics
+     */
+    public static void applyAllCritics(
+        Object dm,
+        Designer d,
+        Set<String> changedProperties) {
+        Class<?> dmClazz = dm.getClass();
+        Collection<Critic> c = criticsForClass(dmClazz);
+        applyCritics(dm, d, c, changedProperties);
+    }
+
     /**
      * @param dm the design material
      * @param d the designer
      */
     public static void applyAllCritics(Object dm, Designer d) {
-        Class dmClazz = dm.getClass();
+        Class<?> dmClazz = dm.getClass();
         Collection<Critic> c = criticsForClass(dmClazz);
-        applyCritics(dm, d, c, -1L);
+        applyCritics(dm, d, c, (Set<String>) null);
     }
 
     /**
@@ -346,7 +402,10 @@ public class Agency extends Observable { //implements java.io.Serialization
      * @param d the designer
      * @param theCritics the critics
      * @param reasonCode the reason
+     * @deprecated for 0.35.2.  Reason codes can't be matched exactly.  Use
+     *             {@link #applyCritics(Object, Designer, Collection, Set)}.
      */
+    @Deprecated
     public static void applyCritics(
         Object dm,
         Designer d,
@@ -368,6 +427,34 @@ public class Agency extends Observable { //implements java.io.Serialization
         }
     }
 
+    /**
+     * @param dm the design material
+     * @param d the designer
+     * @param theCritics the critics
+     * @param changedProperties the names of the properties of dm that
+     *            changed, or null to apply all critics
+     */
+    public static void applyCritics(
+        Object dm,
+        Designer d,
+        Collection<Critic> theCritics,
+        Set<String> changedProperties) {
+
+        for (Critic c : theCritics) {
+            if (c.isActive() && c.matchReason(changedProperties)) {
+                try {
+                    c.critique(dm, d);
+                } catch (Exception ex) {
+                    LOG.log(Level.SEVERE,
+                            "Disabling critique due to exception\n"
+                            + c + "\n" + dm,
+                            ex);
+                    c.setEnabled(false);
+                }
+            }
+        }
+    }
+
     /**
      * Compute which critics should be active (i.e., they can be
      * applied by applyAllCritics) for a given Designer. <p>
@@ -408,6 +495,19 @@ public class Agency extends Observable { //implements java.io.Serialization
         a.addObserver(obs);
     }
 
+    /**
+     * Stop notifying an object added by {@link #addStaticObserver(Observer)}.
+     *
+     * @param obs the object to remove
+     */
+    public static void removeStaticObserver(Observer obs) {
+        Agency a = theAgency();
+        if (a == null) {
+            return;
+        }
+        a.deleteObserver(obs);
+    }
+
     /**
      * When the agency changes, notify observers.
      *
@@ -194,7 +194,15 @@ public class CompoundCritic extends Critic {
      */
     @Override
     public List<Decision> getSupportedDecisions() {
-	throw new UnsupportedOperationException();
+        List<Decision> result = new ArrayList<Decision>();
+        for (Critic c : critics) {
+            for (Decision d : c.getSupportedDecisions()) {
+                if (!result.contains(d)) {
+                    result.add(d);
+                }
+            }
+        }
+        return result;
     }
 
     /*
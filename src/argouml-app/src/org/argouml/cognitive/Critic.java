@@ -40,6 +40,7 @@ package org.argouml.cognitive;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
@@ -254,6 +255,13 @@ public class Critic
     private ListSet<String> knowledgeTypes = new ListSet<String>();
     private long triggerMask = 0L;
 
+    /**
+     * The names of the model properties this critic reads.  Empty if the
+     * critic hasn't declared any, in which case it is applied on every
+     * change.
+     */
+    private Set<String> triggers = new HashSet<String>();
+
     ////////////////////////////////////////////////////////////////
     // constructor
 
@@ -368,7 +376,14 @@ public class Critic
      * produce more than one ToDoItem per critiquing, or that produce
      * ToDoItem's that contain information that was already computed in
      * the predicate, should override critique. If you override this
-     * method, you should call super.critique().
+     * method, you should call super.critique().<p>
+     *
+     * The Designer applies the critics on several threads while no change
+     * is made to the model.  All critics for one design material run one
+     * after the other on the same thread, but the same critic may be
+     * applied to different design materials at the same time.  Critics
+     * must therefore not keep the state of a single critique in fields,
+     * and must not change the model.
      *
      * @see Critic#predicate
      * @see Critic#toDoItem
@@ -571,34 +586,83 @@ public class Critic
     /**
      * @param s the reason
      * @return the code for the given reason
+     * @deprecated for 0.35.2.  Reason codes are a hash of the
+     *             property name and can't be matched exactly.  Use
+     *             {@link #matchReason(Set)} with the property names instead.
      */
+    @Deprecated
     public static int reasonCodeFor(String s) {
 	return 1 << (s.hashCode() % 62);
     }
 
     /**
      * @return the trigger mask
+     * @deprecated for 0.35.2.  Use {@link #getTriggers()}.
      */
+    @Deprecated
     public long getTriggerMask() {
         return triggerMask;
     }
 
     /**
-     * @param s the trigger to be added (is ORed into the mask)
+     * Declare that this critic reads the given model property of the
+     * design material it critiques, e.g. "name" or "feature".  Once a
+     * critic has declared any triggers it is only reapplied to a changed
+     * element if one of its triggers is among the changed properties.  A
+     * critic that declares no triggers is reapplied on every change.<p>
+     *
+     * Critics which read properties of the parts of their design material
+     * use derived names: "feature_" followed by the name of a property of
+     * a feature of a classifier, e.g. "feature_visibility", or "end_"
+     * followed by the name of a property of an end of an association, e.g.
+     * "end_isNavigable".  Changes of those parts are passed on to the
+     * owning element under these names.
+     *
+     * @param s the name of the property
      */
     public void addTrigger(String s) {
-	int newCode = reasonCodeFor(s);
-	triggerMask |= newCode;
+        triggers.add(s);
+        triggerMask |= reasonCodeFor(s);
+    }
+
+    /**
+     * @return the names of the properties this critic reads, empty if it
+     *         hasn't declared any
+     */
+    public Set<String> getTriggers() {
+        return Collections.unmodifiableSet(triggers);
     }
 
     /**
      * @param patternCode the mask to be checked
      * @return true if it matches a trigger
+     * @deprecated for 0.35.2.  Use {@link #matchReason(Set)}.
      */
+    @Deprecated
     public boolean matchReason(long patternCode) {
 	return (triggerMask == 0) || ((triggerMask & patternCode) != 0);
     }
 
+    /**
+     * Check whether this critic needs to be reapplied after a change.
+     *
+     * @param changedProperties the names of the properties that changed,
+     *            or null if unknown
+     * @return true if the critic declares no triggers, the changed
+     *         properties are unknown or one of them is a trigger
+     */
+    public boolean matchReason(Set<String> changedProperties) {
+        if (triggers.isEmpty() || changedProperties == null) {
+            return true;
+        }
+        for (String property : changedProperties) {
+            if (triggers.contains(property)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /*
      * @see org.argouml.cognitive.Poster#expand(java.lang.String, org.argouml.cognitive.ListSet)
      */
@@ -43,8 +43,20 @@ import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -55,6 +67,7 @@ import org.argouml.application.api.Argo;
 import org.argouml.configuration.Configuration;
 import org.argouml.configuration.ConfigurationKey;
 import org.argouml.model.InvalidElementException;
+import org.argouml.model.Model;
 import org.tigris.gef.util.ChildGenerator;
 import org.tigris.gef.util.EnumerationEmpty;
 
@@ -180,31 +193,67 @@ public final class Designer
 
     private Thread critiquerThread;
 
-    private int critiquingInterval;
+    /**
+     * The threads which apply the critics to the elements taken from the
+     * queues by the critiquing thread.
+     */
+    private ExecutorService critiquerPool;
 
-    private int critiqueCPUPercent;
+    /**
+     * The number of threads in the critiquer pool.
+     */
+    private int critiquerThreads;
 
-   /**
-     * dm's that should be critiqued ASAP.
+    /**
+     * The number of elements given to each thread of the pool in one
+     * batch.
      */
-    private List<Object> hotQueue;
+    private static final int ELEMENTS_PER_THREAD = 8;
 
-    private List<Long> hotReasonQueue;
+    /**
+     * The pause in milliseconds between two batches, so that changes
+     * which wait for the model get it.
+     */
+    private static final int BATCH_PAUSE = 10;
 
-    private List<Object> addQueue;
+    /**
+     * Incremented by {@link #clearCritiquing()}.  Critiques which were
+     * started before the last clear belong to an older generation and their
+     * results are dropped.
+     */
+    private int critiqueGeneration;
 
-    private List<Long> addReasonQueue;
+    /**
+     * The generation of the critique running on the current thread, or null
+     * if the thread isn't critiquing.
+     */
+    private static final ThreadLocal<Integer> CRITIQUE_GENERATION =
+        new ThreadLocal<Integer>();
+
+    private int critiquingInterval;
+
+    private int critiqueCPUPercent;
+
+    /**
+     * dm's that should be critiqued ASAP together with the names of the
+     * properties that changed, in the order they changed.  Each dm is only
+     * present once.
+     */
+    private Map<Object, Set<String>> addQueue;
 
-    private List<Object> removeQueue;
+    /**
+     * dm's which have changed since they were queued in the warm queue.
+     */
+    private Set<Object> removeQueue;
 
     private static int longestAdd;
 
     private static int longestHot;
 
     /**
-     * dm's that should be critiqued relatively soon.
+     * dm's that should be critiqued relatively soon, in FIFO order.
      */
-    private List<Object> warmQueue;
+    private LinkedHashSet<Object> warmQueue;
 
     private ChildGenerator childGenerator;
 
@@ -248,15 +297,12 @@ public final class Designer
         critiquingInterval = 8000;
         critiqueCPUPercent = 10;
 
-        hotQueue = new ArrayList<Object>();
-        hotReasonQueue = new ArrayList<Long>();
-        addQueue = new ArrayList<Object>();
-        addReasonQueue = new ArrayList<Long>();
-        removeQueue = new ArrayList<Object>();
+        addQueue = new LinkedHashMap<Object, Set<String>>();
+        removeQueue = new HashSet<Object>();
         longestAdd = 0;
         longestHot = 0;
 
-        warmQueue = new ArrayList<Object>();
+        warmQueue = new LinkedHashSet<Object>();
 
         childGenerator = new EmptyChildGenerator();
 
@@ -276,33 +322,59 @@ public final class Designer
 
     /**
      * Start a separate thread to continually select and execute
-     * critics that are relevant to this designer's work.
+     * critics that are relevant to this designer's work.  The thread
+     * takes the elements from the queues in batches and applies the
+     * critics to each batch on a pool with a thread per processor.
+     * If the thread is already running only the root is replaced.
      *
      * @param root the rootobject the critiques will check
      */
     public void spawnCritiquer(Object root) {
         /* TODO: really should be a separate class */
+        critiquingRoot = root;
+        if (critiquerThread != null && critiquerThread.isAlive()) {
+            return;
+        }
+        final int priority = Thread.currentThread().getPriority() - 1;
+        if (critiquerPool == null) {
+            critiquerThreads = Runtime.getRuntime().availableProcessors();
+            critiquerPool = Executors.newFixedThreadPool(critiquerThreads,
+                    new ThreadFactory() {
+                        private int count;
+                        public synchronized Thread newThread(Runnable r) {
+                            Thread t = new Thread(r,
+                                    "CritiquingThread " + ++count);
+                            t.setDaemon(true);
+                            t.setPriority(priority);
+                            return t;
+                        }
+                    });
+        }
         critiquerThread = new Thread(this, "CritiquingThread");
         critiquerThread.setDaemon(true);
-        critiquerThread.setPriority(Thread.currentThread().getPriority() - 1);
+        critiquerThread.setPriority(priority);
         critiquerThread.start();
-        critiquingRoot = root;
     }
 
     /**
      * Continuously select and execute critics against this designer's
      * design. {@link #spawnCritiquer(Object)} is used to start a
-     * Thread that runs this.
+     * Thread that runs this.<p>
+     *
+     * The queues are only locked while elements are taken from them, not
+     * while the critics run, so changes to the model can be queued at any
+     * time.  Each batch is critiqued in parallel while no change is made
+     * to the model, see {@link #critiqueBatch(List, Map, boolean, int)}.
      */
     public void run() {
         try {
             while (true) {
 
-                // local variables - what do they do?
                 long critiqueStartTime;
                 long cutoffTime;
+                // Critique at least this many elements of the warm queue
+                // in each cycle, even if we're out of time
                 int minWarmElements = 5;
-                int size;
 
                 // the critiquing thread should wait if disabled.
                 synchronized (this) {
@@ -316,71 +388,56 @@ public final class Designer
                     }
                 }
 
-                // why?
                 if (critiquingRoot != null
 //                      && getAutoCritique()
                         && critiqueLock <= 0) {
 
-                    // why?
+                    Map<Object, Set<String>> hotQueue;
+                    int generation;
                     synchronized (this) {
+                        generation = critiqueGeneration;
                         critiqueStartTime = System.currentTimeMillis();
                         cutoffTime = critiqueStartTime + 3000;
 
-                        size = addQueue.size();
-                        for (int i = 0; i < size; i++) {
-                            hotQueue.add(addQueue.get(i));
-                            hotReasonQueue.add(addReasonQueue.get(i));
-                        }
-                        addQueue.clear();
-                        addReasonQueue.clear();
-
+                        hotQueue = addQueue;
+                        addQueue = new LinkedHashMap<Object, Set<String>>();
                         longestHot = Math.max(longestHot, hotQueue.size());
-                        agency.determineActiveCritics(this);
-
-                        while (hotQueue.size() > 0) {
-                            Object dm = hotQueue.get(0);
-                            Long reasonCode =
-                                    hotReasonQueue.get(0);
-                            hotQueue.remove(0);
-                            hotReasonQueue.remove(0);
-                            Agency.applyAllCritics(dm, theDesigner(),
-                                    reasonCode.longValue());
-                        }
 
-                        size = removeQueue.size();
-                        for (int i = 0; i < size; i++) {
-                            warmQueue.remove(removeQueue.get(i));
-                        }
+                        warmQueue.removeAll(removeQueue);
                         removeQueue.clear();
-
-                        if (warmQueue.size() == 0) {
+                        if (warmQueue.isEmpty()) {
                             warmQueue.add(critiquingRoot);
                         }
-                        while (warmQueue.size() > 0
-                                && (System.currentTimeMillis() < cutoffTime
-                                        || minWarmElements > 0)) {
-                            if (minWarmElements > 0) {
-                                minWarmElements--;
-                            }
-                            Object dm = warmQueue.get(0);
-                            warmQueue.remove(0);
-                            try {
-                                Agency.applyAllCritics(dm, theDesigner());
-                                java.util.Enumeration subDMs =
-                                        childGenerator.gen(dm);
-                                while (subDMs.hasMoreElements()) {
-                                    Object nextDM = subDMs.nextElement();
-                                    if (!(warmQueue.contains(nextDM))) {
-                                        warmQueue.add(nextDM);
-                                    }
-                                }
-                            } catch (InvalidElementException e) {
-                                // Don't let a transient error kill the thread
-                                LOG.log(Level.WARNING, "Element " + dm
-                                        + "caused an InvalidElementException.  "
-                                        + "Ignoring for this pass.");
+                    }
+
+                    agency.determineActiveCritics(this);
+
+                    try {
+                        List<Object> hot =
+                            new ArrayList<Object>(hotQueue.keySet());
+                        int batchSize =
+                            critiquerThreads * ELEMENTS_PER_THREAD;
+                        for (int i = 0; i < hot.size(); i += batchSize) {
+                            critiqueBatch(hot.subList(i,
+                                    Math.min(i + batchSize, hot.size())),
+                                    hotQueue, false, generation);
+                            Thread.sleep(BATCH_PAUSE);
+                        }
+
+                        while (System.currentTimeMillis() < cutoffTime
+                                || minWarmElements > 0) {
+                            List<Object> warm =
+                                takeWarmElements(batchSize, generation);
+                            if (warm.isEmpty()) {
+                                break;
                             }
+                            minWarmElements -= warm.size();
+                            critiqueBatch(warm, null, true, generation);
+                            Thread.sleep(BATCH_PAUSE);
                         }
+                    } catch (InterruptedException ignore) {
+                        LOG.log(Level.SEVERE, "InterruptedException!!!",
+                                ignore);
                     }
                 } else {
                     critiqueStartTime = System.currentTimeMillis();
@@ -404,18 +461,143 @@ public final class Designer
         }
     }
 
+    /**
+     * Take the next elements from the warm queue.
+     *
+     * @param max the maximum number of elements to take
+     * @param generation the generation of the current critiquing cycle
+     * @return the elements in FIFO order, empty if the queue is empty or
+     *         critiquing has been cleared since the cycle started
+     */
+    private synchronized List<Object> takeWarmElements(int max,
+            int generation) {
+        List<Object> dms = new ArrayList<Object>();
+        if (generation != critiqueGeneration) {
+            return dms;
+        }
+        Iterator<Object> it = warmQueue.iterator();
+        while (it.hasNext() && dms.size() < max) {
+            dms.add(it.next());
+            it.remove();
+        }
+        return dms;
+    }
+
+    /**
+     * Apply all critics to the given elements on the critiquer pool and
+     * wait until they are done.  No change is made to the model while the
+     * batch is critiqued, so all critics see the model in the same state.
+     *
+     * @param dms the design materials to critique
+     * @param reasons the changed properties of the dms or null to apply all
+     *            critics
+     * @param queueChildren true to add the children of the dms to the
+     *            warm queue
+     * @param generation the generation of the current critiquing cycle
+     * @throws InterruptedException if the thread is interrupted while it
+     *             waits for the critics
+     */
+    private void critiqueBatch(final List<Object> dms,
+            final Map<Object, Set<String>> reasons,
+            final boolean queueChildren, final int generation)
+        throws InterruptedException {
+        final List<Callable<Object>> tasks =
+            new ArrayList<Callable<Object>>(dms.size());
+        for (final Object dm : dms) {
+            final Runnable critique = new Runnable() {
+                public void run() {
+                    critiqueElement(dm,
+                            reasons == null ? null : reasons.get(dm),
+                            queueChildren, generation);
+                }
+            };
+            tasks.add(Executors.callable(new Runnable() {
+                public void run() {
+                    Model.runReadOnly(critique);
+                }
+            }));
+        }
+        final InterruptedException[] interrupted =
+            new InterruptedException[1];
+        Model.runReadOnly(new Runnable() {
+            public void run() {
+                List<Future<Object>> results;
+                try {
+                    results = critiquerPool.invokeAll(tasks);
+                } catch (InterruptedException e) {
+                    interrupted[0] = e;
+                    return;
+                }
+                for (int i = 0; i < results.size(); i++) {
+                    try {
+                        results.get(i).get();
+                    } catch (ExecutionException e) {
+                        LOG.log(Level.SEVERE, "Critiquing " + dms.get(i)
+                                + " failed", e.getCause());
+                    } catch (InterruptedException e) {
+                        interrupted[0] = e;
+                        return;
+                    }
+                }
+            }
+        });
+        if (interrupted[0] != null) {
+            throw interrupted[0];
+        }
+    }
+
+    /**
+     * Apply the critics to a single element.  Called on a thread of the
+     * critiquer pool, in a read-only task of its own so that a critic which
+     * changes the model fails instead of waiting for the batch forever.
+     * Nothing is done if critiquing was cleared since
+     * the cycle started, and the items posted by the critics are dropped if
+     * it is cleared while they run, see {@link #inform(ToDoItem)}.
+     */
+    private void critiqueElement(Object dm, Set<String> changedProperties,
+            boolean queueChildren, int generation) {
+        synchronized (this) {
+            if (generation != critiqueGeneration) {
+                return;
+            }
+        }
+        CRITIQUE_GENERATION.set(generation);
+        try {
+            Agency.applyAllCritics(dm, this, changedProperties);
+            if (queueChildren) {
+                Enumeration subDMs = childGenerator.gen(dm);
+                List<Object> children = new ArrayList<Object>();
+                while (subDMs.hasMoreElements()) {
+                    children.add(subDMs.nextElement());
+                }
+                synchronized (this) {
+                    if (generation == critiqueGeneration) {
+                        warmQueue.addAll(children);
+                    }
+                }
+            }
+        } catch (InvalidElementException e) {
+            // Don't let a transient error kill the thread
+            LOG.log(Level.WARNING, "Element " + dm
+                    + "caused an InvalidElementException.  "
+                    + "Ignoring for this pass.");
+        } finally {
+            CRITIQUE_GENERATION.remove();
+        }
+    }
+
     /**
      * A modelelement has been changed.
      * Now we give it priority to be checked by the critics ASAP.
+     * Only the critics that declared the changed property as a trigger
+     * are applied, see {@link Critic#addTrigger(String)}.
      *
-     * TODO: why is is synchronised?
      * TODO: what about when objects are first created?
      *
      * @param dm the design material
-     * @param reason the reason
+     * @param reason the name of the property that changed
      */
     public synchronized void critiqueASAP(Object dm, String reason) {
-        long rCode = Critic.reasonCodeFor(reason);
         if (!userWorking) {
 	    return;
 	}
@@ -425,17 +607,15 @@ public final class Designer
             return;
         }
         LOG.log(Level.FINE, "critiqueASAP: {0}", dm);
-        int addQueueIndex = addQueue.indexOf(dm);
-        if (addQueueIndex == -1) {
-            addQueue.add(dm);
-            Long reasonCodeObj = new Long(rCode);
-            addReasonQueue.add(reasonCodeObj);
-        } else {
-            Long reasonCodeObj =
-		addReasonQueue.get(addQueueIndex);
-            long rc = reasonCodeObj.longValue() | rCode;
-            Long newReasonCodeObj = new Long(rc);
-            addReasonQueue.set(addQueueIndex, newReasonCodeObj);
+        if (reason == null) {
+            // Unknown change, apply all critics
+            addQueue.put(dm, null);
+        } else if (!addQueue.containsKey(dm)) {
+            Set<String> changedProperties = new HashSet<String>();
+            changedProperties.add(reason);
+            addQueue.put(dm, changedProperties);
+        } else if (addQueue.get(dm) != null) {
+            addQueue.get(dm).add(reason);
         }
         removeQueue.add(dm);
         longestAdd = Math.max(longestAdd, addQueue.size());
@@ -597,15 +777,14 @@ public final class Designer
     }
 
     /**
-     * Clear all critiquing results.
+     * Clear all critiquing results.  Critiques which are still running
+     * can't post their results any more.
      */
     public static void clearCritiquing() {
         synchronized (theDesigner()) {
+            theDesigner().critiqueGeneration++;
             theDesigner().toDoList.removeAllElements(); //v71
-            theDesigner().hotQueue.clear();
-            theDesigner().hotReasonQueue.clear();
             theDesigner().addQueue.clear();
-            theDesigner().addReasonQueue.clear();
             theDesigner().removeQueue.clear();
             theDesigner().warmQueue.clear();
         }
@@ -860,12 +1039,26 @@ public final class Designer
      * Inform the human designer using this system that the given
      * ToDoItem should be considered. This can be disruptive if the item
      * is urgent, or (more commonly) it is added to his ToDoList so that
-     * he can consider it at his leisure.
+     * he can consider it at his leisure.<p>
+     *
+     * Items posted by a critique which was started before the last
+     * {@link #clearCritiquing()} are stale and dropped.
      *
      * @param item the todo item
      */
     public void inform(ToDoItem item) {
-        toDoList.addElement(item);
+        Integer generation = CRITIQUE_GENERATION.get();
+        if (generation == null) {
+            toDoList.addElement(item);
+            return;
+        }
+        synchronized (this) {
+            if (generation != critiqueGeneration) {
+                LOG.log(Level.FINE, "Dropping stale todo item {0}", item);
+                return;
+            }
+            toDoList.addElement(item);
+        }
     }
 
     /**
@@ -38,20 +38,33 @@
 
 package org.argouml.cognitive;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.ConcurrentModificationException;
 import java.util.Enumeration;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
  * An Ordered, non-duplicated collection of objects (not exactly a
- * mathematical set because it is ordered).
+ * mathematical set because it is ordered).<p>
+ *
+ * The elements are kept in a list for their order and in a hash map from
+ * each element to its place in the list, so that contains, add and remove
+ * are constant time.  Removing an element only leaves a hole in the list,
+ * the holes are closed up once there are as many of them as elements, or
+ * before the elements are accessed by their index.  All operations which
+ * modify the ListSet keep the list and the map in step while holding the
+ * lock returned by {@link #mutex()}.
  * 
  * @param <T> The type of objects this ListSet is to contain.
  */
@@ -60,27 +73,40 @@ public class ListSet<T extends Object>
 
     private static final int TC_LIMIT = 50;
 
+    /**
+     * Marks the place of a removed element in the list.
+     */
+    private static final Object REMOVED = new Object();
+
+    /**
+     * The elements in their order, with holes where elements have been
+     * removed.  Its lock guards the whole ListSet.
+     */
     private List<T> list;
     
     /**
-     * A hash set containing the same items as the list so that we can
-     * use it for fast lookups.  
+     * The place of each element in the list, so that we can use it for fast
+     * lookups and removals.
      */
-    private Set<T> set;
-    
+    private Map<T, Integer> positions;
+
     /**
-     * The mutex/lock which is used for operations that need to check/modify
-     * both the set and list.  Get operations which only access the list can
-     * rely on the fact that it is a synchronized list.
+     * The number of holes in the list.
      */
-    private final Object mutex = new Object(); 
+    private int holes;
+
+    /**
+     * Counts the changes which move elements in the list, so that the
+     * iterators can tell that they have been made.
+     */
+    private int modCount;
 
     /**
      * The constructor.
      */
     public ListSet() {
-        list =  Collections.synchronizedList(new ArrayList<T>());
-        set = new HashSet<T>();
+        list = new ArrayList<T>();
+        positions = new HashMap<T, Integer>();
     }
 
     /**
@@ -89,8 +115,8 @@ public class ListSet<T extends Object>
      * @param n the initial capacity of the ListSet
      */
     public ListSet(int n) {
-        list = Collections.synchronizedList(new ArrayList<T>(n));
-        set = new HashSet<T>(n);
+        list = new ArrayList<T>(n);
+        positions = new HashMap<T, Integer>(n);
     }
 
     /**
@@ -99,8 +125,8 @@ public class ListSet<T extends Object>
      * @param o1 the first object to add
      */
     public ListSet(T o1) {
-        list = Collections.synchronizedList(new ArrayList<T>());
-        set = new HashSet<T>();
+        list = new ArrayList<T>();
+        positions = new HashMap<T, Integer>();
         add(o1);
     }
 
@@ -158,23 +184,75 @@ public class ListSet<T extends Object>
      * @see java.util.Collection#remove(java.lang.Object)
      */
     public boolean remove(Object o) {
-        synchronized (mutex) {
-            boolean result = contains(o);
-            if (o != null) {
-                list.remove(o);
-                set.remove(o);
+        synchronized (list) {
+            Integer position = o == null ? null : positions.remove(o);
+            if (position == null) {
+                return false;
             }
-            return result;
+            removeAt(position);
+            return true;
         }
     }
 
+    /**
+     * Take the element at a place in the list out of it, which has already
+     * been removed from the positions.  This leaves a hole, unless it was
+     * the last element.
+     */
+    private void removeAt(int position) {
+        if (position == list.size() - 1) {
+            list.remove(position);
+        } else {
+            list.set(position, removed());
+            holes++;
+            if (holes > positions.size()) {
+                compact();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T removed() {
+        return (T) REMOVED;
+    }
+
+    /**
+     * Close up the holes in the list, so that the places of the elements
+     * are their indexes.  Must be called with the lock on the list held.
+     */
+    private void compact() {
+        if (holes == 0) {
+            return;
+        }
+        List<T> compacted = new ArrayList<T>(positions.size());
+        for (T element : list) {
+            if (element != REMOVED) {
+                positions.put(element, compacted.size());
+                compacted.add(element);
+            }
+        }
+        list.clear();
+        list.addAll(compacted);
+        holes = 0;
+        modCount++;
+    }
+
+    /**
+     * Update the places of the elements from an index on, after an element
+     * was inserted or removed there.  The list must have no holes.
+     */
+    private void renumber(int from) {
+        for (int i = from; i < list.size(); i++) {
+            positions.put(list.get(i), i);
+        }
+        modCount++;
+    }
+
     /**
      * @param o the object to be removed
      */
     public void removeElement(Object o) {
-        if (o != null) {
-            list.remove(o);
-        }
+        remove(o);
     }
 
     /**
@@ -188,9 +266,9 @@ public class ListSet<T extends Object>
      * @see java.util.Collection#contains(java.lang.Object)
      */
     public boolean contains(Object o) {
-        synchronized (mutex) {
+        synchronized (list) {
             if (o != null) {
-                return set.contains(o);
+                return positions.containsKey(o);
             }
         }
         return false;
@@ -215,7 +293,7 @@ public class ListSet<T extends Object>
      */
     public Object findSuchThat(org.argouml.util.Predicate p) {
         synchronized (list) {
-            for (Object o : list) {
+            for (Object o : this) {
                 if (p.evaluate(o)) {
                     return o;
                 }
@@ -228,12 +306,17 @@ public class ListSet<T extends Object>
     /*
      * @see java.lang.Object#hashCode()
      *
-     * This will result in rather bad performance but at least we will
-     * not violate the contract together with {@link #equals(Object)}.
+     * Like equals(), this ignores the order of the elements.
      */
     @Override
     public int hashCode() {
-        return 0;
+        int hash = 0;
+        synchronized (list) {
+            for (Object obj : this) {
+                hash += obj == null ? 0 : obj.hashCode();
+            }
+        }
+        return hash;
     }
 
 
@@ -247,7 +330,7 @@ public class ListSet<T extends Object>
             return false;
         }
         synchronized (list) {
-            for (Object obj : list) {
+            for (Object obj : this) {
                 if (!(oSet.contains(obj))) {
                     return false;
                 }
@@ -261,7 +344,9 @@ public class ListSet<T extends Object>
      * @see java.util.Collection#size()
      */
     public int size() {
-        return list.size();
+        synchronized (list) {
+            return positions.size();
+        }
     }
 
 
@@ -329,7 +414,7 @@ public class ListSet<T extends Object>
     		org.argouml.util.Predicate predicate) {
         ListSet<T> kids = new ListSet<T>();
         synchronized (list) {
-            for (Object r : list) {
+            for (Object r : this) {
                 kids.addAllElementsSuchThat(cg.childIterator(r), predicate);
             }
         }
@@ -354,24 +439,28 @@ public class ListSet<T extends Object>
     public ListSet<T> transitiveClosure(org.argouml.util.ChildGenerator cg,
             int max, org.argouml.util.Predicate predicate) {
         int iterCount = 0;
-        int lastSize = -1;
-        ListSet<T> touched = new ListSet<T>();
-        ListSet<T> frontier;
-        ListSet<T> recent = this;
+        ListSet<T> touched = new ListSet<T>(size() * 2);
+        List<T> recent;
 
-        touched.addAll(this);
-        while ((iterCount < max) && (touched.size() > lastSize)) {
+        synchronized (list) {
+            compact();
+            touched.addAll(list);
+            recent = new ArrayList<T>(list);
+        }
+        // Only the elements found in the previous step need to be expanded,
+        // everything else has already been visited.
+        while (iterCount < max && !recent.isEmpty()) {
             iterCount++;
-            lastSize = touched.size();
-            frontier = new ListSet<T>();
-            synchronized (recent) {
-                for (T recentElement : recent) {
-                    Iterator frontierChildren = cg.childIterator(recentElement);
-                    frontier.addAllElementsSuchThat(frontierChildren, 
-                            predicate);
+            List<T> frontier = new ArrayList<T>();
+            for (T recentElement : recent) {
+                Iterator<T> children = cg.childIterator(recentElement);
+                while (children.hasNext()) {
+                    T child = children.next();
+                    if (predicate.evaluate(child) && touched.add(child)) {
+                        frontier.add(child);
+                    }
                 }
             }
-            touched.addAll(frontier);
             recent = frontier;
         }
         return touched;
@@ -381,14 +470,64 @@ public class ListSet<T extends Object>
      * @see java.util.Collection#isEmpty()
      */
     public boolean isEmpty() {
-        return list.isEmpty();
+        return size() == 0;
     }
 
     /*
      * @see java.util.Collection#iterator()
      */
     public Iterator<T> iterator() {
-        return list.iterator();
+        return new Iterator<T>() {
+            private int expectedModCount = modCount;
+
+            private int next = skipHoles(0);
+
+            private int last = -1;
+
+            public boolean hasNext() {
+                return next < list.size();
+            }
+
+            public T next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                last = next;
+                next = skipHoles(next + 1);
+                return list.get(last);
+            }
+
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                synchronized (list) {
+                    if (modCount != expectedModCount) {
+                        throw new ConcurrentModificationException();
+                    }
+                    positions.remove(list.get(last));
+                    // Leave a hole even at the end, so that the places
+                    // still to be visited stay where they are
+                    list.set(last, removed());
+                    holes++;
+                    last = -1;
+                }
+            }
+        };
+    }
+
+    /**
+     * @return the index of the first element at or after an index
+     */
+    private int skipHoles(int index) {
+        int i = index;
+        while (i < list.size() && list.get(i) == REMOVED) {
+            i++;
+        }
+        return i;
     }
     
     /**
@@ -402,14 +541,20 @@ public class ListSet<T extends Object>
      * @see java.util.Collection#toArray()
      */
     public Object[] toArray() {
-        return list.toArray();
+        synchronized (list) {
+            compact();
+            return list.toArray();
+        }
     }
 
     /*
      * @see java.util.Collection#toArray(java.lang.Object[])
      */
     public <A> A[] toArray(A[] arg0) {
-        return list.toArray(arg0);
+        synchronized (list) {
+            compact();
+            return list.toArray(arg0);
+        }
     }
 
 
@@ -417,13 +562,13 @@ public class ListSet<T extends Object>
      * @see java.util.Collection#add(java.lang.Object)
      */
     public boolean add(T arg0) {
-        synchronized (mutex) {
-            boolean result = set.contains(arg0);
-            if (!result) {
-                set.add(arg0);
-                list.add(arg0);
+        synchronized (list) {
+            if (positions.containsKey(arg0)) {
+                return false;
             }
-            return !result;
+            positions.put(arg0, list.size());
+            list.add(arg0);
+            return true;
         }
     }
 
@@ -431,8 +576,8 @@ public class ListSet<T extends Object>
      * @see java.util.Collection#containsAll(java.util.Collection)
      */
     public boolean containsAll(Collection arg0) {
-        synchronized (mutex) {
-            return set.containsAll(arg0);
+        synchronized (list) {
+            return positions.keySet().containsAll(arg0);
         }
     }
 
@@ -441,14 +586,32 @@ public class ListSet<T extends Object>
      * @see java.util.Collection#addAll(java.util.Collection)
      */
     public boolean addAll(Collection< ? extends T> arg0) {
-        return list.addAll(arg0);
+        boolean result = false;
+        synchronized (list) {
+            for (T o : arg0) {
+                if (add(o)) {
+                    result = true;
+                }
+            }
+        }
+        return result;
     }
 
     /*
      * @see java.util.Collection#retainAll(java.util.Collection)
      */
     public boolean retainAll(Collection< ? > arg0) {
-        return list.retainAll(arg0);
+        boolean result = false;
+        synchronized (list) {
+            for (Iterator<T> it = iterator(); it.hasNext();) {
+                if (!arg0.contains(it.next())) {
+                    it.remove();
+                    result = true;
+                }
+            }
+            compact();
+        }
+        return result;
     }
 
     /*
@@ -457,19 +620,22 @@ public class ListSet<T extends Object>
     public boolean removeAll(Collection arg0) {
         boolean result = false;
         for (Iterator iter = arg0.iterator(); iter.hasNext();) {
-            result = result || remove(iter.next());
+            if (remove(iter.next())) {
+                result = true;
+            }
         }
         return result;
-
     }
 
     /*
      * @see java.util.Collection#clear()
      */
     public void clear() {
-        synchronized (mutex) {
+        synchronized (list) {
             list.clear();
-            set.clear();
+            positions.clear();
+            holes = 0;
+            modCount++;
         }
     }
 
@@ -477,14 +643,28 @@ public class ListSet<T extends Object>
      * @see java.util.List#addAll(int, java.util.Collection)
      */
     public boolean addAll(int arg0, Collection< ? extends T> arg1) {
-        return list.addAll(arg0, arg1);
+        int index = arg0;
+        synchronized (list) {
+            compact();
+            for (T o : arg1) {
+                if (!positions.containsKey(o)) {
+                    list.add(index, o);
+                    positions.put(o, index++);
+                }
+            }
+            renumber(index);
+        }
+        return index > arg0;
     }
 
     /*
      * @see java.util.List#get(int)
      */
     public T get(int index) {
-        return list.get(index);
+        synchronized (list) {
+            compact();
+            return list.get(index);
+        }
     }
 
     /*
@@ -498,9 +678,11 @@ public class ListSet<T extends Object>
      * @see java.util.List#add(int, java.lang.Object)
      */
     public void add(int arg0, T arg1) {
-        synchronized (mutex) {
-            if (!set.contains(arg1)) {
+        synchronized (list) {
+            if (!positions.containsKey(arg1)) {
+                compact();
                 list.add(arg0, arg1);
+                renumber(arg0);
             }
         }
     }
@@ -509,9 +691,11 @@ public class ListSet<T extends Object>
      * @see java.util.List#remove(int)
      */
     public T remove(int index) {
-        synchronized (mutex) {
+        synchronized (list) {
+            compact();
             T removedElement = list.remove(index);
-            set.remove(removedElement);
+            positions.remove(removedElement);
+            renumber(index);
             return removedElement;
         }
     }
@@ -520,35 +704,111 @@ public class ListSet<T extends Object>
      * @see java.util.List#indexOf(java.lang.Object)
      */
     public int indexOf(Object o) {
-        return list.indexOf(o);
+        synchronized (list) {
+            if (!contains(o)) {
+                return -1;
+            }
+            compact();
+            return positions.get(o);
+        }
     }
 
     /*
      * @see java.util.List#lastIndexOf(java.lang.Object)
      */
     public int lastIndexOf(Object o) {
-        return list.lastIndexOf(o);
+        return indexOf(o);
     }
 
     /*
      * @see java.util.List#listIterator()
      */
     public ListIterator<T> listIterator() {
-        return list.listIterator();
+        return listIterator(0);
     }
 
     /*
+     * The returned iterator supports remove() but neither set() nor add(),
+     * like the ListSet itself doesn't support set().
+     *
      * @see java.util.List#listIterator(int)
      */
     public ListIterator<T> listIterator(int index) {
-        return list.listIterator(index);
+        synchronized (list) {
+            compact();
+            final ListIterator<T> it = list.listIterator(index);
+            return new ListIterator<T>() {
+                private T last;
+
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                public T next() {
+                    last = it.next();
+                    return last;
+                }
+
+                public boolean hasPrevious() {
+                    return it.hasPrevious();
+                }
+
+                public T previous() {
+                    last = it.previous();
+                    return last;
+                }
+
+                public int nextIndex() {
+                    return it.nextIndex();
+                }
+
+                public int previousIndex() {
+                    return it.previousIndex();
+                }
+
+                public void remove() {
+                    synchronized (list) {
+                        it.remove();
+                        positions.remove(last);
+                        renumber(it.nextIndex());
+                    }
+                }
+
+                public void set(T o) {
+                    throw new UnsupportedOperationException(
+                            "set() method not supported");
+                }
+
+                public void add(T o) {
+                    throw new UnsupportedOperationException(
+                            "add() method not supported");
+                }
+            };
+        }
     }
 
     /*
+     * The returned list is a copy, which doesn't follow later changes.
+     *
      * @see java.util.List#subList(int, int)
      */
     public List<T> subList(int fromIndex, int toIndex) {
-        return subList(fromIndex, toIndex);
+        synchronized (list) {
+            compact();
+            return Collections.unmodifiableList(
+                    new ArrayList<T>(list.subList(fromIndex, toIndex)));
+        }
+    }
+
+    /**
+     * The holes are closed up before writing, since the mark of a hole is
+     * only known to this class.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        synchronized (list) {
+            compact();
+            out.defaultWriteObject();
+        }
     }
 
 }
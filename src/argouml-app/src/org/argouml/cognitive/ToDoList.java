@@ -39,12 +39,15 @@
 
 package org.argouml.cognitive;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Observable;
 import java.util.Set;
 import java.util.logging.Level;
@@ -96,20 +99,46 @@ public class ToDoList extends Observable implements Runnable {
     private static final int SLEEP_SECONDS = 3;
 
     /**
-     * Pending ToDoItems for the designer to consider.
+     * Pending ToDoItems for the designer to consider, in the order they were
+     * added.  A set so that removing an item doesn't search the list.
+     * Guarded by the lock on {@link #itemList}.
      */
-    private List<ToDoItem> items;
+    private Set<ToDoItem> items;
 
-    private Set<ToDoItem> itemSet;
+    /**
+     * The list of the items returned by {@link #getToDoItemList()}.  Its
+     * lock guards the items and their indexes.
+     */
+    private final List<ToDoItem> itemList = new ItemList();
+
+    /**
+     * The items indexed by each of their offenders, posters and supported
+     * decisions.  Guarded by the lock on {@link #itemList}, like all
+     * modifications of the list.
+     */
+    private Map<Object, List<ToDoItem>> itemsByOffender;
+
+    private Map<Poster, List<ToDoItem>> itemsByPoster;
+
+    private Map<Decision, List<ToDoItem>> itemsByDecision;
+
+    /**
+     * An unmodifiable copy of the items, computed when needed and reset
+     * whenever the list changes.
+     */
+    private volatile List<ToDoItem> snapshot;
 
     /**
-     * These are computed when needed.
+     * These are computed when first needed and reset when an offender comes
+     * or goes.  A published set is never changed, so it can be iterated
+     * without locking.
      */
     // TODO: Offenders need to be more strongly typed. - tfm 20070630
     private volatile ListSet allOffenders;
 
     /**
-     * These are computed when needed.
+     * These are computed when first needed and reset when a poster comes or
+     * goes.  A published set is never changed.
      */
     private volatile ListSet<Poster> allPosters;
 
@@ -150,8 +179,10 @@ public class ToDoList extends Observable implements Runnable {
      */
     ToDoList() {
 
-        items = Collections.synchronizedList(new ArrayList<ToDoItem>(100));
-        itemSet = Collections.synchronizedSet(new HashSet<ToDoItem>(100));
+        items = new LinkedHashSet<ToDoItem>(100);
+        itemsByOffender = new LinkedHashMap<Object, List<ToDoItem>>();
+        itemsByPoster = new LinkedHashMap<Poster, List<ToDoItem>>();
+        itemsByDecision = new LinkedHashMap<Decision, List<ToDoItem>>();
         resolvedItems =
             Collections.synchronizedSet(new LinkedHashSet<ResolvedCritic>(100));
         listenerList = new EventListenerList();
@@ -228,26 +259,26 @@ public class ToDoList extends Observable implements Runnable {
      */
     private synchronized void forceValidityCheck(
             final List<ToDoItem> removes) {
-        synchronized (items) {
-            for (ToDoItem item : items) {
-                boolean valid;
-                try {
-                    valid = item.stillValid(designer);
-                } catch (InvalidElementException ex) {
-                    // If element has been deleted, it's no longer valid
-                    valid = false;
-                } catch (Exception ex) {
-                    valid = false;
-                    StringBuffer buf = new StringBuffer(
-                            "Exception raised in ToDo list cleaning");
-                    buf.append("\n");
-                    buf.append(item.toString());
-                    LOG.log(Level.SEVERE,buf.toString(), ex);
-                }
-                if (!valid) {
-                    numNotValid++;
-                    removes.add(item);
-                }
+        // Work on a snapshot so that critics can keep adding items while
+        // we check them
+        for (ToDoItem item : getToDoItemSnapshot()) {
+            boolean valid;
+            try {
+                valid = item.stillValid(designer);
+            } catch (InvalidElementException ex) {
+                // If element has been deleted, it's no longer valid
+                valid = false;
+            } catch (Exception ex) {
+                valid = false;
+                StringBuffer buf = new StringBuffer(
+                        "Exception raised in ToDo list cleaning");
+                buf.append("\n");
+                buf.append(item.toString());
+                LOG.log(Level.SEVERE,buf.toString(), ex);
+            }
+            if (!valid) {
+                numNotValid++;
+                removes.add(item);
             }
         }
 
@@ -258,8 +289,6 @@ public class ToDoList extends Observable implements Runnable {
             // ((ToDoItem)item).resolve("no longer valid");
             // notifyObservers("removeElement", item);
         }
-        recomputeAllOffenders();
-        recomputeAllPosters();
         fireToDoItemsRemoved(removes);
     }
 
@@ -348,11 +377,36 @@ public class ToDoList extends Observable implements Runnable {
      *      ....
      *  }
      * </pre>
+     * Code which only reads the items can use
+     * {@link #getToDoItemSnapshot()} instead, which needs no locking.
+     *
      * @see Collections#synchronizedList(List)
      * @return the List of ToDo items.
      */
     public List<ToDoItem> getToDoItemList() {
-        return items;
+        return itemList;
+    }
+
+    /**
+     * Returns an unmodifiable copy of the ToDoItems as they were when the
+     * list last changed.  It can be iterated without any locking and
+     * doesn't block the critics that add items.
+     *
+     * @return the ToDo items
+     */
+    public List<ToDoItem> getToDoItemSnapshot() {
+        List<ToDoItem> result = snapshot;
+        if (result == null) {
+            synchronized (itemList) {
+                result = snapshot;
+                if (result == null) {
+                    result = Collections.unmodifiableList(
+                            new ArrayList<ToDoItem>(items));
+                    snapshot = result;
+                }
+            }
+        }
+        return result;
     }
 
     /**
@@ -384,24 +438,16 @@ public class ToDoList extends Observable implements Runnable {
         // this method is running.
         ListSet all = allOffenders;
         if (all == null) {
-            int size = items.size();
-            all = new ListSet(size * 2);
-            synchronized (items) {
-                for (ToDoItem item : items) {
-                    all.addAll(item.getOffenders());
-                }
+            synchronized (itemList) {
+                all = new ListSet(itemsByOffender.size());
+                all.addAll(itemsByOffender.keySet());
+                // Published under the lock so no reset is missed
+                allOffenders = all;
             }
-            allOffenders = all;
         }
         return all;
     }
 
-    private void addOffenders(ListSet newoffs) {
-        if (allOffenders != null) {
-            allOffenders.addAll(newoffs);
-        }
-    }
-
     /**
      * @return the set of all the posters
      */
@@ -410,23 +456,15 @@ public class ToDoList extends Observable implements Runnable {
         // this method is running.
         ListSet<Poster> all = allPosters;
         if (all == null) {
-            all = new ListSet<Poster>();
-            synchronized (items) {
-                for (ToDoItem item : items) {
-                    all.add(item.getPoster());
-                }
+            synchronized (itemList) {
+                all = new ListSet<Poster>(itemsByPoster.size());
+                all.addAll(itemsByPoster.keySet());
+                allPosters = all;
             }
-            allPosters = all;
         }
         return all;
     }
 
-    private void addPosters(Poster newp) {
-        if (allPosters != null) {
-            allPosters.add(newp);
-        }
-    }
-
 
     /**
      * @return the list of Decisions (empty by default).
@@ -444,42 +482,57 @@ public class ToDoList extends Observable implements Runnable {
     }
 
     /*
-     * TODO: needs documenting, why synchronized?
+     * Critics run on several threads at once, and items come from the
+     * user interface too, so the check for an identical item and the
+     * addition must be atomic.
      */
     private void addE(ToDoItem item) {
-        /* skip any identical items already on the list */
-        if (itemSet.contains(item)) {
-            return;
+        if (addUnlessKnown(item)) {
+            notifyObservers("addElement", item);
+            fireToDoItemAdded(item);
         }
+    }
 
-        if (item.getPoster() instanceof Critic) {
-            ResolvedCritic rc;
-            try {
-                rc = new ResolvedCritic((Critic) item.getPoster(), item
-                        .getOffenders(), false);
-                Iterator<ResolvedCritic> elems = resolvedItems.iterator();
-                // cat.debug("Checking for inhibitors " + rc);
-                while (elems.hasNext()) {
-                    if (elems.next().equals(rc)) {
-                        LOG.log(Level.FINE, "ToDoItem not added because it was resolved");
-                        return;
+    /**
+     * Add an item to the list and the indexes, unless it is on the list
+     * already or has been resolved.
+     *
+     * @param item the todo item
+     * @return true if the item was added
+     */
+    private boolean addUnlessKnown(ToDoItem item) {
+        synchronized (itemList) {
+            /* skip any identical items already on the list */
+            if (items.contains(item)) {
+                return false;
+            }
+
+            if (item.getPoster() instanceof Critic) {
+                ResolvedCritic rc;
+                try {
+                    rc = new ResolvedCritic((Critic) item.getPoster(), item
+                            .getOffenders(), false);
+                    Iterator<ResolvedCritic> elems = resolvedItems.iterator();
+                    // cat.debug("Checking for inhibitors " + rc);
+                    while (elems.hasNext()) {
+                        if (elems.next().equals(rc)) {
+                            LOG.log(Level.FINE, "ToDoItem not added because it was resolved");
+                            return false;
+                        }
                     }
+                } catch (UnresolvableException ure) {
                 }
-            } catch (UnresolvableException ure) {
             }
-        }
 
-        items.add(item);
-        itemSet.add(item);
-        longestToDoList = Math.max(longestToDoList, items.size());
-        addOffenders(item.getOffenders());
-        addPosters(item.getPoster());
+            items.add(item);
+            index(item);
+            longestToDoList = Math.max(longestToDoList, items.size());
+        }
         // if (item.getPoster() instanceof Designer)
         // History.TheHistory.addItem(item, "note: ");
         // else
         // History.TheHistory.addItemCritique(item);
-        notifyObservers("addElement", item);
-        fireToDoItemAdded(item);
+        return true;
     }
 
     /**
@@ -489,19 +542,32 @@ public class ToDoList extends Observable implements Runnable {
         addE(item);
     }
 
+    /**
+     * Add several todo items, telling the listeners about all of them in
+     * one event.
+     *
+     * @param newItems the todo items to be added
+     */
+    public void addElements(Collection<ToDoItem> newItems) {
+        List<ToDoItem> added = new ArrayList<ToDoItem>(newItems.size());
+        for (ToDoItem item : newItems) {
+            if (addUnlessKnown(item)) {
+                notifyObservers("addElement", item);
+                added.add(item);
+            }
+        }
+        fireToDoItemsAdded(added);
+    }
+
     /**
      * @param list the todo items to be removed
      */
     public void removeAll(ToDoList list) {
-        List<ToDoItem> itemList = list.getToDoItemList();
-        synchronized (itemList) {
-            for (ToDoItem item : itemList) {
-                removeE(item);
-            }
-            recomputeAllOffenders();
-            recomputeAllPosters();
-            fireToDoItemsRemoved(itemList);
+        List<ToDoItem> itemList = list.getToDoItemSnapshot();
+        for (ToDoItem item : itemList) {
+            removeE(item);
         }
+        fireToDoItemsRemoved(itemList);
     }
 
     /**
@@ -510,8 +576,102 @@ public class ToDoList extends Observable implements Runnable {
      *         <code>false</code> otherwise
      */
     private boolean removeE(ToDoItem item) {
-        itemSet.remove(item);
-        return items.remove(item);
+        synchronized (itemList) {
+            if (!items.remove(item)) {
+                return false;
+            }
+            unindex(item);
+            return true;
+        }
+    }
+
+    /**
+     * Add an item to the offender, poster and decision indexes, and reset
+     * the sets of all offenders and posters if it brings a new one.  Must be
+     * called with the lock on items held.
+     */
+    private void index(ToDoItem item) {
+        for (Object offender : item.getOffenders()) {
+            if (addToIndex(itemsByOffender, offender, item)) {
+                recomputeAllOffenders();
+            }
+        }
+        Poster poster = item.getPoster();
+        if (addToIndex(itemsByPoster, poster, item)) {
+            recomputeAllPosters();
+        }
+        List<Decision> decisions = poster.getSupportedDecisions();
+        if (decisions != null) {
+            for (Decision decision : decisions) {
+                addToIndex(itemsByDecision, decision, item);
+            }
+        }
+        snapshot = null;
+    }
+
+    /**
+     * Remove an item from the offender, poster and decision indexes, and
+     * reset the sets of all offenders and posters if an offender or poster
+     * has no items left.  Must be called with the lock on items held.
+     */
+    private void unindex(ToDoItem item) {
+        for (Object offender : item.getOffenders()) {
+            if (removeFromIndex(itemsByOffender, offender, item)) {
+                recomputeAllOffenders();
+            }
+        }
+        Poster poster = item.getPoster();
+        if (removeFromIndex(itemsByPoster, poster, item)) {
+            recomputeAllPosters();
+        }
+        List<Decision> decisions = poster.getSupportedDecisions();
+        if (decisions != null) {
+            for (Decision decision : decisions) {
+                removeFromIndex(itemsByDecision, decision, item);
+            }
+        }
+        snapshot = null;
+    }
+
+    /**
+     * @return true if the key wasn't indexed before
+     */
+    private static <K> boolean addToIndex(Map<K, List<ToDoItem>> index,
+            K key, ToDoItem item) {
+        List<ToDoItem> bucket = index.get(key);
+        boolean added = false;
+        if (bucket == null) {
+            bucket = new ArrayList<ToDoItem>(2);
+            index.put(key, bucket);
+            added = true;
+        }
+        bucket.add(item);
+        return added;
+    }
+
+    /**
+     * @return true if the key has no items left and was removed
+     */
+    private static <K> boolean removeFromIndex(Map<K, List<ToDoItem>> index,
+            K key, ToDoItem item) {
+        List<ToDoItem> bucket = index.get(key);
+        if (bucket != null) {
+            bucket.remove(item);
+            if (bucket.isEmpty()) {
+                index.remove(key);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<ToDoItem> lookup(Map<?, List<ToDoItem>> index,
+            Object key) {
+        List<ToDoItem> bucket = index.get(key);
+        if (bucket == null) {
+            return new ArrayList<ToDoItem>();
+        }
+        return new ArrayList<ToDoItem>(bucket);
     }
 
     /**
@@ -521,8 +681,6 @@ public class ToDoList extends Observable implements Runnable {
      */
     public boolean removeElement(ToDoItem item) {
         boolean res = removeE(item);
-        recomputeAllOffenders();
-        recomputeAllPosters();
         fireToDoItemRemoved(item);
         notifyObservers("removeElement", item);
         return res;
@@ -586,12 +744,18 @@ public class ToDoList extends Observable implements Runnable {
      */
     public void removeAllElements() {
         LOG.log(Level.FINE, "removing all todo items");
-        List<ToDoItem> oldItems = new ArrayList<ToDoItem>(items);
-        items.clear();
-        itemSet.clear();
+        List<ToDoItem> oldItems;
+        synchronized (itemList) {
+            oldItems = new ArrayList<ToDoItem>(items);
+            items.clear();
+            itemsByOffender.clear();
+            itemsByPoster.clear();
+            itemsByDecision.clear();
+            snapshot = null;
+            recomputeAllOffenders();
+            recomputeAllPosters();
+        }
 
-        recomputeAllOffenders();
-        recomputeAllPosters();
         notifyObservers("removeAllElements");
         fireToDoItemsRemoved(oldItems);
     }
@@ -609,22 +773,50 @@ public class ToDoList extends Observable implements Runnable {
      *         it.
      */
     public List<ToDoItem> elementListForOffender(Object offender) {
-        List<ToDoItem> offenderItems = new ArrayList<ToDoItem>();
-        synchronized (items) {
-            for (ToDoItem item : items) {
-                if (item.getOffenders().contains(offender)) {
-                    offenderItems.add(item);
-                }
-            }
+        synchronized (itemList) {
+            return lookup(itemsByOffender, offender);
+        }
+    }
+
+    /**
+     * @param poster the poster
+     * @return a private copy of the list of todo items posted by the given
+     *         poster
+     */
+    public List<ToDoItem> elementListForPoster(Poster poster) {
+        synchronized (itemList) {
+            return lookup(itemsByPoster, poster);
+        }
+    }
+
+    /**
+     * @param decision the decision
+     * @return a private copy of the list of todo items whose poster supports
+     *         the given decision
+     */
+    public List<ToDoItem> elementListForDecision(Decision decision) {
+        synchronized (itemList) {
+            return lookup(itemsByDecision, decision);
+        }
+    }
+
+    /**
+     * @param offender the offender
+     * @return true if there is at least one todo item for the offender
+     */
+    public boolean hasItemsForOffender(Object offender) {
+        synchronized (itemList) {
+            return itemsByOffender.containsKey(offender);
         }
-        return offenderItems;
     }
 
     /**
      * @return the number of todo items
      */
     public int size() {
-        return items.size();
+        synchronized (itemList) {
+            return items.size();
+        }
     }
 
     /**
@@ -632,7 +824,7 @@ public class ToDoList extends Observable implements Runnable {
      * @return the ToDoItem at the given index
      */
     public ToDoItem get(int index) {
-        return items.get(index);
+        return getToDoItemSnapshot().get(index);
     }
 
     /**
@@ -758,14 +950,90 @@ public class ToDoList extends Observable implements Runnable {
     public String toString() {
         StringBuffer res = new StringBuffer(100);
         res.append(getClass().getName()).append(" {\n");
-        List<ToDoItem> itemList = getToDoItemList();
-        synchronized (itemList) {
-            for (ToDoItem item : itemList) {
-                res.append("    ").append(item.toString()).append("\n");
-            }
+        for (ToDoItem item : getToDoItemSnapshot()) {
+            res.append("    ").append(item.toString()).append("\n");
         }
         res.append("  }");
         return res.toString();
     }
 
+    /**
+     * The live list of the items.  Items added or removed through it are
+     * also added to or removed from the indexes, but no events are fired.
+     * Items can only be appended.
+     */
+    private class ItemList extends AbstractList<ToDoItem> {
+
+        @Override
+        public ToDoItem get(int index) {
+            return getToDoItemSnapshot().get(index);
+        }
+
+        @Override
+        public int size() {
+            synchronized (this) {
+                return items.size();
+            }
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            synchronized (this) {
+                return items.contains(o);
+            }
+        }
+
+        @Override
+        public boolean add(ToDoItem item) {
+            return addUnlessKnown(item);
+        }
+
+        @Override
+        public ToDoItem remove(int index) {
+            synchronized (this) {
+                ToDoItem item = get(index);
+                removeE(item);
+                return item;
+            }
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return o instanceof ToDoItem && removeE((ToDoItem) o);
+        }
+
+        @Override
+        public void clear() {
+            synchronized (this) {
+                Iterator<ToDoItem> it = iterator();
+                while (it.hasNext()) {
+                    it.next();
+                    it.remove();
+                }
+            }
+        }
+
+        @Override
+        public Iterator<ToDoItem> iterator() {
+            final Iterator<ToDoItem> it = items.iterator();
+            return new Iterator<ToDoItem>() {
+                private ToDoItem last;
+
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                public ToDoItem next() {
+                    last = it.next();
+                    return last;
+                }
+
+                public void remove() {
+                    it.remove();
+                    unindex(last);
+                }
+            };
+        }
+    }
+
 }
@@ -70,15 +70,13 @@ public class GoListToGoalsToItems extends AbstractGoList2 {
 	if (parent instanceof Goal) {
             Goal g = (Goal) parent;
             List<ToDoItem> itemList = 
-                Designer.theDesigner().getToDoList().getToDoItemList();
-            synchronized (itemList) {
-                for (ToDoItem item : itemList) {
-                    if (item.getPoster().supports(g)) {
-                        if (index == 0) {
-                            return item;
-                        }
-                        index--;
+                Designer.theDesigner().getToDoList().getToDoItemSnapshot();
+            for (ToDoItem item : itemList) {
+                if (item.getPoster().supports(g)) {
+                    if (index == 0) {
+                        return item;
                     }
+                    index--;
                 }
             }
 	}
@@ -97,12 +95,10 @@ public class GoListToGoalsToItems extends AbstractGoList2 {
 	    Goal g = (Goal) parent;
 	    int count = 0;
             List<ToDoItem> itemList = 
-                Designer.theDesigner().getToDoList().getToDoItemList();
-            synchronized (itemList) {
-                for (ToDoItem item : itemList) {
-                    if (item.getPoster().supports(g)) {
-                        count++;
-                    }
+                Designer.theDesigner().getToDoList().getToDoItemSnapshot();
+            for (ToDoItem item : itemList) {
+                if (item.getPoster().supports(g)) {
+                    count++;
                 }
             }
 	    return count;
@@ -124,12 +120,10 @@ public class GoListToGoalsToItems extends AbstractGoList2 {
 	    List<ToDoItem> candidates = new ArrayList<ToDoItem>();
 	    Goal g = (Goal) parent;
             List<ToDoItem> itemList = 
-                Designer.theDesigner().getToDoList().getToDoItemList();
-            synchronized (itemList) {
-                for (ToDoItem item : itemList) {
-                    if (item.getPoster().supports(g)) {
-                        candidates.add(item);
-                    }
+                Designer.theDesigner().getToDoList().getToDoItemSnapshot();
+            for (ToDoItem item : itemList) {
+                if (item.getPoster().supports(g)) {
+                    candidates.add(item);
                 }
             }
 	    return candidates.indexOf(child);
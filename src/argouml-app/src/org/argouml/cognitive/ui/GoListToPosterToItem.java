@@ -38,7 +38,6 @@
 
 package org.argouml.cognitive.ui;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -114,18 +113,8 @@ public class GoListToPosterToItem extends AbstractGoList2 {
         }
         //otherwise parent must be an offending design material
         if (allPosters.contains(parent)) {
-            List<ToDoItem> result = new ArrayList<ToDoItem>();
-            List<ToDoItem> itemList = 
-                Designer.theDesigner().getToDoList().getToDoItemList();
-            synchronized (itemList) {
-                for (ToDoItem item : itemList) {
-                    Poster post = item.getPoster();
-                    if (post == parent) {
-                        result.add(item);
-                    }
-                }
-            }
-            return result;
+            return Designer.theDesigner().getToDoList().elementListForPoster(
+                    (Poster) parent);
         }
         return Collections.emptyList();
     }
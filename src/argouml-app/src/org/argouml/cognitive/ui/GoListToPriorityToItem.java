@@ -67,15 +67,13 @@ public class GoListToPriorityToItem extends AbstractGoList2 {
 	if (parent instanceof PriorityNode) {
             PriorityNode pn = (PriorityNode) parent;
             List<ToDoItem> itemList = 
-                Designer.theDesigner().getToDoList().getToDoItemList();
-            synchronized (itemList) {
-                for (ToDoItem item : itemList) {
-                    if (item.getPriority() == pn.getPriority()) {
-                        if (index == 0) {
-                            return item;
-                        }
-                        index--;
+                Designer.theDesigner().getToDoList().getToDoItemSnapshot();
+            for (ToDoItem item : itemList) {
+                if (item.getPriority() == pn.getPriority()) {
+                    if (index == 0) {
+                        return item;
                     }
+                    index--;
                 }
             }
         }
@@ -94,12 +92,10 @@ public class GoListToPriorityToItem extends AbstractGoList2 {
 	    PriorityNode pn = (PriorityNode) parent;
             int count = 0;
             List<ToDoItem> itemList = Designer.theDesigner().getToDoList()
-                    .getToDoItemList();
-            synchronized (itemList) {
-                for (ToDoItem item : itemList) {
-                    if (item.getPriority() == pn.getPriority()) {
-                        count++;
-                    }
+                    .getToDoItemSnapshot();
+            for (ToDoItem item : itemList) {
+                if (item.getPriority() == pn.getPriority()) {
+                    count++;
                 }
             }
             return count;
@@ -119,15 +115,13 @@ public class GoListToPriorityToItem extends AbstractGoList2 {
             int index = 0;
             PriorityNode pn = (PriorityNode) parent;
             List<ToDoItem> itemList = Designer.theDesigner().getToDoList()
-                    .getToDoItemList();
-            synchronized (itemList) {
-                for (ToDoItem item : itemList) {
-                    if (item.getPriority() == pn.getPriority()) {
-                        if (item == child) {
-                            return index;
-                        }
-                        index++;
+                    .getToDoItemSnapshot();
+            for (ToDoItem item : itemList) {
+                if (item.getPriority() == pn.getPriority()) {
+                    if (item == child) {
+                        return index;
                     }
+                    index++;
                 }
             }
         }
@@ -69,15 +69,13 @@ public class GoListToTypeToItem extends AbstractGoList2 {
 	if (parent instanceof KnowledgeTypeNode) {
 	    KnowledgeTypeNode ktn = (KnowledgeTypeNode) parent;
             List<ToDoItem> itemList = 
-                Designer.theDesigner().getToDoList().getToDoItemList();
-            synchronized (itemList) {
-                for (ToDoItem item : itemList) {
-                    if (item.containsKnowledgeType(ktn.getName())) {
-                        if (index == 0) {
-                            return item;
-                        }
-                        index--;
+                Designer.theDesigner().getToDoList().getToDoItemSnapshot();
+            for (ToDoItem item : itemList) {
+                if (item.containsKnowledgeType(ktn.getName())) {
+                    if (index == 0) {
+                        return item;
                     }
+                    index--;
                 }
             }
 	}
@@ -96,12 +94,10 @@ public class GoListToTypeToItem extends AbstractGoList2 {
 	    KnowledgeTypeNode ktn = (KnowledgeTypeNode) parent;
 	    int count = 0;
             List<ToDoItem> itemList = 
-                Designer.theDesigner().getToDoList().getToDoItemList();
-            synchronized (itemList) {
-                for (ToDoItem item : itemList) {
-                    if (item.containsKnowledgeType(ktn.getName())) {
-                        count++;
-                    }
+                Designer.theDesigner().getToDoList().getToDoItemSnapshot();
+            for (ToDoItem item : itemList) {
+                if (item.containsKnowledgeType(ktn.getName())) {
+                    count++;
                 }
             }
             return count;
@@ -123,12 +119,10 @@ public class GoListToTypeToItem extends AbstractGoList2 {
 	    List<ToDoItem> candidates = new ArrayList<ToDoItem>();
 	    KnowledgeTypeNode ktn = (KnowledgeTypeNode) parent;
             List<ToDoItem> itemList = 
-                Designer.theDesigner().getToDoList().getToDoItemList();
-            synchronized (itemList) {
-                for (ToDoItem item : itemList) {
-                    if (item.containsKnowledgeType(ktn.getName())) {
-                        candidates.add(item);
-                    }
+                Designer.theDesigner().getToDoList().getToDoItemSnapshot();
+            for (ToDoItem item : itemList) {
+                if (item.containsKnowledgeType(ktn.getName())) {
+                    candidates.add(item);
                 }
             }
 	    return candidates.indexOf(child);
@@ -146,12 +140,10 @@ public class GoListToTypeToItem extends AbstractGoList2 {
 	if (node instanceof KnowledgeTypeNode) {
             KnowledgeTypeNode ktn = (KnowledgeTypeNode) node;
             List<ToDoItem> itemList = Designer.theDesigner().getToDoList()
-                    .getToDoItemList();
-            synchronized (itemList) {
-                for (ToDoItem item : itemList) {
-                    if (item.containsKnowledgeType(ktn.getName())) {
-                        return false;
-                    }
+                    .getToDoItemSnapshot();
+            for (ToDoItem item : itemList) {
+                if (item.containsKnowledgeType(ktn.getName())) {
+                    return false;
                 }
             }
         }
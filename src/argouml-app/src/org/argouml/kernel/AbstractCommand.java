@@ -38,6 +38,8 @@
 
 package org.argouml.kernel;
 
+import org.argouml.model.ModelCommand;
+
 /**
  * The base class for any commands that can be undone by ActionUndo.
  * @author Bob Tarling
@@ -55,4 +57,15 @@ public abstract class AbstractCommand implements Command {
     public boolean isRedoable() {
         return true;
     }
+
+    /**
+     * Estimate the memory this command keeps alive while it is waiting on
+     * the undo or redo stack. The UndoManager uses this to bound the size
+     * of its history.
+     *
+     * @return the estimated number of bytes
+     */
+    public int getEstimatedSize() {
+        return ModelCommand.ESTIMATED_SIZE;
+    }
 }
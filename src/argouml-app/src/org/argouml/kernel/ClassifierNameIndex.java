@@ -0,0 +1,253 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.kernel;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.argouml.model.InvalidElementException;
+import org.argouml.model.Model;
+
+/**
+ * An index of classifiers by their simple names and by their qualified
+ * names, used to find types by name without searching the whole model.<p>
+ *
+ * A top level namespace is indexed the first time it is searched.  After
+ * that the index listens to the model and classifiers are added as they,
+ * or the namespaces containing them, are named or moved.  Pending model
+ * events are flushed before each search, so a name missing from the index
+ * is missing from the model.  Entries are not removed when names change,
+ * so each candidate is checked against the model before it is returned
+ * and stale entries are dropped.<p>
+ *
+ * When several classifiers in the searched namespace have the same name
+ * the one found first by
+ * {@link org.argouml.model.ModelManagementHelper#getAllModelElementsOfKind(Object, Object)}
+ * is returned, as it was before there was an index.<p>
+ *
+ * Qualified names are made of the names of the containing namespaces below
+ * the top level one, separated by "::", e.g. <code>java::lang::String</code>.
+ */
+class ClassifierNameIndex implements PropertyChangeListener {
+
+    private static final String SEPARATOR = "::";
+
+    private static final String[] PROPERTIES = new String[] {
+        "name", "namespace",
+    };
+
+    /**
+     * Classifiers keyed by simple and by qualified name.
+     */
+    private final Map<String, List<Object>> index =
+        new HashMap<String, List<Object>>();
+
+    /**
+     * The top level namespaces whose classifiers have been indexed.
+     */
+    private final Set<Object> indexedRoots = new HashSet<Object>();
+
+    private boolean listening;
+
+    /**
+     * Keep the index up to date from model events.  This has to be
+     * matched by a call to {@link #stopListening()}.
+     */
+    synchronized void startListening() {
+        if (!listening) {
+            Model.getPump().addClassModelEventListener(this,
+                    Model.getMetaTypes().getNamespace(), PROPERTIES);
+            listening = true;
+        }
+    }
+
+    /**
+     * Stop listening to the model and empty the index.
+     */
+    synchronized void stopListening() {
+        if (listening) {
+            Model.getPump().removeClassModelEventListener(this,
+                    Model.getMetaTypes().getNamespace(), PROPERTIES);
+            listening = false;
+        }
+        index.clear();
+        indexedRoots.clear();
+    }
+
+    /**
+     * Find a classifier in a namespace by its simple or qualified name.
+     *
+     * @param name the simple or qualified name of the classifier
+     * @param namespace the namespace to search, including its contents
+     * @return the classifier or null if there is none
+     */
+    Object find(String name, Object namespace) {
+        // Not while holding our lock, the event thread may be waiting for it
+        Model.getPump().flushModelEvents();
+        return findIndexed(name, namespace);
+    }
+
+    private synchronized Object findIndexed(String name, Object namespace) {
+        Object root = Model.getFacade().getRoot(namespace);
+        if (!indexedRoots.contains(root)) {
+            indexedRoots.add(root);
+            for (Object classifier : getAllClassifiers(root)) {
+                add(classifier, root);
+            }
+        }
+
+        List<Object> candidates = index.get(name);
+        if (candidates == null) {
+            return null;
+        }
+        List<Object> found = new ArrayList<Object>(1);
+        Iterator<Object> it = candidates.iterator();
+        while (it.hasNext()) {
+            Object candidate = it.next();
+            if (Model.getUmlFactory().isRemoved(candidate)
+                    || !matches(name, candidate)) {
+                it.remove();
+            } else if (isContained(candidate, namespace)) {
+                found.add(candidate);
+            }
+        }
+        if (candidates.isEmpty()) {
+            index.remove(name);
+        }
+
+        if (found.size() <= 1) {
+            return found.isEmpty() ? null : found.get(0);
+        }
+        // Rare, keep the precedence of a plain search of the namespace
+        for (Object classifier : getAllClassifiers(namespace)) {
+            if (found.contains(classifier)) {
+                return classifier;
+            }
+        }
+        return found.get(0);
+    }
+
+    /**
+     * Add a classifier to the index, if its top level namespace has
+     * been indexed.
+     *
+     * @param classifier the classifier to add
+     */
+    synchronized void add(Object classifier) {
+        Object root = Model.getFacade().getRoot(classifier);
+        if (indexedRoots.contains(root)) {
+            add(classifier, root);
+        }
+    }
+
+    /*
+     * @see java.beans.PropertyChangeListener#propertyChange(java.beans.PropertyChangeEvent)
+     */
+    public void propertyChange(PropertyChangeEvent evt) {
+        Object source = evt.getSource();
+        try {
+            if (!Model.getUmlFactory().isRemoved(source)) {
+                addWithContents(source);
+            }
+        } catch (InvalidElementException e) {
+            // Deleted while the event was queued, nothing to index
+        }
+    }
+
+    /**
+     * Add a namespace, if it is a classifier, and the classifiers it
+     * contains, whose qualified names change with it.
+     */
+    private synchronized void addWithContents(Object namespace) {
+        Object root = Model.getFacade().getRoot(namespace);
+        if (!indexedRoots.contains(root)) {
+            return;
+        }
+        if (Model.getFacade().isAClassifier(namespace)) {
+            add(namespace, root);
+        }
+        if (!Model.getFacade().getOwnedElements(namespace).isEmpty()) {
+            for (Object classifier : getAllClassifiers(namespace)) {
+                add(classifier, root);
+            }
+        }
+    }
+
+    private void add(Object classifier, Object root) {
+        String name = Model.getFacade().getName(classifier);
+        if (name == null || name.length() == 0) {
+            return;
+        }
+        addKey(name, classifier);
+        String qualifiedName = getQualifiedName(classifier, root);
+        if (!qualifiedName.equals(name)) {
+            addKey(qualifiedName, classifier);
+        }
+    }
+
+    private void addKey(String key, Object classifier) {
+        List<Object> candidates = index.get(key);
+        if (candidates == null) {
+            candidates = new ArrayList<Object>(1);
+            index.put(key, candidates);
+        }
+        if (!candidates.contains(classifier)) {
+            candidates.add(classifier);
+        }
+    }
+
+    private boolean matches(String name, Object classifier) {
+        if (name.indexOf(SEPARATOR) < 0) {
+            return name.equals(Model.getFacade().getName(classifier));
+        }
+        return name.equals(getQualifiedName(classifier,
+                Model.getFacade().getRoot(classifier)));
+    }
+
+    private String getQualifiedName(Object element, Object root) {
+        StringBuilder qualifiedName = new StringBuilder(
+                String.valueOf(Model.getFacade().getName(element)));
+        Object ns = Model.getFacade().getNamespace(element);
+        while (ns != null && ns != root) {
+            qualifiedName.insert(0, SEPARATOR);
+            qualifiedName.insert(0, Model.getFacade().getName(ns));
+            ns = Model.getFacade().getNamespace(ns);
+        }
+        return qualifiedName.toString();
+    }
+
+    private boolean isContained(Object element, Object namespace) {
+        Object container = Model.getFacade().getModelElementContainer(element);
+        while (container != null) {
+            if (container == namespace) {
+                return true;
+            }
+            container = Model.getFacade().getModelElementContainer(container);
+        }
+        return false;
+    }
+
+    private static Collection<?> getAllClassifiers(Object namespace) {
+        return Model.getModelManagementHelper().getAllModelElementsOfKind(
+                namespace, Model.getMetaTypes().getClassifier());
+    }
+}
@@ -49,6 +49,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.argouml.i18n.Translator;
+import org.argouml.model.ModelCommand;
 
 /**
  * Manages a stacks of Commands to undo and redo. This DefaultUndoManager is
@@ -67,6 +68,23 @@ class DefaultUndoManager implements UndoManager {
      */
     private int undoMax = 0;
 
+    /**
+     * The default for {@link #undoMaxBytes}.
+     */
+    static final long DEFAULT_UNDO_MAX_BYTES = 16L * 1024 * 1024;
+
+    /**
+     * The estimated number of bytes the undo and redo stacks may hold
+     * together.
+     */
+    private long undoMaxBytes = DEFAULT_UNDO_MAX_BYTES;
+
+    /**
+     * The estimated number of bytes an interaction needs to refer to one
+     * of its commands.
+     */
+    private static final int ESTIMATED_REFERENCE_SIZE = 8;
+
     private ArrayList<PropertyChangeListener> listeners =
         new ArrayList<PropertyChangeListener>();
 
@@ -144,21 +162,50 @@ class DefaultUndoManager implements UndoManager {
         if (newInteraction || undoStack.isEmpty()) {
             redoStack.clear();
             newInteraction = false;
+            if (!undoStack.isEmpty()) {
+                undoStack.peek().trimToSize();
+            }
             if (undoStack.size() > undoMax) {
-                undoStack.remove(0);
+                undoStack.removeOldest();
             }
             macroCommand = new Interaction(newInteractionLabel);
             undoStack.push(macroCommand);
         } else {
             macroCommand = undoStack.peek();
         }
-        macroCommand.addCommand(command);
+        undoStack.grow(macroCommand.addCommand(command));
+        trim();
     }
 
     public void setUndoMax(int max) {
         undoMax = max;
     }
 
+    public synchronized void setUndoMaxBytes(long max) {
+        undoMaxBytes = max;
+        trim();
+    }
+
+    /**
+     * Forget the oldest interactions on the undo stack until the history
+     * fits in {@link #undoMaxBytes}. The latest interaction is kept even if
+     * it is larger than that on its own.
+     */
+    private void trim() {
+        while (undoStack.size() > 1
+                && undoStack.getBytes() + redoStack.getBytes()
+                    > undoMaxBytes) {
+            undoStack.removeOldest();
+        }
+    }
+
+    /**
+     * @return the estimated number of bytes held by the undo and redo stacks
+     */
+    synchronized long getEstimatedSize() {
+        return undoStack.getBytes() + redoStack.getBytes();
+    }
+
 
     public synchronized void undo() {
         final Interaction command = undoStack.pop();
@@ -206,10 +253,15 @@ class DefaultUndoManager implements UndoManager {
      */
     class Interaction extends AbstractCommand {
 
-        private List<Command> commands = new ArrayList<Command>();
+        private ArrayList<Command> commands = new ArrayList<Command>();
 
         private String label;
 
+        /**
+         * The estimated number of bytes held by the commands.
+         */
+        private int size = ModelCommand.ESTIMATED_SIZE;
+
         Interaction(String lbl) {
             label = lbl;
         }
@@ -252,8 +304,35 @@ class DefaultUndoManager implements UndoManager {
             return true;
         }
 
-        private void addCommand(Command command) {
+        /**
+         * Add a command to this interaction.
+         *
+         * @param command the command
+         * @return the estimated number of bytes this adds to the interaction
+         */
+        private int addCommand(Command command) {
             commands.add(command);
+            int added = ESTIMATED_REFERENCE_SIZE;
+            if (command instanceof AbstractCommand) {
+                added += ((AbstractCommand) command).getEstimatedSize();
+            } else {
+                added += ModelCommand.ESTIMATED_SIZE;
+            }
+            size += added;
+            return added;
+        }
+
+        /**
+         * Release the spare capacity of the command list once no more
+         * commands will be added.
+         */
+        private void trimToSize() {
+            commands.trimToSize();
+        }
+
+        @Override
+        public int getEstimatedSize() {
+            return size;
         }
 
         // TODO: i18n
@@ -286,6 +365,12 @@ class DefaultUndoManager implements UndoManager {
         private String removedProperty;
         private String sizeProperty;
 
+        /**
+         * The estimated number of bytes held by the interactions on this
+         * stack.
+         */
+        private long bytes;
+
         public InteractionStack(
                 String labelProp,
                 String addedProp,
@@ -299,6 +384,7 @@ class DefaultUndoManager implements UndoManager {
 
         public Interaction push(Interaction item) {
             super.push(item);
+            bytes += item.getEstimatedSize();
             fireLabel();
             fire(addedProperty, item);
             fire(sizeProperty, size());
@@ -307,12 +393,41 @@ class DefaultUndoManager implements UndoManager {
 
         public Interaction pop() {
             Interaction item = super.pop();
+            bytes -= item.getEstimatedSize();
             fireLabel();
             fire(removedProperty, item);
             fire(sizeProperty, size());
             return item;
         }
 
+        /**
+         * Remove the interaction at the bottom of the stack.
+         */
+        void removeOldest() {
+            Interaction item = remove(0);
+            bytes -= item.getEstimatedSize();
+            fire(removedProperty, item);
+            fire(sizeProperty, size());
+        }
+
+        /**
+         * Account for commands added to the interaction on top of the stack.
+         *
+         * @param added the estimated number of bytes added
+         */
+        void grow(int added) {
+            bytes += added;
+        }
+
+        long getBytes() {
+            return bytes;
+        }
+
+        public void clear() {
+            super.clear();
+            bytes = 0;
+        }
+
         private void fireLabel() {
             fire(labelProperty, getLabel());
         }
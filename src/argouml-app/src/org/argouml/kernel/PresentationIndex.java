@@ -0,0 +1,247 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.kernel;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EventObject;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.argouml.uml.diagram.ArgoDiagram;
+import org.tigris.gef.base.Layer;
+import org.tigris.gef.base.LayerListener;
+import org.tigris.gef.base.LayerPerspective;
+import org.tigris.gef.presentation.Fig;
+
+/**
+ * An index from owner to the top level Figs which present it, across all
+ * the diagrams of a project.<p>
+ *
+ * The index listens to the layers of the diagrams for Figs being added
+ * and removed, and to each Fig for changes of owner.  Since a layer can be
+ * emptied without telling its listeners, Figs which are no longer on a
+ * layer of an indexed diagram are skipped when the index is read.
+ */
+class PresentationIndex implements LayerListener, PropertyChangeListener {
+
+    private static final String OWNER = "owner";
+
+    private static final String LAYER = "layer";
+
+    /**
+     * The Figs keyed by owner, in the order they were added.
+     */
+    private final Map<Object, List<Fig>> figsByOwner =
+        new HashMap<Object, List<Fig>>();
+
+    /**
+     * The owner each Fig is indexed under.
+     */
+    private final Map<Fig, Object> owners = new HashMap<Fig, Object>();
+
+    /**
+     * The layer of each indexed diagram.
+     */
+    private final Map<ArgoDiagram, LayerPerspective> layers =
+        new HashMap<ArgoDiagram, LayerPerspective>();
+
+    /**
+     * Start indexing the Figs of a diagram.
+     *
+     * @param diagram the diagram
+     */
+    synchronized void addDiagram(ArgoDiagram diagram) {
+        if (layers.containsKey(diagram)) {
+            return;
+        }
+        diagram.addPropertyChangeListener(LAYER, this);
+        LayerPerspective layer = diagram.getLayer();
+        layers.put(diagram, layer);
+        addLayer(layer);
+    }
+
+    /**
+     * Stop indexing the Figs of a diagram.
+     *
+     * @param diagram the diagram
+     */
+    synchronized void removeDiagram(ArgoDiagram diagram) {
+        if (!layers.containsKey(diagram)) {
+            return;
+        }
+        diagram.removePropertyChangeListener(LAYER, this);
+        removeLayer(layers.remove(diagram));
+    }
+
+    /**
+     * Stop indexing all diagrams.
+     */
+    synchronized void clear() {
+        for (ArgoDiagram diagram
+                : new ArrayList<ArgoDiagram>(layers.keySet())) {
+            removeDiagram(diagram);
+        }
+        for (Fig fig : owners.keySet()) {
+            fig.removePropertyChangeListener(this);
+        }
+        figsByOwner.clear();
+        owners.clear();
+    }
+
+    /**
+     * Get the top level Figs with the given owner on any indexed diagram.
+     *
+     * @param owner the owner
+     * @return the Figs, in the order they were added
+     */
+    synchronized List<Fig> getFigs(Object owner) {
+        List<Fig> figs = figsByOwner.get(owner);
+        if (figs == null) {
+            return Collections.emptyList();
+        }
+        List<Fig> result = new ArrayList<Fig>(figs.size());
+        for (Fig fig : figs) {
+            if (fig.getOwner() == owner && getDiagram(fig) != null) {
+                result.add(fig);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the indexed diagram a Fig is on.
+     *
+     * @param fig the Fig
+     * @return the diagram or null if the Fig isn't on an indexed diagram
+     */
+    synchronized ArgoDiagram getDiagram(Fig fig) {
+        Layer layer = fig.getLayer();
+        if (!(layer instanceof LayerPerspective)) {
+            return null;
+        }
+        Object diagram = ((LayerPerspective) layer).getDiagram();
+        if (layers.get(diagram) != layer) {
+            return null;
+        }
+        return (ArgoDiagram) diagram;
+    }
+
+    /*
+     * @see org.tigris.gef.base.LayerListener#figAdded(java.util.EventObject)
+     */
+    public synchronized void figAdded(EventObject e) {
+        addFig((Fig) e.getSource());
+    }
+
+    /*
+     * @see org.tigris.gef.base.LayerListener#figRemoved(java.util.EventObject)
+     */
+    public synchronized void figRemoved(EventObject e) {
+        removeFig((Fig) e.getSource());
+    }
+
+    /*
+     * @see java.beans.PropertyChangeListener#propertyChange(java.beans.PropertyChangeEvent)
+     */
+    public synchronized void propertyChange(PropertyChangeEvent evt) {
+        Object source = evt.getSource();
+        if (source instanceof Fig && OWNER.equals(evt.getPropertyName())) {
+            Fig fig = (Fig) source;
+            if (owners.containsKey(fig)) {
+                unindex(fig);
+                index(fig, evt.getNewValue());
+            }
+        } else if (source instanceof ArgoDiagram
+                && LAYER.equals(evt.getPropertyName())
+                && layers.containsKey(source)) {
+            removeLayer(layers.get(source));
+            LayerPerspective layer = (LayerPerspective) evt.getNewValue();
+            layers.put((ArgoDiagram) source, layer);
+            addLayer(layer);
+        }
+    }
+
+    private void addLayer(LayerPerspective layer) {
+        if (layer == null) {
+            return;
+        }
+        layer.addLayerListener(this);
+        for (Fig fig : layer.getContents()) {
+            addFig(fig);
+        }
+    }
+
+    private void removeLayer(LayerPerspective layer) {
+        if (layer == null) {
+            return;
+        }
+        layer.removeLayerListener(this);
+        for (Fig fig : layer.getContents()) {
+            removeFig(fig);
+        }
+    }
+
+    private void addFig(Fig fig) {
+        if (owners.containsKey(fig)) {
+            return;
+        }
+        fig.addPropertyChangeListener(this);
+        index(fig, fig.getOwner());
+    }
+
+    private void removeFig(Fig fig) {
+        if (!owners.containsKey(fig)) {
+            return;
+        }
+        fig.removePropertyChangeListener(this);
+        unindex(fig);
+    }
+
+    private void index(Fig fig, Object owner) {
+        owners.put(fig, owner);
+        if (owner == null) {
+            return;
+        }
+        List<Fig> figs = figsByOwner.get(owner);
+        if (figs == null) {
+            figs = new ArrayList<Fig>(1);
+            figsByOwner.put(owner, figs);
+        }
+        figs.add(fig);
+    }
+
+    private void unindex(Fig fig) {
+        Object owner = owners.remove(fig);
+        if (owner == null) {
+            return;
+        }
+        List<Fig> figs = figsByOwner.get(owner);
+        if (figs != null) {
+            Iterator<Fig> it = figs.iterator();
+            while (it.hasNext()) {
+                if (it.next() == fig) {
+                    it.remove();
+                }
+            }
+            if (figs.isEmpty()) {
+                figsByOwner.remove(owner);
+            }
+        }
+    }
+}
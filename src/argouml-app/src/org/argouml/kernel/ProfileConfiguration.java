@@ -86,6 +86,11 @@ public class ProfileConfiguration extends AbstractProjectMember {
 
     private List<Object> profileModels = new ArrayList<Object>();
 
+    /**
+     * Index of the classifiers of the profile models by name.
+     */
+    private final ClassifierNameIndex typeIndex = new ClassifierNameIndex();
+
     /**
      * The extension used in serialization and returned by {@link #getType()}
      */
@@ -349,6 +354,15 @@ public class ProfileConfiguration extends AbstractProjectMember {
 	return "";
     }
 
+    /*
+     * @see org.argouml.kernel.AbstractProjectMember#remove()
+     */
+    @Override
+    protected void remove() {
+        typeIndex.stopListening();
+        super.remove();
+    }
+
     /**
      * @return the "Profile Configuration" string
      * @see java.lang.Object#toString()
@@ -397,8 +411,9 @@ public class ProfileConfiguration extends AbstractProjectMember {
      * @return the type or null
      */
     public Object findType(String name) {
+        typeIndex.startListening();
         for (Object model : getProfileModels()) {
-            Object result = findTypeInModel(name, model);
+            Object result = typeIndex.find(name, model);
             if (result != null) {
                 return result;
             }
@@ -359,11 +359,13 @@ public interface Project {
     /**
      * Finds a classifier with a certain name.<p>
      *
-     * Will only return first classifier with the matching name.
+     * Will only return first classifier with the matching name.  The name
+     * may also be qualified by the names of the enclosing namespaces below
+     * the model, separated by "::".
      *
      * TODO: Move to Model subsystem - tfm 20070307
      * 
-     * @param s is short name.
+     * @param s is short or qualified name.
      * @param ns Namespace where we do the search.
      * @return the found classifier (or <code>null</code> if not found).
      */
@@ -73,6 +73,7 @@ import org.argouml.uml.CommentEdge;
 import org.argouml.uml.ProjectMemberModel;
 import org.argouml.uml.cognitive.ProjectMemberTodoList;
 import org.argouml.uml.diagram.ArgoDiagram;
+import org.argouml.uml.diagram.ArgoDiagramImpl;
 import org.argouml.uml.diagram.DiagramFactory;
 import org.argouml.uml.diagram.ProjectMemberDiagram;
 import org.tigris.gef.presentation.Fig;
@@ -167,6 +168,24 @@ public class ProjectImpl implements java.io.Serializable, Project {
     private HashMap<String, Object> defaultModelTypeCache =
         new HashMap<String, Object>();
 
+    /**
+     * Index of the classifiers of the user models by name.
+     */
+    private final ClassifierNameIndex typeIndex = new ClassifierNameIndex();
+
+    /**
+     * Index of the Figs on all the diagrams by owner.
+     */
+    private final PresentationIndex presentationIndex =
+        new PresentationIndex();
+
+    /**
+     * The diagrams which override getContainingFig, which have to be
+     * asked directly by findFigsForMember.
+     */
+    private final List<ArgoDiagram> customContainingFigDiagrams =
+        new ArrayList<ArgoDiagram>();
+
     private final Collection trashcan = new ArrayList();
 
     // TODO: Change this to use an UndoManager instance per project when
@@ -654,34 +673,84 @@ public class ProjectImpl implements java.io.Serializable, Project {
             cls =
                 Model.getCoreFactory().buildClass(getCurrentNamespace());
             Model.getCoreHelper().setName(cls, s);
+            typeIndex.add(cls);
         }
         return cls;
     }
 
 
     public Collection<Fig> findFigsForMember(Object member) {
-        Collection<Fig> figs = new ArrayList<Fig>();
-        for (ArgoDiagram diagram : diagrams) {
+        Map<ArgoDiagram, Fig> figs = getFirstFigs(member);
+        if (Model.getFacade().isAOperation(member)
+                || Model.getFacade().isAReception(member)
+                || Model.getFacade().isAAttribute(member)) {
+            // Features are shown inside the Fig of their owner, see
+            // ArgoDiagramImpl.getContainingFig
+            for (Map.Entry<ArgoDiagram, Fig> entry
+                    : getFirstFigs(Model.getFacade().getOwner(member))
+                        .entrySet()) {
+                if (!figs.containsKey(entry.getKey())) {
+                    figs.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        for (ArgoDiagram diagram : customContainingFigDiagrams) {
+            figs.remove(diagram);
             Fig fig = diagram.getContainingFig(member);
             if (fig != null) {
-                figs.add(fig);
+                figs.put(diagram, fig);
             }
         }
-        return figs;
+        return inDiagramOrder(figs);
     }
 
 
     public Collection findAllPresentationsFor(Object obj) {
-        Collection<Fig> figs = new ArrayList<Fig>();
-        for (ArgoDiagram diagram : diagrams) {
-            Fig aFig = diagram.presentationFor(obj);
-            if (aFig != null) {
-                figs.add(aFig);
+        return inDiagramOrder(getFirstFigs(obj));
+    }
+
+    /**
+     * Get the first Fig presenting an element on each diagram.
+     */
+    private Map<ArgoDiagram, Fig> getFirstFigs(Object owner) {
+        Map<ArgoDiagram, Fig> figs = new HashMap<ArgoDiagram, Fig>();
+        for (Fig fig : presentationIndex.getFigs(owner)) {
+            ArgoDiagram diagram = presentationIndex.getDiagram(fig);
+            if (!figs.containsKey(diagram)) {
+                figs.put(diagram, fig);
             }
         }
         return figs;
     }
 
+    /**
+     * Does a diagram have its own way of finding the Fig containing an
+     * element, rather than the one the presentation index follows?
+     */
+    private static boolean hasCustomContainingFig(ArgoDiagram d) {
+        try {
+            return d.getClass().getMethod("getContainingFig", Object.class)
+                    .getDeclaringClass() != ArgoDiagramImpl.class;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+    }
+
+    private Collection<Fig> inDiagramOrder(Map<ArgoDiagram, Fig> figs) {
+        Collection<Fig> result = new ArrayList<Fig>(figs.size());
+        if (figs.size() == 1) {
+            result.addAll(figs.values());
+        } else if (!figs.isEmpty()) {
+            for (ArgoDiagram diagram : diagrams) {
+                Fig fig = figs.get(diagram);
+                if (fig != null) {
+                    result.add(fig);
+                }
+            }
+        }
+        return result;
+    }
+
     public Object findTypeInModel(String typeName, Object namespace) {
         if (typeName == null) {
             throw new IllegalArgumentException("typeName must be non-null");
@@ -693,18 +762,8 @@ public class ProjectImpl implements java.io.Serializable, Project {
                     + ". A namespace was expected.");
     	}
 
-        Collection allClassifiers =
-            Model.getModelManagementHelper()
-	        .getAllModelElementsOfKind(namespace,
-	                Model.getMetaTypes().getClassifier());
-
-        for (Object classifier : allClassifiers) {
-            if (typeName.equals(Model.getFacade().getName(classifier))) {
-                return classifier;
-            }
-        }
-
-        return null;
+        typeIndex.startListening();
+        return typeIndex.find(typeName, namespace);
     }
 
 
@@ -755,6 +814,10 @@ public class ProjectImpl implements java.io.Serializable, Project {
         // send indeterminate new value instead of making copy of vector
 	d.setProject(this);
         diagrams.add(d);
+        presentationIndex.addDiagram(d);
+        if (hasCustomContainingFig(d)) {
+            customContainingFigDiagrams.add(d);
+        }
 
         d.addPropertyChangeListener("name", new NamePCL());
         setSaveEnabled(true);
@@ -790,6 +853,8 @@ public class ProjectImpl implements java.io.Serializable, Project {
      */
     protected void removeDiagram(ArgoDiagram d) {
         diagrams.remove(d);
+        presentationIndex.removeDiagram(d);
+        customContainingFigDiagrams.remove(d);
         
         /* Remove the dependent
          * modelelements, such as the statemachine
@@ -811,11 +876,7 @@ public class ProjectImpl implements java.io.Serializable, Project {
             throw new IllegalArgumentException();
     	}
 
-        int presentations = 0;
-        for (ArgoDiagram d : diagrams) {
-            presentations += d.getLayer().presentationCountFor(me);
-        }
-        return presentations;
+        return presentationIndex.getFigs(me).size();
     }
 
 
@@ -1122,6 +1183,9 @@ public class ProjectImpl implements java.io.Serializable, Project {
         if (defaultModelTypeCache != null) {
             defaultModelTypeCache.clear();
         }
+        typeIndex.stopListening();
+        presentationIndex.clear();
+        customContainingFigDiagrams.clear();
 
         uuidRefs = null;
         defaultModelTypeCache = null;
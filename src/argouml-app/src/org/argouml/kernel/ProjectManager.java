@@ -589,6 +589,9 @@ public final class ProjectManager implements ModelCommandCreationObserver {
             public Object execute() {
                 return modelCommand.execute();
             }
+            public int getEstimatedSize() {
+                return modelCommand.getEstimatedSize();
+            }
             public String toString() {
                 return modelCommand.toString();
             }
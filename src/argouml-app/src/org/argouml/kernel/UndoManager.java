@@ -71,6 +71,15 @@ public interface UndoManager {
      */
     public abstract void setUndoMax(int max);
 
+    /**
+     * Set the estimated number of bytes the undo and redo stacks may hold
+     * together. The oldest interactions are forgotten when the stacks grow
+     * beyond this, but the latest interaction is always kept.
+     *
+     * @param max the maximum number of bytes
+     */
+    public abstract void setUndoMaxBytes(long max);
+
     /**
      * Undo the top user interaction on the undo stack and move
      * it to the redo stack.
@@ -40,8 +40,12 @@ package org.argouml.notation;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -71,9 +75,26 @@ public abstract class NotationProvider implements PropertyChangeListener {
      * A collection of properties of listeners registered for this notation.
      * Each entry is a 2 element array containing the element and the property
      * name(s) for which a listener is registered. This facilitates easy removal
-     * of a complex set of listeners.
+     * of a complex set of listeners.  Copied on write, since the renderer
+     * checks it while model events change it.
      */
-    private final Collection<Object[]> listeners = new ArrayList<Object[]>();
+    private final Collection<Object[]> listeners =
+        new CopyOnWriteArrayList<Object[]>();
+
+    /**
+     * The texts generated by {@link #render(Object, NotationSettings)},
+     * keyed by the element and the values of the settings used. Any event
+     * received by the listeners of this provider clears it.
+     */
+    private final Map<List<Object>, String> renderCache =
+        new HashMap<List<Object>, String>();
+
+    /**
+     * Counts the calls of {@link #invalidate()}, so that a text generated
+     * from the model as it was before an event isn't cached after it.
+     * Guarded by the lock on {@link #renderCache}.
+     */
+    private int renderGeneration;
 
     /**
      * @return a i18 key that represents a help string
@@ -101,6 +122,78 @@ public abstract class NotationProvider implements PropertyChangeListener {
     public abstract String toString(Object modelElement,
             NotationSettings settings);
 
+    /**
+     * Generate a string representation for the given model element,
+     * reusing the text generated before if nothing it depends on has
+     * changed since. <p>
+     *
+     * The text is only remembered for an element this provider listens to,
+     * since it is the events received by these listeners which tell that
+     * the text has to be generated again.
+     * Use {@link #toString(Object, NotationSettings)} right after changing
+     * the model, before the events for the change have been delivered.
+     * A listener of its own which renders on a model event has to call
+     * {@link #invalidate()} first, since it may get the event before the
+     * listeners of this provider do.
+     *
+     * @param modelElement the base UML element
+     * @param settings settings that control rendering of the text
+     * @return the string written in the correct notation
+     */
+    public final String render(Object modelElement,
+            NotationSettings settings) {
+        if (!isListeningTo(modelElement)) {
+            return toString(modelElement, settings);
+        }
+        List<Object> key = Arrays.asList(modelElement,
+                settings.getNotationLanguage(),
+                settings.isFullyHandleStereotypes(),
+                settings.isShowSingularMultiplicities(),
+                settings.isUseGuillemets(),
+                settings.isShowTypes(),
+                settings.isShowProperties(),
+                settings.isShowInitialValues(),
+                settings.isShowMultiplicities(),
+                settings.isShowAssociationNames(),
+                settings.isShowVisibilities(),
+                settings.isShowPaths());
+        int generation;
+        synchronized (renderCache) {
+            String text = renderCache.get(key);
+            if (text != null) {
+                return text;
+            }
+            generation = renderGeneration;
+        }
+        String text = toString(modelElement, settings);
+        synchronized (renderCache) {
+            if (generation == renderGeneration) {
+                renderCache.put(key, text);
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Forget all texts generated by
+     * {@link #render(Object, NotationSettings)}.
+     */
+    public void invalidate() {
+        synchronized (renderCache) {
+            renderCache.clear();
+            renderGeneration++;
+        }
+    }
+
+    private boolean isListeningTo(Object element) {
+        for (Object[] lis : listeners) {
+            if (lis[0] == element) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Initialize the appropriate model change listeners
      * for the given modelelement to the given listener.
@@ -168,6 +261,7 @@ public abstract class NotationProvider implements PropertyChangeListener {
     }
 
     public void propertyChange(PropertyChangeEvent evt) {
+        invalidate();
         if (renderer != null) {
             Object owner = renderer.getOwner(this);
             if ((owner == evt.getSource())
@@ -181,7 +275,7 @@ public abstract class NotationProvider implements PropertyChangeListener {
                     return;
                 }
                 renderer.notationRenderingChanged(this,
-                        toString(owner, renderer.getNotationSettings(this)));
+                        render(owner, renderer.getNotationSettings(this)));
                 if (evt instanceof AddAssociationEvent
                         || evt instanceof RemoveAssociationEvent) {
                     initialiseListener(owner);
@@ -349,6 +443,7 @@ public abstract class NotationProvider implements PropertyChangeListener {
             }
         }
         listeners.clear();
+        invalidate();
     }
 
     /**
@@ -71,12 +71,11 @@ public class CrConsiderSingleton extends CrUML {
         addSupportedDecision(UMLDecision.PATTERNS);
         setPriority(ToDoItem.LOW_PRIORITY);
 
-        // These may not actually make any difference at present (the code
-        // behind addTrigger needs more work).
-
         addTrigger("stereotype");
-        addTrigger("structuralFeature");
-        addTrigger("associationEnd");
+        addTrigger("feature");
+        addTrigger("association");
+        addTrigger("isAbstract");
+        addTrigger("feature_ownerScope");
     }
 
 
@@ -85,11 +85,11 @@ public class CrSingletonViolatedOnlyPrivateConstructors extends CrUML {
         addSupportedDecision(UMLDecision.PATTERNS);
         setPriority(ToDoItem.MED_PRIORITY);
 
-        // These may not actually make any difference at present (the code
-        // behind addTrigger needs more work).
         addTrigger("stereotype");
-        addTrigger("structuralFeature");
-        addTrigger("associationEnd");
+        addTrigger("feature");
+        addTrigger("association");
+        addTrigger("feature_visibility");
+        addTrigger("feature_stereotype");
     }
 
 
@@ -55,9 +55,6 @@ import org.argouml.kernel.ProjectMember;
 import org.argouml.uml.diagram.ArgoDiagram;
 import org.argouml.uml.diagram.DiagramSettings;
 import org.argouml.uml.diagram.ProjectMemberDiagram;
-import org.tigris.gef.ocl.ExpansionException;
-import org.tigris.gef.ocl.OCLExpander;
-import org.tigris.gef.ocl.TemplateReader;
 import org.xml.sax.InputSource;
 
 /**
@@ -73,9 +70,10 @@ class DiagramMemberFilePersister extends MemberFilePersister {
         Logger.getLogger(DiagramMemberFilePersister.class.getName());
 
     /**
-     * The tee file for persistence.
+     * The tee file which the PGML used to be generated from, and which the
+     * output of the {@link PgmlWriter} is checked against.
      */
-    private static final String PGML_TEE = "/org/argouml/persistence/PGML.tee";
+    static final String PGML_TEE = "/org/argouml/persistence/PGML.tee";
 
     private static final Map<String, String> CLASS_TRANSLATIONS =
         new HashMap<String, String>();
@@ -94,6 +92,20 @@ class DiagramMemberFilePersister extends MemberFilePersister {
     @Override
     public void load(Project project, InputSource inputSource)
         throws OpenException {
+        project.addMember(parse(project, inputSource));
+    }
+
+    /**
+     * Read a diagram without adding it to the project.  This may be called
+     * from several threads at once once the model has been loaded.
+     *
+     * @param project the project which owns the model elements
+     * @param inputSource the PGML to read
+     * @return the diagram
+     * @throws OpenException on any error reading the diagram
+     */
+    ArgoDiagram parse(Project project, InputSource inputSource)
+        throws OpenException {
 
         // If the model repository doesn't manage a DI model
         // then we must generate our Figs by inspecting PGML
@@ -114,8 +126,7 @@ class DiagramMemberFilePersister extends MemberFilePersister {
                         translation.getKey(),
                         translation.getValue());
             }
-            ArgoDiagram d = parser.readArgoDiagram(inputSource, false);
-            project.addMember(d);
+            return parser.readArgoDiagram(inputSource, false);
         } catch (Exception e) {
             if (e instanceof OpenException) {
                 throw (OpenException) e;
@@ -140,14 +151,6 @@ class DiagramMemberFilePersister extends MemberFilePersister {
         throws SaveException {
 
         ProjectMemberDiagram diagramMember = (ProjectMemberDiagram) member;
-        OCLExpander expander;
-        try {
-            expander =
-                    new OCLExpander(
-                            TemplateReader.getInstance().read(PGML_TEE));
-        } catch (ExpansionException e) {
-            throw new SaveException(e);
-        }
         OutputStreamWriter outputWriter;
         try {
             outputWriter =
@@ -156,19 +159,9 @@ class DiagramMemberFilePersister extends MemberFilePersister {
             throw new SaveException("Bad encoding", e1);
         }
 
-        try {
-            // WARNING: the OutputStream version of this doesn't work! - tfm
-            expander.expand(outputWriter, diagramMember.getDiagram());
-        } catch (ExpansionException e) {
-            throw new SaveException(e);
-        } finally {
-            try {
-                outputWriter.flush();
-            } catch (IOException e) {
-                throw new SaveException(e);
-            }
-        }
-
+        // The PgmlWriter writes what the expansion of PGML.tee used to,
+        // without evaluating the template for every Fig.
+        new PgmlWriter(outputWriter).write(diagramMember.getDiagram());
     }
 
     /**
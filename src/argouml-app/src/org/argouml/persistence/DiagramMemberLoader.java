@@ -0,0 +1,168 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.argouml.configuration.Configuration;
+import org.argouml.kernel.Project;
+import org.argouml.uml.diagram.ArgoDiagram;
+import org.xml.sax.InputSource;
+
+/**
+ * Loads diagram members on a pool of threads.  Each diagram is parsed into
+ * a detached ArgoDiagram, and the diagrams are only added to the project
+ * by {@link #attach()}, on the calling thread, in the order in which they
+ * were given to {@link #add(InputSource)}.
+ * <p>
+ * The model must already be loaded before any diagrams are added, since
+ * the figs are given their owners as they are parsed.
+ */
+class DiagramMemberLoader {
+
+    private static final Logger LOG =
+        Logger.getLogger(DiagramMemberLoader.class.getName());
+
+    private final Project project;
+
+    private final DiagramMemberFilePersister persister;
+
+    private final ExecutorService pool;
+
+    private final List<Future<ArgoDiagram>> pending =
+        new ArrayList<Future<ArgoDiagram>>();
+
+    /**
+     * Create a loader for the given project.
+     *
+     * @param p the project the diagrams belong to
+     * @param diagramPersister the persister used to parse each diagram
+     */
+    DiagramMemberLoader(Project p,
+            DiagramMemberFilePersister diagramPersister) {
+        project = p;
+        persister = diagramPersister;
+        int threads = Runtime.getRuntime().availableProcessors();
+        pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count;
+            public synchronized Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Diagram loader " + ++count);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        LOG.log(Level.INFO, "Loading diagrams on {0} threads", threads);
+    }
+
+    /**
+     * Is loading of diagrams on several threads enabled?
+     *
+     * @return true if diagrams should be loaded by a DiagramMemberLoader
+     */
+    static boolean isEnabled() {
+        return Configuration.getBoolean(
+                PersistenceManager.KEY_PARALLEL_DIAGRAM_LOADING, false);
+    }
+
+    /**
+     * Start parsing a diagram.  The byte stream of the input source is
+     * closed once the diagram has been read.
+     *
+     * @param source the diagram to parse
+     */
+    void add(final InputSource source) {
+        pending.add(pool.submit(new Callable<ArgoDiagram>() {
+            public ArgoDiagram call() throws Exception {
+                InputStream stream = source.getByteStream();
+                try {
+                    return persister.parse(project, source);
+                } finally {
+                    if (stream != null) {
+                        stream.close();
+                    }
+                }
+            }
+        }));
+    }
+
+    /**
+     * Wait for all the diagrams added so far and add them to the project in
+     * the order they were given.  If any diagram fails to load then those
+     * still outstanding are abandoned and none of them are added.
+     *
+     * @throws OpenException if a diagram could not be loaded
+     * @throws InterruptedException if the thread was interrupted while
+     *             waiting for a diagram
+     */
+    void attach() throws OpenException, InterruptedException {
+        List<ArgoDiagram> diagrams = new ArrayList<ArgoDiagram>();
+        try {
+            for (Future<ArgoDiagram> future : pending) {
+                diagrams.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            for (Future<ArgoDiagram> future : pending) {
+                future.cancel(true);
+            }
+            pending.clear();
+            Throwable cause = e.getCause();
+            if (cause instanceof OpenException) {
+                throw (OpenException) cause;
+            }
+            throw new OpenException(cause);
+        }
+        pending.clear();
+        for (ArgoDiagram d : diagrams) {
+            project.addMember(d);
+        }
+    }
+
+    /**
+     * Stop the threads used by this loader.  Any diagrams not yet attached
+     * are abandoned.
+     */
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Read the rest of a stream into memory, so that it can be parsed on
+     * another thread.
+     *
+     * @param stream the stream to read, which is not closed
+     * @return the contents of the stream
+     * @throws IOException on any error reading the stream
+     */
+    static byte[] readFully(InputStream stream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = stream.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+}
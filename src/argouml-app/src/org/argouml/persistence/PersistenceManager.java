@@ -40,6 +40,10 @@
 package org.argouml.persistence;
 
 import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.PrintStream;
@@ -47,12 +51,20 @@ import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
+import javax.swing.Timer;
 import javax.swing.filechooser.FileFilter;
 
 import org.argouml.application.api.Argo;
@@ -60,6 +72,7 @@ import org.argouml.configuration.Configuration;
 import org.argouml.configuration.ConfigurationKey;
 import org.argouml.i18n.Translator;
 import org.argouml.kernel.Project;
+import org.argouml.kernel.ProjectManager;
 import org.tigris.gef.util.UnexpectedException;
 
 
@@ -76,6 +89,10 @@ import org.tigris.gef.util.UnexpectedException;
  * @author mvw@tigris.org
  */
 public final class PersistenceManager {
+
+    private static final Logger LOG =
+        Logger.getLogger(PersistenceManager.class.getName());
+
     /**
      * The singleton instance.
      */
@@ -92,6 +109,30 @@ public final class PersistenceManager {
     private ZipFilePersister zipPersister;
 
     private AbstractFilePersister savePersister;
+
+    private RecoveryJournal recoveryJournal;
+
+    private Timer autosaveTimer;
+
+    /**
+     * Takes the checkpoints asked for by the autosave timer.
+     */
+    private ExecutorService autosaveWriter;
+
+    /**
+     * The checkpoint being taken, if any.
+     */
+    private Future<?> autosaveWrite;
+
+    /**
+     * The project autosaved, which follows the project opened.
+     */
+    private Project autosaveProject;
+
+    /**
+     * Discards the recovery journal when the autosaved project is closed.
+     */
+    private PropertyChangeListener autosaveProjectListener;
     
     /**
      * The configuration key for the project file location.
@@ -121,6 +162,25 @@ public final class PersistenceManager {
     public static final ConfigurationKey USE_SAFE_SAVES =
             Configuration.makeKey("project", "use", "safe-saves");
 
+    /**
+     * The configuration to parse the diagrams of a project on several
+     * threads while loading it.  The diagrams are still added to the
+     * project in the order they were saved.
+     */
+    public static final ConfigurationKey KEY_PARALLEL_DIAGRAM_LOADING =
+            Configuration.makeKey("project", "load", "parallel-diagrams");
+
+    /**
+     * The configuration of the number of minutes between checkpoints of
+     * the current project to the recovery journal. Zero, the default, turns
+     * autosave off, since a checkpoint writes the model in full whenever it
+     * changed.
+     */
+    public static final ConfigurationKey KEY_AUTOSAVE_INTERVAL =
+            Configuration.makeKey("project", "autosave", "interval");
+
+    private static final int DEFAULT_AUTOSAVE_INTERVAL = 0;
+
     /**
      * Create the default diagram persister.
      */
@@ -436,6 +496,147 @@ public final class PersistenceManager {
         return savePersister;
     }
     
+    /**
+     * @return the journal the current project is autosaved to, kept in a
+     *         directory of this session in the .argouml directory of the
+     *         user
+     */
+    public synchronized RecoveryJournal getRecoveryJournal() {
+        if (recoveryJournal == null) {
+            recoveryJournal = new RecoveryJournal(new File(
+                    System.getProperty("user.home") + File.separator
+                    + ".argouml" + File.separator + "recovery"));
+        }
+        return recoveryJournal;
+    }
+
+    /**
+     * Start writing checkpoints of a project to the recovery journal at the
+     * interval given by {@link #KEY_AUTOSAVE_INTERVAL}, whenever it has
+     * unsaved changes. The checkpoints are taken on a thread of their own,
+     * as a save is. The journal is discarded when the project is closed,
+     * and the project opened instead is autosaved from then on.
+     *
+     * @param project the project to autosave
+     */
+    public synchronized void startAutosave(Project project) {
+        int minutes = Configuration.getInteger(KEY_AUTOSAVE_INTERVAL,
+                DEFAULT_AUTOSAVE_INTERVAL);
+        if (minutes <= 0 || autosaveTimer != null) {
+            return;
+        }
+        autosaveProject = project;
+        final RecoveryJournal journal = getRecoveryJournal();
+        journal.startListening();
+        autosaveWriter = Executors.newSingleThreadExecutor(
+                new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "AutosaveThread");
+                        thread.setDaemon(true);
+                        thread.setPriority(thread.getPriority() - 1);
+                        return thread;
+                    }
+                });
+        autosaveProjectListener = new PropertyChangeListener() {
+            public void propertyChange(PropertyChangeEvent evt) {
+                if (ProjectManager.OPEN_PROJECTS_PROPERTY.equals(
+                        evt.getPropertyName())) {
+                    Project[] open = (Project[]) evt.getNewValue();
+                    if (isClosed((Project[]) evt.getOldValue(), open)) {
+                        // Its unsaved changes were given up
+                        journal.discard();
+                    }
+                    setAutosaveProject(open);
+                }
+            }
+        };
+        ProjectManager.getManager().addPropertyChangeListener(
+                autosaveProjectListener);
+        autosaveTimer = new Timer(minutes * 60 * 1000, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                autosave(journal);
+            }
+        });
+        autosaveTimer.start();
+    }
+
+    private synchronized void setAutosaveProject(Project[] open) {
+        autosaveProject = null;
+        if (open != null) {
+            for (Project p : open) {
+                if (p != null) {
+                    autosaveProject = p;
+                }
+            }
+        }
+    }
+
+    /**
+     * Write a checkpoint of the autosaved project on the autosave thread if
+     * it has unsaved changes, unless the previous one is still being
+     * written.
+     */
+    private synchronized void autosave(final RecoveryJournal journal) {
+        final Project p = autosaveProject;
+        if (autosaveWriter == null || p == null || !p.isDirty()
+                || (autosaveWrite != null && !autosaveWrite.isDone())) {
+            return;
+        }
+        autosaveWrite = autosaveWriter.submit(new Runnable() {
+            public void run() {
+                try {
+                    journal.checkpoint(p);
+                } catch (SaveException ex) {
+                    LOG.log(Level.WARNING, "Autosave failed", ex);
+                } catch (RuntimeException ex) {
+                    // The Future is never asked, so this would go unnoticed
+                    LOG.log(Level.SEVERE, "Autosave failed", ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return true if a project of the old ones is not among the new ones
+     */
+    private static boolean isClosed(Project[] oldProjects,
+            Project[] newProjects) {
+        if (oldProjects == null) {
+            return false;
+        }
+        List<Project> open = newProjects == null
+            ? new ArrayList<Project>() : Arrays.asList(newProjects);
+        for (Project p : oldProjects) {
+            if (p != null && !open.contains(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stop autosaving and delete the recovery journal, as is done when the
+     * application exits normally. A checkpoint still waiting to be written
+     * is dropped.
+     */
+    public synchronized void stopAutosave() {
+        if (autosaveTimer != null) {
+            autosaveTimer.stop();
+            autosaveTimer = null;
+            autosaveWriter.shutdown();
+            autosaveWriter = null;
+            autosaveWrite = null;
+            autosaveProject = null;
+            ProjectManager.getManager().removePropertyChangeListener(
+                    autosaveProjectListener);
+            autosaveProjectListener = null;
+            recoveryJournal.stopListening();
+        }
+        if (recoveryJournal != null) {
+            recoveryJournal.close();
+        }
+    }
+
     /**
      * Figs are stored by class name and recreated by reflection. If the class
      * name changes or moves this provides a simple way of translating from
@@ -0,0 +1,528 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.persistence;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.argouml.uml.UUIDHelper;
+import org.argouml.uml.diagram.ArgoDiagram;
+import org.argouml.uml.diagram.static_structure.ui.FigEdgeNote;
+import org.argouml.uml.diagram.ui.FigEdgeModelElement;
+import org.argouml.uml.diagram.ui.FigNodeModelElement;
+import org.argouml.uml.diagram.ui.PathItemPlacement;
+import org.tigris.gef.base.Diagram;
+import org.tigris.gef.base.Layer;
+import org.tigris.gef.base.PathConv;
+import org.tigris.gef.presentation.Fig;
+import org.tigris.gef.presentation.FigCircle;
+import org.tigris.gef.presentation.FigEdge;
+import org.tigris.gef.presentation.FigGroup;
+import org.tigris.gef.presentation.FigInk;
+import org.tigris.gef.presentation.FigLine;
+import org.tigris.gef.presentation.FigPoly;
+import org.tigris.gef.presentation.FigRRect;
+import org.tigris.gef.presentation.FigSpline;
+import org.tigris.gef.presentation.FigText;
+
+/**
+ * Writes a diagram as PGML straight to a stream.<p>
+ *
+ * The output is the same, byte for byte, as the expansion of
+ * <code>PGML.tee</code> by GEF's OCLExpander: every template is written
+ * out by a method of its own, with the same indentation, the same lines
+ * left out when an <code>ignoreNull</code> expression has no value and the
+ * same escaping. The template is still used by the tests to check this.<p>
+ *
+ * The ids of the Figs are remembered while writing, so that finding the id
+ * of a Fig no longer needs a search through the layer.
+ */
+class PgmlWriter {
+
+    private static final String FIG_INDENT = "  ";
+
+    private static final String GROUP_INDENT = "     ";
+
+    private final BufferedWriter out;
+
+    private Layer layer;
+
+    private Map<Fig, Integer> layerIndexes;
+
+    private final Map<Fig, String> ids = new HashMap<Fig, String>();
+
+    /**
+     * @param writer the writer to write the PGML to
+     */
+    PgmlWriter(Writer writer) {
+        out = new BufferedWriter(writer);
+    }
+
+    /**
+     * Write a diagram and flush the writer.
+     *
+     * @param diagram the diagram
+     * @throws SaveException if the diagram has no value for a mandatory
+     *         attribute or can not be written
+     */
+    void write(ArgoDiagram diagram) throws SaveException {
+        layer = diagram.getLayer();
+        layerIndexes = null;
+        ids.clear();
+        try {
+            writeDiagram(diagram);
+            out.flush();
+        } catch (IOException e) {
+            throw new SaveException(e);
+        } finally {
+            layer = null;
+            layerIndexes = null;
+            ids.clear();
+        }
+    }
+
+    private void writeDiagram(ArgoDiagram diagram)
+        throws IOException, SaveException {
+        line("", "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>");
+        line("", "<!DOCTYPE pgml SYSTEM \"pgml.dtd\">");
+        attribute("", "<pgml description=",
+                ((Diagram) diagram).getClassAndModelID(), "");
+        line("", "      xmlns:argouml="
+                + "\"http://argouml.tigris.org/pgml-extensions\"");
+        attribute("", "      name=", diagram.getName(), "");
+        line("", ">");
+        optionalAttribute(FIG_INDENT, "<private>ItemUID=",
+                diagram.getItemUID(), "</private>");
+        writeFigs(FIG_INDENT, diagram.getLayer().getContents());
+        line("", "</pgml>");
+    }
+
+    private void writeFigs(String indent, List< ? extends Fig> figs)
+        throws IOException, SaveException {
+        for (Fig fig : figs) {
+            writeFig(indent, fig);
+        }
+    }
+
+    /**
+     * Write a Fig with the template of the nearest class it extends.
+     */
+    private void writeFig(String indent, Fig fig)
+        throws IOException, SaveException {
+        if (fig == null) {
+            throw new SaveException("A null Fig can not be written");
+        }
+        if (fig instanceof FigEdgeModelElement) {
+            writeEdgeModelElement(indent, (FigEdgeModelElement) fig);
+        } else if (fig instanceof FigEdgeNote) {
+            writeEdgeNote(indent, (FigEdgeNote) fig);
+        } else if (fig instanceof FigEdge) {
+            writeEdge(indent, (FigEdge) fig);
+        } else if (fig instanceof FigNodeModelElement) {
+            writeNodeModelElement(indent, (FigNodeModelElement) fig);
+        } else if (fig instanceof FigGroup) {
+            writeGroup(indent, (FigGroup) fig);
+        } else if (fig instanceof FigText) {
+            writeText(indent, (FigText) fig);
+        } else if (fig instanceof FigRRect) {
+            writeRectangle(indent, fig, Integer.valueOf(
+                    ((FigRRect) fig).getCornerRadius()));
+        } else if (fig instanceof FigCircle) {
+            writeCircle(indent, (FigCircle) fig);
+        } else if (fig instanceof FigLine) {
+            writeLine(indent, (FigLine) fig);
+        } else if (fig instanceof FigSpline || fig instanceof FigInk) {
+            writePath(indent, fig, 0);
+        } else if (fig instanceof FigPoly) {
+            writePath(indent, fig, 1);
+        } else {
+            // FigRect, FigCube and any other Fig are written alike
+            writeRectangle(indent, fig, null);
+        }
+    }
+
+    private void writeEdgeModelElement(String indent, FigEdgeModelElement fig)
+        throws IOException, SaveException {
+        String inner = indent + GROUP_INDENT;
+        attribute(indent, "<group name=", getId(fig), "");
+        attribute(inner, "description=", fig.getClass().getName(), "");
+        optionalAttribute(inner, "href=", UUIDHelper.getUUID(fig), "");
+        optionalAttribute(inner, "sourceConnector=",
+                UUIDHelper.getUUID(fig.getSourceConnector()), "");
+        optionalAttribute(inner, "destConnector=",
+                UUIDHelper.getUUID(fig.getDestinationConnector()), "");
+        writeStroke(inner, fig);
+        line(indent, ">");
+        line(indent, "  <private>");
+        String privateIndent = indent + "    ";
+        optionalAttribute(privateIndent, "ItemUID=", fig.getItemUID(), "");
+        writePorts(privateIndent, fig);
+        for (Object strategy : fig.getPathItemStrategies()) {
+            writePathItem(privateIndent, strategy);
+        }
+        line(indent, "  </private>");
+        writeFig(indent + FIG_INDENT, fig.getFig());
+        line(indent, "</group>");
+    }
+
+    private void writeEdgeNote(String indent, FigEdgeNote fig)
+        throws IOException, SaveException {
+        String inner = indent + GROUP_INDENT;
+        attribute(indent, "<group name=", getId(fig), "");
+        attribute(inner, "description=", fig.getClass().getName(), "");
+        writeStroke(inner, fig);
+        line(indent, ">");
+        line(indent, "  <private>");
+        optionalAttribute(indent + "    ", "ItemUID=", fig.getItemUID(), "");
+        writePorts(indent + "    ", fig);
+        line(indent, "  </private>");
+        writeFig(indent + FIG_INDENT, fig.getFig());
+        line(indent, "</group>");
+    }
+
+    private void writeEdge(String indent, FigEdge fig)
+        throws IOException, SaveException {
+        String inner = indent + GROUP_INDENT;
+        attribute(indent, "<group name=", getId(fig), "");
+        attribute(inner, "description=", fig.getClass().getName(), "");
+        optionalAttribute(inner, "href=", UUIDHelper.getUUID(fig), "");
+        writeStroke(inner, fig);
+        line(indent, ">");
+        line(indent, "  <private>");
+        writePorts(indent + "    ", fig);
+        line(indent, "  </private>");
+        writeFig(indent + FIG_INDENT, fig.getFig());
+        line(indent, "</group>");
+    }
+
+    private void writeStroke(String indent, FigEdge fig)
+        throws IOException, SaveException {
+        attribute(indent, "stroke=", Integer.valueOf(fig.getLineWidth()), "");
+        attribute(indent, "strokecolor=", fig.getLineColor(), "");
+    }
+
+    private void writePorts(String indent, FigEdge fig)
+        throws IOException, SaveException {
+        attribute(indent, "sourcePortFig=", getId(fig.getSourcePortFig()), "");
+        attribute(indent, "destPortFig=", getId(fig.getDestPortFig()), "");
+        attribute(indent, "sourceFigNode=", getId(fig.getSourceFigNode()), "");
+        attribute(indent, "destFigNode=", getId(fig.getDestFigNode()), "");
+    }
+
+    private void writePathItem(String indent, Object strategy)
+        throws IOException, SaveException {
+        String inner = indent + "                  ";
+        if (strategy instanceof PathItemPlacement) {
+            PathItemPlacement placement = (PathItemPlacement) strategy;
+            Fig itemFig = placement.getItemFig();
+            attribute(indent, "<argouml:pathitem figname=", getId(itemFig),
+                    "");
+            attribute(inner, "classname=", strategy.getClass().getName(), "");
+            attribute(inner, "figclassname=", itemFig.getClass().getName(),
+                    "");
+            attribute(inner, "ownerhref=", UUIDHelper.getUUID(itemFig), "");
+            attribute(inner, "angle=", Double.valueOf(placement.getAngle()),
+                    "");
+            attribute(inner, "offset=",
+                    Integer.valueOf(placement.getVectorOffset()), " />");
+        } else if (strategy instanceof PathConv) {
+            // The template asks for the pathFig property, which PathConv
+            // does not expose, so there never is an owner to write.
+            attribute(indent, "<argouml:pathitem classname=",
+                    strategy.getClass().getName(), "");
+        } else if (strategy == null) {
+            throw new SaveException("A null path item strategy found");
+        } else {
+            line(indent, escape(strategy.toString()));
+        }
+    }
+
+    // classNameAndBounds() is what PGML.tee writes, and Figs override it
+    @SuppressWarnings("deprecation")
+    private void writeNodeModelElement(String indent, FigNodeModelElement fig)
+        throws IOException, SaveException {
+        String inner = indent + GROUP_INDENT;
+        attribute(indent, "<group name=", getId(fig), "");
+        attribute(inner, "description=", fig.classNameAndBounds(), "");
+        optionalAttribute(inner, "href=", UUIDHelper.getUUID(fig), "");
+        writeFillAndStroke(inner, fig);
+        line(indent, ">");
+        line(indent, "  <private>");
+        optionalAttribute(indent + "    ", "ItemUID=", fig.getItemUID(), "");
+        optionalAttribute(indent + "    ", "enclosingFig=",
+                PgmlUtility.getEnclosingId(fig), "");
+        line(indent, "  </private>");
+        line(indent, "  ");
+        writeFigs(indent + FIG_INDENT, fig.getFigs());
+        line(indent, "</group>");
+    }
+
+    @SuppressWarnings("deprecation")
+    private void writeGroup(String indent, FigGroup fig)
+        throws IOException, SaveException {
+        String inner = indent + GROUP_INDENT;
+        attribute(indent, "<group name=", getId(fig), "");
+        attribute(inner, "description=", fig.classNameAndBounds(), "");
+        optionalAttribute(inner, "href=", UUIDHelper.getUUID(fig), "");
+        writeFillAndStroke(inner, fig);
+        line(indent, ">");
+        line(indent, "  <private>");
+        optionalAttribute(indent + "    ", "enclosingFig=",
+                PgmlUtility.getEnclosingId(fig), "");
+        line(indent, "  </private>");
+        line(indent, "  ");
+        writeFigs(indent + FIG_INDENT, fig.getFigs());
+        line(indent, "</group>");
+    }
+
+    private void writeText(String indent, FigText fig)
+        throws IOException, SaveException {
+        String inner = indent + FIG_INDENT;
+        attribute(indent, "<text name=", getId(fig), "");
+        attribute(inner, "x=", Integer.valueOf(fig.getX()), "");
+        attribute(inner, "y=", Integer.valueOf(fig.getY()), "");
+        attribute(inner, "width=", Integer.valueOf(fig.getWidth()), "");
+        attribute(inner, "height=", Integer.valueOf(fig.getHeight()), "");
+        writeFillAndStroke(inner, fig);
+        attribute(inner, "textcolor=", fig.getTextColor(), "");
+        attribute(inner, "font=", fig.getFontFamily(), "");
+        attribute(inner, "italic=", Boolean.valueOf(fig.getItalic()), "");
+        attribute(inner, "bold=", Boolean.valueOf(fig.getBold()), "");
+        attribute(inner, "textsize=", Integer.valueOf(fig.getFontSize()), "");
+        attribute(inner, "justification=", fig.getJustificationByName(),
+                "");
+        String text = fig.getText();
+        if (text == null) {
+            throw new SaveException("No text in " + getId(fig));
+        }
+        line(indent, ">" + escape(text) + "</text>");
+    }
+
+    private void writeRectangle(String indent, Fig fig, Integer rounding)
+        throws IOException, SaveException {
+        String inner = indent + FIG_INDENT;
+        attribute(indent, "<rectangle name=", getId(fig), "");
+        Rectangle bounds = fig.getBounds();
+        attribute(inner, "x=", Integer.valueOf(bounds.x), "");
+        attribute(inner, "y=", Integer.valueOf(bounds.y), "");
+        attribute(inner, "width=", Integer.valueOf(bounds.width), "");
+        attribute(inner, "height=", Integer.valueOf(bounds.height), "");
+        writeFillAndStroke(inner, fig);
+        if (rounding != null) {
+            attribute(inner, "rounding=", rounding, "");
+        }
+        line(indent, "/>");
+    }
+
+    @SuppressWarnings("deprecation")
+    private void writeCircle(String indent, FigCircle fig)
+        throws IOException, SaveException {
+        String inner = indent + FIG_INDENT;
+        attribute(indent, "<ellipse name=", getId(fig), "");
+        Point center = fig.getCenter();
+        attribute(inner, "x=", Integer.valueOf(center.x), "");
+        attribute(inner, "y=", Integer.valueOf(center.y), "");
+        attribute(inner, "rx=", Integer.valueOf(fig.getHalfWidth()), "");
+        attribute(inner, "ry=", Integer.valueOf(fig.getHalfHeight()), "");
+        writeFillAndStroke(inner, fig);
+        line(indent, "/>");
+    }
+
+    private void writeLine(String indent, FigLine fig)
+        throws IOException, SaveException {
+        writePathStart(indent, fig);
+        String inner = indent + FIG_INDENT;
+        writePoint(inner, "<moveto", fig.getX1(), fig.getY1());
+        writePoint(inner, "<lineto", fig.getX2(), fig.getY2());
+        line(indent, "</path>");
+    }
+
+    /**
+     * Write a poly line, spline or ink path.
+     *
+     * @param first the index of the first point written as a line end,
+     *        after the move to the first point
+     */
+    private void writePath(String indent, Fig fig, int first)
+        throws IOException, SaveException {
+        writePathStart(indent, fig);
+        String inner = indent + FIG_INDENT;
+        Point start = fig.getFirstPoint();
+        writePoint(inner, "<moveto", start.x, start.y);
+        Point[] points = fig.getPoints();
+        for (int i = first; i < points.length; i++) {
+            writePoint(inner, "<lineto", points[i].x, points[i].y);
+        }
+        line(indent, "</path>");
+    }
+
+    private void writePathStart(String indent, Fig fig)
+        throws IOException, SaveException {
+        String inner = indent + FIG_INDENT;
+        attribute(indent, "<path name=", getId(fig), "");
+        attribute(inner, "description=", fig.getClass().getName(), "");
+        writeFillAndStroke(inner, fig);
+        line(indent, ">");
+    }
+
+    private void writePoint(String indent, String element, int x, int y)
+        throws IOException {
+        line(indent, element + " x=\"" + x + "\"");
+        line(indent, "        y=\"" + y + "\" />");
+    }
+
+    /**
+     * Write the attributes of the FILL_AND_STROKE macro.  The accessors are
+     * the ones PGML.tee uses, so that the output stays the same.
+     */
+    @SuppressWarnings("deprecation")
+    private void writeFillAndStroke(String indent, Fig fig)
+        throws IOException, SaveException {
+        attribute(indent, "fill=", Integer.valueOf(fig.getFilled01()), "");
+        attribute(indent, "fillcolor=", fig.getFillColor(), "");
+        attribute(indent, "stroke=", Integer.valueOf(fig.getLineWidth()), "");
+        attribute(indent, "strokecolor=", fig.getLineColor(), "");
+        optionalAttribute(indent, "visibility=",
+                PgmlUtility.getVisibility(fig), "");
+    }
+
+    /**
+     * Write a line with a quoted value which must be there.
+     */
+    private void attribute(String indent, String start, Object value,
+            String end) throws IOException, SaveException {
+        if (value == null) {
+            throw new SaveException("No value for " + start.trim());
+        }
+        optionalAttribute(indent, start, value, end);
+    }
+
+    /**
+     * Write a line with a quoted value, or nothing if there is no value.
+     */
+    private void optionalAttribute(String indent, String start, Object value,
+            String end) throws IOException, SaveException {
+        if (value == null) {
+            return;
+        }
+        String text;
+        if (value instanceof Color) {
+            text = org.tigris.gef.persistence.pgml.PgmlUtility.getColor(
+                    (Color) value);
+            if (text == null) {
+                throw new SaveException("No name for the color " + value);
+            }
+        } else {
+            text = value.toString();
+        }
+        line(indent, start + "\"" + escape(text) + "\"" + end);
+    }
+
+    private void line(String indent, String text) throws IOException {
+        out.write(indent);
+        out.write(text);
+        out.newLine();
+    }
+
+    /**
+     * Find the id of a Fig the way {@link PgmlUtility#getId(Fig)} does,
+     * remembering the ids found.
+     */
+    private String getId(Fig fig) {
+        if (fig == null) {
+            throw new IllegalArgumentException("A fig must be supplied");
+        }
+        String id = ids.get(fig);
+        if (id != null) {
+            return id;
+        }
+        Fig group = fig.getGroup();
+        if (group instanceof FigGroup) {
+            id = getId(group) + "."
+                + ((FigGroup) group).getFigs().indexOf(fig);
+        } else if (group instanceof FigEdge) {
+            id = getId(group) + "."
+                + (((FigEdge) group).getPathItemFigs().indexOf(fig) + 1);
+        } else if (group != null) {
+            id = getId(group) + ".0";
+        } else if (fig.getLayer() == null) {
+            id = "LAYER_NULL";
+        } else if (fig.getLayer() == layer) {
+            id = "Fig" + getLayerIndex(fig);
+        } else {
+            id = "Fig" + fig.getLayer().getContents().indexOf(fig);
+        }
+        ids.put(fig, id);
+        return id;
+    }
+
+    private int getLayerIndex(Fig fig) {
+        if (layerIndexes == null) {
+            List<Fig> contents = layer.getContents();
+            layerIndexes = new HashMap<Fig, Integer>(contents.size() * 2);
+            for (int i = contents.size() - 1; i >= 0; i--) {
+                // going backwards leaves the first index of a repeated Fig
+                layerIndexes.put(contents.get(i), Integer.valueOf(i));
+            }
+        }
+        Integer index = layerIndexes.get(fig);
+        return index == null ? -1 : index.intValue();
+    }
+
+    /**
+     * Replace the characters which XML reserves by their entities, like
+     * the OCLExpander does for every value.
+     */
+    static String escape(String text) {
+        StringBuilder result = null;
+        for (int i = 0; i < text.length(); i++) {
+            String entity;
+            switch (text.charAt(i)) {
+            case '&':
+                entity = "&amp;";
+                break;
+            case '<':
+                entity = "&lt;";
+                break;
+            case '>':
+                entity = "&gt;";
+                break;
+            case '"':
+                entity = "&quot;";
+                break;
+            case '\'':
+                entity = "&apos;";
+                break;
+            default:
+                if (result != null) {
+                    result.append(text.charAt(i));
+                }
+                continue;
+            }
+            if (result == null) {
+                result = new StringBuilder(text.length() + 16);
+                result.append(text, 0, i);
+            }
+            result.append(entity);
+        }
+        return result == null ? text : result.toString();
+    }
+}
@@ -0,0 +1,1122 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.persistence;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+
+import org.argouml.application.api.Argo;
+import org.argouml.application.helpers.ApplicationVersion;
+import org.argouml.cognitive.Designer;
+import org.argouml.cognitive.ResolvedCritic;
+import org.argouml.cognitive.ToDoItem;
+import org.argouml.kernel.ProfileConfiguration;
+import org.argouml.kernel.Project;
+import org.argouml.kernel.ProjectMember;
+import org.argouml.model.Model;
+import org.argouml.profile.Profile;
+import org.argouml.uml.ProjectMemberModel;
+import org.argouml.uml.cognitive.ProjectMemberTodoList;
+import org.argouml.uml.diagram.ArgoDiagram;
+import org.argouml.uml.diagram.ProjectMemberDiagram;
+import org.tigris.gef.presentation.Fig;
+import org.tigris.gef.presentation.FigEdge;
+import org.tigris.gef.presentation.FigGroup;
+import org.tigris.gef.presentation.FigText;
+
+/**
+ * An append-only journal of checkpoints of a project, kept so that the work
+ * since the last save can be recovered after a crash.<p>
+ *
+ * A checkpoint writes the project in the .uml format, split in one chunk
+ * file per member plus one for the header, and then appends a line naming
+ * these chunks to the journal. Chunks which have not changed since the
+ * previous checkpoint are not written again but named once more. A member
+ * is only serialized again when it changed: the model after the model event
+ * pump reported a change, the other members when a fingerprint of what they
+ * save, such as the bounds, colors and texts of the Figs of a diagram,
+ * differs from the one of the previous checkpoint. Chunk files are never
+ * overwritten, so a crash in the middle of a checkpoint leaves the previous
+ * one intact.<p>
+ *
+ * The chunks are whole members rather than the changes made to them, so a
+ * checkpoint after a small change to a large model still writes the model
+ * in full. Autosave is therefore off unless an interval is configured.<p>
+ *
+ * A checkpoint is taken off the Swing event thread, as a save is, and
+ * leaves the project untouched. While it is listening to the model, a
+ * checkpoint during which the model changed is dropped, since it may have
+ * caught the model half way through a change; the next one writes the
+ * model again.<p>
+ *
+ * Every so many checkpoints the journal is compacted to its last checkpoint
+ * and the chunks no longer named are deleted.<p>
+ *
+ * Every session keeps its journal in a directory of its own, which it
+ * holds a lock on while it runs. Only the journals of sessions which no
+ * longer hold their lock are offered for recovery, and a session only ever
+ * deletes its own files and those of the journal it recovered.
+ */
+public final class RecoveryJournal implements PropertyChangeListener {
+
+    private static final Logger LOG =
+        Logger.getLogger(RecoveryJournal.class.getName());
+
+    /**
+     * The number of checkpoints after which the journal is compacted.
+     */
+    static final int COMPACT_AFTER = 20;
+
+    private static final String JOURNAL = "journal";
+
+    private static final String NEW_JOURNAL = "journal.new";
+
+    private static final String RECOVERED = "recovered.uml";
+
+    private static final String LOCK = "lock";
+
+    private static final String CHUNK_SUFFIX = ".chunk";
+
+    private static final String CHECKPOINT = "checkpoint";
+
+    private static final String SAVED = "saved";
+
+    private static final String END = "end";
+
+    private static final String NO_URI = "-";
+
+    private static final String ENCODING = "UTF-8";
+
+    private static final String DIGEST = "SHA-256";
+
+    /**
+     * The directory holding the directories of all sessions.
+     */
+    private final File root;
+
+    /**
+     * The directory of this session, or null until the first checkpoint.
+     */
+    private File directory;
+
+    /**
+     * The lock held on the directory of this session.
+     */
+    private FileLock lock;
+
+    private final UmlFilePersister persister = new UmlFilePersister();
+
+    /**
+     * The name of the directory of this session.
+     */
+    private final String session =
+        Long.toString(System.currentTimeMillis(), 36);
+
+    /**
+     * The directory of the journal last recovered, and the lock held on it
+     * until it is discarded.
+     */
+    private File recoveredDirectory;
+
+    private FileLock recoveredLock;
+
+    /**
+     * Held while a snapshot is taken, and guarding the snapshot last taken.
+     * The journal itself is not locked meanwhile, so that saving or closing
+     * the project does not wait for the snapshot.
+     */
+    private final Object snapshotLock = new Object();
+
+    /**
+     * The project of the last snapshot.
+     */
+    private Project project;
+
+    /**
+     * The chunk of each member of the last snapshot.
+     */
+    private Map<ProjectMember, Chunk> chunks =
+        new IdentityHashMap<ProjectMember, Chunk>();
+
+    /**
+     * The fingerprint of each member of the last snapshot but the model.
+     */
+    private Map<ProjectMember, Long> states =
+        new IdentityHashMap<ProjectMember, Long>();
+
+    /**
+     * The number of members serialized for the last snapshot.
+     */
+    private int serialized;
+
+    private Chunk head;
+
+    /**
+     * The number of resets when the last snapshot was taken.
+     */
+    private int snapshotResets;
+
+    private volatile boolean modelChanged = true;
+
+    private int sequence;
+
+    private int checkpoints;
+
+    private volatile boolean listening;
+
+    /**
+     * Counts the saves and discards, which make the snapshots taken before
+     * them obsolete.
+     */
+    private int generation;
+
+    /**
+     * Counts the discards and the snapshots dropped or failed to be
+     * written, after which the next snapshot is written in full.
+     */
+    private int resets;
+
+    private URI recoveredURI;
+
+    /**
+     * @param dir the directory to keep the directories of the sessions in
+     */
+    public RecoveryJournal(File dir) {
+        root = dir;
+    }
+
+    /**
+     * Listen to the model so that the model is only written again when it
+     * has changed.
+     */
+    public synchronized void startListening() {
+        if (!listening) {
+            Model.getPump().addClassModelEventListener(this,
+                    Model.getMetaTypes().getModelElement(), (String[]) null);
+            listening = true;
+        }
+    }
+
+    /**
+     * Stop listening to the model. The model is then written at every
+     * checkpoint.
+     */
+    public synchronized void stopListening() {
+        if (listening) {
+            Model.getPump().removeClassModelEventListener(this,
+                    Model.getMetaTypes().getModelElement(), (String[]) null);
+            listening = false;
+        }
+        modelChanged = true;
+    }
+
+    /*
+     * @see java.beans.PropertyChangeListener#propertyChange(java.beans.PropertyChangeEvent)
+     */
+    public void propertyChange(PropertyChangeEvent evt) {
+        modelChanged = true;
+    }
+
+    /**
+     * Write a checkpoint of the project, unless nothing changed since the
+     * previous one.
+     *
+     * @param p the project
+     * @return true if a checkpoint was written
+     * @throws SaveException if the checkpoint can not be written
+     */
+    public boolean checkpoint(Project p) throws SaveException {
+        synchronized (snapshotLock) {
+            Checkpoint checkpoint = snapshot(p);
+            return checkpoint != null && write(checkpoint);
+        }
+    }
+
+    /**
+     * Write the project to memory, unless nothing changed since the
+     * previous checkpoint. The snapshot is written to the journal by
+     * {@link #write(Checkpoint)}.
+     *
+     * @param p the project
+     * @return the snapshot or null if nothing changed or the model changed
+     *         meanwhile
+     * @throws SaveException if the project can not be written
+     */
+    Checkpoint snapshot(Project p) throws SaveException {
+        synchronized (snapshotLock) {
+            int currentResets;
+            int currentGeneration;
+            synchronized (this) {
+                currentResets = resets;
+                currentGeneration = generation;
+            }
+            if (p != project || currentResets != snapshotResets) {
+                project = null;
+                head = null;
+                chunks.clear();
+                states.clear();
+                snapshotResets = currentResets;
+            }
+            return snapshot(p, currentGeneration);
+        }
+    }
+
+    private Checkpoint snapshot(Project p, int snapshotGeneration)
+        throws SaveException {
+        if (listening) {
+            // the events of the latest changes may still be on their way
+            Model.getPump().flushModelEvents();
+        }
+        boolean writeModel = modelChanged || !listening;
+        modelChanged = false;
+
+        Chunk newHead;
+        Map<ProjectMember, Chunk> newChunks =
+            new IdentityHashMap<ProjectMember, Chunk>();
+        Map<ProjectMember, Long> newStates =
+            new IdentityHashMap<ProjectMember, Long>();
+        serialized = 0;
+        boolean changed = p != project;
+        // The project may get another member meanwhile. Its iterator has
+        // the members in the order they are written in.
+        List<ProjectMember> members = new ArrayList<ProjectMember>();
+        try {
+            for (ProjectMember member : p.getMembers()) {
+                members.add(member);
+            }
+            newHead = getChunk(head, writeHead(p));
+            changed |= newHead != head;
+
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+            for (ProjectMember member : members) {
+                Chunk chunk = chunks.get(member);
+                boolean writeMember;
+                if (member instanceof ProjectMemberModel) {
+                    writeMember = writeModel;
+                } else {
+                    // Taken before the member is written, so that a change
+                    // made meanwhile is written again next time
+                    Long state = getState(member);
+                    if (state != null) {
+                        newStates.put(member, state);
+                    }
+                    writeMember =
+                        state == null || !state.equals(states.get(member));
+                }
+                if (writeMember || chunk == null) {
+                    buffer.reset();
+                    persister.writeMember(member, buffer);
+                    serialized++;
+                    Chunk newChunk = getChunk(chunk, buffer.toByteArray());
+                    changed |= newChunk != chunk;
+                    chunk = newChunk;
+                }
+                newChunks.put(member, chunk);
+            }
+            changed |= newChunks.size() != chunks.size();
+        } catch (IOException e) {
+            modelChanged = true;
+            throw new SaveException(e);
+        } catch (SaveException e) {
+            modelChanged = true;
+            throw e;
+        } catch (RuntimeException e) {
+            modelChanged = true;
+            throw new SaveException(e);
+        }
+        if (listening) {
+            Model.getPump().flushModelEvents();
+            if (modelChanged) {
+                LOG.log(Level.INFO, "Dropped a checkpoint of {0} since the "
+                        + "model changed meanwhile", p.getName());
+                return null;
+            }
+        }
+        if (!changed) {
+            return null;
+        }
+
+        StringBuilder line = new StringBuilder(CHECKPOINT);
+        line.append('\t');
+        line.append(p.getURI() == null ? NO_URI : p.getURI().toString());
+        line.append('\t').append(newHead.getName());
+        List<Chunk> written = new ArrayList<Chunk>();
+        if (newHead != head) {
+            written.add(newHead);
+        }
+        for (ProjectMember member : members) {
+            Chunk chunk = newChunks.get(member);
+            line.append('\t').append(chunk.getName());
+            if (chunk != chunks.get(member)) {
+                written.add(chunk);
+            }
+        }
+
+        // The next snapshot is compared with this one
+        project = p;
+        head = newHead;
+        chunks = newChunks;
+        states = newStates;
+        return new Checkpoint(p.getName(), line.toString(), written,
+                snapshotGeneration);
+    }
+
+    /**
+     * Take a fingerprint of what a member saves, which is cheap compared to
+     * serializing it.
+     *
+     * @param member a member other than the model
+     * @return the fingerprint or null if the member must always be written
+     */
+    private static Long getState(ProjectMember member) {
+        long state = 17;
+        if (member instanceof ProjectMemberDiagram) {
+            ArgoDiagram diagram = ((ProjectMemberDiagram) member).getDiagram();
+            state = hash(state, diagram.getName());
+            state = hash(state, System.identityHashCode(
+                    diagram.getNamespace()));
+            for (Fig fig : new ArrayList<Fig>(
+                    diagram.getLayer().getContents())) {
+                state = hash(state, fig);
+            }
+        } else if (member instanceof ProjectMemberTodoList) {
+            // The items posted by the user and the resolved critics
+            for (ToDoItem item : Designer.theDesigner().getToDoList()
+                    .getToDoItemSnapshot()) {
+                if (item.getPoster() instanceof Designer) {
+                    state = hash(state, item.getHeadline());
+                    state = hash(state, item.getDescription());
+                    state = hash(state, item.getMoreInfoURL());
+                    state = hash(state, item.getPriority());
+                    for (Object offender : item.getOffenders()) {
+                        state = hash(state,
+                                System.identityHashCode(offender));
+                    }
+                }
+            }
+            Set<ResolvedCritic> resolved =
+                Designer.theDesigner().getToDoList().getResolvedItems();
+            synchronized (resolved) {
+                for (ResolvedCritic rc : resolved) {
+                    state = hash(state, rc.getCritic());
+                    state = hash(state, String.valueOf(rc.getOffenderList()));
+                }
+            }
+        } else if (member instanceof ProfileConfiguration) {
+            for (Profile profile
+                    : ((ProfileConfiguration) member).getProfiles()) {
+                state = hash(state, System.identityHashCode(profile));
+            }
+        } else {
+            return null;
+        }
+        return state;
+    }
+
+    /**
+     * Add what a Fig and the Figs it is made of save to a fingerprint.
+     */
+    private static long hash(long state, Fig fig) {
+        state = hash(state, System.identityHashCode(fig));
+        state = hash(state, System.identityHashCode(fig.getOwner()));
+        state = hash(state, fig.isVisible() ? 1 : 0);
+        state = hash(state, fig.getX());
+        state = hash(state, fig.getY());
+        state = hash(state, fig.getWidth());
+        state = hash(state, fig.getHeight());
+        state = hash(state, fig.getLineWidth());
+        state = hash(state, fig.isFilled() ? 1 : 0);
+        state = hash(state, rgb(fig.getLineColor()));
+        state = hash(state, rgb(fig.getFillColor()));
+        if (fig instanceof FigText) {
+            state = hash(state, ((FigText) fig).getText());
+        }
+        if (fig instanceof FigEdge) {
+            for (Point point : ((FigEdge) fig).getPoints()) {
+                state = hash(state, point.x);
+                state = hash(state, point.y);
+            }
+        }
+        if (fig instanceof FigGroup) {
+            for (Fig part : new ArrayList<Fig>(((FigGroup) fig).getFigs())) {
+                state = hash(state, part);
+            }
+        }
+        return state;
+    }
+
+    private static long hash(long state, String value) {
+        return hash(state, value == null ? 0 : value.hashCode());
+    }
+
+    private static long hash(long state, int value) {
+        return state * 1000003 + value;
+    }
+
+    private static int rgb(Color color) {
+        return color == null ? 0 : color.getRGB();
+    }
+
+    /**
+     * @return the number of members serialized for the last snapshot
+     */
+    int getSerializedCount() {
+        synchronized (snapshotLock) {
+            return serialized;
+        }
+    }
+
+    /**
+     * Write the head of a project the way a save writes it, that is with
+     * the versions of this application rather than those of the file it
+     * was loaded from, but without setting them in the project.
+     */
+    private byte[] writeHead(Project p) throws SaveException, IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        PrintWriter writer =
+            new PrintWriter(new OutputStreamWriter(buffer,
+                    Argo.getEncoding()));
+        persister.writeHead(p, writer);
+        writer.flush();
+        String text = buffer.toString(Argo.getEncoding());
+        text = text.replaceFirst("(?m)^(\\s*)<argo version=\"[^\"]*\">",
+                "$1<argo version=\""
+                + UmlFilePersister.PERSISTENCE_VERSION + "\">");
+        text = text.replaceFirst("(?m)^(\\s*)<version>.*</version>$",
+                "$1<version>"
+                + Matcher.quoteReplacement(ApplicationVersion.getVersion())
+                + "</version>");
+        return text.getBytes(Argo.getEncoding());
+    }
+
+    /**
+     * Write the chunks of a snapshot and append it to the journal. A
+     * snapshot taken before the project was saved or the journal discarded
+     * is dropped.
+     *
+     * @param checkpoint the snapshot
+     * @return true if the checkpoint was written
+     * @throws SaveException if the checkpoint can not be written
+     */
+    synchronized boolean write(Checkpoint checkpoint) throws SaveException {
+        if (checkpoint.getGeneration() != generation) {
+            // the next snapshot must not build on this one
+            resets++;
+            return false;
+        }
+        try {
+            getDirectory();
+            for (Chunk chunk : checkpoint.getChunks()) {
+                writeChunk(chunk);
+            }
+            append(checkpoint.getLine());
+        } catch (IOException e) {
+            resets++;
+            throw new SaveException(e);
+        }
+        LOG.log(Level.INFO, "Wrote checkpoint {0} of {1}",
+                new Object[] {checkpoints, checkpoint.getProjectName()});
+        if (checkpoints >= COMPACT_AFTER) {
+            try {
+                compact();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Failed to compact the journal", e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Note that the project has been saved, so that there is nothing to
+     * recover unless there is a later checkpoint. A recovered journal which
+     * was kept until now is discarded.
+     */
+    public synchronized void markSaved() {
+        generation++;
+        discardRecovered();
+        if (checkpoints == 0) {
+            return;
+        }
+        try {
+            append(SAVED);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to mark the journal as saved", e);
+        }
+    }
+
+    /**
+     * Put the project of the last checkpoint of a journal left behind by
+     * another session together as a .uml file. The journal is kept locked
+     * until it is discarded, at the latest by the next save, so that no
+     * other session offers it too.
+     * Directories of sessions which ended with nothing to recover are
+     * deleted.
+     *
+     * @return the .uml file or null if there is nothing to recover
+     * @throws IOException if the journal or its chunks can not be read
+     */
+    public synchronized File recover() throws IOException {
+        recoveredURI = null;
+        releaseRecovered();
+        File[] dirs = root.listFiles();
+        if (dirs == null) {
+            return null;
+        }
+        // The most recent journal first
+        Arrays.sort(dirs, new Comparator<File>() {
+            public int compare(File dir1, File dir2) {
+                long modified1 = getJournal(dir1).lastModified();
+                long modified2 = getJournal(dir2).lastModified();
+                return modified1 < modified2 ? 1
+                    : modified1 > modified2 ? -1 : 0;
+            }
+        });
+        for (File dir : dirs) {
+            if (!dir.isDirectory() || dir.equals(directory)) {
+                continue;
+            }
+            FileLock dirLock = lock(dir, false);
+            if (dirLock == null) {
+                // The session still runs
+                continue;
+            }
+            String[] checkpoint;
+            try {
+                checkpoint = readLastCheckpoint(dir);
+            } catch (IOException e) {
+                release(dirLock);
+                throw e;
+            }
+            if (checkpoint == null) {
+                delete(dir, dirLock);
+                continue;
+            }
+            recoveredDirectory = dir;
+            recoveredLock = dirLock;
+            return recover(dir, checkpoint);
+        }
+        return null;
+    }
+
+    private File recover(File dir, String[] checkpoint) throws IOException {
+        File file = new File(dir, RECOVERED);
+        OutputStream out =
+            new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            byte[] buffer = new byte[8192];
+            for (int i = 2; i < checkpoint.length - 1; i++) {
+                InputStream in =
+                    new FileInputStream(new File(dir, checkpoint[i]));
+                try {
+                    int n;
+                    while ((n = in.read(buffer)) > 0) {
+                        out.write(buffer, 0, n);
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+            PrintWriter writer =
+                new PrintWriter(new OutputStreamWriter(out,
+                        Argo.getEncoding()));
+            writer.println("</uml>");
+            writer.flush();
+        } finally {
+            out.close();
+        }
+        if (!NO_URI.equals(checkpoint[1])) {
+            try {
+                recoveredURI = new URI(checkpoint[1]);
+            } catch (URISyntaxException e) {
+                LOG.log(Level.WARNING, "Bad project URI in the journal", e);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * @return the URI the recovered project was saved to, or null if it
+     *         was never saved or nothing has been recovered
+     */
+    public URI getRecoveredURI() {
+        return recoveredURI;
+    }
+
+    /**
+     * Delete the journal of the last recovery, with all its chunks and the
+     * recovered file.
+     */
+    public synchronized void discardRecovered() {
+        if (recoveredDirectory != null) {
+            delete(recoveredDirectory, recoveredLock);
+            recoveredDirectory = null;
+            recoveredLock = null;
+        }
+        recoveredURI = null;
+    }
+
+    /**
+     * Delete the journal of this session and all its chunks.
+     */
+    public synchronized void discard() {
+        if (directory != null) {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (!LOCK.equals(file.getName()) && !file.delete()) {
+                        LOG.log(Level.WARNING, "Failed to delete {0}", file);
+                    }
+                }
+            }
+        }
+        generation++;
+        resets++;
+        checkpoints = 0;
+    }
+
+    /**
+     * Delete the journal of this session together with its directory, as
+     * is done when the application exits normally. A journal which was
+     * recovered but not discarded is left for a later session.
+     */
+    public synchronized void close() {
+        discard();
+        if (directory != null) {
+            delete(directory, lock);
+            directory = null;
+            lock = null;
+        }
+        releaseRecovered();
+    }
+
+    /**
+     * Release the lock on the directory of this session without deleting
+     * anything, as a crash does. Its journal can then be recovered by
+     * another session.
+     */
+    synchronized void abandon() {
+        if (lock != null) {
+            release(lock);
+        }
+        directory = null;
+        lock = null;
+        generation++;
+        resets++;
+        checkpoints = 0;
+    }
+
+    /**
+     * @return the directory of this session, or null if nothing has been
+     *         written yet
+     */
+    synchronized File getSessionDirectory() {
+        return directory;
+    }
+
+    /**
+     * Rewrite the journal with only its last checkpoint and delete the
+     * chunks which are no longer named.
+     *
+     * @throws IOException if the journal can not be rewritten
+     */
+    synchronized void compact() throws IOException {
+        if (directory == null) {
+            return;
+        }
+        String[] checkpoint = readLastCheckpoint(directory);
+        File journal = new File(directory, JOURNAL);
+        File newJournal = new File(directory, NEW_JOURNAL);
+        Set<String> keep = new HashSet<String>();
+        if (checkpoint != null) {
+            write(newJournal, join(checkpoint), false);
+            for (int i = 2; i < checkpoint.length - 1; i++) {
+                keep.add(checkpoint[i]);
+            }
+            checkpoints = 1;
+        } else {
+            checkpoints = 0;
+        }
+        if (journal.exists() && !journal.delete()) {
+            throw new IOException("Failed to delete " + journal);
+        }
+        if (checkpoint != null && !newJournal.renameTo(journal)) {
+            throw new IOException("Failed to rename " + newJournal);
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(CHUNK_SUFFIX) && !keep.contains(name)) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of checkpoints in the journal of this session
+     */
+    synchronized int getCheckpointCount() {
+        return checkpoints;
+    }
+
+    /**
+     * Read the last complete checkpoint of a journal, unless the project
+     * has been saved after it.
+     *
+     * @param dir the directory of the journal
+     * @return the fields of the checkpoint or null
+     * @throws IOException if the journal can not be read
+     */
+    private static String[] readLastCheckpoint(File dir) throws IOException {
+        File journal = getJournal(dir);
+        if (!journal.exists()) {
+            return null;
+        }
+        String[] last = null;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(journal), ENCODING));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length < 2
+                        || !END.equals(fields[fields.length - 1])) {
+                    // The line was not completely written
+                    continue;
+                }
+                if (SAVED.equals(fields[0])) {
+                    last = null;
+                } else if (CHECKPOINT.equals(fields[0]) && fields.length > 3
+                        && exist(dir, fields)) {
+                    last = fields;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return last;
+    }
+
+    /**
+     * @return the journal in a directory, or the new journal if a crash
+     *         during compaction left only that
+     */
+    private static File getJournal(File dir) {
+        File journal = new File(dir, JOURNAL);
+        if (!journal.exists()) {
+            return new File(dir, NEW_JOURNAL);
+        }
+        return journal;
+    }
+
+    private static boolean exist(File dir, String[] checkpoint) {
+        for (int i = 2; i < checkpoint.length - 1; i++) {
+            if (!new File(dir, checkpoint[i]).exists()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the previous chunk if it has the same content, or else a new
+     * chunk with the content. The content of a chunk is let go once it is
+     * written, so they are compared by their SHA-256 digests.
+     */
+    private Chunk getChunk(Chunk previous, byte[] content)
+        throws SaveException {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST).digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new SaveException(e);
+        }
+        if (previous != null && previous.getLength() == content.length
+                && MessageDigest.isEqual(previous.getDigest(), digest)) {
+            return previous;
+        }
+        return new Chunk(nextChunkName(), content, digest);
+    }
+
+    /**
+     * Write the content of a new chunk to its file.
+     */
+    private void writeChunk(Chunk chunk) throws IOException {
+        FileOutputStream out =
+            new FileOutputStream(new File(directory, chunk.getName()));
+        try {
+            out.write(chunk.getContent());
+            out.flush();
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        chunk.written();
+    }
+
+    private String nextChunkName() {
+        return (++sequence) + CHUNK_SUFFIX;
+    }
+
+    /**
+     * Create and lock the directory of this session, unless done already.
+     * The name of the session is made unique if another session has the
+     * same one.
+     */
+    private File getDirectory() throws IOException {
+        for (int i = 0; directory == null; i++) {
+            if (i > 100) {
+                throw new IOException("Failed to create a directory in "
+                        + root);
+            }
+            root.mkdirs();
+            File dir = new File(root, i == 0 ? session : session + "-" + i);
+            if (dir.mkdir()) {
+                FileLock dirLock = lock(dir, true);
+                if (dirLock != null && dir.isDirectory()) {
+                    directory = dir;
+                    lock = dirLock;
+                } else if (dirLock != null) {
+                    release(dirLock);
+                }
+            }
+        }
+        return directory;
+    }
+
+    /**
+     * Lock the directory of a session.
+     *
+     * @param dir the directory
+     * @param create true if the lock file is to be created if it is missing
+     * @return the lock, or null if another session holds it or there is no
+     *         lock file
+     */
+    private static FileLock lock(File dir, boolean create)
+        throws IOException {
+        File file = new File(dir, LOCK);
+        if (!create && !file.exists()) {
+            return null;
+        }
+        FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+        try {
+            FileLock dirLock = channel.tryLock();
+            if (dirLock != null) {
+                return dirLock;
+            }
+        } catch (OverlappingFileLockException e) {
+            // Held by another journal of this application
+        }
+        channel.close();
+        return null;
+    }
+
+    private static void release(FileLock dirLock) {
+        try {
+            dirLock.channel().close();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to release a journal lock", e);
+        }
+    }
+
+    /**
+     * Release the lock of the recovered journal, leaving it for a later
+     * session.
+     */
+    private void releaseRecovered() {
+        if (recoveredLock != null) {
+            release(recoveredLock);
+            recoveredDirectory = null;
+            recoveredLock = null;
+        }
+    }
+
+    /**
+     * Delete the directory of a session which is locked by this one.
+     */
+    private static void delete(File dir, FileLock dirLock) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!LOCK.equals(file.getName()) && !file.delete()) {
+                    LOG.log(Level.WARNING, "Failed to delete {0}", file);
+                }
+            }
+        }
+        // The lock file can only be deleted once it is closed
+        release(dirLock);
+        new File(dir, LOCK).delete();
+        if (!dir.delete()) {
+            LOG.log(Level.WARNING, "Failed to delete {0}", dir);
+        }
+    }
+
+    private void append(String record) throws IOException {
+        write(new File(directory, JOURNAL), record, true);
+        if (record.startsWith(CHECKPOINT)) {
+            checkpoints++;
+        }
+    }
+
+    private static void write(File file, String record, boolean append)
+        throws IOException {
+        FileOutputStream out = new FileOutputStream(file, append);
+        try {
+            out.write((record + "\t" + END + "\n").getBytes(ENCODING));
+            out.flush();
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String join(String[] fields) {
+        StringBuilder sb = new StringBuilder(fields[0]);
+        for (int i = 1; i < fields.length - 1; i++) {
+            sb.append('\t').append(fields[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A file holding the part of a checkpoint written for one member.
+     */
+    private static class Chunk {
+
+        private final String name;
+
+        private final int length;
+
+        private final byte[] digest;
+
+        /**
+         * The content until it has been written.
+         */
+        private byte[] content;
+
+        /**
+         * @param theName the name of the file
+         * @param theContent the content
+         * @param theDigest the SHA-256 digest of the content
+         */
+        Chunk(String theName, byte[] theContent, byte[] theDigest) {
+            name = theName;
+            content = theContent;
+            length = theContent.length;
+            digest = theDigest;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        byte[] getContent() {
+            return content;
+        }
+
+        /**
+         * Let go of the content once it is in the file.
+         */
+        void written() {
+            content = null;
+        }
+
+        int getLength() {
+            return length;
+        }
+
+        byte[] getDigest() {
+            return digest;
+        }
+    }
+
+    /**
+     * A snapshot of a project, to be appended to the journal.
+     */
+    static final class Checkpoint {
+
+        private final String projectName;
+
+        private final String line;
+
+        private final List<Chunk> chunks;
+
+        private final int generation;
+
+        /**
+         * @param name the name of the project
+         * @param theLine the line to append to the journal
+         * @param theChunks the chunks to write first
+         * @param theGeneration the generation of the journal it was taken in
+         */
+        private Checkpoint(String name, String theLine, List<Chunk> theChunks,
+                int theGeneration) {
+            projectName = name;
+            line = theLine;
+            chunks = theChunks;
+            generation = theGeneration;
+        }
+
+        String getProjectName() {
+            return projectName;
+        }
+
+        String getLine() {
+            return line;
+        }
+
+        List<Chunk> getChunks() {
+            return chunks;
+        }
+
+        int getGeneration() {
+            return generation;
+        }
+    }
+}
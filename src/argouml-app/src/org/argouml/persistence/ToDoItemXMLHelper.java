@@ -72,20 +72,20 @@ public class ToDoItemXMLHelper
      * Encodes the headline of this ToDoItem in an XML safe way and
      * returns the new String. The String can be regained by running the
      * returned String through
-     * {@link TodoParser#decode(String)}.
+     * {@link TodoListReader#decode(String)}.
      *
      * @return	The encoded headline.
      */
     public String getHeadline()
     {
-	return TodoParser.encode(item.getHeadline());
+	return TodoListWriter.encode(item.getHeadline());
     }
 
     /**
      * Encodes the priority of this ToDoItem in an XML safe way and
      * returns the new String. The String can be regained by running the
      * returned String through
-     * {@link TodoParser#decode(String)} and comparing to the
+     * {@link TodoListReader#decode(String)} and comparing to the
      * STRING_prio_* values in TodoTokenTable.
      *
      * @return	The encoded priority.
@@ -108,33 +108,33 @@ public class ToDoItemXMLHelper
 	    break;
 	}
 
-	return TodoParser.encode(s);
+	return TodoListWriter.encode(s);
     }
 
     /**
      * Encodes the moreInfoURL of this ToDoItem in an XML safe way and
      * returns the new String. The String can be regained by running the
      * returned String through
-     * {@link TodoParser#decode(String)}.
+     * {@link TodoListReader#decode(String)}.
      *
      * @return	The encoded moreInfoURL.
      */
     public String getMoreInfoURL()
     {
-	return TodoParser.encode(item.getMoreInfoURL());
+	return TodoListWriter.encode(item.getMoreInfoURL());
     }
 
     /**
      * Encodes the description of this ToDoItem in an XML safe way and
      * returns the new String. The String can be regained by running the
      * returned String through
-     * {@link TodoParser#decode(String)}.
+     * {@link TodoListReader#decode(String)}.
      *
      * @return	The encoded description.
      */
     public String getDescription()
     {
-	return TodoParser.encode(item.getDescription());
+	return TodoListWriter.encode(item.getDescription());
     }
 }
 
@@ -42,18 +42,15 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.net.URL;
 
 import org.argouml.application.api.Argo;
 import org.argouml.cognitive.Designer;
 import org.argouml.kernel.Project;
 import org.argouml.kernel.ProjectMember;
-import org.argouml.ocl.OCLExpander;
 import org.argouml.uml.cognitive.ProjectMemberTodoList;
-import org.tigris.gef.ocl.ExpansionException;
-import org.tigris.gef.ocl.TemplateReader;
 import org.xml.sax.InputSource;
 
 /**
@@ -62,7 +59,11 @@ import org.xml.sax.InputSource;
  */
 class TodoListMemberFilePersister extends MemberFilePersister {
 
-    private static final String TO_DO_TEE = "/org/argouml/persistence/todo.tee";
+    /**
+     * The tee file which the todo list used to be generated from, and which
+     * the output of the {@link TodoListWriter} is checked against.
+     */
+    static final String TO_DO_TEE = "/org/argouml/persistence/todo.tee";
 
 
     public void load(Project project, InputStream inputStream)
@@ -80,8 +81,8 @@ class TodoListMemberFilePersister extends MemberFilePersister {
         throws OpenException {
 
         try {
-            TodoParser parser = new TodoParser();
-            parser.readTodoList(inputSource);
+            new TodoListReader(Designer.theDesigner().getToDoList())
+                .read(inputSource);
             ProjectMemberTodoList pm = new ProjectMemberTodoList("", project);
             project.addMember(pm);
         } catch (Exception e) {
@@ -108,18 +109,9 @@ class TodoListMemberFilePersister extends MemberFilePersister {
     public void save(ProjectMember member, OutputStream outStream)
         throws SaveException {
 
-        OCLExpander expander;
+        Writer writer;
         try {
-            expander =
-                    new OCLExpander(TemplateReader.getInstance()
-                            .read(TO_DO_TEE));
-        } catch (ExpansionException e) {
-            throw new SaveException(e);
-        }
-
-        PrintWriter pw;
-        try {
-            pw = new PrintWriter(new OutputStreamWriter(outStream, "UTF-8"));
+            writer = new OutputStreamWriter(outStream, "UTF-8");
         } catch (UnsupportedEncodingException e1) {
             throw new SaveException("UTF-8 encoding not supported on platform", 
                     e1);
@@ -127,17 +119,11 @@ class TodoListMemberFilePersister extends MemberFilePersister {
         
         try {
             Designer.disableCritiquing();
-            // WARNING: The GEF implementation of the OutputStream version of 
-            // this method doesn't work - tfm - 20070531
-            expander.expand(pw, member);
-        } catch (ExpansionException e) {
-            throw new SaveException(e);
+            new TodoListWriter(writer).write(
+                    Designer.theDesigner().getToDoList());
         } finally {
-            pw.flush();
-//            pw.close();
             Designer.enableCritiquing();
         }
-
     }
 
 }
@@ -0,0 +1,310 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.persistence;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.argouml.cognitive.Designer;
+import org.argouml.cognitive.ListSet;
+import org.argouml.cognitive.ResolvedCritic;
+import org.argouml.cognitive.ToDoItem;
+import org.argouml.cognitive.ToDoList;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Reads a todo list as written by the {@link TodoListWriter} and adds its
+ * items and resolved critics to a todo list.<p>
+ *
+ * Only the text of the element being read is kept, and the todo items are
+ * added in one go when the document ends, so that the listeners of the
+ * todo list hear of them in one event.
+ */
+class TodoListReader extends DefaultHandler {
+
+    private static final Logger LOG =
+        Logger.getLogger(TodoListReader.class.getName());
+
+    private static final String TO_DO_DTD = "todo.dtd";
+
+    private final ToDoList toDoList;
+
+    private final TodoTokenTable tokens = new TodoTokenTable();
+
+    private final List<ToDoItem> items = new ArrayList<ToDoItem>();
+
+    private final List<ResolvedCritic> resolved =
+        new ArrayList<ResolvedCritic>();
+
+    /**
+     * The text of the element being read, or null if its text is not
+     * needed.
+     */
+    private StringBuilder text;
+
+    private String headline;
+
+    private int priority;
+
+    private String moreinfourl;
+
+    private String description;
+
+    private String critic;
+
+    private List<String> offenders;
+
+    /**
+     * @param list the todo list to add the items which are read to
+     */
+    TodoListReader(ToDoList list) {
+        toDoList = list;
+    }
+
+    /**
+     * Read a todo list.
+     *
+     * @param inputSource the XML to read
+     * @throws SAXException if the XML can not be read
+     */
+    void read(InputSource inputSource) throws SAXException {
+        LOG.log(Level.INFO, "Reading ToDo list");
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(false);
+        factory.setValidating(false);
+        try {
+            factory.newSAXParser().parse(inputSource, this);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        } catch (ParserConfigurationException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /*
+     * @see org.xml.sax.helpers.DefaultHandler#resolveEntity(java.lang.String, java.lang.String)
+     */
+    @Override
+    public InputSource resolveEntity(String publicId, String systemId)
+        throws IOException, SAXException {
+        if (systemId != null && systemId.endsWith(TO_DO_DTD)) {
+            InputStream is = TodoListReader.class.getResourceAsStream(
+                    "/org/argouml/persistence/" + TO_DO_DTD);
+            if (is != null) {
+                return new InputSource(is);
+            }
+        }
+        return super.resolveEntity(publicId, systemId);
+    }
+
+    /*
+     * @see org.xml.sax.helpers.DefaultHandler#startElement(java.lang.String, java.lang.String, java.lang.String, org.xml.sax.Attributes)
+     */
+    @Override
+    public void startElement(String uri, String localName, String qName,
+            Attributes attributes) {
+        text = null;
+        switch (tokens.toToken(qName, true)) {
+        case TodoTokenTable.TOKEN_HEADLINE:
+        case TodoTokenTable.TOKEN_DESCRIPTION:
+        case TodoTokenTable.TOKEN_PRIORITY:
+        case TodoTokenTable.TOKEN_MOREINFOURL:
+        case TodoTokenTable.TOKEN_POSTER:
+        case TodoTokenTable.TOKEN_OFFENDER:
+            text = new StringBuilder();
+            break;
+
+        case TodoTokenTable.TOKEN_TO_DO:
+        case TodoTokenTable.TOKEN_TO_DO_LIST:
+        case TodoTokenTable.TOKEN_RESOLVEDCRITICS:
+            break;
+
+        case TodoTokenTable.TOKEN_TO_DO_ITEM:
+            headline = "";
+            priority = ToDoItem.HIGH_PRIORITY;
+            moreinfourl = "";
+            description = "";
+            break;
+
+        case TodoTokenTable.TOKEN_ISSUE:
+            critic = null;
+            offenders = null;
+            break;
+
+        default:
+            LOG.log(Level.WARNING, "WARNING: unknown tag:" + qName);
+            break;
+        }
+    }
+
+    /*
+     * @see org.xml.sax.helpers.DefaultHandler#characters(char[], int, int)
+     */
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        if (text != null) {
+            text.append(ch, start, length);
+        }
+    }
+
+    /*
+     * @see org.xml.sax.helpers.DefaultHandler#endElement(java.lang.String, java.lang.String, java.lang.String)
+     */
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        String value = text == null ? "" : decode(text.toString()).trim();
+        text = null;
+        switch (tokens.toToken(qName, false)) {
+        case TodoTokenTable.TOKEN_TO_DO:
+        case TodoTokenTable.TOKEN_RESOLVEDCRITICS:
+        case TodoTokenTable.TOKEN_TO_DO_LIST:
+            break;
+
+        case TodoTokenTable.TOKEN_TO_DO_ITEM:
+            items.add(new ToDoItem(Designer.theDesigner(), headline, priority,
+                    description, moreinfourl, new ListSet()));
+            break;
+
+        case TodoTokenTable.TOKEN_HEADLINE:
+            headline = value;
+            break;
+
+        case TodoTokenTable.TOKEN_DESCRIPTION:
+            description = value;
+            break;
+
+        case TodoTokenTable.TOKEN_PRIORITY:
+            priority = parsePriority(value);
+            break;
+
+        case TodoTokenTable.TOKEN_MOREINFOURL:
+            moreinfourl = value;
+            break;
+
+        case TodoTokenTable.TOKEN_ISSUE:
+            if (critic != null) {
+                resolved.add(new ResolvedCritic(critic, offenders));
+            }
+            break;
+
+        case TodoTokenTable.TOKEN_POSTER:
+            critic = value;
+            break;
+
+        case TodoTokenTable.TOKEN_OFFENDER:
+            if (offenders == null) {
+                offenders = new ArrayList<String>();
+            }
+            offenders.add(value);
+            break;
+
+        default:
+            LOG.log(Level.WARNING, "WARNING: unknown end tag:" + qName);
+            break;
+        }
+    }
+
+    /*
+     * @see org.xml.sax.helpers.DefaultHandler#endDocument()
+     */
+    @Override
+    public void endDocument() {
+        toDoList.addElements(items);
+        for (ResolvedCritic rc : resolved) {
+            toDoList.addResolvedCritic(rc);
+        }
+        LOG.log(Level.INFO, "Read {0} todo items and {1} resolved critics",
+                new Object[] {items.size(), resolved.size()});
+        items.clear();
+        resolved.clear();
+    }
+
+    private static int parsePriority(String prio) {
+        try {
+            return Integer.parseInt(prio);
+        } catch (NumberFormatException nfe) {
+            if (TodoTokenTable.STRING_PRIO_MED.equalsIgnoreCase(prio)) {
+                return ToDoItem.MED_PRIORITY;
+            } else if (TodoTokenTable.STRING_PRIO_LOW.equalsIgnoreCase(prio)) {
+                return ToDoItem.LOW_PRIORITY;
+            }
+            return ToDoItem.HIGH_PRIORITY;
+        }
+    }
+
+    /**
+     * Utility method to decode a String filtering out any noise that
+     * an XML framework might have seen fit to add and thus regaining
+     * the original unmodified String.
+     *
+     * @param str the String to decode
+     * @return a copy of the original String
+     * @see TodoListWriter#encode(String)
+     */
+    static String decode(String str) {
+        if (str == null) {
+            return null;
+        }
+        if (str.indexOf('%') < 0) {
+            return str;
+        }
+
+        StringBuilder sb = new StringBuilder(str.length());
+        int i1, i2;
+        for (i1 = 0, i2 = 0; i2 < str.length(); i2++) {
+            if (str.charAt(i2) == '%') {
+                if (i2 > i1) {
+                    sb.append(str, i1, i2);
+                }
+                for (i1 = ++i2; i2 < str.length(); i2++) {
+                    if (str.charAt(i2) == ';') {
+                        break;
+                    }
+                }
+                if (i2 >= str.length()) {
+                    i1 = i2;
+                    break;
+                }
+
+                if (i2 > i1) {
+                    String ent = str.substring(i1, i2);
+                    if ("proc".equals(ent)) {
+                        sb.append('%');
+                    } else {
+                        try {
+                            sb.append((char) Integer.parseInt(ent));
+                        } catch (NumberFormatException nfe) {
+                            // not a character code, leave it out
+                        }
+                    }
+                }
+                i1 = i2 + 1;
+            }
+        }
+        if (i2 > i1) {
+            sb.append(str, i1, i2);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,158 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.persistence;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Set;
+
+import org.argouml.cognitive.Designer;
+import org.argouml.cognitive.ResolvedCritic;
+import org.argouml.cognitive.ToDoItem;
+import org.argouml.cognitive.ToDoList;
+
+/**
+ * Writes the todo items entered by the designer and the resolved critics
+ * of a todo list straight to a stream.<p>
+ *
+ * The output is the same, byte for byte, as the expansion of
+ * <code>todo.tee</code> by the OCLExpander, which is still used by the
+ * tests to check this. It is read back by the {@link TodoListReader}.
+ */
+class TodoListWriter {
+
+    private final BufferedWriter out;
+
+    /**
+     * @param writer the writer to write the todo list to
+     */
+    TodoListWriter(Writer writer) {
+        out = new BufferedWriter(writer);
+    }
+
+    /**
+     * Write a todo list and flush the writer.
+     *
+     * @param list the todo list
+     * @throws SaveException if an item has no value for a mandatory
+     *         element or the list can not be written
+     */
+    void write(ToDoList list) throws SaveException {
+        try {
+            line("<?xml version = \"1.0\" encoding = \"UTF-8\" ?>");
+            line("<!DOCTYPE todo SYSTEM \"todo.dtd\" >");
+            line("<todo>");
+            line("<todolist>");
+            List<ToDoItem> items = list.getToDoItemSnapshot();
+            for (ToDoItem item : items) {
+                if (item != null && item.getPoster() instanceof Designer) {
+                    writeItem(new ToDoItemXMLHelper(item));
+                }
+            }
+            line("</todolist>");
+            line("<resolvedcritics>");
+            Set<ResolvedCritic> resolved = list.getResolvedItems();
+            synchronized (resolved) {
+                for (ResolvedCritic critic : resolved) {
+                    if (critic != null) {
+                        writeIssue(critic);
+                    }
+                }
+            }
+            line("</resolvedcritics>");
+            line("</todo>");
+            out.flush();
+        } catch (IOException e) {
+            throw new SaveException(e);
+        }
+    }
+
+    private void writeItem(ToDoItemXMLHelper item)
+        throws IOException, SaveException {
+        line("\t<todoitem>");
+        element("\t\t", "headline", item.getHeadline());
+        element("\t\t", "priority", item.getPriority());
+        element("\t\t", "moreinfourl", item.getMoreInfoURL());
+        element("\t\t", "description", item.getDescription());
+        line("\t</todoitem>");
+    }
+
+    private void writeIssue(ResolvedCritic critic)
+        throws IOException, SaveException {
+        line("\t<issue>");
+        element("\t\t", "poster", critic.getCritic());
+        List<String> offenders = critic.getOffenderList();
+        if (offenders != null) {
+            for (String offender : offenders) {
+                element("\t\t", "offender", offender);
+            }
+        }
+        line("\t</issue>");
+    }
+
+    private void element(String indent, String name, String value)
+        throws IOException, SaveException {
+        if (value == null) {
+            throw new SaveException("No value for " + name);
+        }
+        line(indent + "<" + name + ">" + PgmlWriter.escape(value) + "</"
+                + name + ">");
+    }
+
+    private void line(String text) throws IOException {
+        out.write(text);
+        out.newLine();
+    }
+
+    /**
+     * Utility method to encode a String in a way that allows it to be
+     * saved properly in an XML file and regained filtering out any noise
+     * that an XML framework might have seen fit to add.
+     *
+     * @param str the String to encode
+     * @return the encoded String
+     * @see TodoListReader#decode(String)
+     */
+    static String encode(String str) {
+        if (str == null) {
+            return null;
+        }
+        StringBuilder sb = null;
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            String code;
+            if (c == '%') {
+                code = "%proc;";
+            } else if (c < 0x28
+                    || (c >= 0x3C && c <= 0x40 && c != 0x3D && c != 0x3F)
+                    || (c >= 0x5E && c <= 0x60 && c != 0x5F)
+                    || c >= 0x7B) {
+                code = "%" + Integer.toString(c) + ";";
+            } else {
+                if (sb != null) {
+                    sb.append(c);
+                }
+                continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder(str.length() + 16);
+                sb.append(str, 0, i);
+            }
+            sb.append(code);
+        }
+        return sb == null ? str : sb.toString();
+    }
+}
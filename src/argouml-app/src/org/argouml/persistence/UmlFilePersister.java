@@ -40,6 +40,7 @@
 package org.argouml.persistence;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -63,17 +64,22 @@ import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CoderResult;
 import java.nio.charset.CodingErrorAction;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.xml.transform.Result;
-import javax.xml.transform.Transformer;
+import javax.xml.transform.Templates;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
@@ -119,6 +125,15 @@ public class UmlFilePersister extends AbstractFilePersister {
 
     private static final String ARGO_TEE = "/org/argouml/persistence/argo.tee";
 
+    /**
+     * The compiled upgrade stylesheets, keyed by the persistence version they
+     * upgrade to.
+     */
+    private static final Map<Integer, Templates> UPGRADES =
+        new HashMap<Integer, Templates>();
+
+    private static TransformerFactory transformerFactory;
+
     /**
      * The constructor.
      */
@@ -263,18 +278,7 @@ public class UmlFilePersister extends AbstractFilePersister {
         XmlFilterOutputStream filteredStream = new XmlFilterOutputStream(
                 oStream, Argo.getEncoding());
         try {
-            writer.println("<?xml version = \"1.0\" " + "encoding = \""
-                    + Argo.getEncoding() + "\" ?>");
-            writer.println("<uml version=\"" + PERSISTENCE_VERSION + "\">");
-            // Write out header section
-            try {
-                Hashtable templates = TemplateReader.getInstance().read(
-                        ARGO_TEE);
-                OCLExpander expander = new OCLExpander(templates);
-                expander.expand(writer, project, "  ");
-            } catch (ExpansionException e) {
-                throw new SaveException(e);
-            }
+            writeHead(project, writer);
             writer.flush();
 
             if (progressMgr != null) {
@@ -309,6 +313,51 @@ public class UmlFilePersister extends AbstractFilePersister {
         }
     }
 
+    /**
+     * Write the XML declaration, the opening uml tag and the argo header
+     * section of a project.
+     *
+     * @param project The project to output.
+     * @param writer The writer to write to.
+     * @throws SaveException If the header can not be expanded.
+     */
+    void writeHead(Project project, PrintWriter writer) throws SaveException {
+        writer.println("<?xml version = \"1.0\" " + "encoding = \""
+                + Argo.getEncoding() + "\" ?>");
+        writer.println("<uml version=\"" + PERSISTENCE_VERSION + "\">");
+        // Write out header section
+        try {
+            Hashtable templates = TemplateReader.getInstance().read(
+                    ARGO_TEE);
+            OCLExpander expander = new OCLExpander(templates);
+            expander.expand(writer, project, "  ");
+        } catch (ExpansionException e) {
+            throw new SaveException(e);
+        }
+    }
+
+    /**
+     * Write a single member of a project the way it appears inside a .uml
+     * file, that is without its own XML declaration. The stream is left
+     * open.
+     *
+     * @param projectMember The member to output.
+     * @param stream The stream to write to.
+     * @throws SaveException If something goes wrong.
+     */
+    void writeMember(ProjectMember projectMember, OutputStream stream)
+        throws SaveException {
+        XmlFilterOutputStream filteredStream = new XmlFilterOutputStream(
+                stream, Argo.getEncoding());
+        getMemberFilePersister(projectMember).save(projectMember,
+                filteredStream);
+        try {
+            filteredStream.flush();
+        } catch (IOException e) {
+            throw new SaveException(e);
+        }
+    }
+
     /*
      * @see org.argouml.persistence.ProjectFilePersister#doLoad(java.io.File)
      */
@@ -340,22 +389,18 @@ public class UmlFilePersister extends AbstractFilePersister {
                 copyFile(originalFile, new File(originalFile.getAbsolutePath()
                         + '~' + release));
 
-                progressMgr.setNumberOfPhases(progressMgr.getNumberOfPhases()
-                        + (PERSISTENCE_VERSION - fileVersion));
-
-                while (fileVersion < PERSISTENCE_VERSION) {
-                    ++fileVersion;
+                progressMgr.setNumberOfPhases(
+                        progressMgr.getNumberOfPhases() + 1);
 
-                    LOG.log(Level.INFO, "Upgrading to version {0}", fileVersion);
+                LOG.log(Level.INFO, "Upgrading from version {0}", fileVersion);
 
-                    long startTime = System.currentTimeMillis();
-                    file = transform(file, fileVersion);
+                long startTime = System.currentTimeMillis();
+                file = transform(file, fileVersion, PERSISTENCE_VERSION);
 
-                    long endTime = System.currentTimeMillis();
-                    LOG.log(Level.INFO, "Upgrading took " + ((endTime - startTime) / 1000)
-                            + " seconds");
-                    progressMgr.nextPhase();
-                }
+                long endTime = System.currentTimeMillis();
+                LOG.log(Level.INFO, "Upgrading took "
+                        + ((endTime - startTime) / 1000) + " seconds");
+                progressMgr.nextPhase();
             }
 
             progressMgr.nextPhase();
@@ -372,36 +417,41 @@ public class UmlFilePersister extends AbstractFilePersister {
 
             LOG.log(Level.INFO,memberList.size() + " members");
 
-            for (int i = 0; i < memberList.size(); ++i) {
-                MemberFilePersister persister = getMemberFilePersister((String) memberList
-                        .get(i));
-                LOG.log(Level.INFO, "Loading member with "+ persister.getClass().getName());
-
-                inputStream.reopen(persister.getMainTag());
-                // TODO: Do we need to set the input encoding here? It was
-                // done for ToDo parsing, but none of the other member types
-                // InputSource inputSource = new InputSource(
-                // new InputStreamReader(inputStream, Argo
-                // .getEncoding()));
-                InputSource inputSource = new InputSource(inputStream);
-                // Don't use systemId here or it will get opened in preference
-                // to inputStream.
-                inputSource.setPublicId(originalFile.toURI().toURL()
-                        .toExternalForm());
-                try {
-                    persister.load(p, inputSource);
-                } catch (OpenException e) {
-                    // UML 2.x files could also contain a profile model.
-                    // Try again with uml:Profile as main tag.
-                    if ("uml:Model".equals(persister.getMainTag())
-                            && e.getCause() instanceof UmlException
-                            && e.getCause().getCause() instanceof IOException) {
-                        inputStream.reopen("uml:Profile");
-                        persister.load(p, inputSource);
-                        p.setProjectType(Project.PROFILE_PROJECT);
-                    } else {
-                        throw e;
+            DiagramMemberLoader diagramLoader = null;
+            if (DiagramMemberLoader.isEnabled()) {
+                diagramLoader = new DiagramMemberLoader(p,
+                        (DiagramMemberFilePersister)
+                            getMemberFilePersister("pgml"));
+            }
+            try {
+                for (int i = 0; i < memberList.size(); ++i) {
+                    MemberFilePersister persister = getMemberFilePersister(
+                            (String) memberList.get(i));
+                    if (diagramLoader != null
+                            && persister instanceof DiagramMemberFilePersister) {
+                        // Only the reading is done here, the parsing is done
+                        // on the loader's threads.
+                        inputStream.reopen(persister.getMainTag());
+                        InputSource inputSource = new InputSource(
+                                new ByteArrayInputStream(DiagramMemberLoader
+                                        .readFully(inputStream)));
+                        inputSource.setPublicId(originalFile.toURI().toURL()
+                                .toExternalForm());
+                        diagramLoader.add(inputSource);
+                        continue;
+                    }
+                    if (diagramLoader != null) {
+                        // Anything after the diagrams may refer to them
+                        diagramLoader.attach();
                     }
+                    loadMember(p, persister, inputStream, originalFile);
+                }
+                if (diagramLoader != null) {
+                    diagramLoader.attach();
+                }
+            } finally {
+                if (diagramLoader != null) {
+                    diagramLoader.shutdown();
                 }
             }
 
@@ -422,6 +472,44 @@ public class UmlFilePersister extends AbstractFilePersister {
         }
     }
 
+    /**
+     * Load one member from its section of the combined file.
+     */
+    private void loadMember(Project p, MemberFilePersister persister,
+            XmlInputStream inputStream, File originalFile)
+        throws OpenException, IOException {
+
+        LOG.log(Level.INFO,
+                "Loading member with " + persister.getClass().getName());
+
+        inputStream.reopen(persister.getMainTag());
+        // TODO: Do we need to set the input encoding here? It was
+        // done for ToDo parsing, but none of the other member types
+        // InputSource inputSource = new InputSource(
+        // new InputStreamReader(inputStream, Argo
+        // .getEncoding()));
+        InputSource inputSource = new InputSource(inputStream);
+        // Don't use systemId here or it will get opened in preference
+        // to inputStream.
+        inputSource.setPublicId(originalFile.toURI().toURL()
+                .toExternalForm());
+        try {
+            persister.load(p, inputSource);
+        } catch (OpenException e) {
+            // UML 2.x files could also contain a profile model.
+            // Try again with uml:Profile as main tag.
+            if ("uml:Model".equals(persister.getMainTag())
+                    && e.getCause() instanceof UmlException
+                    && e.getCause().getCause() instanceof IOException) {
+                inputStream.reopen("uml:Profile");
+                persister.load(p, inputSource);
+                p.setProjectType(Project.PROFILE_PROJECT);
+            } else {
+                throw e;
+            }
+        }
+    }
+
     protected boolean checkVersion(int fileVersion, String releaseVersion)
         throws OpenException, VersionException {
         // If we're trying to load a file from a future version
@@ -447,40 +535,63 @@ public class UmlFilePersister extends AbstractFilePersister {
      * @throws OpenException on XSLT transformation error or file read
      */
     public final File transform(File file, int version) throws OpenException {
+        return transform(file, version - 1, version);
+    }
 
-        try {
-            String upgradeFilesPath = "/org/argouml/persistence/upgrades/";
-            String upgradeFile = "upgrade" + version + ".xsl";
-
-            String xsltFileName = upgradeFilesPath + upgradeFile;
-            URL xsltUrl = UmlFilePersister.class.getResource(xsltFileName);
-
-            LOG.log(Level.INFO, "Resource is {0}", xsltUrl);
-
-            // Read xsltStream into a temporary file
-            // Get url for temp file.
-            // openStream from url and wrap in StreamSource
-            StreamSource xsltStreamSource = new StreamSource(xsltUrl
-                    .openStream());
-            xsltStreamSource.setSystemId(xsltUrl.toExternalForm());
+    /**
+     * Upgrade an XML file through each persistence version in turn.  Where
+     * the XSLT processor supports it the upgrade stylesheets are chained
+     * together so that the output of one feeds straight into the next
+     * without any intermediate files.
+     *
+     * @param file The XML file to be transformed
+     * @param fromVersion the persistence version of the file
+     * @param toVersion the version of the persistence format the XML is to
+     *            be transformed to.
+     * @return the transformed XML file
+     * @throws OpenException on XSLT transformation error or file read
+     */
+    public final File transform(File file, int fromVersion, int toVersion)
+        throws OpenException {
 
-            TransformerFactory factory = TransformerFactory.newInstance();
-            Transformer transformer = factory.newTransformer(xsltStreamSource);
+        try {
+            if (toVersion - fromVersion > 1 && !canChainUpgrades()) {
+                // No chaining available, so go one version at a time
+                for (int version = fromVersion + 1; version <= toVersion;
+                        ++version) {
+                    file = transform(file, version - 1, version);
+                }
+                return file;
+            }
 
-            File transformedFile = File.createTempFile("upgrade_" + version
+            File transformedFile = File.createTempFile("upgrade_" + toVersion
                     + "_", ".uml");
             transformedFile.deleteOnExit();
 
             FileOutputStream stream = new FileOutputStream(transformedFile);
             Writer writer = new BufferedWriter(new OutputStreamWriter(stream,
                     Argo.getEncoding()));
-            Result result = new StreamResult(writer);
-
-            StreamSource inputStreamSource = new StreamSource(file);
-            inputStreamSource.setSystemId(file);
-            transformer.transform(inputStreamSource, result);
+            try {
+                Result result = new StreamResult(writer);
+                String systemId = file.toURI().toURL().toExternalForm();
+
+                // Build the chain backwards from the final output so that
+                // each stage writes into the stage for the next version.
+                for (int version = toVersion; version > fromVersion + 1;
+                        --version) {
+                    TransformerHandler handler = newUpgradeHandler(version);
+                    handler.setSystemId(systemId);
+                    handler.setResult(result);
+                    result = new SAXResult(handler);
+                }
 
-            writer.close();
+                StreamSource inputStreamSource = new StreamSource(file);
+                inputStreamSource.setSystemId(file);
+                getUpgrade(fromVersion + 1).newTransformer().transform(
+                        inputStreamSource, result);
+            } finally {
+                writer.close();
+            }
             return transformedFile;
         } catch (IOException e) {
             throw new OpenException(e);
@@ -489,6 +600,86 @@ public class UmlFilePersister extends AbstractFilePersister {
         }
     }
 
+    /**
+     * Get the compiled upgrade stylesheet which converts the previous
+     * persistence version to the given one.  Stylesheets are compiled once
+     * and reused for all later loads.
+     *
+     * @param version the persistence version to upgrade to
+     * @return the compiled stylesheet
+     * @throws TransformerException if the stylesheet can't be compiled
+     * @throws IOException if the stylesheet can't be read
+     */
+    private static Templates getUpgrade(int version)
+        throws TransformerException, IOException {
+
+        synchronized (UPGRADES) {
+            Templates templates = UPGRADES.get(version);
+            if (templates == null) {
+                String xsltFileName =
+                    "/org/argouml/persistence/upgrades/upgrade"
+                    + version + ".xsl";
+                URL xsltUrl = UmlFilePersister.class.getResource(xsltFileName);
+
+                LOG.log(Level.INFO, "Resource is {0}", xsltUrl);
+
+                InputStream xsltStream = xsltUrl.openStream();
+                try {
+                    StreamSource xsltStreamSource =
+                        new StreamSource(xsltStream);
+                    xsltStreamSource.setSystemId(xsltUrl.toExternalForm());
+                    templates =
+                        getTransformerFactory().newTemplates(xsltStreamSource);
+                } finally {
+                    xsltStream.close();
+                }
+                UPGRADES.put(version, templates);
+            }
+            return templates;
+        }
+    }
+
+    /**
+     * @return true if the upgrade stylesheets can be chained through SAX
+     */
+    private static boolean canChainUpgrades() {
+        synchronized (UPGRADES) {
+            return getTransformerFactory().getFeature(
+                    SAXTransformerFactory.FEATURE);
+        }
+    }
+
+    /**
+     * Create a handler which runs the upgrade stylesheet to the given
+     * persistence version over the SAX events it receives.
+     *
+     * @param version the persistence version to upgrade to
+     * @return the handler
+     * @throws TransformerException if the handler can't be created
+     * @throws IOException if the stylesheet can't be read
+     */
+    private static TransformerHandler newUpgradeHandler(int version)
+        throws TransformerException, IOException {
+
+        synchronized (UPGRADES) {
+            return ((SAXTransformerFactory) getTransformerFactory())
+                .newTransformerHandler(getUpgrade(version));
+        }
+    }
+
+    /**
+     * The factory isn't thread safe, so it must only be used while holding
+     * the lock of {@link #UPGRADES}.
+     *
+     * @return the factory shared by all upgrades
+     */
+    private static TransformerFactory getTransformerFactory() {
+        if (transformerFactory == null) {
+            transformerFactory = TransformerFactory.newInstance();
+        }
+        return transformerFactory;
+    }
+
     /**
      * Read stream in .argo format and extracts the persistence version number
      * from the root tag.
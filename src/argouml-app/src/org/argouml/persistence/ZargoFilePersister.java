@@ -39,14 +39,13 @@
 
 package org.argouml.persistence;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.io.FilterInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
@@ -56,11 +55,12 @@ import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 
 import org.argouml.application.api.Argo;
@@ -241,50 +241,69 @@ class ZargoFilePersister extends UmlFilePersister {
         progressMgr.setNumberOfPhases(3 + UML_PHASES_LOAD);
         ThreadUtils.checkIfInterrupted();
 
-        int fileVersion;
-        String releaseVersion;
+        // The zip file is opened once and its members are read directly
+        // through its central directory, rather than scanning the archive
+        // from the start for each member.
+        ZipFile zip = null;
         try {
-            String argoEntry = getEntryNames(file, ".argo").iterator().next();
-            URL argoUrl = makeZipEntryUrl(toURL(file), argoEntry);
-            fileVersion = getPersistenceVersion(argoUrl.openStream());
-            releaseVersion = getReleaseVersion(argoUrl.openStream());
-        } catch (MalformedURLException e) {
-            throw new OpenException(e);
-        } catch (IOException e) {
-            throw new OpenException(e);
-        }
-
-        // TODO: The commented code below was commented out by Bob Tarling
-        // in order to resolve bugs 4845 and 4857. Hopefully we can
-        // determine the cause and reintroduce.
+            zip = new ZipFile(file);
+            ZipEntry argoEntry = getFirstEntry(zip, ".argo");
+            if (argoEntry == null) {
+                throw new OpenException(
+                        "There is no .argo file in the .zargo");
+            }
+            int fileVersion =
+                getPersistenceVersion(zip.getInputStream(argoEntry));
+            String releaseVersion =
+                getReleaseVersion(zip.getInputStream(argoEntry));
+
+            // Only files of older versions are combined into one uml file
+            // and run through the upgrade stylesheets.  Files of the
+            // current version are streamed straight from their members.
+            boolean upgradeRequired = !checkVersion(fileVersion, releaseVersion);
+
+            // Upgrade is in the way for UML2 projects, so we turn it off in
+            // that case:
+            if (Model.getFacade().getUmlVersion().charAt(0) == '2') {
+                upgradeRequired = false;
+            }
 
-        //boolean upgradeRequired = !checkVersion(fileVersion, releaseVersion)
-        boolean upgradeRequired = true;
+            LOG.log(Level.INFO, "Loading zargo file of version {0}",
+                    fileVersion);
 
-        // Upgrade is in the way for UML2 projects, so we turn it off in that case:
-        if (Model.getFacade().getUmlVersion().charAt(0) == '2') {
-            upgradeRequired = false;
-        }
+            final Project p;
+            if (upgradeRequired) {
+                File combinedFile = zargoToUml(file, zip, progressMgr);
+                p = doLoad(file, combinedFile, progressMgr);
+            } else {
+                p = loadFromZargo(file, zip, progressMgr);
+            }
 
-        LOG.log(Level.INFO, "Loading zargo file of version {0}", fileVersion);
+            progressMgr.nextPhase();
 
-        final Project p;
-        if (upgradeRequired) {
-            File combinedFile = zargoToUml(file, progressMgr);
-            p = super.doLoad(file, combinedFile, progressMgr);
-        } else {
-            p = loadFromZargo(file, progressMgr);
+            PersistenceManager.getInstance().setProjectURI(file.toURI(), p);
+            return p;
+        } catch (IOException e) {
+            throw new OpenException(e);
+        } finally {
+            if (zip != null) {
+                try {
+                    zip.close();
+                } catch (IOException e) {
+                    // Nothing more we can do
+                }
+            }
         }
-
-        progressMgr.nextPhase();
-
-        PersistenceManager.getInstance().setProjectURI(file.toURI(), p);
-        return p;
-
     }
 
-    private Project loadFromZargo(File file, ProgressMgr progressMgr)
-        throws OpenException {
+    /**
+     * Load the project by streaming each member of the zip file straight
+     * into its member persister.  The members are loaded in the same order
+     * as they would have been from a combined uml file: profiles before the
+     * model, the model before the diagrams and the todo items last.
+     */
+    private Project loadFromZargo(File file, ZipFile zip,
+            ProgressMgr progressMgr) throws OpenException {
 
         Project p = ProjectFactory.getInstance().createProject(file.toURI());
         try {
@@ -292,37 +311,83 @@ class ZargoFilePersister extends UmlFilePersister {
 
             // Load .argo project descriptor
             ArgoParser parser = new ArgoParser();
-            String argoEntry = getEntryNames(file, ".argo").iterator().next();
-            parser.readProject(p, new InputSource(makeZipEntryUrl(toURL(file),
-                    argoEntry).toExternalForm()));
+            parser.readProject(p, getInputSource(file, zip,
+                    getFirstEntry(zip, ".argo")));
 
             List memberList = parser.getMemberList();
 
-            LOG.log(Level.INFO,memberList.size() + " members");
-
-            // Load .xmi file before any PGML files
-            // FIXME: the following is loading the model before anything else.
-            // Due to the Zargo containing the profiles, currently we have
-            // removed this hack in UmlFilePersister and I think it should be
-            // removed from here also.
-            String xmiEntry = getEntryNames(file, ".xmi").iterator().next();
-            MemberFilePersister persister = getMemberFilePersister("xmi");
-            URL url = makeZipEntryUrl(toURL(file), xmiEntry);
-            persister.load(p, new InputSource(url.toExternalForm()));
-
-            // Load the rest
-            List<String> entries = getEntryNames(file, null);
-            for (String name : entries) {
-                String ext = name.substring(name.lastIndexOf('.') + 1);
-                if (!"argo".equals(ext) && !"xmi".equals(ext)) {
-                    persister = getMemberFilePersister(ext);
+            LOG.log(Level.INFO, memberList.size() + " members");
+
+            List<ZipEntry> profiles = new ArrayList<ZipEntry>();
+            List<ZipEntry> models = new ArrayList<ZipEntry>();
+            List<ZipEntry> others = new ArrayList<ZipEntry>();
+            List<ZipEntry> todos = new ArrayList<ZipEntry>();
+            Enumeration< ? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String ext = getExtension(entry);
+                if (ProfileConfiguration.EXTENSION.equals(ext)) {
+                    profiles.add(entry);
+                } else if ("xmi".equals(ext)) {
+                    models.add(entry);
+                } else if ("todo".equals(ext)) {
+                    todos.add(entry);
+                } else if (!"argo".equals(ext) && !entry.isDirectory()) {
+                    others.add(entry);
+                }
+            }
 
+            List<ZipEntry> ordered = new ArrayList<ZipEntry>();
+            ordered.addAll(profiles);
+            // Only the first model is read, as it always has been
+            if (!models.isEmpty()) {
+                ordered.add(models.get(0));
+            }
+            ordered.addAll(others);
+            ordered.addAll(todos);
+
+            DiagramMemberLoader diagramLoader = null;
+            if (DiagramMemberLoader.isEnabled()) {
+                diagramLoader = new DiagramMemberLoader(p,
+                        (DiagramMemberFilePersister)
+                            getMemberFilePersister("pgml"));
+            }
+            try {
+                for (ZipEntry entry : ordered) {
+                    ThreadUtils.checkIfInterrupted();
+                    MemberFilePersister persister =
+                        getMemberFilePersister(getExtension(entry));
+                    if (persister == null) {
+                        LOG.log(Level.WARNING,
+                                "No persister for member {0}",
+                                entry.getName());
+                        continue;
+                    }
+                    InputSource source = getInputSource(file, zip, entry);
+                    if (diagramLoader != null
+                            && persister instanceof DiagramMemberFilePersister) {
+                        diagramLoader.add(source);
+                        continue;
+                    }
+                    if (diagramLoader != null) {
+                        // Anything after the diagrams may refer to them
+                        diagramLoader.attach();
+                    }
                     LOG.log(Level.INFO,
                             "Loading member with "
                             + persister.getClass().getName());
-
-                    url = makeZipEntryUrl(toURL(file), name);
-                    persister.load(p, new InputSource(url.toExternalForm()));
+                    try {
+                        persister.load(p, source);
+                    } finally {
+                        source.getByteStream().close();
+                    }
+                }
+                if (diagramLoader != null) {
+                    diagramLoader.attach();
+                }
+            } finally {
+                if (diagramLoader != null) {
+                    diagramLoader.shutdown();
                 }
             }
 
@@ -341,12 +406,30 @@ class ZargoFilePersister extends UmlFilePersister {
         }
     }
 
+    /**
+     * Create an input source which streams a zip entry.  The system id
+     * is the URL of the entry so that relative references can be resolved.
+     */
+    private InputSource getInputSource(File file, ZipFile zip,
+            ZipEntry entry) throws IOException {
+        InputSource source = new InputSource(
+                new BufferedInputStream(zip.getInputStream(entry)));
+        source.setSystemId(
+                makeZipEntryUrl(toURL(file), entry.getName()).toExternalForm());
+        return source;
+    }
+
+    private static String getExtension(ZipEntry entry) {
+        String name = entry.getName();
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
     private URL toURL(File file) throws MalformedURLException {
         return file.toURI().toURL();
     }
 
 
-    private File zargoToUml(File file, ProgressMgr progressMgr)
+    private File zargoToUml(File file, ZipFile zip, ProgressMgr progressMgr)
         throws OpenException, InterruptedException {
 
         File combinedFile = null;
@@ -368,20 +451,20 @@ class ZargoFilePersister extends UmlFilePersister {
             writer.println("<?xml version = \"1.0\" " + "encoding = \""
                     + encoding + "\" ?>");
 
-            copyArgo(file, encoding, writer);
+            copyArgo(zip, encoding, writer);
 
             progressMgr.nextPhase();
 
-            copyMember(file, "profile", encoding, writer);
+            copyMember(zip, ProfileConfiguration.EXTENSION, encoding, writer);
 
-            copyXmi(file, encoding, writer);
+            copyXmi(zip, encoding, writer);
 
-            copyDiagrams(file, encoding, writer);
+            copyDiagrams(zip, encoding, writer);
 
             // Copy the todo items after the model and diagrams so that
             // any model elements or figs that the todo items refer to
             // will exist before creating critics.
-            copyMember(file, "todo", encoding, writer);
+            copyMember(zip, "todo", encoding, writer);
 
             progressMgr.nextPhase();
 
@@ -395,26 +478,25 @@ class ZargoFilePersister extends UmlFilePersister {
     }
 
 
-    private void copyArgo(File file, String encoding, PrintWriter writer)
-        throws IOException, MalformedURLException, OpenException,
-        UnsupportedEncodingException {
+    private void copyArgo(ZipFile zip, String encoding, PrintWriter writer)
+        throws IOException, OpenException, UnsupportedEncodingException {
 
-        int pgmlCount = getPgmlCount(file);
-        boolean containsToDo = containsTodo(file);
-        boolean containsProfile = containsProfile(file);
+        int pgmlCount = getEntries(zip, ".pgml").size();
+        boolean containsToDo = !getEntries(zip, ".todo").isEmpty();
+        boolean containsProfile =
+            !getEntries(zip, "." + ProfileConfiguration.EXTENSION).isEmpty();
 
         // first read the .argo file from Zip
-        ZipInputStream zis =
-            openZipStreamAt(toURL(file), FileConstants.PROJECT_FILE_EXT);
+        ZipEntry argoEntry = getFirstEntry(zip, FileConstants.PROJECT_FILE_EXT);
 
-        if (zis == null) {
+        if (argoEntry == null) {
             throw new OpenException(
                     "There is no .argo file in the .zargo");
         }
 
         String line;
-        BufferedReader reader =
-            new BufferedReader(new InputStreamReader(zis, encoding));
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                zip.getInputStream(argoEntry), encoding));
         // Keep reading till we hit the <argo> tag
         String rootLine;
         do {
@@ -456,67 +538,57 @@ class ZargoFilePersister extends UmlFilePersister {
 
         LOG.log(Level.INFO, "Member count = {0}", memberCount);
 
-        zis.close();
         reader.close();
     }
 
-    private void copyXmi(File file, String encoding, PrintWriter writer)
-        throws IOException, MalformedURLException,
-        UnsupportedEncodingException {
+    private void copyXmi(ZipFile zip, String encoding, PrintWriter writer)
+        throws IOException, UnsupportedEncodingException {
 
-        ZipInputStream zis = openZipStreamAt(toURL(file), ".xmi");
+        ZipEntry entry = getFirstEntry(zip, ".xmi");
         BufferedReader reader = new BufferedReader(
-                new InputStreamReader(zis, encoding));
+                new InputStreamReader(zip.getInputStream(entry), encoding));
         // Skip 1 lines
         reader.readLine();
 
         readerToWriter(reader, writer);
 
-        zis.close();
         reader.close();
     }
 
 
-    private void copyDiagrams(File file, String encoding, PrintWriter writer)
+    private void copyDiagrams(ZipFile zip, String encoding, PrintWriter writer)
         throws IOException {
 
         // Loop round loading the diagrams
-        ZipInputStream zis = new ZipInputStream(toURL(file).openStream());
-        SubInputStream sub = new SubInputStream(zis);
-
-        ZipEntry currentEntry = null;
-        while ((currentEntry = sub.getNextEntry()) != null) {
-            if (currentEntry.getName().endsWith(".pgml")) {
-
-                BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(sub, encoding));
-                String firstLine = reader.readLine();
-                if (firstLine.startsWith("<?xml")) {
-                    // Skip the 2 lines
-                    //<?xml version="1.0" encoding="UTF-8" ?>
-                    //<!DOCTYPE pgml SYSTEM "pgml.dtd">
-                    reader.readLine();
-                } else {
-                    writer.println(firstLine);
-                }
-
-                readerToWriter(reader, writer);
-                sub.close();
-                reader.close();
+        for (ZipEntry entry : getEntries(zip, ".pgml")) {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(zip.getInputStream(entry),
+                            encoding));
+            String firstLine = reader.readLine();
+            if (firstLine.startsWith("<?xml")) {
+                // Skip the 2 lines
+                //<?xml version="1.0" encoding="UTF-8" ?>
+                //<!DOCTYPE pgml SYSTEM "pgml.dtd">
+                reader.readLine();
+            } else {
+                writer.println(firstLine);
             }
+
+            readerToWriter(reader, writer);
+            reader.close();
         }
-        zis.close();
     }
 
 
-    private void copyMember(File file, String tag, String outputEncoding,
-            PrintWriter writer) throws IOException, MalformedURLException,
+    private void copyMember(ZipFile zip, String tag, String outputEncoding,
+            PrintWriter writer) throws IOException,
                 UnsupportedEncodingException {
 
-        ZipInputStream zis = openZipStreamAt(toURL(file), "." + tag);
+        ZipEntry entry = getFirstEntry(zip, "." + tag);
 
-        if (zis != null) {
-            InputStreamReader isr = new InputStreamReader(zis, outputEncoding);
+        if (entry != null) {
+            InputStreamReader isr = new InputStreamReader(
+                    zip.getInputStream(entry), outputEncoding);
             BufferedReader reader = new BufferedReader(isr);
 
             String firstLine = reader.readLine();
@@ -531,7 +603,6 @@ class ZargoFilePersister extends UmlFilePersister {
 
             readerToWriter(reader, writer);
 
-            zis.close();
             reader.close();
         }
     }
@@ -553,37 +624,6 @@ class ZargoFilePersister extends UmlFilePersister {
         }
     }
 
-    /**
-     * Open a ZipInputStream to the first file found with a given extension.
-     *
-     * @param url
-     *            The URL of the zip file.
-     * @param ext
-     *            The required extension.
-     * @return the zip stream positioned at the required location or null
-     * if the requested extension is not found.
-     * @throws IOException
-     *             if there is a problem opening the file.
-     */
-    private ZipInputStream openZipStreamAt(URL url, String ext)
-        throws IOException {
-        ZipInputStream zis = new ZipInputStream(url.openStream());
-        ZipEntry entry = zis.getNextEntry();
-        while (entry != null && !entry.getName().endsWith(ext)) {
-            entry = zis.getNextEntry();
-        }
-        if (entry == null) {
-            zis.close();
-            return null;
-        }
-        return zis;
-    }
-
-    private InputStream openZipEntry(URL url, String entryName)
-        throws MalformedURLException, IOException {
-        return makeZipEntryUrl(url, entryName).openStream();
-    }
-
     private URL makeZipEntryUrl(URL url, String entryName)
         throws MalformedURLException {
         String entryURL = "jar:" + url + "!/" + entryName;
@@ -591,74 +631,29 @@ class ZargoFilePersister extends UmlFilePersister {
     }
 
     /**
-     * A stream of input streams for reading the Zipped file.
+     * Get the first zip file entry which ends with the given extension.
+     *
+     * @return the entry or null if there is none
      */
-    private static class SubInputStream extends FilterInputStream {
-        private ZipInputStream in;
-
-        /**
-         * The constructor.
-         *
-         * @param z
-         *            the zip input stream
-         */
-        public SubInputStream(ZipInputStream z) {
-            super(z);
-            in = z;
-        }
-
-        /*
-         * @see java.io.InputStream#close()
-         */
-        @Override
-        public void close() throws IOException {
-            in.closeEntry();
-        }
-
-        /**
-         * Reads the next ZIP file entry and positions stream at the beginning
-         * of the entry data.
-         *
-         * @return the ZipEntry just read
-         * @throws IOException
-         *             if an I/O error has occurred
-         */
-        public ZipEntry getNextEntry() throws IOException {
-            return in.getNextEntry();
-        }
-    }
-
-    private int getPgmlCount(File file) throws IOException {
-        return getEntryNames(file, ".pgml").size();
-    }
-
-    private boolean containsTodo(File file) throws IOException {
-        return !getEntryNames(file, ".todo").isEmpty();
-    }
-
-    private boolean containsProfile(File file) throws IOException {
-        return !getEntryNames(file, "." + ProfileConfiguration.EXTENSION)
-                .isEmpty();
+    private ZipEntry getFirstEntry(ZipFile zip, String extension) {
+        List<ZipEntry> entries = getEntries(zip, extension);
+        return entries.isEmpty() ? null : entries.get(0);
     }
 
     /**
-     * Get a list of zip file entries which end with the given extension.
-     * If the extension is null, all entries are returned.
+     * Get a list of zip file entries which end with the given extension,
+     * in the order they are stored.  Only the central directory of the zip
+     * file is read.
      */
-    private List<String> getEntryNames(File file, String extension)
-        throws IOException, MalformedURLException {
-
-        ZipInputStream zis = new ZipInputStream(toURL(file).openStream());
-        List<String> result = new ArrayList<String>();
-        ZipEntry entry = zis.getNextEntry();
-        while (entry != null) {
-            String name = entry.getName();
-            if (extension == null || name.endsWith(extension)) {
-                result.add(name);
+    private List<ZipEntry> getEntries(ZipFile zip, String extension) {
+        List<ZipEntry> result = new ArrayList<ZipEntry>();
+        Enumeration< ? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            if (entry.getName().endsWith(extension)) {
+                result.add(entry);
             }
-            entry = zis.getNextEntry();
         }
-        zis.close();
         return result;
     }
 
@@ -38,6 +38,9 @@
 
 package org.argouml.profile.internal.ocl;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.argouml.model.Model;
 
 import tudresden.ocl.parser.analysis.DepthFirstAdapter;
@@ -47,7 +50,11 @@ import tudresden.ocl.parser.node.APreStereotype;
 
 /**
  * Checks the context clause of the OCL expression to verify if it is applicable
- * to the given model element.
+ * to the given model element.<p>
+ *
+ * Made without an element, it only reads the context clause, which can then
+ * be checked against any number of elements with
+ * {@link #isApplicable(Object)}.
  *
  * @author maurelio1234
  */
@@ -57,6 +64,8 @@ public class ContextApplicable extends DepthFirstAdapter {
 
     private Object modelElement;
 
+    private final List<String> metaclasses = new ArrayList<String>();
+
     /**
      * Constructor.
      *
@@ -66,6 +75,13 @@ public class ContextApplicable extends DepthFirstAdapter {
         this.modelElement = element;
     }
 
+    /**
+     * Constructor for reading the context clause once.
+     */
+    public ContextApplicable() {
+        this(null);
+    }
+
     /**
      * @return Returns the applicable.
      */
@@ -73,6 +89,24 @@ public class ContextApplicable extends DepthFirstAdapter {
         return applicable;
     }
 
+    /**
+     * Check the context clause visited against a model element.
+     *
+     * @param element the model element
+     * @return true if the expression is applicable to the element
+     */
+    public boolean isApplicable(Object element) {
+        if (!applicable) {
+            return false;
+        }
+        for (String metaclass : metaclasses) {
+            if (!Model.getFacade().isA(metaclass, element)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * @param node the node visited
      * @see tudresden.ocl.parser.analysis.DepthFirstAdapter#caseAClassifierContext(tudresden.ocl.parser.node.AClassifierContext)
@@ -80,7 +114,10 @@ public class ContextApplicable extends DepthFirstAdapter {
     @Override
     public void caseAClassifierContext(AClassifierContext node) {
         String metaclass = ("" + node.getPathTypeName()).trim();
-        applicable &= Model.getFacade().isA(metaclass, modelElement);
+        metaclasses.add(metaclass);
+        if (modelElement != null) {
+            applicable &= Model.getFacade().isA(metaclass, modelElement);
+        }
     }
 
     /**
@@ -40,6 +40,7 @@ package org.argouml.profile.internal.ocl;
 
 import java.io.PushbackReader;
 import java.io.StringReader;
+import java.util.LinkedHashMap;
 import java.util.Map;
 //import java.util.logging.Logger;
 
@@ -62,6 +63,22 @@ public class DefaultOclEvaluator implements OclExpressionEvaluator {
 
     private static OclExpressionEvaluator instance = null;
 
+    /**
+     * The maximum number of parse trees kept by {@link #compile(String)}.
+     */
+    private static final int MAX_TREES = 500;
+
+    /**
+     * The parse trees of the expressions evaluated most recently.
+     */
+    private static final Map<String, ParsedOcl> TREES =
+        new LinkedHashMap<String, ParsedOcl>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, ParsedOcl> eldest) {
+                return size() > MAX_TREES;
+            }
+        };
+
     /**
      * @return unique instance
      */
@@ -77,14 +94,33 @@ public class DefaultOclEvaluator implements OclExpressionEvaluator {
      */
     public Object evaluate(Map<String, Object> vt, ModelInterpreter mi,
             String ocl) throws InvalidOclException {
+        ParsedOcl parsed = compile(ocl);
+        EvaluateExpression ee = new EvaluateExpression(vt, mi);
+        ee.setNodeTexts(parsed.getTexts());
+        parsed.getTree().apply(ee);
+        return ee.getValue();
+    }
+
+    /**
+     * Parse an OCL expression, or return the parse tree made before for the
+     * same expression. The trees are only read by the evaluating visitors,
+     * so they can be shared by several evaluations and threads.
+     *
+     * @param ocl the expression
+     * @return the parse tree
+     * @throws InvalidOclException if the expression is not valid
+     */
+    static ParsedOcl compile(String ocl) throws InvalidOclException {
+        synchronized (TREES) {
+            ParsedOcl parsed = TREES.get(ocl);
+            if (parsed != null) {
+                return parsed;
+            }
+        }
         // XXX this seems to be a bug of the parser,
         // it always requires a context
 
         //LOG.log(Level.FINE, "OCL: " + ocl);
-        if (ocl.contains("ore")) {
-            // TODO: Convert this to some sensible logging
-            System.out.println("VOILA!");
-        }
         Lexer lexer = new Lexer(new PushbackReader(new StringReader(
                 "context X inv: " + ocl), 2));
         OclParser parser = new OclParser(lexer);
@@ -95,10 +131,11 @@ public class DefaultOclEvaluator implements OclExpressionEvaluator {
         } catch (Exception e) {
             throw new InvalidOclException(ocl);
         }
-
-        EvaluateExpression ee = new EvaluateExpression(vt, mi);
-        tree.apply(ee);
-        return ee.getValue();
+        ParsedOcl parsed = new ParsedOcl(tree);
+        synchronized (TREES) {
+            TREES.put(ocl, parsed);
+        }
+        return parsed;
     }
 
 }
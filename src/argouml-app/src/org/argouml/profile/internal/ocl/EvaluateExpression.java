@@ -40,6 +40,7 @@ package org.argouml.profile.internal.ocl;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -92,6 +93,7 @@ import tudresden.ocl.parser.node.AStandardDeclarator;
 import tudresden.ocl.parser.node.AStringLiteral;
 import tudresden.ocl.parser.node.AUnaryUnaryExpression;
 import tudresden.ocl.parser.node.AXorLogicalOperator;
+import tudresden.ocl.parser.node.Node;
 import tudresden.ocl.parser.node.PActualParameterListTail;
 import tudresden.ocl.parser.node.PDeclaratorTail;
 import tudresden.ocl.parser.node.PExpression;
@@ -112,6 +114,12 @@ public class EvaluateExpression extends DepthFirstAdapter {
     private static final Logger LOG =
         Logger.getLogger(EvaluateExpression.class.getName());
 
+    /**
+     * The trimmed texts of the nodes of the tree evaluated, see
+     * {@link #text(Object)}.
+     */
+    private Map<Node, String> nodeTexts = Collections.emptyMap();
+
     /**
      * The Variable Table
      */
@@ -455,7 +463,7 @@ public class EvaluateExpression extends DepthFirstAdapter {
         if (node.getPathName() != null) {
             // TODO support other name kinds
             node.getPathName().apply(this);
-            feature = node.getPathName().toString().trim();
+            feature = text(node.getPathName());
         }
         if (node.getTimeExpression() != null) {
             // hypotheses no time expression (only invariants)
@@ -474,7 +482,7 @@ public class EvaluateExpression extends DepthFirstAdapter {
         if (subject == null) {
             val = vt.get(feature);
             if (val == null) {
-                val = this.interp.getBuiltInSymbol(feature.toString().trim());
+                val = this.interp.getBuiltInSymbol((String) feature);
             }
         } else {
             val = runFeatureCall(subject, feature, fwd, parameters);
@@ -585,15 +593,14 @@ public class EvaluateExpression extends DepthFirstAdapter {
         if (node.getName() != null) {
             node.getName().apply(this);
 
-            vars.add(node.getName().toString().trim());
+            vars.add(text(node.getName()));
         }
         {
             Object temp[] = node.getDeclaratorTail().toArray();
             for (int i = 0; i < temp.length; i++) {
                 ((PDeclaratorTail) temp[i]).apply(this);
 
-                vars.add(((ADeclaratorTail) temp[i]).getName()
-                        .toString().trim());
+                vars.add(text(((ADeclaratorTail) temp[i]).getName()));
             }
 
             val = vars;
@@ -631,7 +638,7 @@ public class EvaluateExpression extends DepthFirstAdapter {
         }
         if (node.getName() != null) {
             node.getName().apply(this);
-            name = node.getName().toString().trim();
+            name = text(node.getName());
         }
         if (node.getLetExpressionTypeDeclaration() != null) {
             // TODO: check type!
@@ -691,7 +698,7 @@ public class EvaluateExpression extends DepthFirstAdapter {
      * @see tudresden.ocl.parser.analysis.DepthFirstAdapter#outAEnumLiteral(tudresden.ocl.parser.node.AEnumLiteral)
      */
     public void outAEnumLiteral(AEnumLiteral node) {
-        val = new OclEnumLiteral(node.getName().toString().trim());
+        val = new OclEnumLiteral(text(node.getName()));
         defaultOut(node);
     }
 
@@ -708,7 +715,7 @@ public class EvaluateExpression extends DepthFirstAdapter {
         {
             node.getCollectionKind().apply(this);
 
-            String kind = node.getCollectionKind().toString().trim();
+            String kind = text(node.getCollectionKind());
             if (kind.equalsIgnoreCase("Set")) {
                 col = new HashSet<Object>();
             } else if (kind.equalsIgnoreCase("Sequence")) {
@@ -791,7 +798,7 @@ public class EvaluateExpression extends DepthFirstAdapter {
             // TODO support other name kinds
             node.getPathName().apply(this);
 
-            feature = node.getPathName().toString().trim();
+            feature = text(node.getPathName());
         }
         if (node.getTimeExpression() != null) {
             // XXX hypothesis: no time expression (inv)
@@ -869,18 +876,43 @@ public class EvaluateExpression extends DepthFirstAdapter {
         // but it can't trigger another invokeFeature...
 
         if ((subject instanceof Collection)
-                && type.toString().trim().equals(".")) {
+                && text(type).equals(".")) {
             Collection col = (Collection) subject;
             Bag res = new HashBag();
             for (Object obj : col) {
                 res.add(interp.invokeFeature(vt, obj,
-                        feature.toString().trim(), ".", parameters.toArray()));
+                        text(feature), ".", parameters.toArray()));
             }
             return res;
         } else {
-            return interp.invokeFeature(vt, subject, feature.toString().trim(),
-                    type.toString().trim(), parameters.toArray());
+            return interp.invokeFeature(vt, subject, text(feature),
+                    text(type), parameters.toArray());
+        }
+    }
+
+    /**
+     * Set the texts of the nodes of the tree this adapter will visit.
+     *
+     * @param texts the trimmed texts, see {@link ParsedOcl#getTexts()}
+     */
+    void setNodeTexts(Map<Node, String> texts) {
+        nodeTexts = texts;
+    }
+
+    /**
+     * Return the text of a node of the parse tree without the surrounding
+     * white space. The texts of a shared tree are assembled from the tokens
+     * once, when it is parsed.
+     *
+     * @param node a node of the parse tree, or a String
+     * @return the trimmed text
+     */
+    private String text(Object node) {
+        String text = nodeTexts.get(node);
+        if (text == null) {
+            text = node.toString().trim();
         }
+        return text;
     }
 
     /** Error Handling * */
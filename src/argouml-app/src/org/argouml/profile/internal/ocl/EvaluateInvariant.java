@@ -38,8 +38,11 @@
 
 package org.argouml.profile.internal.ocl;
 
+import java.util.Map;
+
 import tudresden.ocl.parser.analysis.DepthFirstAdapter;
 import tudresden.ocl.parser.node.AConstraint;
+import tudresden.ocl.parser.node.Node;
 import tudresden.ocl.parser.node.PConstraintBody;
 
 /**
@@ -76,6 +79,20 @@ public class EvaluateInvariant extends DepthFirstAdapter {
         this.expEvaluator = new EvaluateExpression(element, interpreter);
     }
 
+    /**
+     * Constructor for evaluating a tree whose node texts are known.
+     *
+     * @param element self
+     * @param interpreter model interpreter
+     * @param nodeTexts the texts of the nodes, see
+     *            {@link ParsedOcl#getTexts()}
+     */
+    EvaluateInvariant(Object element, ModelInterpreter interpreter,
+            Map<Node, String> nodeTexts) {
+        this(element, interpreter);
+        expEvaluator.setNodeTexts(nodeTexts);
+    }
+
     /**
      * @return is the invariant ok?
      */
@@ -41,10 +41,12 @@ package org.argouml.profile.internal.ocl;
 import java.io.PushbackReader;
 import java.io.StringReader;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import tudresden.ocl.parser.OclParser;
 import tudresden.ocl.parser.lexer.Lexer;
+import tudresden.ocl.parser.node.Node;
 import tudresden.ocl.parser.node.Start;
 
 /**
@@ -65,6 +67,16 @@ public class OclInterpreter {
      */
     private ModelInterpreter modelInterpreter;
 
+    /**
+     * The context clause, read once from the tree.
+     */
+    private ContextApplicable context;
+
+    /**
+     * The texts of the nodes of the tree.
+     */
+    private Map<Node, String> nodeTexts;
+
     /**
      * Creates a new OCL interpreter for a given OCL expression
      * 
@@ -86,6 +98,10 @@ public class OclInterpreter {
             e.printStackTrace();
             throw new InvalidOclException(ocl);
         }
+
+        context = new ContextApplicable();
+        tree.apply(context);
+        nodeTexts = new ParsedOcl(tree).getTexts();
     }
 
     /**
@@ -95,9 +111,7 @@ public class OclInterpreter {
      * @return if is applicable
      */
     public boolean applicable(Object modelElement) {
-        ContextApplicable ca = new ContextApplicable(modelElement);
-        tree.apply(ca);
-        return ca.isApplicable();
+        return context.isApplicable(modelElement);
     }
 
     /**
@@ -109,7 +123,7 @@ public class OclInterpreter {
      */
     public boolean check(Object modelElement) {
         EvaluateInvariant ei = new EvaluateInvariant(modelElement,
-                modelInterpreter);
+                modelInterpreter, nodeTexts);
         tree.apply(ei);
         return ei.isOK();
     }
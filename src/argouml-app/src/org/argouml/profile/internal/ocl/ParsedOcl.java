@@ -0,0 +1,63 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.profile.internal.ocl;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import tudresden.ocl.parser.analysis.DepthFirstAdapter;
+import tudresden.ocl.parser.node.Node;
+import tudresden.ocl.parser.node.Start;
+
+/**
+ * A parsed OCL expression together with the trimmed texts of the nodes of
+ * its tree. Neither is changed once made, so one instance can be shared by
+ * evaluations on several threads.
+ */
+final class ParsedOcl {
+
+    private final Start tree;
+
+    private final Map<Node, String> texts;
+
+    /**
+     * @param parseTree the tree made by the parser
+     */
+    ParsedOcl(Start parseTree) {
+        tree = parseTree;
+        final Map<Node, String> nodeTexts = new IdentityHashMap<Node, String>();
+        tree.apply(new DepthFirstAdapter() {
+            @Override
+            public void defaultIn(Node node) {
+                nodeTexts.put(node, node.toString().trim());
+            }
+        });
+        texts = Collections.unmodifiableMap(nodeTexts);
+    }
+
+    /**
+     * @return the parse tree
+     */
+    Start getTree() {
+        return tree;
+    }
+
+    /**
+     * @return the trimmed texts of the inner nodes of the tree
+     */
+    Map<Node, String> getTexts() {
+        return texts;
+    }
+}
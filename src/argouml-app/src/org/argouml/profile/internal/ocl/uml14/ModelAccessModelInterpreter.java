@@ -39,9 +39,13 @@
 package org.argouml.profile.internal.ocl.uml14;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -65,28 +69,63 @@ public class ModelAccessModelInterpreter implements ModelInterpreter {
 
     private static Uml14ModelInterpreter uml14mi = new Uml14ModelInterpreter();
 
-    /*
-     * @see org.argouml.profile.internal.ocl.ModelInterpreter#invokeFeature(java.util.Map,
-     *      java.lang.Object, java.lang.String, java.lang.String,
-     *      java.lang.Object[])
+    /**
+     * Returned by {@link Section#invoke(Object, String, Map)} for a feature
+     * the section does not define.
      */
-    @SuppressWarnings("unchecked")
-    public Object invokeFeature(Map<String, Object> vt, Object subject,
-            String feature, String type, Object[] parameters) {
+    private static final Object NOT_FOUND = new Object();
 
-        // TODO: This is an absurdly long method! Break it up.
+    /**
+     * The features defined by one metaclass of the UML 1.4 specification.
+     */
+    private abstract static class Section {
+
+        /**
+         * @param subject the element a feature is called on
+         * @return true if the subject is an instance of the metaclass
+         */
+        abstract boolean isA(Object subject);
+
+        /**
+         * @param subject the element the feature is called on
+         * @param feature the name of the feature
+         * @param vt the variable table
+         * @return the value of the feature, or {@link #NOT_FOUND} if this
+         *         metaclass does not define it
+         */
+        abstract Object invoke(Object subject, String feature,
+                Map<String, Object> vt);
+    }
 
-        if (subject == null) {
-            subject = vt.get("self");
+    /**
+     * Stands for "no section" in the maps below, which cannot hold null.
+     */
+    private static final Section NONE = new Section() {
+        boolean isA(Object subject) {
+            return false;
+        }
+        Object invoke(Object subject, String feature,
+                Map<String, Object> vt) {
+            return NOT_FOUND;
         }
+    };
 
+    /**
+     * The metaclasses in the order in which they are searched for a feature.
+     */
+    private static final Section[] SECTIONS = {
         /* 4.5.2.1 Abstraction */
         // TODO investigate: Abstraction.mapping is not in the Model Subsystem
 
         /* 4.5.2.3 Association */
 
-        if (Model.getFacade().isAAssociation(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isAAssociation(subject);
+            }
+            @SuppressWarnings("unchecked")
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("connection")) {
                     return new ArrayList<Object>(Model.getFacade()
                             .getConnections(subject));
@@ -97,13 +136,18 @@ public class ModelAccessModelInterpreter implements ModelInterpreter {
                     return new HashSet<Object>(Model.getFacade()
                             .getConnections(subject));
                 }
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.5.2.5 AssociationEnd */
 
-        if (Model.getFacade().isAAssociationEnd(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isAAssociationEnd(subject);
+            }
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("aggregation")) {
                     return Model.getFacade().getAggregation1(subject);
                 }
@@ -143,13 +187,19 @@ public class ModelAccessModelInterpreter implements ModelInterpreter {
                     return Model.getFacade().getUpper(subject);
                 }
 
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.5.2.6 Attribute */
 
-        if (Model.getFacade().isAAttribute(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isAAttribute(subject);
+            }
+            @SuppressWarnings("unchecked")
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("initialValue")) {
                     return Model.getFacade().getInitialValue(subject);
                 }
@@ -157,13 +207,19 @@ public class ModelAccessModelInterpreter implements ModelInterpreter {
                     return new ArrayList<Object>(Model.getFacade()
                             .getAssociationEnds(subject));
                 }
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.5.2.7 BehavioralFeature */
 
-        if (Model.getFacade().isABehavioralFeature(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isABehavioralFeature(subject);
+            }
+            @SuppressWarnings("unchecked")
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("isQuery")) {
                     return Model.getFacade().isQuery(subject);
                 }
@@ -171,35 +227,50 @@ public class ModelAccessModelInterpreter implements ModelInterpreter {
                     return new ArrayList<Object>(Model.getFacade()
                             .getParameters(subject));
                 }
+                // TODO implement additional operations in 4.5.3.5
+                return NOT_FOUND;
             }
-
-            // TODO implement additional operations in 4.5.3.5
-        }
+        },
 
         /* 4.5.2.8 Binding */
 
-        if (Model.getFacade().isABinding(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isABinding(subject);
+            }
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("argument")) {
                     return Model.getFacade().getArguments(subject);
                 }
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.5.2.9 Class */
 
-        if (Model.getFacade().isAClass(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isAClass(subject);
+            }
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("isActive")) {
                     return Model.getFacade().isActive(subject);
                 }
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.5.2.10 Classifier */
 
-        if (Model.getFacade().isAClassifier(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isAClassifier(subject);
+            }
+            @SuppressWarnings("unchecked")
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("feature")) {
                     return new ArrayList<Object>(Model.getFacade()
                             .getFeatures(subject));
@@ -302,13 +373,19 @@ public class ModelAccessModelInterpreter implements ModelInterpreter {
                         + "union(self.parent.oclAsType(Classifier)."
                         + "allDiscriminators)");
                 }
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.5.2.11 Comment */
 
-        if (Model.getFacade().isAComment(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isAComment(subject);
+            }
+            @SuppressWarnings("unchecked")
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("body")) {
                     return Model.getFacade().getBody(subject);
                 }
@@ -316,13 +393,19 @@ public class ModelAccessModelInterpreter implements ModelInterpreter {
                     return new HashSet<Object>(Model.getFacade()
                             .getAnnotatedElements(subject));
                 }
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.5.2.12 Component */
 
-        if (Model.getFacade().isAComponent(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isAComponent(subject);
+            }
+            @SuppressWarnings("unchecked")
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("deploymentLocation")) {
                     return new HashSet<Object>(Model.getFacade()
                             .getDeploymentLocations(subject));
@@ -344,13 +427,18 @@ public class ModelAccessModelInterpreter implements ModelInterpreter {
                         + "re.elementResidence.visibility = #public or "
                         + "re.elementResidence.visibility = #protected))");
                 }
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.5.2.13 Constraint */
 
-        if (Model.getFacade().isAConstraint(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isAConstraint(subject);
+            }
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("body")) {
                     return Model.getFacade().getBody(subject);
                 }
@@ -359,13 +447,19 @@ public class ModelAccessModelInterpreter implements ModelInterpreter {
                     return Model.getFacade().getConstrainedElements(subject);
                 }
 
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.5.2.14 Dependency */
 
-        if (Model.getFacade().isADependency(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isADependency(subject);
+            }
+            @SuppressWarnings("unchecked")
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("client")) {
                     return new HashSet<Object>(Model.getFacade()
                             .getClients(subject));
@@ -374,45 +468,65 @@ public class ModelAccessModelInterpreter implements ModelInterpreter {
                     return new HashSet<Object>(Model.getFacade()
                             .getSuppliers(subject));
                 }
+                return NOT_FOUND;
             }
-        }
+        },
 
         // TODO ElementOwnership is not in ModelSubsys!!
 
         /* 4.5.2.18 ElementOwnership */
 
-        if (Model.getFacade().isAElementResidence(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isAElementResidence(subject);
+            }
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("visibility")) {
                     return Model.getFacade().getVisibility(subject);
                 }
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.5.2.19 Enumeration */
 
-        if (Model.getFacade().isAEnumeration(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isAEnumeration(subject);
+            }
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("literal")) {
                     return Model.getFacade().getEnumerationLiterals(subject);
                 }
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.5.2.20 EnumerationLiteral */
 
-        if (Model.getFacade().isAEnumerationLiteral(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isAEnumerationLiteral(subject);
+            }
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("enumeration")) {
                     return Model.getFacade().getEnumeration(subject);
                 }
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.5.2.21 Feature */
 
-        if (Model.getFacade().isAFeature(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isAFeature(subject);
+            }
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("ownerScope")) {
                     return Model.getFacade().isStatic(subject);
                 }
@@ -422,13 +536,19 @@ public class ModelAccessModelInterpreter implements ModelInterpreter {
                 if (feature.equals("owner")) {
                     return Model.getFacade().getOwner(subject);
                 }
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.5.2.23 Generalizable Element */
 
-        if (Model.getFacade().isAGeneralizableElement(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isAGeneralizableElement(subject);
+            }
+            @SuppressWarnings("unchecked")
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("isAbstract")) {
                     return Model.getFacade().isAbstract(subject);
                 }
@@ -458,13 +578,19 @@ public class ModelAccessModelInterpreter implements ModelInterpreter {
                             "self.parent->union(self.parent.allParents)");
                 }
 
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.5.2.24 Generalization */
 
-        if (Model.getFacade().isAGeneralization(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isAGeneralization(subject);
+            }
+            @SuppressWarnings("unchecked")
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("discriminator")) {
                     return Model.getFacade().getDiscriminator(subject);
                 }
@@ -481,26 +607,37 @@ public class ModelAccessModelInterpreter implements ModelInterpreter {
                     return new HashSet<Object>(Model.getFacade()
                             .getSpecializations(subject));
                 }
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.5.2.26 Method */
 
-        if (Model.getFacade().isAMethod(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isAMethod(subject);
+            }
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("body")) {
                     return Model.getFacade().getBody(subject);
                 }
                 if (feature.equals("specification")) {
                     return Model.getFacade().getSpecification(subject);
                 }
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.5.2.27 ModelElement */
 
-        if (Model.getFacade().isAModelElement(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isAModelElement(subject);
+            }
+            @SuppressWarnings("unchecked")
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("name")) {
                     String name = Model.getFacade().getName(subject);
                     if (name == null) {
@@ -586,13 +723,19 @@ public class ModelAccessModelInterpreter implements ModelInterpreter {
                             + "oclAsType(Binding).argument");
                 }
 
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.5.2.28 Namespace */
 
-        if (Model.getFacade().isANamespace(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isANamespace(subject);
+            }
+            @SuppressWarnings("unchecked")
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("ownedElement")) {
                     return new HashSet<Object>(Model.getFacade()
                             .getOwnedElements(subject));
@@ -621,25 +764,36 @@ public class ModelAccessModelInterpreter implements ModelInterpreter {
                     return internalOcl(subject, vt, "self.namespace->"
                             + "union(self.namespace.allSurroundingNamespaces)");
                 }
+                return NOT_FOUND;
             }
-        }
+        },
 
 
         /* 4.5.2.29 Node */
 
-        if (Model.getFacade().isANode(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isANode(subject);
+            }
+            @SuppressWarnings("unchecked")
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("deployedComponent")) {
                     return new HashSet<Object>(Model.getFacade()
                             .getDeployedComponents(subject));
                 }
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.5.2.30 Operation */
 
-        if (Model.getFacade().isAOperation(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isAOperation(subject);
+            }
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("concurrency")) {
                     return Model.getFacade().getConcurrency(subject);
                 }
@@ -652,21 +806,27 @@ public class ModelAccessModelInterpreter implements ModelInterpreter {
                 if (feature.equals("isRoot")) {
                     return Model.getFacade().isRoot(subject);
                 }
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.5.2.31 Parameter */
 
-        if (Model.getFacade().isAParameter(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isAParameter(subject);
+            }
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("defaultValue")) {
                     return Model.getFacade().getDefaultValue(subject);
                 }
                 if (feature.equals("kind")) {
                     return Model.getFacade().getKind(subject);
                 }
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.5.2.35 ProgrammingLanguageDataType */
 
@@ -681,8 +841,12 @@ public class ModelAccessModelInterpreter implements ModelInterpreter {
 
         /* 4.5.2.37 StructuralFeature */
 
-        if (Model.getFacade().isAStructuralFeature(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isAStructuralFeature(subject);
+            }
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("changeability")) {
                     return Model.getFacade().getChangeability(subject);
                 }
@@ -699,35 +863,51 @@ public class ModelAccessModelInterpreter implements ModelInterpreter {
                 if (feature.equals("type")) {
                     return Model.getFacade().getType(subject);
                 }
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.5.2.38 TemplateArgument */
 
-        if (Model.getFacade().isATemplateArgument(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isATemplateArgument(subject);
+            }
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("binding")) {
                     return Model.getFacade().getBinding(subject);
                 }
                 if (feature.equals("modelElement")) {
                     return Model.getFacade().getModelElement(subject);
                 }
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.5.2.39 TemplateParameter */
 
-        if (Model.getFacade().isATemplateParameter(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isATemplateParameter(subject);
+            }
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("defaultElement")) {
                     return Model.getFacade().getDefaultElement(subject);
                 }
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.11.3.5 UseCase */
-        if (Model.getFacade().isAUseCase(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isAUseCase(subject);
+            }
+            @SuppressWarnings("unchecked")
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("specificationPath")) {
                     /*  The operation specificationPath results in a set containing
                      * all surrounding Namespaces that are not instances of
@@ -746,13 +926,18 @@ public class ModelAccessModelInterpreter implements ModelInterpreter {
                     }
                     return result;
                 }
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.5.3.2 AssociationClass */
 
-        if (Model.getFacade().isAAssociationClass(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isAAssociationClass(subject);
+            }
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("allConnections")) {
                     /* The operation allConnections results in the set of all
                      * AssociationEnds of the AssociationClass, including all
@@ -765,13 +950,19 @@ public class ModelAccessModelInterpreter implements ModelInterpreter {
                           + "s | s.oclIsKindOf(Association))->collect("
                           + "a : Association | a.allConnections))->asSet()");
                 }
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.6.2.3 Stereotype */
 
-        if (Model.getFacade().isAStereotype(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isAStereotype(subject);
+            }
+            @SuppressWarnings("unchecked")
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("baseClass")) {
                     return new HashSet<Object>(Model.getFacade()
                             .getBaseClasses(subject));
@@ -785,13 +976,19 @@ public class ModelAccessModelInterpreter implements ModelInterpreter {
                             .getTagDefinitions(subject));
                 }
                 // stereotypeConstraint ?
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.6.2.4 TagDefinition */
 
-        if (Model.getFacade().isATagDefinition(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isATagDefinition(subject);
+            }
+            @SuppressWarnings("unchecked")
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("multiplicity")) {
                     return Model.getFacade().getMultiplicity(subject);
                 }
@@ -805,13 +1002,19 @@ public class ModelAccessModelInterpreter implements ModelInterpreter {
                 if (feature.equals("owner")) {
                     return Model.getFacade().getOwner(subject);
                 }
+                return NOT_FOUND;
             }
-        }
+        },
 
         /* 4.6.2.5 TaggedValue */
 
-        if (Model.getFacade().isATaggedValue(subject)) {
-            if (type.equals(".")) {
+        new Section() {
+            boolean isA(Object subject) {
+                return Model.getFacade().isATaggedValue(subject);
+            }
+            @SuppressWarnings("unchecked")
+            Object invoke(Object subject, String feature,
+                    Map<String, Object> vt) {
                 if (feature.equals("dataValue")) {
                     return Model.getFacade().getDataValue(subject);
                 }
@@ -822,12 +1025,87 @@ public class ModelAccessModelInterpreter implements ModelInterpreter {
                     return new HashSet<Object>(Model.getFacade()
                             .getReferenceValue(subject));
                 }
+                return NOT_FOUND;
+            }
+        },
+    };
+
+    /**
+     * The sections that apply to the instances of a Java class.
+     * All the isA methods of the Facade test the type of their argument,
+     * so this only depends on the class of the subject.
+     */
+    private static final Map<Class<?>, Section[]> SECTIONS_BY_CLASS =
+        new ConcurrentHashMap<Class<?>, Section[]>();
+
+    /**
+     * The section which defines a feature for the instances of a Java
+     * class, or {@link #NONE}.
+     */
+    private static final Map<Class<?>, Map<String, Section>> FEATURES =
+        new ConcurrentHashMap<Class<?>, Map<String, Section>>();
+
+    /**
+     * The names of the metatypes, see {@link #getBuiltInSymbol(String)}.
+     */
+    private static Set<String> metatypeNames;
+
+    /*
+     * @see org.argouml.profile.internal.ocl.ModelInterpreter#invokeFeature(java.util.Map,
+     *      java.lang.Object, java.lang.String, java.lang.String,
+     *      java.lang.Object[])
+     */
+    public Object invokeFeature(Map<String, Object> vt, Object subject,
+            String feature, String type, Object[] parameters) {
+
+        if (subject == null) {
+            subject = vt.get("self");
+        }
+        if (subject == null || !type.equals(".")) {
+            return null;
+        }
+
+        Class<?> subjectClass = subject.getClass();
+        Map<String, Section> features = FEATURES.get(subjectClass);
+        if (features == null) {
+            features = new ConcurrentHashMap<String, Section>();
+            FEATURES.put(subjectClass, features);
+        }
+        Section section = features.get(feature);
+        if (section != null) {
+            Object ret = section.invoke(subject, feature, vt);
+            return ret == NOT_FOUND ? null : ret;
+        }
+
+        // the first section that defines the feature wins, and that
+        // only depends on the name of the feature
+        for (Section s : getSections(subjectClass, subject)) {
+            Object ret = s.invoke(subject, feature, vt);
+            if (ret != NOT_FOUND) {
+                features.put(feature, s);
+                return ret;
             }
         }
+        features.put(feature, NONE);
         return null;
     }
 
-    private Object internalOcl(Object subject, Map<String, Object> vt,
+    private static Section[] getSections(Class<?> subjectClass, Object subject) {
+        Section[] sections = SECTIONS_BY_CLASS.get(subjectClass);
+        if (sections == null) {
+            List<Section> applicable = new ArrayList<Section>();
+            for (Section section : SECTIONS) {
+                if (section.isA(subject)) {
+                    applicable.add(section);
+                }
+            }
+            sections = applicable.toArray(new Section[applicable.size()]);
+            SECTIONS_BY_CLASS.put(subjectClass, sections);
+        }
+        return sections;
+    }
+
+    private static Object internalOcl(Object subject, Map<String, Object> vt,
             String ocl) {
         try {
             Object oldSelf = vt.get("self");
@@ -851,12 +1129,18 @@ public class ModelAccessModelInterpreter implements ModelInterpreter {
      * @see org.argouml.profile.internal.ocl.ModelInterpreter#getBuiltInSymbol(java.lang.String)
      */
     public Object getBuiltInSymbol(String sym) {
-        for (String name : Model.getFacade().getMetatypeNames()) {
-            if (name.equals(sym)) {
-                return new OclType(sym);
-            }
+        if (getMetatypeNames().contains(sym)) {
+            return new OclType(sym);
         }
         return null;
     }
 
+    private static synchronized Set<String> getMetatypeNames() {
+        if (metatypeNames == null) {
+            metatypeNames = new HashSet<String>(
+                    Arrays.asList(Model.getFacade().getMetatypeNames()));
+        }
+        return metatypeNames;
+    }
+
 }
@@ -115,6 +115,7 @@ import org.argouml.uml.diagram.ArgoDiagram;
 import org.argouml.uml.diagram.DiagramUtils;
 import org.argouml.uml.diagram.UMLMutableGraphSupport;
 import org.argouml.uml.diagram.ui.ActionRemoveFromDiagram;
+import org.argouml.uml.reveng.FileFingerprints;
 import org.argouml.uml.ui.ActionSaveProject;
 import org.argouml.util.ArgoFrame;
 import org.argouml.util.ThreadUtils;
@@ -990,6 +991,7 @@ public final class ProjectBrowser
      * Exit the application saving the current user settings.
      */
     public void exit() {
+        PersistenceManager.getInstance().stopAutosave();
         saveScreenConfiguration();
         Configuration.save();
         System.exit(0);
@@ -1363,9 +1365,21 @@ public final class ProjectBrowser
                 persister.addProgressListener(pmw);
             }
 
+            // Read before the project gets its new location
+            FileFingerprints fingerprints =
+                FileFingerprints.getInstance(project);
+
             project.preSave();
             persister.save(project, file);
             project.postSave();
+            pm.getRecoveryJournal().markSaved();
+
+            try {
+                fingerprints.save(project);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Could not save the fingerprints of "
+                        + "the imported files", e);
+            }
 
             ArgoEventPump.fireEvent(new ArgoStatusEvent(
                     ArgoEventTypes.STATUS_PROJECT_SAVED, this,
@@ -1549,6 +1563,28 @@ public final class ProjectBrowser
      */
     public Project loadProject2(File file, boolean showUI,
             ProgressMonitor pmw) {
+        return loadProject2(file, showUI, pmw, true);
+    }
+
+    /**
+     * Open the project put together from the recovery journal. The file is
+     * not remembered as a recent project, and the project gets back the
+     * URI it was last saved to.
+     *
+     * @param file the .uml file put together from the journal
+     * @param uri the URI the project was saved to, or null if it never was
+     * @return the recovered project or null if it could not be opened
+     */
+    public Project recoverProject(File file, URI uri) {
+        Project project = loadProject2(file, true, null, false);
+        if (project != null) {
+            PersistenceManager.getInstance().setProjectURI(uri, project);
+        }
+        return project;
+    }
+
+    private Project loadProject2(File file, boolean showUI,
+            ProgressMonitor pmw, boolean remember) {
         LOG.log(Level.INFO, "Loading project.");
 
         PersistenceManager pm = PersistenceManager.getInstance();
@@ -1627,12 +1663,15 @@ public final class ProjectBrowser
 //                    }
 //                }
 
-                // Let's save this project in the mru list
-                this.addFileSaved(file);
-                // Let's save this project as the last used one
-                // in the configuration file
-                Configuration.setString(Argo.KEY_MOST_RECENT_PROJECT_FILE,
-                        file.getCanonicalPath());
+                if (remember) {
+                    // Let's save this project in the mru list
+                    this.addFileSaved(file);
+                    // Let's save this project as the last used one
+                    // in the configuration file
+                    Configuration.setString(
+                            Argo.KEY_MOST_RECENT_PROJECT_FILE,
+                            file.getCanonicalPath());
+                }
 
                 updateStatus(
                         Translator.localize(
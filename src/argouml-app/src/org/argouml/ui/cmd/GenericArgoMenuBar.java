@@ -81,6 +81,7 @@ import org.argouml.uml.ui.ActionClassDiagram;
 import org.argouml.uml.ui.ActionCollaborationDiagram;
 import org.argouml.uml.ui.ActionDeleteModelElements;
 import org.argouml.uml.ui.ActionDeploymentDiagram;
+import org.argouml.uml.ui.ActionForceLayout;
 import org.argouml.uml.ui.ActionGenerateAll;
 import org.argouml.uml.ui.ActionGenerateProjectCode;
 import org.argouml.uml.ui.ActionGenerationSettings;
@@ -235,6 +236,8 @@ public class GenericArgoMenuBar extends JMenuBar implements
     private ActionOpenProject openAction;
     private ActionLayout layoutAction;
 
+    private ActionLayout forceLayoutAction;
+
     /**
      * The constructor.
      */
@@ -252,6 +255,8 @@ public class GenericArgoMenuBar extends JMenuBar implements
         disableableActions.add(navigateTargetBackAction);
         layoutAction = new ActionLayout();
         disableableActions.add(layoutAction);
+        forceLayoutAction = new ActionForceLayout();
+        disableableActions.add(forceLayoutAction);
 
         TargetManager.getInstance().addTargetListener(this);
         /* This next line added to solve issue 5755.
@@ -692,6 +697,7 @@ public class GenericArgoMenuBar extends JMenuBar implements
                 ShortcutMgr.ACTION_PREFERRED_SIZE);
 
         arrange.add(layoutAction);
+        arrange.add(forceLayoutAction);
 
         // This used to be deferred, but it's only 30-40 msec of work.
         initAlignMenu(align);
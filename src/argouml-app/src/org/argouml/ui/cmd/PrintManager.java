@@ -39,6 +39,7 @@
 package org.argouml.ui.cmd;
 
 import org.argouml.uml.diagram.ArgoDiagram;
+import org.argouml.uml.diagram.ArgoDiagramImpl;
 import org.argouml.uml.diagram.DiagramUtils;
 import org.tigris.gef.base.PrintAction;
 
@@ -72,6 +73,9 @@ public class PrintManager {
 
         Object target = DiagramUtils.getActiveDiagram();
         if (target instanceof ArgoDiagram) {
+            if (target instanceof ArgoDiagramImpl) {
+                ((ArgoDiagramImpl) target).validateRendering();
+            }
             printCmd.actionPerformed(null);
         }
     }
@@ -93,12 +93,10 @@ public class ProjectMemberTodoList extends AbstractProjectMember {
     public Vector<ToDoItemXMLHelper> getToDoList() {
         Vector<ToDoItemXMLHelper> out = new Vector<ToDoItemXMLHelper>();
         List<ToDoItem> tdiList = 
-            Designer.theDesigner().getToDoList().getToDoItemList();
-        synchronized (tdiList) {
-            for (ToDoItem tdi : tdiList) {
-                if (tdi != null && tdi.getPoster() instanceof Designer) {
-                    out.addElement(new ToDoItemXMLHelper(tdi));
-                }
+            Designer.theDesigner().getToDoList().getToDoItemSnapshot();
+        for (ToDoItem tdi : tdiList) {
+            if (tdi != null && tdi.getPoster() instanceof Designer) {
+                out.addElement(new ToDoItemXMLHelper(tdi));
             }
         }
         return out;
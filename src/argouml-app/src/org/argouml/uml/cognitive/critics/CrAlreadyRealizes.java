@@ -63,7 +63,7 @@ public class CrAlreadyRealizes extends CrUML {
 	addSupportedDecision(UMLDecision.INHERITANCE);
 	setKnowledgeTypes(Critic.KT_SEMANTICS, Critic.KT_PRESENTATION);
 	addTrigger("generalization");
-	addTrigger("realization");
+	addTrigger("clientDependency");
     }
 
     /*
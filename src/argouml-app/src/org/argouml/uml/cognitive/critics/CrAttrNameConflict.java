@@ -78,7 +78,7 @@ public class CrAttrNameConflict extends CrUML {
 	addSupportedDecision(UMLDecision.STORAGE);
 	addSupportedDecision(UMLDecision.NAMING);
 	setKnowledgeTypes(Critic.KT_SYNTAX);
-	addTrigger("structuralFeature");
+	addTrigger("feature");
 	addTrigger("feature_name");
     }
 
@@ -74,11 +74,11 @@ public class CrConstructorNeeded extends CrUML {
         addSupportedDecision(UMLDecision.STORAGE);
         addKnowledgeType(Critic.KT_CORRECTNESS);
 
-        // These may not actually make any difference at present (the code
-        // behind addTrigger needs more work).
-
-        addTrigger("behavioralFeature");
-        addTrigger("structuralFeature");
+        addTrigger("feature");
+        addTrigger("stereotype");
+        addTrigger("feature_ownerScope");
+        addTrigger("feature_initialValue");
+        addTrigger("feature_stereotype");
     }
 
     /**
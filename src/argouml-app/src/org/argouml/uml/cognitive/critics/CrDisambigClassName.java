@@ -71,7 +71,7 @@ public class CrDisambigClassName extends CrUML {
 	addSupportedDecision(UMLDecision.NAMING);
 	setKnowledgeTypes(Critic.KT_SYNTAX);
 	addTrigger("name");
-	addTrigger("elementOwnership");
+	addTrigger("namespace");
     }
 
     /*
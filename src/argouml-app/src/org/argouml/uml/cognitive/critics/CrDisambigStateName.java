@@ -65,7 +65,7 @@ public class CrDisambigStateName extends CrUML {
 	addSupportedDecision(UMLDecision.NAMING);
 	setKnowledgeTypes(Critic.KT_SYNTAX);
 	addTrigger("name");
-	addTrigger("parent");
+	addTrigger("container");
     }
 
     /*
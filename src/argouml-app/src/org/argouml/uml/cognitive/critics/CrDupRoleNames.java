@@ -79,9 +79,6 @@ public class CrDupRoleNames extends CrUML {
         setupHeadAndDesc();
         addSupportedDecision(UMLDecision.NAMING);
 
-        // These may not actually make any difference at present (the code
-        // behind addTrigger needs more work).
-
         addTrigger("connection");
         addTrigger("end_name");
     }
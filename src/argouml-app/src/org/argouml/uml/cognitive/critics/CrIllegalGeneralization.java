@@ -65,8 +65,8 @@ public class CrIllegalGeneralization extends CrUML {
     public CrIllegalGeneralization() {
         setupHeadAndDesc();
 	addSupportedDecision(UMLDecision.INHERITANCE);
-	addTrigger("supertype");
-	addTrigger("subtype");
+	addTrigger("generalization");
+	addTrigger("specialization");
     }
 
     /*
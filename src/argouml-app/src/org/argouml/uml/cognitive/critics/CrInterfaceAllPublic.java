@@ -66,7 +66,8 @@ public class CrInterfaceAllPublic extends CrUML {
         setupHeadAndDesc();
 	addSupportedDecision(UMLDecision.PLANNED_EXTENSIONS);
 	setKnowledgeTypes(Critic.KT_SYNTAX);
-	addTrigger("behavioralFeature");
+	addTrigger("feature");
+	addTrigger("feature_visibility");
     }
 
     /*
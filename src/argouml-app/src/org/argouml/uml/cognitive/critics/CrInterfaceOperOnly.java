@@ -66,7 +66,7 @@ public class CrInterfaceOperOnly extends CrUML {
         setupHeadAndDesc();
 	addSupportedDecision(UMLDecision.PLANNED_EXTENSIONS);
 	setKnowledgeTypes(Critic.KT_SYNTAX);
-	addTrigger("structuralFeature");
+	addTrigger("feature");
     }
 
     /*
@@ -62,7 +62,7 @@ public class CrMergeClasses extends CrUML {
         setupHeadAndDesc();
 	setPriority(ToDoItem.LOW_PRIORITY);
 	addSupportedDecision(UMLDecision.CLASS_SELECTION);
-	addTrigger("associationEnd");
+	addTrigger("association");
     }
 
 
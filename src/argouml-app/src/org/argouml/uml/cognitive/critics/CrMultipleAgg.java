@@ -82,9 +82,7 @@ public class CrMultipleAgg extends CrUML {
         addSupportedDecision(UMLDecision.CONTAINMENT);
         setKnowledgeTypes(Critic.KT_SEMANTICS);
 
-        // These may not actually make any difference at present (the code
-        // behind addTrigger needs more work).
-
+        addTrigger("connection");
         addTrigger("end_aggregation");
     }
 
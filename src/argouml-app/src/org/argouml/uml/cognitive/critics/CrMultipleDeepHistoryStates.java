@@ -73,7 +73,7 @@ public class CrMultipleDeepHistoryStates extends CrUML {
     public CrMultipleDeepHistoryStates() {
         setupHeadAndDesc();
         addSupportedDecision(UMLDecision.STATE_MACHINES);
-        addTrigger("parent");
+        addTrigger("container");
         addTrigger("kind");
     }
 
@@ -69,7 +69,7 @@ public class CrMultipleInitialStates extends CrUML {
     public CrMultipleInitialStates() {
         setupHeadAndDesc();
         addSupportedDecision(UMLDecision.STATE_MACHINES);
-        addTrigger("parent");
+        addTrigger("container");
         addTrigger("kind");
     }
 
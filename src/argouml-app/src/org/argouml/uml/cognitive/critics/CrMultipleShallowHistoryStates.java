@@ -72,7 +72,7 @@ public class CrMultipleShallowHistoryStates extends CrUML {
     public CrMultipleShallowHistoryStates() {
         setupHeadAndDesc();
         addSupportedDecision(UMLDecision.STATE_MACHINES);
-        addTrigger("parent");
+        addTrigger("container");
         addTrigger("kind");
     }
 
@@ -82,9 +82,6 @@ public class CrNWayAgg extends CrUML {
         addSupportedDecision(UMLDecision.CONTAINMENT);
         setKnowledgeTypes(Critic.KT_SEMANTICS);
 
-        // These may not actually make any difference at present (the code
-        // behind addTrigger needs more work).
-
         addTrigger("connection");
         addTrigger("end_aggregation");
     }
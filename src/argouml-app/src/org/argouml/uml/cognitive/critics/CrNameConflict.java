@@ -72,6 +72,7 @@ public class CrNameConflict extends CrUML {
         addSupportedDecision(UMLDecision.NAMING);
         setKnowledgeTypes(Critic.KT_SYNTAX);
         addTrigger("name");
+        addTrigger("ownedElement");
         addTrigger("feature_name");
     }
 
@@ -68,7 +68,7 @@ public class CrNavFromInterface extends CrUML {
      * Sets up the resource name, which will allow headline and description to
      * found for the current locale. Provides a design issue category
      * (RELATIONSHIPS) and knowledge type (SYNTAX). Adds trigger
-     * "end_navigable".
+     * "end_isNavigable".
      */
     public CrNavFromInterface() {
         setupHeadAndDesc();
@@ -78,10 +78,8 @@ public class CrNavFromInterface extends CrUML {
         addSupportedDecision(UMLDecision.RELATIONSHIPS);
         setKnowledgeTypes(Critic.KT_SYNTAX);
 
-        // This may not actually make any difference at present (the code
-        // behind addTrigger needs more work).
-
-        addTrigger("end_navigable");
+        addTrigger("connection");
+        addTrigger("end_isNavigable");
     }
 
     /**
@@ -65,7 +65,7 @@ public class CrNoAssociations extends CrUML {
         setupHeadAndDesc();
         addSupportedDecision(UMLDecision.RELATIONSHIPS);
         setKnowledgeTypes(Critic.KT_COMPLETENESS);
-        addTrigger("associationEnd");
+        addTrigger("association");
     }
 
     /**
@@ -62,7 +62,7 @@ public class CrNoInitialState extends CrUML {
     public CrNoInitialState() {
         setupHeadAndDesc();
 	addSupportedDecision(UMLDecision.STATE_MACHINES);
-	addTrigger("substate");
+	addTrigger("subvertex");
     }
 
     /*
@@ -70,7 +70,11 @@ public class CrNoInstanceVariables extends CrUML {
         setupHeadAndDesc();
 	addSupportedDecision(UMLDecision.STORAGE);
 	setKnowledgeTypes(Critic.KT_COMPLETENESS);
-	addTrigger("structuralFeature");
+	addTrigger("feature");
+	addTrigger("stereotype");
+	addTrigger("generalization");
+	addTrigger("feature_ownerScope");
+	addTrigger("feature_changeability");
     }
 
     /*
@@ -64,7 +64,10 @@ public class CrNoOperations extends CrUML {
 	setupHeadAndDesc();
 	addSupportedDecision(UMLDecision.BEHAVIOR);
 	setKnowledgeTypes(Critic.KT_COMPLETENESS);
-	addTrigger("behavioralFeature");
+	addTrigger("feature");
+	addTrigger("stereotype");
+	addTrigger("generalization");
+	addTrigger("feature_ownerScope");
     }
 
     /*
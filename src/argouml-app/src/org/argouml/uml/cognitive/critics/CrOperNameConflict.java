@@ -88,11 +88,9 @@ public class CrOperNameConflict extends CrUML {
 
         setKnowledgeTypes(Critic.KT_SYNTAX);
 
-        // These may not actually make any difference at present (the code
-        // behind addTrigger needs more work).
-
-        addTrigger("behavioralFeature");
+        addTrigger("feature");
         addTrigger("feature_name");
+        addTrigger("feature_parameter");
     }
 
 
@@ -71,7 +71,7 @@ public class CrOppEndConflict extends CrUML {
         addSupportedDecision(UMLDecision.RELATIONSHIPS);
         addSupportedDecision(UMLDecision.NAMING);
         setKnowledgeTypes(Critic.KT_SYNTAX);
-        addTrigger("associationEnd");
+        addTrigger("association");
     }
 
     /*
@@ -72,8 +72,9 @@ public class CrOppEndVsAttr extends CrUML {
         addSupportedDecision(UMLDecision.RELATIONSHIPS);
         addSupportedDecision(UMLDecision.NAMING);
         setKnowledgeTypes(Critic.KT_SYNTAX);
-        addTrigger("associationEnd");
-        addTrigger("structuralFeature");
+        addTrigger("association");
+        addTrigger("feature");
+        addTrigger("feature_name");
     }
 
     /*
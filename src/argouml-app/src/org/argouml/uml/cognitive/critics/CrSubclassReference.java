@@ -71,7 +71,7 @@ public class CrSubclassReference extends CrUML {
 	addSupportedDecision(UMLDecision.PLANNED_EXTENSIONS);
 	setKnowledgeTypes(Critic.KT_SEMANTICS);
 	addTrigger("specialization");
-	addTrigger("associationEnd");
+	addTrigger("association");
     }
 
     /*
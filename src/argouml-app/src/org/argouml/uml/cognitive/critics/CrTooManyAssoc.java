@@ -62,7 +62,7 @@ public class CrTooManyAssoc extends AbstractCrTooMany {
         setupHeadAndDesc();
 	addSupportedDecision(UMLDecision.RELATIONSHIPS);
 	setThreshold(ASSOCIATIONS_THRESHOLD);
-	addTrigger("associationEnd");
+	addTrigger("association");
     }
 
     /*
@@ -66,7 +66,7 @@ public class CrTooManyAttr extends AbstractCrTooMany {
         setupHeadAndDesc();
 	addSupportedDecision(UMLDecision.STORAGE);
 	setThreshold(ATTRIBUTES_THRESHOLD);
-	addTrigger("structuralFeature");
+	addTrigger("feature");
     }
 
     /*
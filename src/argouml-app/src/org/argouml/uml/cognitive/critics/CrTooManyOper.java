@@ -66,7 +66,7 @@ public class CrTooManyOper extends AbstractCrTooMany {
         setupHeadAndDesc();
 	addSupportedDecision(UMLDecision.METHODS);
 	setThreshold(OPERATIONS_THRESHOLD);
-	addTrigger("behavioralFeature");
+	addTrigger("feature");
     }
 
     /*
@@ -64,7 +64,7 @@ public class CrTooManyStates extends AbstractCrTooMany {
         setupHeadAndDesc();
 	addSupportedDecision(UMLDecision.STATE_MACHINES);
 	setThreshold(STATES_THRESHOLD);
-	addTrigger("substate");
+	addTrigger("subvertex");
     }
 
     /*
@@ -72,7 +72,7 @@ public class CrUnconventionalAttrName extends AbstractCrUnconventionalName {
         setupHeadAndDesc();
 	addSupportedDecision(UMLDecision.NAMING);
 	setKnowledgeTypes(Critic.KT_SYNTAX);
-	addTrigger("feature_name");
+	addTrigger("name");
     }
 
 
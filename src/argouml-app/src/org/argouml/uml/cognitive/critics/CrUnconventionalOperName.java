@@ -62,7 +62,7 @@ public class CrUnconventionalOperName extends AbstractCrUnconventionalName {
         setupHeadAndDesc();
 	addSupportedDecision(UMLDecision.NAMING);
 	setKnowledgeTypes(Critic.KT_SYNTAX);
-	addTrigger("feature_name");
+	addTrigger("name");
     }
 
     /*
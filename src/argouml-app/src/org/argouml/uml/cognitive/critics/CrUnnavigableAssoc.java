@@ -60,7 +60,8 @@ public class CrUnnavigableAssoc extends CrUML {
     public CrUnnavigableAssoc() {
         setupHeadAndDesc();
 	addSupportedDecision(UMLDecision.RELATIONSHIPS);
-	addTrigger("end_navigable");
+	addTrigger("connection");
+	addTrigger("end_isNavigable");
     }
 
     /*
@@ -64,7 +64,7 @@ public class CrUselessInterface extends CrUML {
 	addSupportedDecision(UMLDecision.INHERITANCE);
 	addSupportedGoal(Goal.getUnspecifiedGoal());
 	setKnowledgeTypes(Critic.KT_COMPLETENESS);
-	addTrigger("realization");
+	addTrigger("supplierDependency");
     }
 
     /*
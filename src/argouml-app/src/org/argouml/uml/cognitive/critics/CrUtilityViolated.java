@@ -67,7 +67,10 @@ public class CrUtilityViolated extends CrUML {
         addSupportedDecision(UMLDecision.STEREOTYPES);
         addSupportedDecision(UMLDecision.CLASS_SELECTION);
         addTrigger("stereotype");
-        addTrigger("behavioralFeature");
+        addTrigger("feature");
+        addTrigger("generalization");
+        addTrigger("clientDependency");
+        addTrigger("feature_ownerScope");
     }
 
     /*
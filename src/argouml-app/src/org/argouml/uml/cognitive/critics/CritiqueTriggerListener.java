@@ -0,0 +1,228 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.uml.cognitive.critics;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.Set;
+
+import org.argouml.cognitive.Agency;
+import org.argouml.cognitive.Critic;
+import org.argouml.cognitive.Designer;
+import org.argouml.model.InvalidElementException;
+import org.argouml.model.Model;
+
+/**
+ * Hands the changes of model elements to the Designer so that the critics
+ * whose triggers name the changed property are reapplied.<p>
+ *
+ * The listener is registered with the event pump for each metatype which
+ * has critics, and only for the properties these critics declare as
+ * triggers.  Metatypes with a critic without triggers get all their
+ * changes.  Critics registered later are picked up when the Agency
+ * announces them.  Changes of read-only elements, i.e. those of profiles,
+ * are ignored.<p>
+ *
+ * Some critics read properties of parts of the element they critique, for
+ * example the names of the features of a classifier or the aggregation of
+ * the ends of an association.  They declare derived triggers named
+ * "feature_" or "end_" followed by the property of the part, e.g.
+ * "feature_name" or "end_aggregation".  A change of such a property of a
+ * feature or association end is passed on to the owning classifier or
+ * association under the derived trigger name.
+ *
+ * @see org.argouml.cognitive.Critic#addTrigger(String)
+ */
+public class CritiqueTriggerListener
+    implements PropertyChangeListener, Observer {
+
+    private static final String FEATURE_PREFIX = "feature_";
+
+    private static final String END_PREFIX = "end_";
+
+    private final Designer designer;
+
+    /**
+     * The properties the listener is registered for, by metatype.  A null
+     * value means all properties.
+     */
+    private final Map<Object, Set<String>> registered =
+        new HashMap<Object, Set<String>>();
+
+    /**
+     * The properties of features passed on to their owners.
+     */
+    private volatile Set<String> featureProperties =
+        new HashSet<String>();
+
+    /**
+     * The properties of association ends passed on to their associations.
+     */
+    private volatile Set<String> endProperties = new HashSet<String>();
+
+    /**
+     * Construct a listener.  Call {@link #start()} to register it.
+     *
+     * @param dsgr the designer to pass the changes to
+     */
+    public CritiqueTriggerListener(Designer dsgr) {
+        designer = dsgr;
+    }
+
+    /**
+     * Register with the event pump for the triggers of the critics
+     * registered so far, and with the Agency to learn about later ones.
+     */
+    public void start() {
+        Agency.addStaticObserver(this);
+        update(null, null);
+    }
+
+    /**
+     * Unregister from the event pump and the Agency.
+     */
+    public synchronized void stop() {
+        Agency.removeStaticObserver(this);
+        for (Map.Entry<Object, Set<String>> entry : registered.entrySet()) {
+            if (entry.getValue() == null) {
+                Model.getPump().removeClassModelEventListener(this,
+                        entry.getKey(), (String[]) null);
+            } else {
+                for (String property : entry.getValue()) {
+                    Model.getPump().removeClassModelEventListener(this,
+                            entry.getKey(), new String[] {property});
+                }
+            }
+        }
+        registered.clear();
+    }
+
+    /**
+     * Called by the Agency when a critic has been registered.
+     *
+     * @param o the Agency
+     * @param arg the critic
+     * @see java.util.Observer#update(java.util.Observable, java.lang.Object)
+     */
+    public synchronized void update(Observable o, Object arg) {
+        Collection<?> metaTypes = Model.getMetaTypes().getAllMetaTypes();
+        Set<String> features = new HashSet<String>(featureProperties);
+        Set<String> ends = new HashSet<String>(endProperties);
+        for (Class<?> dmClass : Agency.getCriticizedClasses()) {
+            if (!metaTypes.contains(dmClass)) {
+                // Diagrams and other design materials outside the model
+                continue;
+            }
+            for (Critic critic : Agency.criticsForClass(dmClass)) {
+                Set<String> triggers = critic.getTriggers();
+                if (triggers.isEmpty()) {
+                    register(dmClass, null);
+                }
+                for (String trigger : triggers) {
+                    if (trigger.startsWith(FEATURE_PREFIX)) {
+                        String property =
+                            trigger.substring(FEATURE_PREFIX.length());
+                        features.add(property);
+                        register(Model.getMetaTypes().getFeature(), property);
+                    } else if (trigger.startsWith(END_PREFIX)) {
+                        String property =
+                            trigger.substring(END_PREFIX.length());
+                        ends.add(property);
+                        register(Model.getMetaTypes().getAssociationEnd(),
+                                property);
+                    } else {
+                        register(dmClass, trigger);
+                    }
+                }
+            }
+        }
+        featureProperties = features;
+        endProperties = ends;
+    }
+
+    /**
+     * Register for a property of a metatype unless already registered.
+     *
+     * @param metaType the metatype
+     * @param property the property, or null for all
+     */
+    private void register(Object metaType, String property) {
+        if (registered.containsKey(metaType)
+                && registered.get(metaType) == null) {
+            return;
+        }
+        if (property == null) {
+            registered.put(metaType, null);
+            Model.getPump().addClassModelEventListener(this, metaType,
+                    (String[]) null);
+            return;
+        }
+        Set<String> properties = registered.get(metaType);
+        if (properties == null) {
+            properties = new HashSet<String>();
+            registered.put(metaType, properties);
+        }
+        if (properties.add(property)) {
+            Model.getPump().addClassModelEventListener(this, metaType,
+                    new String[] {property});
+        }
+    }
+
+    /*
+     * @see java.beans.PropertyChangeListener#propertyChange(java.beans.PropertyChangeEvent)
+     */
+    public void propertyChange(PropertyChangeEvent pce) {
+        Object source = pce.getSource();
+        String property = pce.getPropertyName();
+        if ("remove".equals(property)) {
+            // The Designer doesn't critique deleted elements
+            return;
+        }
+        try {
+            if (Model.getModelManagementHelper().isReadOnly(source)) {
+                return;
+            }
+            critiqueASAP(source, property);
+            if (featureProperties.contains(property)
+                    && Model.getFacade().isAFeature(source)) {
+                Object owner = Model.getFacade().getOwner(source);
+                if (owner != null) {
+                    critiqueASAP(owner, FEATURE_PREFIX + property);
+                }
+            } else if (endProperties.contains(property)
+                    && Model.getFacade().isAAssociationEnd(source)) {
+                critiqueASAP(Model.getFacade().getAssociation(source),
+                        END_PREFIX + property);
+            }
+        } catch (InvalidElementException e) {
+            // Deleted in the meantime, the critics will skip it anyway
+        }
+    }
+
+    /**
+     * Pass a change on to the Designer.
+     *
+     * @param dm the changed design material
+     * @param reason the changed property or derived trigger
+     */
+    void critiqueASAP(Object dm, String reason) {
+        designer.critiqueASAP(dm, reason);
+    }
+}
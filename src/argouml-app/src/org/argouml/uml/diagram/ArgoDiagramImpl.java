@@ -116,6 +116,17 @@ public abstract class ArgoDiagramImpl extends Diagram
 
     private DiagramSettings settings;
 
+    /**
+     * The number of changes to the global rendering settings seen by this
+     * diagram.
+     */
+    private int renderingEpoch;
+
+    /**
+     * The value of renderingEpoch when the diagram was last re-rendered.
+     */
+    private int renderedEpoch;
+
     private static final Logger LOG =
         Logger.getLogger(ArgoDiagramImpl.class.getName());
 
@@ -238,6 +249,19 @@ public abstract class ArgoDiagramImpl extends Diagram
     }
 
 
+    /**
+     * Set the layer, telling any listeners for the "layer" property.
+     *
+     * @param layer the new layer
+     * @see org.tigris.gef.base.Diagram#setLayer(LayerPerspective)
+     */
+    @Override
+    protected void setLayer(LayerPerspective layer) {
+        LayerPerspective oldLayer = getLayer();
+        super.setLayer(layer);
+        firePropertyChange("layer", oldLayer, layer);
+    }
+
     public Fig getContainingFig(Object obj) {
         Fig fig = super.presentationFor(obj);
         if (fig == null && Model.getFacade().isAUMLElement(obj)) {
@@ -642,7 +666,39 @@ public abstract class ArgoDiagramImpl extends Diagram
      * @see org.argouml.application.events.ArgoDiagramAppearanceEventListener#diagramFontChanged(org.argouml.application.events.ArgoDiagramAppearanceEvent)
      */
     public void diagramFontChanged(ArgoDiagramAppearanceEvent e) {
-        renderingChanged();
+        invalidateRendering();
+    }
+
+    /**
+     * Record a change of the global rendering settings. Only a diagram
+     * which is shown is re-rendered at once, the others wait until
+     * {@link #validateRendering()} is called. Re-rendering all the diagrams
+     * of a large project would block the user interface for a long time.
+     */
+    private void invalidateRendering() {
+        renderingEpoch++;
+        if (isShown()) {
+            renderingChanged();
+        }
+    }
+
+    /**
+     * @return true if the diagram is shown in an editor
+     */
+    public boolean isShown() {
+        return !getLayer().getEditors().isEmpty();
+    }
+
+    /**
+     * Re-render the diagram if the notation or the diagram appearance
+     * settings have changed since it was last rendered. Diagrams which are
+     * not shown don't re-render themselves when the settings change, so
+     * this has to be called before such a diagram is displayed or printed.
+     */
+    public void validateRendering() {
+        if (renderedEpoch != renderingEpoch) {
+            renderingChanged();
+        }
     }
 
     /**
@@ -652,6 +708,7 @@ public abstract class ArgoDiagramImpl extends Diagram
      * re-rendered twice
      */
     public void renderingChanged() {
+        renderedEpoch = renderingEpoch;
         for (Object fig : getLayer().getContents()) {
             try {
                 // This should always be true, but just in case...
@@ -669,7 +726,7 @@ public abstract class ArgoDiagramImpl extends Diagram
     }
 
     public void notationChanged(ArgoNotationEvent e) {
-        renderingChanged();
+        invalidateRendering();
     }
 
     public void notationAdded(ArgoNotationEvent e) {
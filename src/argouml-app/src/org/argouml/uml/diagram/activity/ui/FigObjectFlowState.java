@@ -280,6 +280,17 @@ public class FigObjectFlowState extends FigNodeModelElement {
         firePropChange("bounds", oldBounds, getBounds());
     }
 
+    /*
+     * @see org.argouml.uml.diagram.ui.FigNodeModelElement#invalidateNotationTexts()
+     */
+    @Override
+    protected void invalidateNotationTexts() {
+        super.invalidateNotationTexts();
+        if (notationProviderState != null) {
+            notationProviderState.invalidate();
+        }
+    }
+
     /*
      * @see org.argouml.uml.diagram.ui.FigNodeModelElement#renderingChanged()
      */
@@ -296,7 +307,7 @@ public class FigObjectFlowState extends FigNodeModelElement {
      */
     private void updateStateText() {
         if (isReadyToEdit()) {
-            state.setText(notationProviderState.toString(getOwner(), 
+            state.setText(notationProviderState.render(getOwner(), 
                     getNotationSettings()));
         }
     }
@@ -0,0 +1,403 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.uml.diagram.layout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lays out a graph by simulating forces, in the way of Fruchterman and
+ * Reingold: linked nodes attract each other, nodes which are close repel
+ * each other, and the distance a node may move shrinks with every
+ * iteration.<p>
+ *
+ * The repulsion is only computed between nodes in neighbouring cells of a
+ * grid, so that an iteration takes time proportional to the number of
+ * nodes and edges. When the simulation is done the remaining overlaps of
+ * the boxes are pushed apart. The layout does not depend on the old
+ * locations of the nodes and gives the same result every time.
+ */
+public class ForceDirectedLayout {
+
+    private static final int ITERATIONS = 150;
+
+    private static final int OVERLAP_PASSES = 30;
+
+    /**
+     * The strength of the pull towards the center, which keeps unlinked
+     * parts of the graph from drifting apart.
+     */
+    private static final double GRAVITY = 0.02;
+
+    /**
+     * The area of the layout in relation to the area of the boxes and the
+     * gaps around them.
+     */
+    private static final double SPREAD = 1.5;
+
+    private final int hGap;
+
+    private final int vGap;
+
+    /**
+     * @param horizontalGap the horizontal gap to leave between nodes
+     * @param verticalGap the vertical gap to leave between nodes
+     */
+    public ForceDirectedLayout(int horizontalGap, int verticalGap) {
+        hGap = horizontalGap;
+        vGap = verticalGap;
+    }
+
+    /**
+     * Lay out a graph, setting the locations of all its nodes.
+     *
+     * @param graph the graph
+     */
+    public void layout(LayoutGraph graph) {
+        int n = graph.getNodeCount();
+        if (n == 0) {
+            return;
+        }
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double size = 0;
+        for (int i = 0; i < n; i++) {
+            size += Math.hypot(graph.getWidth(i), graph.getHeight(i));
+        }
+        // the ideal distance between the centers of linked nodes
+        double k = size / n + (hGap + vGap) / 2.0;
+
+        // start on a grid, in the order of the nodes
+        int columns = (int) Math.ceil(Math.sqrt(n));
+        for (int i = 0; i < n; i++) {
+            x[i] = (i % columns) * k + (i / columns % 2) * k / 3;
+            y[i] = (i / columns) * k;
+        }
+
+        double[] dx = new double[n];
+        double[] dy = new double[n];
+        double temperature = k * columns / 4;
+        double cooling = temperature / ITERATIONS;
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            Arrays.fill(dx, 0);
+            Arrays.fill(dy, 0);
+            repel(x, y, dx, dy, k);
+            for (int e = 0; e < graph.getEdgeCount(); e++) {
+                int s = graph.getSource(e);
+                int t = graph.getTarget(e);
+                if (s == t) {
+                    continue;
+                }
+                double ex = x[s] - x[t];
+                double ey = y[s] - y[t];
+                double d = Math.max(1, Math.hypot(ex, ey));
+                double force = d / k;
+                dx[s] -= ex * force;
+                dy[s] -= ey * force;
+                dx[t] += ex * force;
+                dy[t] += ey * force;
+            }
+            double cx = 0;
+            double cy = 0;
+            for (int i = 0; i < n; i++) {
+                cx += x[i];
+                cy += y[i];
+            }
+            cx /= n;
+            cy /= n;
+            for (int i = 0; i < n; i++) {
+                dx[i] += (cx - x[i]) * GRAVITY;
+                dy[i] += (cy - y[i]) * GRAVITY;
+                double d = Math.hypot(dx[i], dy[i]);
+                if (d > temperature) {
+                    dx[i] *= temperature / d;
+                    dy[i] *= temperature / d;
+                }
+                x[i] += dx[i];
+                y[i] += dy[i];
+            }
+            temperature = Math.max(1, temperature - cooling);
+        }
+        spread(graph, x, y);
+        removeOverlaps(graph, x, y);
+        placeRemaining(graph, x, y);
+
+        double left = Double.MAX_VALUE;
+        double top = Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            left = Math.min(left, x[i] - graph.getWidth(i) / 2.0);
+            top = Math.min(top, y[i] - graph.getHeight(i) / 2.0);
+        }
+        for (int i = 0; i < n; i++) {
+            graph.setLocation(i,
+                    (int) Math.round(x[i] - graph.getWidth(i) / 2.0 - left)
+                        + hGap / 2,
+                    (int) Math.round(y[i] - graph.getHeight(i) / 2.0 - top)
+                        + vGap / 2);
+        }
+    }
+
+    /**
+     * Add the repulsive forces between the nodes which are closer than
+     * twice the ideal distance.
+     */
+    private static void repel(double[] x, double[] y, double[] dx,
+            double[] dy, double k) {
+        double cell = 2 * k;
+        Map<Long, List<Integer>> grid = makeGrid(x, y, cell);
+        for (int i = 0; i < x.length; i++) {
+            long gx = (long) Math.floor(x[i] / cell);
+            long gy = (long) Math.floor(y[i] / cell);
+            for (long cx = gx - 1; cx <= gx + 1; cx++) {
+                for (long cy = gy - 1; cy <= gy + 1; cy++) {
+                    List<Integer> others = grid.get(key(cx, cy));
+                    if (others == null) {
+                        continue;
+                    }
+                    for (int j : others) {
+                        if (j == i) {
+                            continue;
+                        }
+                        double ex = x[i] - x[j];
+                        double ey = y[i] - y[j];
+                        double d2 = ex * ex + ey * ey;
+                        if (d2 > cell * cell) {
+                            continue;
+                        }
+                        if (d2 < 1) {
+                            // same place: push apart in a fixed direction
+                            ex = i < j ? -1 : 1;
+                            ey = 0;
+                            d2 = 1;
+                        }
+                        double force = k * k / d2;
+                        dx[i] += ex * force;
+                        dy[i] += ey * force;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Scale the layout up if its area is too small for the boxes and the
+     * gaps between them, which the pull towards the center can cause in
+     * large graphs. Pushing the boxes apart one by one would take many
+     * passes then.
+     */
+    private void spread(LayoutGraph graph, double[] x, double[] y) {
+        double needed = 0;
+        double minX = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < x.length; i++) {
+            needed += (double) (graph.getWidth(i) + hGap)
+                * (graph.getHeight(i) + vGap);
+            minX = Math.min(minX, x[i]);
+            maxX = Math.max(maxX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        double area = Math.max(1, maxX - minX) * Math.max(1, maxY - minY);
+        // boxes don't fill the plane, leave some air
+        double scale = Math.sqrt(needed * SPREAD / area);
+        if (scale > 1) {
+            for (int i = 0; i < x.length; i++) {
+                x[i] *= scale;
+                y[i] *= scale;
+            }
+        }
+    }
+
+    /**
+     * Push apart the boxes which still overlap, along the axis on which
+     * they overlap least.
+     */
+    private void removeOverlaps(LayoutGraph graph, double[] x, double[] y) {
+        int n = x.length;
+        double cell = 0;
+        for (int i = 0; i < n; i++) {
+            cell = Math.max(cell, Math.max(graph.getWidth(i) + hGap,
+                    graph.getHeight(i) + vGap));
+        }
+        for (int pass = 0; pass < OVERLAP_PASSES; pass++) {
+            boolean moved = false;
+            Map<Long, List<Integer>> grid = makeGrid(x, y, cell);
+            for (int i = 0; i < n; i++) {
+                long gx = (long) Math.floor(x[i] / cell);
+                long gy = (long) Math.floor(y[i] / cell);
+                for (long cx = gx - 1; cx <= gx + 1; cx++) {
+                    for (long cy = gy - 1; cy <= gy + 1; cy++) {
+                        List<Integer> others = grid.get(key(cx, cy));
+                        if (others == null) {
+                            continue;
+                        }
+                        for (int j : others) {
+                            if (j > i && separate(graph, x, y, i, j)) {
+                                moved = true;
+                            }
+                        }
+                    }
+                }
+            }
+            if (!moved) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Place the nodes one by one, from the center outwards, moving each
+     * node which still overlaps one placed before it to the nearest free
+     * place. Pushing pairs of nodes apart can go on forever in crowded
+     * areas, this always ends without overlaps.
+     */
+    private void placeRemaining(final LayoutGraph graph, final double[] x,
+            final double[] y) {
+        int n = x.length;
+        double sx = 0;
+        double sy = 0;
+        double cell = 0;
+        for (int i = 0; i < n; i++) {
+            sx += x[i];
+            sy += y[i];
+            cell = Math.max(cell, Math.max(graph.getWidth(i) + hGap,
+                    graph.getHeight(i) + vGap));
+        }
+        final double cx = sx / n;
+        final double cy = sy / n;
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer n1, Integer n2) {
+                return Double.compare(
+                        Math.hypot(x[n1] - cx, y[n1] - cy),
+                        Math.hypot(x[n2] - cx, y[n2] - cy));
+            }
+        });
+        double step = (hGap + vGap) / 4.0 + 1;
+        Map<Long, List<Integer>> placed = new HashMap<Long, List<Integer>>();
+        for (int node : order) {
+            double px = x[node];
+            double py = y[node];
+            for (int ring = 1; overlapsPlaced(graph, x, y, placed, cell,
+                    node); ring++) {
+                // try the points of a ring around the original place
+                int points = 8 * ring;
+                for (int p = 0; p < points; p++) {
+                    double angle = 2 * Math.PI * p / points;
+                    x[node] = px + Math.cos(angle) * ring * step;
+                    y[node] = py + Math.sin(angle) * ring * step;
+                    if (!overlapsPlaced(graph, x, y, placed, cell, node)) {
+                        break;
+                    }
+                }
+            }
+            Long key = key((long) Math.floor(x[node] / cell),
+                    (long) Math.floor(y[node] / cell));
+            List<Integer> nodes = placed.get(key);
+            if (nodes == null) {
+                nodes = new ArrayList<Integer>();
+                placed.put(key, nodes);
+            }
+            nodes.add(node);
+        }
+    }
+
+    private boolean overlapsPlaced(LayoutGraph graph, double[] x,
+            double[] y, Map<Long, List<Integer>> placed, double cell,
+            int node) {
+        long gx = (long) Math.floor(x[node] / cell);
+        long gy = (long) Math.floor(y[node] / cell);
+        for (long cx = gx - 1; cx <= gx + 1; cx++) {
+            for (long cy = gy - 1; cy <= gy + 1; cy++) {
+                List<Integer> others = placed.get(key(cx, cy));
+                if (others == null) {
+                    continue;
+                }
+                for (int other : others) {
+                    if (overlap(graph, x, y, node, other)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the boxes of two nodes, with half the gaps around
+     *         them, overlap
+     */
+    private boolean overlap(LayoutGraph graph, double[] x, double[] y,
+            int i, int j) {
+        return Math.abs(x[i] - x[j])
+                < (graph.getWidth(i) + graph.getWidth(j)) / 2.0 + hGap / 2
+            && Math.abs(y[i] - y[j])
+                < (graph.getHeight(i) + graph.getHeight(j)) / 2.0 + vGap / 2;
+    }
+
+    /**
+     * Move two nodes apart if their boxes, including the gaps, overlap.
+     *
+     * @return true if the nodes were moved
+     */
+    private boolean separate(LayoutGraph graph, double[] x, double[] y,
+            int i, int j) {
+        double ox = (graph.getWidth(i) + graph.getWidth(j)) / 2.0 + hGap
+            - Math.abs(x[i] - x[j]);
+        double oy = (graph.getHeight(i) + graph.getHeight(j)) / 2.0 + vGap
+            - Math.abs(y[i] - y[j]);
+        if (ox <= 0 || oy <= 0) {
+            return false;
+        }
+        if (ox < oy) {
+            double shift = (ox / 2 + 1) * (x[i] <= x[j] ? -1 : 1);
+            x[i] += shift;
+            x[j] -= shift;
+        } else {
+            double shift = (oy / 2 + 1) * (y[i] <= y[j] ? -1 : 1);
+            y[i] += shift;
+            y[j] -= shift;
+        }
+        return true;
+    }
+
+    private static Map<Long, List<Integer>> makeGrid(double[] x, double[] y,
+            double cell) {
+        Map<Long, List<Integer>> grid = new HashMap<Long, List<Integer>>();
+        for (int i = 0; i < x.length; i++) {
+            Long key = key((long) Math.floor(x[i] / cell),
+                    (long) Math.floor(y[i] / cell));
+            List<Integer> nodes = grid.get(key);
+            if (nodes == null) {
+                nodes = new ArrayList<Integer>();
+                grid.put(key, nodes);
+            }
+            nodes.add(i);
+        }
+        return grid;
+    }
+
+    private static Long key(long gx, long gy) {
+        return Long.valueOf((gx << 32) ^ (gy & 0xffffffffL));
+    }
+}
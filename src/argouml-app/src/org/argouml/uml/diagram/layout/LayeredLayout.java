@@ -0,0 +1,712 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.uml.diagram.layout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lays out a graph in layers, in the way of Sugiyama et al.: the sources
+ * of the edges are placed in layers above their targets, the order of the
+ * nodes in each layer is chosen to reduce the number of edge crossings and
+ * the nodes are then moved sideways towards the nodes they are linked to.
+ * <p>
+ *
+ * The steps are:
+ * <ol>
+ * <li>Edges which close a cycle are reversed.
+ * <li>Each node is put one layer below the lowest of its sources, nodes
+ * without sources one layer above the highest of their targets.
+ * <li>Edges spanning several layers are split by dummy nodes, one per
+ * layer.
+ * <li>The layers are sorted by the barycenter of the neighbours in the
+ * layer above resp. below, sweeping down and up until the number of
+ * crossings stops decreasing.
+ * <li>The horizontal positions are set as close to the average position of
+ * the neighbours as the order and the gaps between the nodes allow.
+ * </ol>
+ *
+ * Every connected part of the graph is laid out on its own, and the parts
+ * are then placed in rows which are no wider than a given width unless
+ * a single part is wider. Nodes without edges come last.
+ */
+public class LayeredLayout {
+
+    /**
+     * The maximum number of down and up sweeps of the crossing reduction.
+     */
+    private static final int MAX_SWEEPS = 24;
+
+    /**
+     * The number of sweeps without fewer crossings after which the
+     * crossing reduction gives up.
+     */
+    private static final int MAX_FAILED_SWEEPS = 4;
+
+    /**
+     * The number of passes which move the nodes towards their neighbours.
+     */
+    private static final int PLACEMENT_PASSES = 8;
+
+    private final int hGap;
+
+    private final int vGap;
+
+    private final int maxRowWidth;
+
+    /**
+     * A connected part of the graph after it has been laid out, in its own
+     * coordinates.
+     */
+    private static class Part {
+        private final List<Integer> nodes;
+        private int width;
+        private int height;
+
+        Part(List<Integer> theNodes) {
+            nodes = theNodes;
+        }
+    }
+
+    /**
+     * @param horizontalGap the gap between the nodes of a layer
+     * @param verticalGap the gap between the layers
+     * @param maxWidth the width up to which the connected parts of the
+     *        graph are placed next to each other
+     */
+    public LayeredLayout(int horizontalGap, int verticalGap, int maxWidth) {
+        hGap = horizontalGap;
+        vGap = verticalGap;
+        maxRowWidth = maxWidth;
+    }
+
+    /**
+     * Lay out a graph, setting the locations of all its nodes.
+     *
+     * @param graph the graph
+     */
+    public void layout(LayoutGraph graph) {
+        List<Part> parts = new ArrayList<Part>();
+        for (List<Integer> nodes : findParts(graph)) {
+            Part part = new Part(nodes);
+            if (nodes.size() == 1) {
+                int node = nodes.get(0);
+                graph.setLocation(node, 0, 0);
+                part.width = graph.getWidth(node);
+                part.height = graph.getHeight(node);
+            } else {
+                layoutPart(graph, part);
+            }
+            parts.add(part);
+        }
+        // large parts first, single nodes last; the sort is stable
+        Collections.sort(parts, new Comparator<Part>() {
+            public int compare(Part p1, Part p2) {
+                return p2.nodes.size() - p1.nodes.size();
+            }
+        });
+        packParts(graph, parts);
+    }
+
+    /**
+     * Place the parts next to each other in rows.
+     *
+     * @param graph the graph
+     * @param parts the laid out parts
+     */
+    private void packParts(LayoutGraph graph, List<Part> parts) {
+        int rowWidth = maxRowWidth;
+        for (Part part : parts) {
+            rowWidth = Math.max(rowWidth, part.width);
+        }
+        int left = hGap / 2;
+        int x = left;
+        int y = vGap / 2;
+        int rowHeight = 0;
+        for (Part part : parts) {
+            if (x > left && x + part.width > left + rowWidth) {
+                x = left;
+                y += rowHeight + vGap;
+                rowHeight = 0;
+            }
+            for (int node : part.nodes) {
+                graph.setLocation(node, graph.getX(node) + x,
+                        graph.getY(node) + y);
+            }
+            x += part.width + hGap;
+            rowHeight = Math.max(rowHeight, part.height);
+        }
+    }
+
+    /**
+     * @param graph the graph
+     * @return the nodes of each connected part of the graph, in the order
+     *         of their first node
+     */
+    private static List<List<Integer>> findParts(LayoutGraph graph) {
+        int n = graph.getNodeCount();
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+        for (int e = 0; e < graph.getEdgeCount(); e++) {
+            int r1 = root(parent, graph.getSource(e));
+            int r2 = root(parent, graph.getTarget(e));
+            if (r1 != r2) {
+                parent[Math.max(r1, r2)] = Math.min(r1, r2);
+            }
+        }
+        List<List<Integer>> parts = new ArrayList<List<Integer>>();
+        int[] partOf = new int[n];
+        for (int i = 0; i < n; i++) {
+            int r = root(parent, i);
+            if (r == i) {
+                partOf[i] = parts.size();
+                parts.add(new ArrayList<Integer>());
+            } else {
+                partOf[i] = partOf[r];
+            }
+            parts.get(partOf[i]).add(i);
+        }
+        return parts;
+    }
+
+    private static int root(int[] parent, int node) {
+        int r = node;
+        while (parent[r] != r) {
+            r = parent[r];
+        }
+        while (parent[node] != r) {
+            int next = parent[node];
+            parent[node] = r;
+            node = next;
+        }
+        return r;
+    }
+
+    /**
+     * Lay out one connected part of the graph, with its upper left corner
+     * at the origin.
+     *
+     * @param graph the graph
+     * @param part the part
+     */
+    private void layoutPart(LayoutGraph graph, Part part) {
+        Layers layers = new Layers(graph, part.nodes);
+        layers.reduceCrossings();
+        layers.placeNodes();
+        part.width = 0;
+        part.height = 0;
+        for (int i = 0; i < part.nodes.size(); i++) {
+            int node = part.nodes.get(i);
+            graph.setLocation(node, layers.getLeft(i), layers.getTop(i));
+            part.width = Math.max(part.width,
+                    graph.getX(node) + graph.getWidth(node));
+            part.height = Math.max(part.height,
+                    graph.getY(node) + graph.getHeight(node));
+        }
+    }
+
+    /**
+     * The layers of a connected part of the graph, including the dummy
+     * nodes. The nodes of the part are numbered from 0, the dummy nodes
+     * follow them.
+     */
+    private class Layers {
+
+        private final int realCount;
+
+        private final List<Integer> widths = new ArrayList<Integer>();
+
+        private final List<Integer> layerOf = new ArrayList<Integer>();
+
+        private final List<List<Integer>> ups = new ArrayList<List<Integer>>();
+
+        private final List<List<Integer>> downs =
+            new ArrayList<List<Integer>>();
+
+        private List<List<Integer>> layers;
+
+        private int[] position;
+
+        private double[] center;
+
+        private int[] tops;
+
+        Layers(LayoutGraph graph, List<Integer> nodes) {
+            realCount = nodes.size();
+            int[] local = new int[graph.getNodeCount()];
+            for (int i = 0; i < realCount; i++) {
+                local[nodes.get(i)] = i;
+            }
+            List<List<Integer>> out = new ArrayList<List<Integer>>();
+            for (int i = 0; i < realCount; i++) {
+                out.add(new ArrayList<Integer>());
+            }
+            Set<Integer> inPart = new HashSet<Integer>(nodes);
+            for (int e = 0; e < graph.getEdgeCount(); e++) {
+                int s = graph.getSource(e);
+                int t = graph.getTarget(e);
+                if (s != t && inPart.contains(s)) {
+                    out.get(local[s]).add(local[t]);
+                }
+            }
+            List<int[]> edges = removeCycles(out);
+            int[] layer = assignLayers(edges);
+
+            for (int i = 0; i < realCount; i++) {
+                widths.add(graph.getWidth(nodes.get(i)));
+                layerOf.add(layer[i]);
+                ups.add(new ArrayList<Integer>());
+                downs.add(new ArrayList<Integer>());
+            }
+            for (int[] edge : edges) {
+                int from = edge[0];
+                for (int l = layer[edge[0]] + 1; l < layer[edge[1]]; l++) {
+                    int dummy = widths.size();
+                    widths.add(0);
+                    layerOf.add(l);
+                    ups.add(new ArrayList<Integer>());
+                    downs.add(new ArrayList<Integer>());
+                    link(from, dummy);
+                    from = dummy;
+                }
+                link(from, edge[1]);
+            }
+            int layerCount = 0;
+            for (int l : layer) {
+                layerCount = Math.max(layerCount, l + 1);
+            }
+            initLayers(layerCount);
+
+            tops = new int[layerCount];
+            int[] heights = new int[layerCount];
+            for (int i = 0; i < realCount; i++) {
+                heights[layer[i]] = Math.max(heights[layer[i]],
+                        graph.getHeight(nodes.get(i)));
+            }
+            for (int l = 1; l < layerCount; l++) {
+                tops[l] = tops[l - 1] + heights[l - 1] + vGap;
+            }
+        }
+
+        private void link(int from, int to) {
+            downs.get(from).add(to);
+            ups.get(to).add(from);
+        }
+
+        /**
+         * Reverse the edges which close a cycle, using a depth first
+         * search which starts at the nodes without incoming edges.
+         *
+         * @param out the targets of the edges of each node
+         * @return the edges without cycles and duplicates
+         */
+        private List<int[]> removeCycles(List<List<Integer>> out) {
+            int[] inDegree = new int[realCount];
+            for (List<Integer> targets : out) {
+                for (int t : targets) {
+                    inDegree[t]++;
+                }
+            }
+            List<Integer> starts = new ArrayList<Integer>();
+            for (int i = 0; i < realCount; i++) {
+                if (inDegree[i] == 0) {
+                    starts.add(i);
+                }
+            }
+            for (int i = 0; i < realCount; i++) {
+                if (inDegree[i] != 0) {
+                    starts.add(i);
+                }
+            }
+            int[] state = new int[realCount];
+            Set<Long> seen = new HashSet<Long>();
+            List<int[]> edges = new ArrayList<int[]>();
+            for (int start : starts) {
+                if (state[start] != 0) {
+                    continue;
+                }
+                LinkedList<int[]> stack = new LinkedList<int[]>();
+                stack.addFirst(new int[] {start, 0});
+                state[start] = 1;
+                while (!stack.isEmpty()) {
+                    int[] top = stack.getFirst();
+                    List<Integer> targets = out.get(top[0]);
+                    if (top[1] == targets.size()) {
+                        state[top[0]] = 2;
+                        stack.removeFirst();
+                        continue;
+                    }
+                    int u = top[0];
+                    int v = targets.get(top[1]++);
+                    if (state[v] == 1) {
+                        addEdge(edges, seen, v, u);
+                    } else {
+                        addEdge(edges, seen, u, v);
+                        if (state[v] == 0) {
+                            state[v] = 1;
+                            stack.addFirst(new int[] {v, 0});
+                        }
+                    }
+                }
+            }
+            return edges;
+        }
+
+        private void addEdge(List<int[]> edges, Set<Long> seen, int u,
+                int v) {
+            if (seen.add(Long.valueOf((long) u * realCount + v))) {
+                edges.add(new int[] {u, v});
+            }
+        }
+
+        /**
+         * Assign each node to a layer, below all its sources. Nodes
+         * without sources are moved down to just above their highest
+         * target, so that they don't all end up in the first layer.
+         *
+         * @param edges the edges, without cycles
+         * @return the layer of each node
+         */
+        private int[] assignLayers(List<int[]> edges) {
+            List<List<Integer>> out = new ArrayList<List<Integer>>();
+            for (int i = 0; i < realCount; i++) {
+                out.add(new ArrayList<Integer>());
+            }
+            int[] inDegree = new int[realCount];
+            for (int[] edge : edges) {
+                out.get(edge[0]).add(edge[1]);
+                inDegree[edge[1]]++;
+            }
+            int[] layer = new int[realCount];
+            int[] remaining = inDegree.clone();
+            LinkedList<Integer> ready = new LinkedList<Integer>();
+            for (int i = 0; i < realCount; i++) {
+                if (remaining[i] == 0) {
+                    ready.add(i);
+                }
+            }
+            while (!ready.isEmpty()) {
+                int u = ready.removeFirst();
+                for (int v : out.get(u)) {
+                    layer[v] = Math.max(layer[v], layer[u] + 1);
+                    if (--remaining[v] == 0) {
+                        ready.add(v);
+                    }
+                }
+            }
+            for (int i = 0; i < realCount; i++) {
+                if (inDegree[i] == 0 && !out.get(i).isEmpty()) {
+                    int highest = Integer.MAX_VALUE;
+                    for (int v : out.get(i)) {
+                        highest = Math.min(highest, layer[v]);
+                    }
+                    layer[i] = highest - 1;
+                }
+            }
+            return layer;
+        }
+
+        /**
+         * Fill the layers in depth first order, which keeps the nodes of a
+         * subtree together.
+         *
+         * @param layerCount the number of layers
+         */
+        private void initLayers(int layerCount) {
+            int count = widths.size();
+            layers = new ArrayList<List<Integer>>();
+            for (int l = 0; l < layerCount; l++) {
+                layers.add(new ArrayList<Integer>());
+            }
+            position = new int[count];
+            boolean[] visited = new boolean[count];
+            for (int l = 0; l < layerCount; l++) {
+                for (int i = 0; i < count; i++) {
+                    if (!visited[i] && layerOf.get(i) == l) {
+                        visit(i, visited);
+                    }
+                }
+            }
+        }
+
+        private void visit(int start, boolean[] visited) {
+            LinkedList<Integer> stack = new LinkedList<Integer>();
+            stack.addFirst(start);
+            while (!stack.isEmpty()) {
+                int node = stack.removeFirst();
+                if (visited[node]) {
+                    continue;
+                }
+                visited[node] = true;
+                List<Integer> layer = layers.get(layerOf.get(node));
+                position[node] = layer.size();
+                layer.add(node);
+                List<Integer> children = downs.get(node);
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    if (!visited[children.get(i)]) {
+                        stack.addFirst(children.get(i));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Sort the layers by the barycenters of the neighbours, sweeping
+         * down and up, and keep the order with the fewest crossings.
+         */
+        void reduceCrossings() {
+            int best = countCrossings();
+            List<List<Integer>> bestLayers = copyLayers();
+            int failed = 0;
+            for (int sweep = 0; sweep < MAX_SWEEPS && best > 0
+                    && failed < MAX_FAILED_SWEEPS; sweep++) {
+                for (int l = 1; l < layers.size(); l++) {
+                    sortLayer(l, ups);
+                }
+                for (int l = layers.size() - 2; l >= 0; l--) {
+                    sortLayer(l, downs);
+                }
+                int crossings = countCrossings();
+                if (crossings < best) {
+                    best = crossings;
+                    bestLayers = copyLayers();
+                    failed = 0;
+                } else {
+                    failed++;
+                }
+            }
+            layers = bestLayers;
+            for (List<Integer> layer : layers) {
+                for (int i = 0; i < layer.size(); i++) {
+                    position[layer.get(i)] = i;
+                }
+            }
+        }
+
+        private List<List<Integer>> copyLayers() {
+            List<List<Integer>> copy = new ArrayList<List<Integer>>();
+            for (List<Integer> layer : layers) {
+                copy.add(new ArrayList<Integer>(layer));
+            }
+            return copy;
+        }
+
+        private void sortLayer(int l, List<List<Integer>> neighbours) {
+            List<Integer> layer = layers.get(l);
+            final double[] barycenter = new double[widths.size()];
+            for (int node : layer) {
+                List<Integer> adjacent = neighbours.get(node);
+                if (adjacent.isEmpty()) {
+                    barycenter[node] = position[node];
+                } else {
+                    double sum = 0;
+                    for (int other : adjacent) {
+                        sum += position[other];
+                    }
+                    barycenter[node] = sum / adjacent.size();
+                }
+            }
+            Collections.sort(layer, new Comparator<Integer>() {
+                public int compare(Integer n1, Integer n2) {
+                    return Double.compare(barycenter[n1], barycenter[n2]);
+                }
+            });
+            for (int i = 0; i < layer.size(); i++) {
+                position[layer.get(i)] = i;
+            }
+        }
+
+        /**
+         * @return the number of crossings between all adjacent layers
+         */
+        private int countCrossings() {
+            int crossings = 0;
+            for (int l = 0; l + 1 < layers.size(); l++) {
+                crossings += countCrossings(layers.get(l),
+                        layers.get(l + 1).size());
+            }
+            return crossings;
+        }
+
+        /**
+         * Count the crossings between a layer and the next one: the
+         * inversions of the positions of the lower ends when the edges are
+         * sorted by their upper ends, counted with a Fenwick tree.
+         *
+         * @param upper the upper layer
+         * @param lowerSize the number of nodes in the lower layer
+         * @return the number of crossings
+         */
+        private int countCrossings(List<Integer> upper, int lowerSize) {
+            int[] tree = new int[lowerSize + 1];
+            int crossings = 0;
+            int total = 0;
+            for (int node : upper) {
+                List<Integer> lower = new ArrayList<Integer>();
+                for (int other : downs.get(node)) {
+                    lower.add(position[other]);
+                }
+                Collections.sort(lower);
+                for (int p : lower) {
+                    // edges already added whose lower end is further right
+                    int notRight = 0;
+                    for (int i = p + 1; i > 0; i -= i & -i) {
+                        notRight += tree[i];
+                    }
+                    crossings += total - notRight;
+                }
+                for (int p : lower) {
+                    for (int i = p + 1; i <= lowerSize; i += i & -i) {
+                        tree[i]++;
+                    }
+                    total++;
+                }
+            }
+            return crossings;
+        }
+
+        /**
+         * Set the horizontal centers of the nodes, moving each layer in
+         * turn towards the layer above or below.
+         */
+        void placeNodes() {
+            center = new double[widths.size()];
+            for (List<Integer> layer : layers) {
+                double x = 0;
+                for (int i = 0; i < layer.size(); i++) {
+                    int node = layer.get(i);
+                    if (i > 0) {
+                        x += distance(layer.get(i - 1), node);
+                    }
+                    center[node] = x;
+                }
+            }
+            for (int pass = 0; pass < PLACEMENT_PASSES; pass++) {
+                if (pass % 2 == 0) {
+                    for (int l = 1; l < layers.size(); l++) {
+                        placeLayer(layers.get(l), ups, null);
+                    }
+                } else {
+                    for (int l = layers.size() - 2; l >= 0; l--) {
+                        placeLayer(layers.get(l), downs, null);
+                    }
+                }
+            }
+            for (List<Integer> layer : layers) {
+                placeLayer(layer, ups, downs);
+            }
+            double left = Double.MAX_VALUE;
+            for (int i = 0; i < widths.size(); i++) {
+                left = Math.min(left, center[i] - widths.get(i) / 2.0);
+            }
+            for (int i = 0; i < widths.size(); i++) {
+                center[i] -= left;
+            }
+        }
+
+        /**
+         * @param left a node
+         * @param right the node next to it on the right
+         * @return the smallest distance between the centers of the nodes
+         */
+        private double distance(int left, int right) {
+            int gap = hGap;
+            if (left >= realCount || right >= realCount) {
+                gap = Math.max(1, hGap / 4);
+            }
+            return (widths.get(left) + widths.get(right)) / 2.0 + gap;
+        }
+
+        /**
+         * Move the nodes of a layer as close as the gaps allow to the
+         * average position of their neighbours. This is the least squares
+         * fit under the order constraints, computed by pooling adjacent
+         * violators.
+         *
+         * @param layer the layer
+         * @param neighbours the neighbours to move towards
+         * @param more more neighbours, or null
+         */
+        private void placeLayer(List<Integer> layer,
+                List<List<Integer>> neighbours, List<List<Integer>> more) {
+            int size = layer.size();
+            double[] offset = new double[size];
+            double[] sum = new double[size];
+            int[] count = new int[size];
+            int blocks = 0;
+            for (int i = 0; i < size; i++) {
+                int node = layer.get(i);
+                if (i > 0) {
+                    offset[i] = offset[i - 1]
+                        + distance(layer.get(i - 1), node);
+                }
+                double target = center[node];
+                double total = 0;
+                int n = 0;
+                for (int other : neighbours.get(node)) {
+                    total += center[other];
+                    n++;
+                }
+                if (more != null) {
+                    for (int other : more.get(node)) {
+                        total += center[other];
+                        n++;
+                    }
+                }
+                if (n > 0) {
+                    target = total / n;
+                }
+                sum[blocks] = target - offset[i];
+                count[blocks] = 1;
+                blocks++;
+                while (blocks > 1 && sum[blocks - 2] / count[blocks - 2]
+                        > sum[blocks - 1] / count[blocks - 1]) {
+                    sum[blocks - 2] += sum[blocks - 1];
+                    count[blocks - 2] += count[blocks - 1];
+                    blocks--;
+                }
+            }
+            int i = 0;
+            for (int b = 0; b < blocks; b++) {
+                double value = sum[b] / count[b];
+                for (int k = 0; k < count[b]; k++, i++) {
+                    center[layer.get(i)] = value + offset[i];
+                }
+            }
+        }
+
+        /**
+         * @param node a node of the part
+         * @return the x coordinate of its left side
+         */
+        int getLeft(int node) {
+            return (int) Math.round(center[node] - widths.get(node) / 2.0);
+        }
+
+        /**
+         * @param node a node of the part
+         * @return the y coordinate of its top side
+         */
+        int getTop(int node) {
+            return tops[layerOf.get(node)];
+        }
+    }
+}
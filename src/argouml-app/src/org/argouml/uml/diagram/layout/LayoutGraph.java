@@ -0,0 +1,266 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.uml.diagram.layout;
+
+import java.awt.Dimension;
+import java.awt.geom.Line2D;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A plain graph of boxes and the edges between them, which the layout
+ * algorithms work on.<p>
+ *
+ * The nodes and edges are identified by their index, in the order they
+ * were added. A graph holds no references to Figs, so that it can be laid
+ * out on another thread than the one that built it from a diagram.
+ */
+public class LayoutGraph {
+
+    private int nodeCount;
+
+    private int[] widths = new int[16];
+
+    private int[] heights = new int[16];
+
+    private int[] xs = new int[16];
+
+    private int[] ys = new int[16];
+
+    private int edgeCount;
+
+    private int[] sources = new int[16];
+
+    private int[] targets = new int[16];
+
+    /**
+     * Add a node.
+     *
+     * @param size the size of the node
+     * @return the index of the new node
+     */
+    public int addNode(Dimension size) {
+        if (nodeCount == widths.length) {
+            int length = nodeCount * 2;
+            widths = grow(widths, length);
+            heights = grow(heights, length);
+            xs = grow(xs, length);
+            ys = grow(ys, length);
+        }
+        widths[nodeCount] = size.width;
+        heights[nodeCount] = size.height;
+        return nodeCount++;
+    }
+
+    /**
+     * Add an edge. Layered layouts place the source above the target.
+     *
+     * @param source the index of the source node
+     * @param target the index of the target node
+     * @return the index of the new edge
+     */
+    public int addEdge(int source, int target) {
+        if (source < 0 || source >= nodeCount
+                || target < 0 || target >= nodeCount) {
+            throw new IllegalArgumentException("No such node");
+        }
+        if (edgeCount == sources.length) {
+            int length = edgeCount * 2;
+            sources = grow(sources, length);
+            targets = grow(targets, length);
+        }
+        sources[edgeCount] = source;
+        targets[edgeCount] = target;
+        return edgeCount++;
+    }
+
+    /**
+     * @return the number of nodes
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return the number of edges
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * @param edge the index of an edge
+     * @return the index of its source node
+     */
+    public int getSource(int edge) {
+        return sources[edge];
+    }
+
+    /**
+     * @param edge the index of an edge
+     * @return the index of its target node
+     */
+    public int getTarget(int edge) {
+        return targets[edge];
+    }
+
+    /**
+     * @param node the index of a node
+     * @return its width
+     */
+    public int getWidth(int node) {
+        return widths[node];
+    }
+
+    /**
+     * @param node the index of a node
+     * @return its height
+     */
+    public int getHeight(int node) {
+        return heights[node];
+    }
+
+    /**
+     * @param node the index of a node
+     * @return the x coordinate of its upper left corner
+     */
+    public int getX(int node) {
+        return xs[node];
+    }
+
+    /**
+     * @param node the index of a node
+     * @return the y coordinate of its upper left corner
+     */
+    public int getY(int node) {
+        return ys[node];
+    }
+
+    /**
+     * @param node the index of a node
+     * @param x the new x coordinate of its upper left corner
+     * @param y the new y coordinate of its upper left corner
+     */
+    public void setLocation(int node, int x, int y) {
+        xs[node] = x;
+        ys[node] = y;
+    }
+
+    /**
+     * @return the size of the area covered by the nodes, measured from
+     *         the origin
+     */
+    public Dimension getSize() {
+        int width = 0;
+        int height = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            width = Math.max(width, xs[i] + widths[i]);
+            height = Math.max(height, ys[i] + heights[i]);
+        }
+        return new Dimension(width, height);
+    }
+
+    /**
+     * Count the crossings of the edges, drawn as straight lines between the
+     * centers of their nodes. Edges which share a node are not counted as
+     * crossing.
+     *
+     * @return the number of pairs of crossing edges
+     */
+    public int countCrossings() {
+        Integer[] order = new Integer[edgeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            order[i] = i;
+        }
+        // sweep from left to right, so that only edges whose horizontal
+        // extents overlap are compared
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer e1, Integer e2) {
+                return minX(e1) - minX(e2);
+            }
+        });
+        int crossings = 0;
+        for (int i = 0; i < edgeCount; i++) {
+            int e1 = order[i];
+            int maxX = Math.max(centerX(sources[e1]), centerX(targets[e1]));
+            for (int j = i + 1; j < edgeCount; j++) {
+                int e2 = order[j];
+                if (minX(e2) > maxX) {
+                    break;
+                }
+                if (sources[e1] == sources[e2] || sources[e1] == targets[e2]
+                        || targets[e1] == sources[e2]
+                        || targets[e1] == targets[e2]) {
+                    continue;
+                }
+                if (Line2D.linesIntersect(
+                        centerX(sources[e1]), centerY(sources[e1]),
+                        centerX(targets[e1]), centerY(targets[e1]),
+                        centerX(sources[e2]), centerY(sources[e2]),
+                        centerX(targets[e2]), centerY(targets[e2]))) {
+                    crossings++;
+                }
+            }
+        }
+        return crossings;
+    }
+
+    /**
+     * @return the number of pairs of nodes which overlap
+     */
+    public int countOverlaps() {
+        Integer[] order = new Integer[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer n1, Integer n2) {
+                return xs[n1] - xs[n2];
+            }
+        });
+        int overlaps = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            int n1 = order[i];
+            for (int j = i + 1; j < nodeCount; j++) {
+                int n2 = order[j];
+                if (xs[n2] >= xs[n1] + widths[n1]) {
+                    break;
+                }
+                if (ys[n2] < ys[n1] + heights[n1]
+                        && ys[n1] < ys[n2] + heights[n2]) {
+                    overlaps++;
+                }
+            }
+        }
+        return overlaps;
+    }
+
+    private static int[] grow(int[] array, int length) {
+        int[] result = new int[length];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    private int minX(int edge) {
+        return Math.min(centerX(sources[edge]), centerX(targets[edge]));
+    }
+
+    private int centerX(int node) {
+        return xs[node] + widths[node] / 2;
+    }
+
+    private int centerY(int node) {
+        return ys[node] + heights[node] / 2;
+    }
+}
@@ -182,6 +182,17 @@ public abstract class FigState extends FigStateVertex {
         super.removeFromDiagramImpl();
     }
 
+    /*
+     * @see org.argouml.uml.diagram.ui.FigNodeModelElement#invalidateNotationTexts()
+     */
+    @Override
+    protected void invalidateNotationTexts() {
+        super.invalidateNotationTexts();
+        if (notationProviderBody != null) {
+            notationProviderBody.invalidate();
+        }
+    }
+
     /*
      * @see org.argouml.uml.diagram.ui.FigNodeModelElement#renderingChanged()
      */
@@ -196,7 +207,7 @@ public abstract class FigState extends FigStateVertex {
             return;
         }
         if (notationProviderBody != null) {
-            internal.setText(notationProviderBody.toString(getOwner(), 
+            internal.setText(notationProviderBody.render(getOwner(), 
                     getNotationSettings()));
         }
         calcBounds();
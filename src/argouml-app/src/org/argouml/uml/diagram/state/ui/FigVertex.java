@@ -252,6 +252,17 @@ public class FigVertex extends FigNodeModelElement {
         super.removeFromDiagramImpl();
     }
 
+    /*
+     * @see org.argouml.uml.diagram.ui.FigNodeModelElement#invalidateNotationTexts()
+     */
+    @Override
+    protected void invalidateNotationTexts() {
+        super.invalidateNotationTexts();
+        if (notationProviderBody != null) {
+            notationProviderBody.invalidate();
+        }
+    }
+
     /*
      * @see org.argouml.uml.diagram.ui.FigNodeModelElement#renderingChanged()
      */
@@ -259,7 +270,7 @@ public class FigVertex extends FigNodeModelElement {
     public void renderingChanged() {
         super.renderingChanged();
         if (notationProviderBody != null) {
-            bodyText.setText(notationProviderBody.toString(getOwner(),
+            bodyText.setText(notationProviderBody.render(getOwner(),
                     getNotationSettings()));
         }
         calcBounds();
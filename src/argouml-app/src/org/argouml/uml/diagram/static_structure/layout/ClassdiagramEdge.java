@@ -119,6 +119,19 @@ public abstract class ClassdiagramEdge implements LayoutedEdge {
         return sourceFigNode;
     }
 
+    /**
+     * Lay out the edge as a straight line between the borders of its
+     * nodes. Used when the nodes are not placed in rows.
+     */
+    void layoutStraight() {
+        Fig source = getSourceFigNode();
+        Fig dest = getDestFigNode();
+        underlyingFig.addPoint(source.connectionPoint(dest.getCenter()));
+        underlyingFig.addPoint(dest.connectionPoint(source.getCenter()));
+        underlyingFig.setFilled(false);
+        currentEdge.setFig(underlyingFig);
+    }
+
     /**
      * @return Returns the currentEdge.
      */
@@ -0,0 +1,56 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.uml.diagram.static_structure.layout;
+
+import org.argouml.uml.diagram.ArgoDiagram;
+import org.argouml.uml.diagram.layout.ForceDirectedLayout;
+import org.argouml.uml.diagram.layout.LayoutGraph;
+
+/**
+ * Lays out a class diagram by letting linked nodes attract and all nodes
+ * repel each other. This suits diagrams with many associations and few
+ * generalizations better than the layered layouters.
+ *
+ * @see ForceDirectedLayout
+ */
+public class ClassdiagramForceLayouter extends ClassdiagramGraphLayouter {
+
+    /**
+     * Constructor for the layouter. Takes a diagram as input to extract all
+     * LayoutedObjects, which will be layouted.
+     *
+     * @param diagram The diagram to layout.
+     */
+    public ClassdiagramForceLayouter(ArgoDiagram diagram) {
+        super(diagram);
+    }
+
+    @Override
+    protected void compute(LayoutGraph graph) {
+        new ForceDirectedLayout(getHGap(), getVGap()).layout(graph);
+    }
+
+    /**
+     * The nodes are not in rows, so the edges which the other layouters
+     * route as trees are drawn straight.
+     */
+    @Override
+    protected void layoutEdge(ClassdiagramEdge edge) {
+        if (edge instanceof ClassdiagramInheritanceEdge) {
+            edge.layoutStraight();
+        } else {
+            edge.layout();
+        }
+    }
+}
@@ -0,0 +1,359 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.uml.diagram.static_structure.layout;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.swing.SwingUtilities;
+
+import org.argouml.uml.diagram.ArgoDiagram;
+import org.argouml.uml.diagram.layout.LayoutGraph;
+import org.argouml.uml.diagram.layout.LayoutedObject;
+import org.argouml.uml.diagram.layout.Layouter;
+import org.tigris.gef.presentation.Fig;
+
+/**
+ * The base of the class diagram layouters which work on a
+ * {@link LayoutGraph}.<p>
+ *
+ * The layout is done in three steps, so that the expensive middle one can
+ * run off the Swing thread: {@link #prepare()} reads the sizes of the nodes
+ * and the edges between them from the Figs, {@link #compute(LayoutGraph)}
+ * places the nodes of the graph and {@link #apply()} moves the Figs to
+ * their new places and routes the edges. {@link #layout()} does all three
+ * on the calling thread.<p>
+ *
+ * Generalizations and realizations point from the general element to the
+ * specific one, so that layered layouts put the general elements on top.
+ * A comment is linked from the element it annotates.
+ */
+public abstract class ClassdiagramGraphLayouter implements Layouter {
+
+    private static final Logger LOG =
+        Logger.getLogger(ClassdiagramGraphLayouter.class.getName());
+
+    /**
+     * Horizontal gap between nodes.
+     */
+    private static final int H_GAP = 80;
+
+    /**
+     * Vertical gap between nodes.
+     */
+    private static final int V_GAP = 80;
+
+    /**
+     * The diagrams whose layout is being computed in the background. Only
+     * used on the Swing thread.
+     */
+    private static final Set<ArgoDiagram> LAYOUTS_RUNNING =
+        new HashSet<ArgoDiagram>();
+
+    private final ArgoDiagram diagram;
+
+    private final List<LayoutedObject> layoutedObjects =
+        new ArrayList<LayoutedObject>();
+
+    private final List<ClassdiagramNode> layoutedNodes =
+        new ArrayList<ClassdiagramNode>();
+
+    private final List<ClassdiagramEdge> layoutedEdges =
+        new ArrayList<ClassdiagramEdge>();
+
+    /**
+     * The graph built by the last call of {@link #prepare()}. Its nodes
+     * have the same order as layoutedNodes had then.
+     */
+    private LayoutGraph graph;
+
+    private List<ClassdiagramNode> graphNodes;
+
+    /**
+     * The Figs of the diagram and their bounds when the graph was built.
+     */
+    private final List<Fig> snapshotFigs = new ArrayList<Fig>();
+
+    private final List<Rectangle> snapshotBounds = new ArrayList<Rectangle>();
+
+    /**
+     * Told on the Swing thread how a layout started by
+     * {@link ClassdiagramGraphLayouter#layoutInBackground(LayoutListener)}
+     * ended.
+     */
+    public interface LayoutListener {
+
+        /**
+         * The places of the nodes have been computed and the diagram is
+         * still as it was when the layout started. The listener moves the
+         * Figs by calling {@link ClassdiagramGraphLayouter#apply()}.
+         */
+        void layoutComputed();
+
+        /**
+         * The diagram was changed while the places were computed, so they
+         * can't be applied.
+         */
+        void layoutDiscarded();
+
+        /**
+         * @param cause what the computation of the places threw
+         */
+        void layoutFailed(Throwable cause);
+    }
+
+    /**
+     * Constructor for the layouter. Takes a diagram as input to extract all
+     * LayoutedObjects, which will be layouted.
+     *
+     * @param diagram The diagram to layout.
+     */
+    protected ClassdiagramGraphLayouter(ArgoDiagram diagram) {
+        this.diagram = diagram;
+        for (Fig fig : diagram.getLayer().getContents()) {
+            if (fig.getEnclosingFig() == null) {
+                LayoutedObject obj =
+                    ClassdiagramModelElementFactory.SINGLETON.getInstance(fig);
+                if (obj != null) {
+                    add(obj);
+                }
+            }
+        }
+    }
+
+    /*
+     * @see org.argouml.uml.diagram.layout.Layouter#add(org.argouml.uml.diagram.layout.LayoutedObject)
+     */
+    public void add(LayoutedObject obj) {
+        layoutedObjects.add(obj);
+        if (obj instanceof ClassdiagramNode) {
+            layoutedNodes.add((ClassdiagramNode) obj);
+        } else if (obj instanceof ClassdiagramEdge) {
+            layoutedEdges.add((ClassdiagramEdge) obj);
+        }
+    }
+
+    /*
+     * @see org.argouml.uml.diagram.layout.Layouter#remove(org.argouml.uml.diagram.layout.LayoutedObject)
+     */
+    public void remove(LayoutedObject obj) {
+        layoutedObjects.remove(obj);
+        layoutedNodes.remove(obj);
+        layoutedEdges.remove(obj);
+    }
+
+    /*
+     * @see org.argouml.uml.diagram.layout.Layouter#getObjects()
+     */
+    public LayoutedObject[] getObjects() {
+        return layoutedObjects.toArray(
+                new LayoutedObject[layoutedObjects.size()]);
+    }
+
+    /*
+     * @see org.argouml.uml.diagram.layout.Layouter#getObject(int)
+     */
+    public LayoutedObject getObject(int index) {
+        return layoutedObjects.get(index);
+    }
+
+    /*
+     * @see org.argouml.uml.diagram.layout.Layouter#getMinimumDiagramSize()
+     */
+    public Dimension getMinimumDiagramSize() {
+        int width = 0;
+        int height = 0;
+        for (ClassdiagramNode node : layoutedNodes) {
+            width = Math.max(width, node.getLocation().x
+                    + node.getSize().width + H_GAP / 2);
+            height = Math.max(height, node.getLocation().y
+                    + node.getSize().height + V_GAP / 2);
+        }
+        return new Dimension(width, height);
+    }
+
+    /*
+     * @see org.argouml.uml.diagram.layout.Layouter#layout()
+     */
+    public void layout() {
+        long start = System.currentTimeMillis();
+        compute(prepare());
+        apply();
+        LOG.log(Level.FINE, "layout duration: {0}",
+                System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Compute the new places of the nodes on a background thread. This
+     * method must be called on the Swing thread, and the listener is called
+     * on it when the computation has ended. The places are only offered
+     * for applying if no Fig of the diagram has been added, removed, moved
+     * or resized in the meantime.
+     *
+     * @param listener told how the layout ended
+     * @return false if a layout of the diagram is already running, in which
+     *         case nothing is done
+     */
+    public boolean layoutInBackground(final LayoutListener listener) {
+        if (!LAYOUTS_RUNNING.add(diagram)) {
+            return false;
+        }
+        final LayoutGraph g = prepare();
+        Thread thread = new Thread("Diagram layout") {
+            @Override
+            public void run() {
+                Throwable failure = null;
+                try {
+                    compute(g);
+                } catch (Throwable t) {
+                    failure = t;
+                }
+                final Throwable cause = failure;
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        LAYOUTS_RUNNING.remove(diagram);
+                        if (cause != null) {
+                            LOG.log(Level.SEVERE, "Layout of "
+                                    + diagram.getName() + " failed", cause);
+                            listener.layoutFailed(cause);
+                        } else if (!isUnchanged()) {
+                            LOG.log(Level.INFO, "Layout of {0} discarded, "
+                                    + "the diagram changed meanwhile",
+                                    diagram.getName());
+                            listener.layoutDiscarded();
+                        } else {
+                            listener.layoutComputed();
+                        }
+                    }
+                });
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * @return true if the Figs of the diagram are the ones, with the same
+     *         bounds, there were when {@link #prepare()} was called
+     */
+    private boolean isUnchanged() {
+        List<Fig> figs = diagram.getLayer().getContents();
+        if (figs.size() != snapshotFigs.size()) {
+            return false;
+        }
+        for (int i = 0; i < figs.size(); i++) {
+            Fig fig = figs.get(i);
+            if (fig != snapshotFigs.get(i)
+                    || !fig.getBounds().equals(snapshotBounds.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Build the graph to lay out from the nodes and edges. The nodes of
+     * the graph are at the current places of the Figs.
+     *
+     * @return the graph
+     */
+    public LayoutGraph prepare() {
+        snapshotFigs.clear();
+        snapshotBounds.clear();
+        for (Fig fig : diagram.getLayer().getContents()) {
+            snapshotFigs.add(fig);
+            snapshotBounds.add(fig.getBounds());
+        }
+
+        graph = new LayoutGraph();
+        graphNodes = new ArrayList<ClassdiagramNode>(layoutedNodes);
+        Map<Fig, Integer> index = new HashMap<Fig, Integer>();
+        for (ClassdiagramNode node : graphNodes) {
+            int i = graph.addNode(node.getSize());
+            Point location = node.getLocation();
+            graph.setLocation(i, location.x, location.y);
+            index.put(node.getFigure(), i);
+        }
+        for (ClassdiagramEdge edge : layoutedEdges) {
+            Integer source = index.get(edge.getSourceFigNode());
+            Integer dest = index.get(edge.getDestFigNode());
+            if (source == null || dest == null) {
+                LOG.log(Level.FINE, "Edge with missing end(s): {0}", edge);
+            } else if (edge instanceof ClassdiagramInheritanceEdge) {
+                graph.addEdge(dest, source);
+            } else if (edge instanceof ClassdiagramNoteEdge
+                    && graphNodes.get(source).isComment()) {
+                graph.addEdge(dest, source);
+            } else {
+                graph.addEdge(source, dest);
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Place the nodes of the graph. This is called without access to the
+     * Figs, possibly on another thread than the Swing one.
+     *
+     * @param g the graph built by {@link #prepare()}
+     */
+    protected abstract void compute(LayoutGraph g);
+
+    /**
+     * Move the Figs of the nodes to the places computed for them and lay
+     * out the edges.
+     */
+    public void apply() {
+        for (int i = 0; i < graphNodes.size(); i++) {
+            graphNodes.get(i).setLocation(
+                    new Point(graph.getX(i), graph.getY(i)));
+        }
+        ClassdiagramEdge.setVGap(V_GAP);
+        ClassdiagramEdge.setHGap(H_GAP);
+        for (ClassdiagramEdge edge : layoutedEdges) {
+            layoutEdge(edge);
+        }
+    }
+
+    /**
+     * Lay out one edge after the nodes have been moved.
+     *
+     * @param edge the edge
+     */
+    protected abstract void layoutEdge(ClassdiagramEdge edge);
+
+    /**
+     * @return the horizontal gap between nodes
+     */
+    protected int getHGap() {
+        return H_GAP;
+    }
+
+    /**
+     * @return the vertical gap between nodes
+     */
+    protected int getVGap() {
+        return V_GAP;
+    }
+}
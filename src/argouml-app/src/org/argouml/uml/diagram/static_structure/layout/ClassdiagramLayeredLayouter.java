@@ -0,0 +1,53 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.uml.diagram.static_structure.layout;
+
+import org.argouml.uml.diagram.ArgoDiagram;
+import org.argouml.uml.diagram.layout.LayeredLayout;
+import org.argouml.uml.diagram.layout.LayoutGraph;
+
+/**
+ * Lays out a class diagram in layers, with the general elements above the
+ * specific ones, ordering the layers to avoid crossing edges.
+ *
+ * @see LayeredLayout
+ */
+public class ClassdiagramLayeredLayouter extends ClassdiagramGraphLayouter {
+
+    /**
+     * The width up to which unconnected groups of nodes are placed next
+     * to each other, the same as the rows of {@link ClassdiagramLayouter}.
+     */
+    private static final int MAX_ROW_WIDTH = 1200;
+
+    /**
+     * Constructor for the layouter. Takes a diagram as input to extract all
+     * LayoutedObjects, which will be layouted.
+     *
+     * @param diagram The diagram to layout.
+     */
+    public ClassdiagramLayeredLayouter(ArgoDiagram diagram) {
+        super(diagram);
+    }
+
+    @Override
+    protected void compute(LayoutGraph graph) {
+        new LayeredLayout(getHGap(), getVGap(), MAX_ROW_WIDTH).layout(graph);
+    }
+
+    @Override
+    protected void layoutEdge(ClassdiagramEdge edge) {
+        edge.layout();
+    }
+}
@@ -71,8 +71,11 @@ import org.tigris.gef.presentation.Fig;
  * </ol>
  *
  * @see ClassdiagramNode#compareTo(Object)
- *
+ * @deprecated for 0.35.2.  Neither the Layout action nor the import use
+ * this layouter any more.  Use {@link ClassdiagramLayeredLayouter}, which
+ * leaves fewer crossings and packs unlinked nodes into rows.
  */
+@Deprecated
 public class ClassdiagramLayouter implements Layouter {
     // TODO: make the "magic numbers" configurable
     /**
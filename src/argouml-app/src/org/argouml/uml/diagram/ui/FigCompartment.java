@@ -338,7 +338,7 @@ public abstract class FigCompartment extends ArgoFigGroup {
 
                 // Now put the text in
                 // We must handle the case where the text is null
-                String ftText = comp.getNotationProvider().toString(umlObject,
+                String ftText = comp.getNotationProvider().render(umlObject,
                         comp.getNotationSettings());
                 if (ftText == null) {
                     ftText = "";
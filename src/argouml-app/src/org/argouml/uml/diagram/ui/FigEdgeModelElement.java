@@ -664,6 +664,9 @@ public abstract class FigEdgeModelElement
                 && !Model.getUmlFactory().isRemoved(getOwner())) {
             /* If the source of the event is an UML object,
              * then the UML model has been changed.*/
+            if (notationProviderName != null) {
+                notationProviderName.invalidate();
+            }
             modelChanged(pve);
 
             final UmlChangeEvent event = (UmlChangeEvent) pve;
@@ -942,7 +945,7 @@ public abstract class FigEdgeModelElement
         if (notationProviderName != null
                 && getOwner() != null
                 && Model.getFacade().isANamedElement(getOwner())) {
-            String nameStr = notationProviderName.toString(
+            String nameStr = notationProviderName.render(
                     getOwner(), getNotationSettings());
             nameFig.setText(nameStr);
             updateFont();
@@ -68,7 +68,6 @@ import javax.swing.Action;
 import javax.swing.Icon;
 import javax.swing.JMenu;
 import javax.swing.JSeparator;
-import javax.swing.SwingUtilities;
 
 import org.argouml.application.events.ArgoDiagramAppearanceEvent;
 import org.argouml.application.events.ArgoDiagramAppearanceEventListener;
@@ -83,7 +82,6 @@ import org.argouml.cognitive.ToDoItem;
 import org.argouml.cognitive.ToDoList;
 import org.argouml.cognitive.ui.ActionGoToCritique;
 import org.argouml.i18n.Translator;
-import org.argouml.kernel.DelayedChangeNotify;
 import org.argouml.kernel.DelayedVChangeListener;
 import org.argouml.kernel.Owned;
 import org.argouml.kernel.Project;
@@ -1062,9 +1060,7 @@ public abstract class FigNodeModelElement
 
         Object src = pce.getSource();
         if (src == getOwner()) {
-            DelayedChangeNotify delayedNotify =
-                new DelayedChangeNotify(this, pce);
-            SwingUtilities.invokeLater(delayedNotify);
+            FigUpdateScheduler.getInstance().scheduleRendering(this, pce);
         } else {
             LOG.log(Level.FINE,
                     "FigNodeModelElement got vetoableChange from non-owner: {0}",
@@ -1170,6 +1166,7 @@ public abstract class FigNodeModelElement
                 return;
             }
 
+            invalidateNotationTexts();
             try {
                 modelChanged(event);
             } catch (InvalidElementException e) {
@@ -1185,19 +1182,7 @@ public abstract class FigNodeModelElement
                 stereotypeChanged(event);
             }
 
-            Runnable doWorkRunnable = new Runnable() {
-                public void run() {
-                    try {
-                        updateLayout(event);
-                    } catch (InvalidElementException e) {
-                        if (LOG.isLoggable(Level.FINE)) {
-                            LOG.log(Level.FINE, "updateLayout method accessed deleted element "
-                                    + formatEvent(event), e);
-                        }
-                    }
-                }
-            };
-            SwingUtilities.invokeLater(doWorkRunnable);
+            FigUpdateScheduler.getInstance().scheduleLayout(this, event);
         }
     }
 
@@ -1616,6 +1601,18 @@ public abstract class FigNodeModelElement
         }
     }
 
+    /**
+     * Forget the texts rendered by the notation providers of this Fig,
+     * before it is updated for a change of the model.
+     * Subclasses with more notation providers should override this,
+     * and call the super method.
+     */
+    protected void invalidateNotationTexts() {
+        if (notationProviderName != null) {
+            notationProviderName.invalidate();
+        }
+    }
+
     /**
      * Updates the text of the name FigText.
      * This includes text changes,
@@ -1626,7 +1623,7 @@ public abstract class FigNodeModelElement
                 && notationProviderName != null
                 && getOwner() != null
                 && Model.getFacade().isANamedElement(getOwner())) {
-            nameFig.setText(notationProviderName.toString(
+            nameFig.setText(notationProviderName.render(
                     getOwner(), getNotationSettings()));
             updateFont();
             updateBounds();
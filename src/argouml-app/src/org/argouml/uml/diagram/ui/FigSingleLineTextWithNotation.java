@@ -133,7 +133,8 @@ public class FigSingleLineTextWithNotation extends FigSingleLineText
         if (notationProvider != null
                 && (!"remove".equals(event.getPropertyName())
                         || event.getSource() != getOwner())) { // not???
-            this.setText(notationProvider.toString(getOwner(), 
+            notationProvider.invalidate();
+            this.setText(notationProvider.render(getOwner(), 
                     getNotationSettings()));
             damage();
         }
@@ -270,7 +271,7 @@ public class FigSingleLineTextWithNotation extends FigSingleLineText
     protected void setText() {
         assert getOwner() != null;
         assert notationProvider != null;
-        setText(notationProvider.toString(getOwner(), getNotationSettings()));
+        setText(notationProvider.render(getOwner(), getNotationSettings()));
     }
     
     /**
@@ -0,0 +1,218 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.uml.diagram.ui;
+
+import java.beans.PropertyChangeEvent;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.swing.SwingUtilities;
+
+import org.argouml.model.AttributeChangeEvent;
+import org.argouml.model.InvalidElementException;
+import org.argouml.model.UmlChangeEvent;
+
+/**
+ * Collects the layout and rendering work requested by model events for
+ * FigNodeModelElements and runs it in a single pass on the Swing/AWT
+ * thread.<p>
+ *
+ * Every model event used to post its own Runnable, so that a bulk change
+ * (e.g. renaming or stereotyping hundreds of classes) queued one Runnable
+ * per event and per Fig. Here a Fig is only marked dirty: all the requests
+ * which arrive before the pass runs are collected per Fig, a repeated
+ * change of the same attribute replaces the older request and a pending
+ * rendering change is done only once.<p>
+ *
+ * The counters tell how many requests were received and how many of them
+ * were absorbed by a request which was already pending.
+ */
+final class FigUpdateScheduler implements Runnable {
+
+    private static final Logger LOG =
+        Logger.getLogger(FigUpdateScheduler.class.getName());
+
+    private static final FigUpdateScheduler INSTANCE =
+        new FigUpdateScheduler();
+
+    /**
+     * The dirty Figs, in the order in which they were first marked.
+     */
+    private Map<FigNodeModelElement, Pending> dirty =
+        new LinkedHashMap<FigNodeModelElement, Pending>();
+
+    private boolean posted;
+
+    private long requested;
+
+    private long coalesced;
+
+    private long passes;
+
+    /**
+     * The work that is waiting for one Fig.
+     */
+    private static class Pending {
+        private PropertyChangeEvent rendering;
+        private Map<List<Object>, UmlChangeEvent> events =
+            new LinkedHashMap<List<Object>, UmlChangeEvent>();
+    }
+
+    /**
+     * Create a scheduler. Applications use {@link #getInstance()}.
+     */
+    FigUpdateScheduler() {
+    }
+
+    /**
+     * @return the scheduler shared by all diagrams
+     */
+    static FigUpdateScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Request a call of {@link FigNodeModelElement#updateLayout(UmlChangeEvent)}
+     * for the given event. If an event for the same attribute of the same
+     * model element is still pending for this Fig, it is replaced.
+     *
+     * @param fig the Fig to update
+     * @param event the model event which caused the change
+     */
+    void scheduleLayout(FigNodeModelElement fig, UmlChangeEvent event) {
+        List<Object> key;
+        if (event instanceof AttributeChangeEvent) {
+            key = Arrays.asList(event.getClass(), event.getSource(),
+                    event.getPropertyName());
+        } else {
+            // association changes name the element which was added or
+            // removed, so only identical events can be merged
+            key = Arrays.asList(event.getClass(), event.getSource(),
+                    event.getPropertyName(), event.getOldValue(),
+                    event.getNewValue());
+        }
+        synchronized (this) {
+            requested++;
+            Pending pending = getPending(fig);
+            if (pending.events.remove(key) != null) {
+                coalesced++;
+            }
+            pending.events.put(key, event);
+            post();
+        }
+    }
+
+    /**
+     * Request a call of
+     * {@link FigNodeModelElement#delayedVetoableChange(PropertyChangeEvent)}
+     * for the given Fig. Pending requests are merged into one.
+     *
+     * @param fig the Fig to re-render
+     * @param event the event which caused the change
+     */
+    void scheduleRendering(FigNodeModelElement fig,
+            PropertyChangeEvent event) {
+        synchronized (this) {
+            requested++;
+            Pending pending = getPending(fig);
+            if (pending.rendering != null) {
+                coalesced++;
+            }
+            pending.rendering = event;
+            post();
+        }
+    }
+
+    private Pending getPending(FigNodeModelElement fig) {
+        Pending pending = dirty.get(fig);
+        if (pending == null) {
+            pending = new Pending();
+            dirty.put(fig, pending);
+        }
+        return pending;
+    }
+
+    private void post() {
+        if (!posted) {
+            posted = true;
+            SwingUtilities.invokeLater(this);
+        }
+    }
+
+    /*
+     * @see java.lang.Runnable#run()
+     */
+    public void run() {
+        Map<FigNodeModelElement, Pending> work;
+        synchronized (this) {
+            posted = false;
+            if (dirty.isEmpty()) {
+                return;
+            }
+            work = dirty;
+            dirty = new LinkedHashMap<FigNodeModelElement, Pending>();
+            passes++;
+        }
+        for (Map.Entry<FigNodeModelElement, Pending> entry
+                : work.entrySet()) {
+            FigNodeModelElement fig = entry.getKey();
+            Pending pending = entry.getValue();
+            if (pending.rendering != null) {
+                fig.delayedVetoableChange(pending.rendering);
+            }
+            for (UmlChangeEvent event : pending.events.values()) {
+                try {
+                    fig.updateLayout(event);
+                } catch (InvalidElementException e) {
+                    if (LOG.isLoggable(Level.FINE)) {
+                        LOG.log(Level.FINE, "updateLayout method accessed "
+                                + "deleted element " + event, e);
+                    }
+                }
+            }
+        }
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, "Updated {0} Figs, {1} of {2} requests "
+                    + "coalesced so far",
+                    new Object[] {work.size(), getCoalescedCount(),
+                        getRequestCount(), });
+        }
+    }
+
+    /**
+     * @return the number of layout and rendering requests received
+     */
+    synchronized long getRequestCount() {
+        return requested;
+    }
+
+    /**
+     * @return the number of requests which were merged into a request
+     *         that was already pending for the same Fig
+     */
+    synchronized long getCoalescedCount() {
+        return coalesced;
+    }
+
+    /**
+     * @return the number of update passes which did some work
+     */
+    synchronized long getPassCount() {
+        return passes;
+    }
+}
@@ -210,6 +210,7 @@ public class TabDiagram
         graph.removeGraphSelectionListener(this);
         graph.setDiagram(newTarget);
         graph.addGraphSelectionListener(this);
+        newTarget.validateRendering();
         target = newTarget;
     }
 
@@ -0,0 +1,31 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.uml.generator;
+
+/**
+ * Implemented by code generators whose {@link #generate(java.util.Collection,
+ * boolean)}, {@link #generateFiles(java.util.Collection, String, boolean)}
+ * and {@link #generateFileList(java.util.Collection, boolean)} methods may
+ * be called from several threads at the same time, each call for elements
+ * which go into different files.<p>
+ *
+ * {@link GeneratorHelper} spreads the elements of such a generator over one
+ * thread per processor, while no change is made to the model.  Generators
+ * which don't implement this interface are called once for all elements,
+ * on the calling thread.
+ *
+ * @since 0.35.2
+ */
+public interface ConcurrentCodeGenerator extends CodeGenerator {
+}
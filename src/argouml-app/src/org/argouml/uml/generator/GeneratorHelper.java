@@ -40,10 +40,23 @@ package org.argouml.uml.generator;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import javax.swing.Icon;
 
+import org.argouml.model.Model;
+
 /**
  * Provides some utility methods for code generation.
  *
@@ -62,14 +75,24 @@ public final class GeneratorHelper {
      * @param elements The elements to generate code for.
      * @param deps Whether to generate dependency too.
      * @return A collection of SourceUnit objects. The collection may be empty
-     * if no file is generated.
+     * if no file is generated, or if the thread was interrupted.
      */
     public static Collection generate(
             Language lang, Collection elements, boolean deps) {
         CodeGenerator gen =
             GeneratorManager.getInstance().getGenerator(lang);
         if (gen != null) {
-            return gen.generate(elements, deps);
+            final List<SourceUnit> units = new ArrayList<SourceUnit>();
+            try {
+                generate(gen, elements, deps, new SourceUnitListener() {
+                    public void sourceUnitGenerated(SourceUnit unit) {
+                        units.add(unit);
+                    }
+                });
+                return units;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
         return new ArrayList(); // empty list
     }
@@ -89,6 +112,198 @@ public final class GeneratorHelper {
         return generate(lang, list, deps);
     }
 
+    /**
+     * Generate code for the given elements and pass each source unit to a
+     * listener as soon as it is generated.<p>
+     *
+     * A {@link ConcurrentCodeGenerator} is called on a thread per
+     * processor, once for each group of elements which go into the same
+     * files, unless dependencies are generated too.  No change is made to
+     * the model until all groups are done.  Other generators are called
+     * once for all elements.
+     *
+     * @param gen the generator to use
+     * @param elements the elements to generate code for
+     * @param deps whether to generate the dependencies too
+     * @param listener the listener to pass the source units to
+     * @throws InterruptedException if the thread was interrupted while it
+     *             waited for the generator.  The units of the groups which
+     *             weren't done are lost.
+     * @since 0.35.2
+     */
+    public static void generate(final CodeGenerator gen,
+            Collection<?> elements, final boolean deps,
+            final SourceUnitListener listener) throws InterruptedException {
+        generateInGroups(gen, elements, deps,
+                new Generation<Collection<SourceUnit>>() {
+            public Collection<SourceUnit> generate(List<Object> group) {
+                return gen.generate(group, deps);
+            }
+            public void generated(Collection<SourceUnit> units) {
+                for (SourceUnit unit : units) {
+                    listener.sourceUnitGenerated(unit);
+                }
+            }
+        });
+    }
+
+    /**
+     * Generate the files for the given elements.  A
+     * {@link ConcurrentCodeGenerator} is called on several threads, see
+     * {@link #generate(CodeGenerator, Collection, boolean,
+     * SourceUnitListener)}.
+     *
+     * @param gen the generator to use
+     * @param elements the elements to generate code for
+     * @param path the source base path
+     * @param deps whether to generate the dependencies too
+     * @return the names of the files, relative to path, in the order they
+     *         were written
+     * @throws InterruptedException if the thread was interrupted while it
+     *             waited for the generator
+     * @since 0.35.2
+     */
+    public static Collection<String> generateFiles(final CodeGenerator gen,
+            Collection<?> elements, final String path, final boolean deps)
+        throws InterruptedException {
+        final Collection<String> files = new ArrayList<String>();
+        generateInGroups(gen, elements, deps,
+                new Generation<Collection<String>>() {
+            public Collection<String> generate(List<Object> group) {
+                return gen.generateFiles(group, path, deps);
+            }
+            public void generated(Collection<String> names) {
+                files.addAll(names);
+            }
+        });
+        return files;
+    }
+
+    /**
+     * One call of a generator for a group of elements, and what to do with
+     * its result on the calling thread.
+     */
+    private interface Generation<T> {
+        T generate(List<Object> group);
+        void generated(T result);
+    }
+
+    private static <T> void generateInGroups(final CodeGenerator gen,
+            Collection<?> elements, boolean deps,
+            final Generation<T> generation) throws InterruptedException {
+        final List<Object> all = new ArrayList<Object>(elements);
+        if (!(gen instanceof ConcurrentCodeGenerator) || deps
+                || all.size() < 2) {
+            generation.generated(generation.generate(all));
+            return;
+        }
+        final InterruptedException[] interrupted =
+            new InterruptedException[1];
+        Model.runReadOnly(new Runnable() {
+            public void run() {
+                try {
+                    generateConcurrently(groupByFile(gen, all), generation);
+                } catch (InterruptedException e) {
+                    interrupted[0] = e;
+                }
+            }
+        });
+        if (interrupted[0] != null) {
+            throw interrupted[0];
+        }
+    }
+
+    /**
+     * Split the elements into groups so that the elements which go into
+     * the same file are in the same group.
+     *
+     * @return the groups, in the order of their first element
+     */
+    private static List<List<Object>> groupByFile(CodeGenerator gen,
+            List<Object> elements) {
+        // the first element of each group identifies it
+        int[] first = new int[elements.size()];
+        Map<String, Integer> elementOfFile = new HashMap<String, Integer>();
+        for (int i = 0; i < elements.size(); i++) {
+            first[i] = i;
+            Collection<String> files = gen.generateFileList(
+                    Collections.singleton(elements.get(i)), false);
+            for (String file : files) {
+                Integer other = elementOfFile.get(file);
+                if (other == null) {
+                    elementOfFile.put(file, i);
+                } else {
+                    int a = findFirst(first, i);
+                    int b = findFirst(first, other);
+                    first[Math.max(a, b)] = Math.min(a, b);
+                }
+            }
+        }
+        Map<Integer, List<Object>> groups =
+            new LinkedHashMap<Integer, List<Object>>();
+        for (int i = 0; i < elements.size(); i++) {
+            int key = findFirst(first, i);
+            List<Object> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<Object>();
+                groups.put(key, group);
+            }
+            group.add(elements.get(i));
+        }
+        return new ArrayList<List<Object>>(groups.values());
+    }
+
+    private static int findFirst(int[] first, int i) {
+        while (first[i] != i) {
+            first[i] = first[first[i]];
+            i = first[i];
+        }
+        return i;
+    }
+
+    /**
+     * Call the generator for each group on a thread per processor and
+     * pass the results on as the groups are done.  A failure of the
+     * generator is thrown again after the other groups are cancelled.
+     */
+    private static <T> void generateConcurrently(List<List<Object>> groups,
+            final Generation<T> generation) throws InterruptedException {
+        int threads = Math.min(groups.size(),
+                Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(threads,
+                new ThreadFactory() {
+                    private int count;
+                    public synchronized Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "Code generator " + ++count);
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        try {
+            CompletionService<T> done = new ExecutorCompletionService<T>(pool);
+            for (final List<Object> group : groups) {
+                done.submit(new Callable<T>() {
+                    public T call() {
+                        return generation.generate(group);
+                    }
+                });
+            }
+            for (int i = 0; i < groups.size(); i++) {
+                try {
+                    generation.generated(done.take().get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw (RuntimeException) cause;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
     /**
      * Creates a new Language only if one with the same name doesn't already
      * exist in GeneratorManager, in which case that one is returned.
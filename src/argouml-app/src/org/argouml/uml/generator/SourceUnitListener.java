@@ -0,0 +1,34 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.uml.generator;
+
+/**
+ * Receives the source units of a code generation one at a time, as soon
+ * as they have been generated.
+ *
+ * @see GeneratorHelper#generate(CodeGenerator, java.util.Collection,
+ *      boolean, SourceUnitListener)
+ * @since 0.35.2
+ */
+public interface SourceUnitListener {
+
+    /**
+     * Called for each generated source unit.  The calls are made one after
+     * the other on the thread which started the generation.  The listener
+     * must not change the model.
+     *
+     * @param unit the generated source unit
+     */
+    void sourceUnitGenerated(SourceUnit unit);
+}
@@ -74,6 +74,7 @@ import org.argouml.model.Model;
 import org.argouml.notation.Notation;
 import org.argouml.ui.targetmanager.TargetManager;
 import org.argouml.uml.generator.CodeGenerator;
+import org.argouml.uml.generator.GeneratorHelper;
 import org.argouml.uml.generator.GeneratorManager;
 import org.argouml.uml.generator.Language;
 import org.argouml.util.ArgoDialog;
@@ -357,8 +358,8 @@ public class ClassGenerationDialog extends ArgoDialog
                     if (path != null) {
                         path = path.trim();
                         if (path.length() > 0) {
-                            Collection<String> files = generator.generateFiles(
-                                    nodes, path, false);
+                            Collection<String> files =
+                                generateFiles(generator, nodes, path);
                             for (String filename : files) {
                                 fileNames[i].add(path
                                         + CodeGenerator.FILE_SEPARATOR
@@ -406,10 +407,10 @@ public class ClassGenerationDialog extends ArgoDialog
                     for (Map.Entry entry : nodesPerPath.entrySet()) {
                         String basepath = (String) entry.getKey();
                         Set nodeColl = (Set) entry.getValue();
-                        // TODO: the last argument (recursive flag) should be a
-                        // selectable option
-                        Collection<String> files = generator.generateFiles(
-                                nodeColl, basepath, false);
+                        // TODO: generating the dependencies (recursive flag)
+                        // should be a selectable option
+                        Collection<String> files =
+                            generateFiles(generator, nodeColl, basepath);
                         for (String filename : files) {
                             fileNames[i].add(basepath
                                     + CodeGenerator.FILE_SEPARATOR + filename);
@@ -422,6 +423,24 @@ public class ClassGenerationDialog extends ArgoDialog
         }
     }
 
+    /**
+     * Generate the files of the given nodes without their dependencies.
+     *
+     * @return the names of the generated files, or an empty collection if
+     *         the generation was interrupted
+     */
+    private static Collection<String> generateFiles(CodeGenerator generator,
+            Collection nodes, String path) {
+        try {
+            return GeneratorHelper.generateFiles(generator, nodes, path,
+                    false);
+        } catch (InterruptedException e) {
+            LOG.log(Level.WARNING, "Code generation interrupted", e);
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        }
+    }
+
     /**
      * Save the source language in the model.
      * <p>
@@ -0,0 +1,409 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.uml.reveng;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.argouml.kernel.Project;
+
+/**
+ * The fingerprints (size, last modification time and a hash of the
+ * contents) of the source files imported into a project, which tell which
+ * files have changed since they were last imported.<p>
+ *
+ * The fingerprints are kept in a properties file next to the project file,
+ * named after it with the suffix {@value #SUFFIX}. They are written when
+ * the project is saved, so that they always describe the imports found in
+ * the saved model, and until then they are only kept in memory.<p>
+ *
+ * The contents of a file are only hashed if its size or modification time
+ * differ from the ones recorded, so that touching a file does not cause it
+ * to be imported again. The hashing is spread over one thread per
+ * processor.
+ */
+public class FileFingerprints {
+
+    private static final Logger LOG =
+        Logger.getLogger(FileFingerprints.class.getName());
+
+    /**
+     * The suffix added to the name of the project file to name the file
+     * the fingerprints are stored in.
+     */
+    public static final String SUFFIX = ".fingerprints";
+
+    private static final Map<Project, FileFingerprints> INSTANCES =
+        new WeakHashMap<Project, FileFingerprints>();
+
+    /**
+     * The recorded fingerprints, keyed by absolute path.
+     */
+    private final Map<String, Fingerprint> recorded =
+        new HashMap<String, Fingerprint>();
+
+    /**
+     * The fingerprints computed since the last call of
+     * {@link #record(Collection)}, keyed by absolute path.
+     */
+    private final Map<String, Fingerprint> current =
+        new HashMap<String, Fingerprint>();
+
+    /**
+     * The fingerprint of one file.
+     */
+    static final class Fingerprint {
+        private final long size;
+        private final long modified;
+        private final String hash;
+
+        Fingerprint(long fileSize, long lastModified, String contentHash) {
+            size = fileSize;
+            modified = lastModified;
+            hash = contentHash;
+        }
+
+        /**
+         * @param value a fingerprint as written by {@link #toString()}
+         * @return the fingerprint, or null if the value is malformed
+         */
+        static Fingerprint valueOf(String value) {
+            String[] parts = value.split(",");
+            if (parts.length != 3) {
+                return null;
+            }
+            try {
+                return new Fingerprint(Long.parseLong(parts[0]),
+                        Long.parseLong(parts[1]), parts[2]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        boolean isStamped(File file) {
+            return file.length() == size && file.lastModified() == modified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Fingerprint)) {
+                return false;
+            }
+            Fingerprint other = (Fingerprint) o;
+            return size == other.size && hash.equals(other.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return size + "," + modified + "," + hash;
+        }
+    }
+
+    /**
+     * Create an empty set of fingerprints.
+     */
+    FileFingerprints() {
+    }
+
+    /**
+     * Return the fingerprints recorded for a project, reading them from the
+     * file next to the project the first time.
+     *
+     * @param project the project
+     * @return the fingerprints of the files imported into the project
+     */
+    public static synchronized FileFingerprints getInstance(Project project) {
+        FileFingerprints fingerprints = INSTANCES.get(project);
+        if (fingerprints == null) {
+            fingerprints = new FileFingerprints();
+            File store = getStoreFile(project);
+            if (store != null && store.exists()) {
+                try {
+                    fingerprints.load(store);
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING,
+                            "Could not read fingerprints from " + store, e);
+                }
+            }
+            INSTANCES.put(project, fingerprints);
+        }
+        return fingerprints;
+    }
+
+    /**
+     * @param project the project
+     * @return the file the fingerprints of the project are kept in, or null
+     *         if the project has not been saved to a file
+     */
+    static File getStoreFile(Project project) {
+        URI uri = project.getURI();
+        if (uri == null || !"file".equals(uri.getScheme())) {
+            return null;
+        }
+        File file = new File(uri);
+        return new File(file.getParentFile(), file.getName() + SUFFIX);
+    }
+
+    /**
+     * Return the files which are new or whose contents have changed since
+     * they were last recorded. The order of the files is kept.
+     *
+     * @param files the files to check
+     * @return the new and changed files
+     */
+    public List<File> getChangedFiles(List<File> files) {
+        Set<File> toHash = new LinkedHashSet<File>();
+        synchronized (this) {
+            for (File file : files) {
+                Fingerprint old = recorded.get(file.getAbsolutePath());
+                if (old == null || !old.isStamped(file)) {
+                    toHash.add(file);
+                }
+            }
+        }
+        Map<File, Fingerprint> hashed =
+            compute(new ArrayList<File>(toHash));
+
+        List<File> changed = new ArrayList<File>();
+        synchronized (this) {
+            for (File file : files) {
+                String path = file.getAbsolutePath();
+                Fingerprint fingerprint = hashed.get(file);
+                if (fingerprint == null) {
+                    if (!toHash.contains(file)) {
+                        continue;
+                    }
+                    // unreadable, let the importer report it
+                    changed.add(file);
+                } else if (fingerprint.equals(recorded.get(path))) {
+                    // only touched, remember the new time
+                    recorded.put(path, fingerprint);
+                } else {
+                    current.put(path, fingerprint);
+                    changed.add(file);
+                }
+            }
+        }
+        LOG.log(Level.INFO, "{0} of {1} files changed, {2} hashed",
+                new Object[] {changed.size(), files.size(), toHash.size()});
+        return changed;
+    }
+
+    /**
+     * Record the fingerprints of files which have been imported. The
+     * fingerprints computed by {@link #getChangedFiles(List)} are used
+     * where available.
+     *
+     * @param files the imported files
+     */
+    public void record(Collection<File> files) {
+        List<File> toHash = new ArrayList<File>();
+        synchronized (this) {
+            for (File file : files) {
+                if (!current.containsKey(file.getAbsolutePath())) {
+                    toHash.add(file);
+                }
+            }
+        }
+        Map<File, Fingerprint> hashed = compute(toHash);
+        synchronized (this) {
+            for (File file : files) {
+                String path = file.getAbsolutePath();
+                Fingerprint fingerprint = current.remove(path);
+                if (fingerprint == null) {
+                    fingerprint = hashed.get(file);
+                }
+                if (fingerprint != null) {
+                    recorded.put(path, fingerprint);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the fingerprints to the file next to the project, if the
+     * project has been saved to a file. This is done each time the project
+     * is saved, so that the file follows the project to a new location.
+     * The fingerprints have to be obtained with
+     * {@link #getInstance(Project)} before the project is saved to a new
+     * location, so that they are read from the old one.
+     *
+     * @param project the project the fingerprints belong to
+     * @throws IOException if the file can not be written
+     */
+    public void save(Project project) throws IOException {
+        File store = getStoreFile(project);
+        if (store != null) {
+            save(store);
+        }
+    }
+
+    /**
+     * @param store the file to read the fingerprints from
+     * @throws IOException if the file can not be read
+     */
+    synchronized void load(File store) throws IOException {
+        Properties props = new Properties();
+        InputStream in = new FileInputStream(store);
+        try {
+            props.load(in);
+        } finally {
+            in.close();
+        }
+        for (Map.Entry<Object, Object> entry : props.entrySet()) {
+            Fingerprint fingerprint =
+                Fingerprint.valueOf((String) entry.getValue());
+            if (fingerprint != null) {
+                recorded.put((String) entry.getKey(), fingerprint);
+            }
+        }
+    }
+
+    /**
+     * @param store the file to write the fingerprints to, which is removed
+     *            if there are none, since it is left from another project
+     * @throws IOException if the file can not be written
+     */
+    synchronized void save(File store) throws IOException {
+        if (recorded.isEmpty()) {
+            if (store.exists() && !store.delete()) {
+                throw new IOException("Could not delete " + store);
+            }
+            return;
+        }
+        Properties props = new Properties();
+        for (Map.Entry<String, Fingerprint> entry : recorded.entrySet()) {
+            props.setProperty(entry.getKey(), entry.getValue().toString());
+        }
+        OutputStream out = new FileOutputStream(store);
+        try {
+            props.store(out, "ArgoUML source file fingerprints");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Compute the fingerprints of some files on one thread per processor.
+     *
+     * @param files the files
+     * @return the fingerprints of the files which could be read
+     */
+    private static Map<File, Fingerprint> compute(List<File> files) {
+        Map<File, Fingerprint> result = new HashMap<File, Fingerprint>();
+        if (files.isEmpty()) {
+            return result;
+        }
+        int threads = Math.min(files.size(),
+                Runtime.getRuntime().availableProcessors());
+        ExecutorService pool =
+            Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private int count;
+                public synchronized Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "Fingerprinter " + ++count);
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        try {
+            List<Future<Fingerprint>> futures =
+                new ArrayList<Future<Fingerprint>>();
+            for (final File file : files) {
+                futures.add(pool.submit(new Callable<Fingerprint>() {
+                    public Fingerprint call() throws IOException {
+                        return compute(file);
+                    }
+                }));
+            }
+            for (int i = 0; i < files.size(); i++) {
+                try {
+                    result.put(files.get(i), futures.get(i).get());
+                } catch (ExecutionException e) {
+                    LOG.log(Level.WARNING, "Could not read " + files.get(i),
+                            e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return result;
+    }
+
+    /**
+     * @param file the file
+     * @return its fingerprint
+     * @throws IOException if the file can not be read
+     */
+    static Fingerprint compute(File file) throws IOException {
+        // read the stamp first, so that a change during hashing
+        // is seen next time
+        long modified = file.lastModified();
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        long size = 0;
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+                size += n;
+            }
+        } finally {
+            in.close();
+        }
+        StringBuilder hash = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hash.append(Character.forDigit((b >> 4) & 0xf, 16));
+            hash.append(Character.forDigit(b & 0xf, 16));
+        }
+        return new Fingerprint(size, modified, hash.toString());
+    }
+}
@@ -62,7 +62,7 @@ import org.argouml.ui.explorer.ExplorerEventAdaptor;
 import org.argouml.ui.targetmanager.TargetManager;
 import org.argouml.uml.diagram.ArgoDiagram;
 import org.argouml.uml.diagram.static_structure.ClassDiagramGraphModel;
-import org.argouml.uml.diagram.static_structure.layout.ClassdiagramLayouter;
+import org.argouml.uml.diagram.static_structure.layout.ClassdiagramLayeredLayouter;
 import org.argouml.util.SuffixFilter;
 import org.tigris.gef.base.Globals;
 
@@ -207,21 +207,9 @@ public abstract class ImportCommon implements ImportSettingsInternal {
 
         if (isChangedOnlySelected()) {
             // filter out all unchanged files
-            Object model =
-                ProjectManager.getManager().getCurrentProject().getModel();
-            for (int i = files.size() - 1; i >= 0; i--) {
-                File f = files.get(i);
-                String fn = f.getAbsolutePath();
-                String lm = String.valueOf(f.lastModified());
-                
-                if (Model.getFacade().getUmlVersion().charAt(0) == '1') {
-                    // TODO: Not yet working for UML2
-                    if (lm.equals(
-                            Model.getFacade().getTaggedValueValue(model, fn))) {
-                        files.remove(i);
-                    }
-                }
-            }
+            files = FileFingerprints.getInstance(
+                    ProjectManager.getManager().getCurrentProject())
+                    .getChangedFiles(files);
         }
 
         return files;
@@ -243,23 +231,6 @@ public abstract class ImportCommon implements ImportSettingsInternal {
         return srcPath;
     }
 
-    /*
-     * Create a TaggedValue with a tag/type matching our source module
-     * filename and a value of the file's last modified timestamp.
-     *
-     * TODO: This functionality needs to be moved someplace useful if
-     * it's needed, otherwise it can be deleted. - tfm - 20070217
-     */
-    private void setLastModified(Project project, File file) {
-        // set the lastModified value
-        String fn = file.getAbsolutePath();
-        String lm = String.valueOf(file.lastModified());
-        if (lm != null) {
-            Model.getCoreHelper()
-                .setTaggedValue(project.getModel(), fn, lm);
-        }
-    }
-
     /*
      * @see org.argouml.uml.reveng.ImportSettings#isCreateDiagramsSelected()
      */
@@ -497,7 +468,14 @@ public abstract class ImportCommon implements ImportSettingsInternal {
                 / 10;
         for (int i = 0; i < diagrams.size(); i++) {
             ArgoDiagram diagram = diagrams.get(i);
-            ClassdiagramLayouter layouter = new ClassdiagramLayouter(diagram);
+            // The same layouter as the Layout action, so that an imported
+            // diagram looks as it will after the user lays it out again.
+            // It replaces ClassdiagramLayouter here since it leaves far
+            // fewer crossings on deep hierarchies, and unlinked classes
+            // are packed into rows instead of one wide row. The import
+            // isn't run on the Swing thread, so this lays out in place.
+            ClassdiagramLayeredLayouter layouter =
+                new ClassdiagramLayeredLayouter(diagram);
             layouter.layout();
             int act = startingProgress + (i + 1) / 10;
             int progress = MAX_PROGRESS_PREPARE
@@ -565,6 +543,9 @@ public abstract class ImportCommon implements ImportSettingsInternal {
         try {
             newElements.addAll(currentModule.parseFiles(
                     project, filesLeft, this, monitor));
+            if (!monitor.isCanceled()) {
+                recordFingerprints(project, filesLeft);
+            }
         } catch (Exception e) {
             problems.append(printToBuffer(e));
         }
@@ -601,6 +582,18 @@ public abstract class ImportCommon implements ImportSettingsInternal {
     }
 
 
+    /**
+     * Remember the fingerprints of the imported files, so that a later
+     * import of changed files only can skip them while they are unchanged.
+     * They are written out when the project is saved.
+     *
+     * @param project the project the files were imported into
+     * @param files the imported files
+     */
+    private void recordFingerprints(Project project, List<File> files) {
+        FileFingerprints.getInstance(project).record(files);
+    }
+
     /**
      * Create diagram figures for a collection of model elements.
      *
@@ -151,22 +151,28 @@ public class ActionDeleteModelElements extends UndoableAction {
         /* This next line fixes issue 4276: */
         TargetManager.getInstance().setTarget(null);
         Object target = null;
-        for (int i = targets.length - 1; i >= 0; i--) {
-            target = targets[i];
-            try {
-                if (sureRemove(target)) {
-                    // remove from the model
-                    if (target instanceof Fig) {
-                        Object owner = ((Fig) target).getOwner();
-                        if (owner != null) {
-                            target = owner;
+        // Deliver the events of a multiple delete in one go
+        Model.getPump().startBatch();
+        try {
+            for (int i = targets.length - 1; i >= 0; i--) {
+                target = targets[i];
+                try {
+                    if (sureRemove(target)) {
+                        // remove from the model
+                        if (target instanceof Fig) {
+                            Object owner = ((Fig) target).getOwner();
+                            if (owner != null) {
+                                target = owner;
+                            }
                         }
+                        p.moveToTrash(target);
                     }
-                    p.moveToTrash(target);
+                } catch (InvalidElementException e) {
+                    LOG.log(Level.FINE, "Model element deleted twice - ignoring 2nd delete");
                 }
-            } catch (InvalidElementException e) {
-                LOG.log(Level.FINE, "Model element deleted twice - ignoring 2nd delete");
             }
+        } finally {
+            Model.getPump().endBatch();
         }
     }
 
@@ -0,0 +1,58 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.uml.ui;
+
+import org.argouml.ui.targetmanager.TargetManager;
+import org.argouml.uml.diagram.ArgoDiagram;
+import org.argouml.uml.diagram.DiagramUtils;
+import org.argouml.uml.diagram.static_structure.layout.ClassdiagramForceLayouter;
+import org.argouml.uml.diagram.static_structure.layout.ClassdiagramGraphLayouter;
+import org.argouml.uml.diagram.static_structure.ui.UMLClassDiagram;
+
+/**
+ * Action to lay out a class diagram with the force-directed layouter,
+ * which suits diagrams with many associations and few generalizations.
+ *
+ * @see ClassdiagramForceLayouter
+ */
+public class ActionForceLayout extends ActionLayout {
+
+    /**
+     * The constructor.
+     */
+    public ActionForceLayout() {
+        super("action.layout-force-directed");
+    }
+
+    /**
+     * Only class diagrams are supported.
+     *
+     * @return true if the action is enabled
+     * @see ActionLayout#isEnabled()
+     */
+    @Override
+    public boolean isEnabled() {
+        Object target = TargetManager.getInstance().getTarget();
+        if (target instanceof ArgoDiagram) {
+            return target instanceof UMLClassDiagram;
+        }
+        return DiagramUtils.getActiveDiagram() instanceof UMLClassDiagram;
+    }
+
+    @Override
+    protected ClassdiagramGraphLayouter createClassdiagramLayouter(
+            ArgoDiagram diagram) {
+        return new ClassdiagramForceLayouter(diagram);
+    }
+}
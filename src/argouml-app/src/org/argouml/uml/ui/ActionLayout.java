@@ -42,7 +42,11 @@ import java.awt.event.ActionEvent;
 
 import javax.swing.Action;
 
+import org.argouml.application.events.ArgoEventPump;
+import org.argouml.application.events.ArgoEventTypes;
+import org.argouml.application.events.ArgoStatusEvent;
 import org.argouml.i18n.Translator;
+import org.argouml.ui.ExceptionDialog;
 import org.argouml.ui.UndoableAction;
 import org.argouml.ui.targetmanager.TargetManager;
 import org.argouml.uml.diagram.ArgoDiagram;
@@ -50,8 +54,10 @@ import org.argouml.uml.diagram.DiagramUtils;
 import org.argouml.uml.diagram.activity.layout.ActivityDiagramLayouter;
 import org.argouml.uml.diagram.activity.ui.UMLActivityDiagram;
 import org.argouml.uml.diagram.layout.Layouter;
-import org.argouml.uml.diagram.static_structure.layout.ClassdiagramLayouter;
+import org.argouml.uml.diagram.static_structure.layout.ClassdiagramGraphLayouter;
+import org.argouml.uml.diagram.static_structure.layout.ClassdiagramLayeredLayouter;
 import org.argouml.uml.diagram.static_structure.ui.UMLClassDiagram;
+import org.argouml.util.ArgoFrame;
 
 /**
  * Action to automatically lay out a diagram.
@@ -63,10 +69,18 @@ public class ActionLayout extends UndoableAction {
      * The constructor.
      */
     public ActionLayout() {
-        super(Translator.localize("action.layout"), null);
+        this("action.layout");
+    }
+
+    /**
+     * Constructor for actions which lay out class diagrams differently.
+     *
+     * @param key the key of the localized name of the action
+     */
+    protected ActionLayout(String key) {
+        super(Translator.localize(key), null);
         // Set the tooltip string:
-        putValue(Action.SHORT_DESCRIPTION, 
-                Translator.localize("action.layout"));
+        putValue(Action.SHORT_DESCRIPTION, Translator.localize(key));
     }
 
     /**
@@ -103,12 +117,15 @@ public class ActionLayout extends UndoableAction {
      */
     @Override
     public void actionPerformed(ActionEvent ae) {
-    	super.actionPerformed(ae);
-        ArgoDiagram diagram = DiagramUtils.getActiveDiagram();
+        final ArgoDiagram diagram = DiagramUtils.getActiveDiagram();
         Layouter layouter;
         if (diagram instanceof UMLClassDiagram) {
-            layouter = new ClassdiagramLayouter(diagram);
+            // large diagrams take a while, so keep the UI responsive.
+            // The undoable interaction starts when the Figs are moved.
+            layoutInBackground(diagram);
+            return;
         } else if (diagram instanceof UMLActivityDiagram) {
+            super.actionPerformed(ae);
             layouter = 
                  new ActivityDiagramLayouter(diagram);
         } else {
@@ -119,4 +136,61 @@ public class ActionLayout extends UndoableAction {
         layouter.layout();
         diagram.damage();
     }
+
+    /**
+     * Lay out a class diagram, computing the places on a background thread.
+     * The Figs are only moved if the diagram is still the active one and
+     * hasn't been changed in the meantime, and then as one undoable
+     * interaction.
+     *
+     * @param diagram the class diagram
+     */
+    private void layoutInBackground(final ArgoDiagram diagram) {
+        final String label = (String) getValue(Action.NAME);
+        final ClassdiagramGraphLayouter layouter =
+            createClassdiagramLayouter(diagram);
+        boolean started = layouter.layoutInBackground(
+                new ClassdiagramGraphLayouter.LayoutListener() {
+                    public void layoutComputed() {
+                        if (DiagramUtils.getActiveDiagram() != diagram) {
+                            layoutDiscarded();
+                            return;
+                        }
+                        diagram.getProject().getUndoManager()
+                                .startInteraction(label);
+                        layouter.apply();
+                        diagram.damage();
+                    }
+
+                    public void layoutDiscarded() {
+                        showStatus("statusmsg.bar.layout-discarded");
+                    }
+
+                    public void layoutFailed(Throwable cause) {
+                        ExceptionDialog ed = new ExceptionDialog(
+                                ArgoFrame.getFrame(), cause);
+                        ed.setModal(true);
+                        ed.setVisible(true);
+                    }
+                });
+        if (!started) {
+            showStatus("statusmsg.bar.layout-running");
+        }
+    }
+
+    /**
+     * Create the layouter for a class diagram.
+     *
+     * @param diagram the class diagram
+     * @return the layouter
+     */
+    protected ClassdiagramGraphLayouter createClassdiagramLayouter(
+            ArgoDiagram diagram) {
+        return new ClassdiagramLayeredLayouter(diagram);
+    }
+
+    private void showStatus(String key) {
+        ArgoEventPump.fireEvent(new ArgoStatusEvent(
+                ArgoEventTypes.STATUS_TEXT, this, Translator.localize(key)));
+    }
 }
@@ -38,6 +38,10 @@
 
 package org.argouml.cognitive;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 import junit.framework.TestCase;
 
 /**
@@ -68,4 +72,24 @@ public class TestCritic extends TestCase {
         cr.beActive();
         assertTrue(cr.isActive());
     }
+
+    /**
+     * Test that only critics that read a changed property match.
+     */
+    public void testTriggers() {
+        Set<String> nameChanged = Collections.singleton("name");
+        assertTrue(cr.getTriggers().isEmpty());
+        assertTrue(cr.matchReason(nameChanged));
+        assertTrue(cr.matchReason((Set<String>) null));
+
+        cr.addTrigger("feature");
+        assertFalse(cr.matchReason(nameChanged));
+        assertTrue(cr.matchReason(Collections.singleton("feature")));
+        assertTrue(cr.matchReason((Set<String>) null));
+
+        Set<String> both = new HashSet<String>(nameChanged);
+        both.add("feature");
+        assertTrue(cr.matchReason(both));
+        assertTrue(cr.getTriggers().contains("feature"));
+    }
 }
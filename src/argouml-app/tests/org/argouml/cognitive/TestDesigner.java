@@ -0,0 +1,143 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.cognitive;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.argouml.model.InitializeModel;
+import org.argouml.model.Model;
+import org.argouml.uml.cognitive.critics.CrUML;
+
+/**
+ * Tests for the critiquing of the {@link Designer}.
+ */
+public class TestDesigner extends TestCase {
+
+    private CrUML critic;
+
+    private Set<Object> critiqued =
+        Collections.synchronizedSet(new HashSet<Object>());
+
+    private Set<String> threads =
+        Collections.synchronizedSet(new HashSet<String>());
+
+    private volatile boolean writerWaited;
+
+    /**
+     * The constructor.
+     *
+     * @param name the name of the test
+     */
+    public TestDesigner(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        InitializeModel.initializeDefault();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Designer.setCritiquingRoot(null);
+        Designer.setUserWorking(false);
+        Designer.clearCritiquing();
+        if (critic != null) {
+            Agency.unregister(critic,
+                    (Class<?>) Model.getMetaTypes().getUMLClass());
+        }
+        super.tearDown();
+    }
+
+    /**
+     * Check that the queued elements are critiqued on the critiquer pool
+     * and that the model isn't changed while they are.
+     *
+     * @throws InterruptedException if the test is interrupted
+     */
+    public void testCritiqueOnPool() throws InterruptedException {
+        Object pack = Model.getModelManagementFactory().buildPackage("p");
+        final Object renamed =
+            Model.getCoreFactory().buildClass("Renamed", pack);
+        final List<Object> classes = new ArrayList<Object>();
+        for (int i = 0; i < 20; i++) {
+            classes.add(Model.getCoreFactory().buildClass("C" + i, pack));
+        }
+        critic = new CrUML() {
+            @Override
+            public boolean isActive() {
+                // it supports no decisions of the designer
+                return true;
+            }
+
+            @Override
+            public boolean predicate2(Object dm, Designer dsgr) {
+                threads.add(Thread.currentThread().getName());
+                if (dm == classes.get(0)) {
+                    checkWriterWaits(renamed);
+                }
+                critiqued.add(dm);
+                return NO_PROBLEM;
+            }
+        };
+        Agency.register(critic, Model.getMetaTypes().getUMLClass());
+
+        Designer.setUserWorking(true);
+        Designer designer = Designer.theDesigner();
+        for (Object cls : classes) {
+            designer.critiqueASAP(cls, null);
+        }
+        designer.spawnCritiquer(pack);
+
+        long end = System.currentTimeMillis() + 30000;
+        while ((!critiqued.containsAll(classes)
+                || !"Changed".equals(Model.getFacade().getName(renamed)))
+                && System.currentTimeMillis() < end) {
+            Thread.sleep(100);
+        }
+        assertTrue(critiqued.containsAll(classes));
+        for (String name : threads) {
+            assertTrue(name, name.startsWith("CritiquingThread "));
+        }
+        assertTrue(writerWaited);
+        assertEquals("Changed", Model.getFacade().getName(renamed));
+    }
+
+    /**
+     * Change the name of a class on another thread and check that the
+     * change waits until the critics are done.
+     */
+    private void checkWriterWaits(final Object cls) {
+        Thread writer = new Thread() {
+            public void run() {
+                Model.getCoreHelper().setName(cls, "Changed");
+            }
+        };
+        writer.start();
+        try {
+            writer.join(500);
+        } catch (InterruptedException e) {
+            return;
+        }
+        writerWaited = writer.isAlive()
+            && "Renamed".equals(Model.getFacade().getName(cls));
+    }
+}
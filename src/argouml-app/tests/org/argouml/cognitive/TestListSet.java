@@ -0,0 +1,190 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.cognitive;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+
+import junit.framework.TestCase;
+
+import org.argouml.util.ChildGenerator;
+import org.argouml.util.PredicateTrue;
+
+/**
+ * Tests for the ListSet.
+ */
+public class TestListSet extends TestCase {
+
+    /**
+     * Number of nodes in the graphs used for the closure tests.
+     */
+    private static final int NODES = 10000;
+
+    /**
+     * The constructor.
+     *
+     * @param name the name of the test
+     */
+    public TestListSet(String name) {
+        super(name);
+    }
+
+    /**
+     * Test that the set and the list stay in step whichever way the
+     * ListSet is modified.
+     */
+    public void testNoDuplicates() {
+        ListSet<String> ls = new ListSet<String>();
+        ls.add("a");
+        ls.addAll(Arrays.asList("b", "a", "c", "b"));
+        assertEquals(Arrays.asList("a", "b", "c"), new ArrayList<String>(ls));
+
+        ls.add(0, "c");
+        ls.addAll(0, Arrays.asList("d", "a"));
+        assertEquals(Arrays.asList("d", "a", "b", "c"),
+                new ArrayList<String>(ls));
+
+        ls.retainAll(Arrays.asList("a", "c"));
+        assertFalse(ls.contains("d"));
+        assertTrue(ls.contains("c"));
+
+        Iterator<String> it = ls.iterator();
+        it.next();
+        it.remove();
+        assertFalse(ls.contains("a"));
+        assertTrue(ls.add("a"));
+        assertEquals(Arrays.asList("c", "a"), new ArrayList<String>(ls));
+
+        ls.removeElement("c");
+        assertFalse(ls.contains("c"));
+        assertEquals(-1, ls.indexOf("c"));
+        assertEquals(0, ls.indexOf("a"));
+        assertEquals(1, ls.size());
+    }
+
+    /**
+     * Test that removing elements keeps the order and the indexes of the
+     * others, also when many are removed from the middle.
+     */
+    public void testRemove() {
+        ListSet<Integer> ls = new ListSet<Integer>();
+        for (int i = 0; i < 10; i++) {
+            ls.add(i);
+        }
+        for (int i = 1; i < 9; i += 2) {
+            assertTrue(ls.remove(Integer.valueOf(i)));
+        }
+        assertFalse(ls.remove(Integer.valueOf(1)));
+        assertEquals(Arrays.asList(0, 2, 4, 6, 8, 9),
+                new ArrayList<Integer>(ls));
+        assertEquals(6, ls.size());
+        assertEquals(3, ls.indexOf(6));
+        assertEquals(Integer.valueOf(8), ls.get(4));
+
+        ls.remove(Integer.valueOf(9));
+        ls.add(1);
+        assertEquals(Arrays.asList(0, 2, 4, 6, 8, 1),
+                new ArrayList<Integer>(ls));
+
+        ListIterator<Integer> it = ls.listIterator(1);
+        assertEquals(Integer.valueOf(2), it.next());
+        it.remove();
+        assertFalse(ls.contains(2));
+        assertEquals(1, ls.indexOf(4));
+        assertEquals(Arrays.asList(0, 4, 6, 8, 1),
+                new ArrayList<Integer>(ls));
+    }
+
+    /**
+     * Test that equal ListSets have equal hash codes, regardless of order.
+     */
+    public void testEqualsHashCode() {
+        ListSet<String> ls1 = new ListSet<String>();
+        ls1.addAll(Arrays.asList("a", "b", "c"));
+        ListSet<String> ls2 = new ListSet<String>();
+        ls2.addAll(Arrays.asList("c", "b", "a"));
+        assertEquals(ls1, ls2);
+        assertEquals(ls1.hashCode(), ls2.hashCode());
+        ls2.remove("a");
+        assertFalse(ls1.equals(ls2));
+    }
+
+    /**
+     * Compute the closure of a {@value #NODES} node tree where every node
+     * also links back to the root, so that every step of the closure runs
+     * into elements which have already been visited.
+     */
+    public void testTransitiveClosureOfCyclicGraph() {
+        final int fanOut = 100;
+        ChildGenerator cg = new ChildGenerator() {
+            public Iterator childIterator(Object parent) {
+                int node = ((Integer) parent).intValue();
+                List<Integer> children = new ArrayList<Integer>();
+                for (int i = 1; i <= fanOut; i++) {
+                    int child = node * fanOut + i;
+                    if (child < NODES) {
+                        children.add(Integer.valueOf(child));
+                    }
+                }
+                children.add(Integer.valueOf(0));
+                return children.iterator();
+            }
+        };
+        ListSet<Integer> root = new ListSet<Integer>(Integer.valueOf(0));
+
+        ListSet<Integer> closure = root.transitiveClosure(cg);
+
+        assertEquals(NODES, closure.size());
+        assertEquals(NODES, new HashSet<Integer>(closure).size());
+        // Breadth first, each node is numbered after all nodes of the
+        // levels above it, so the closure comes out in numeric order
+        for (int i = 0; i < NODES; i++) {
+            assertEquals(Integer.valueOf(i), closure.get(i));
+        }
+
+        ListSet<Integer> reachable = root.reachable(cg);
+        assertEquals(NODES, reachable.size());
+    }
+
+    /**
+     * Compute the closure of a {@value #NODES} node chain, which needs
+     * one step per node, and check that the depth limit is respected.
+     */
+    public void testTransitiveClosureOfChain() {
+        ChildGenerator cg = new ChildGenerator() {
+            public Iterator childIterator(Object parent) {
+                int next = ((Integer) parent).intValue() + 1;
+                if (next >= NODES) {
+                    return Collections.emptyList().iterator();
+                }
+                return Collections.singletonList(Integer.valueOf(next))
+                        .iterator();
+            }
+        };
+        ListSet<Integer> root = new ListSet<Integer>(Integer.valueOf(0));
+
+        ListSet<Integer> limited = root.transitiveClosure(cg);
+        assertEquals(51, limited.size());
+
+        ListSet<Integer> all = root.transitiveClosure(cg, NODES,
+                PredicateTrue.getInstance());
+        assertEquals(NODES, all.size());
+        assertEquals(Integer.valueOf(NODES - 1), all.get(NODES - 1));
+    }
+}
@@ -38,9 +38,12 @@
 
 package org.argouml.cognitive;
 
+import java.util.List;
+
 import junit.framework.TestCase;
 
 import org.argouml.model.InitializeModel;
+import org.argouml.model.Model;
 
 /**
  * Testing the creation of a ToDoItemList.
@@ -107,4 +110,113 @@ public class TestToDoItemList extends TestCase {
         // size should be 0 since item was removed
         assertTrue("ToDoList.size() is incorrect", list.size() == 0);
     }
+
+    /**
+     * Test the lookups by offender, poster and decision.
+     */
+    public void testIndexes() {
+        // Items posted by critics are checked against the resolved critics,
+        // which needs real model elements as offenders
+        InitializeModel.initializeMDR();
+        Critic critic1 = new Critic();
+        critic1.setHeadline("Headline 1");
+        critic1.addSupportedDecision(Decision.UNSPEC);
+        Critic critic2 = new Critic();
+        critic2.setHeadline("Headline 2");
+        Object offender1 = Model.getCoreFactory().createClass();
+        Object offender2 = Model.getCoreFactory().createClass();
+        ListSet both = new ListSet(offender1);
+        both.add(offender2);
+        ToDoItem item1 = new ToDoItem(critic1, offender1, null);
+        ToDoItem item2 = new ToDoItem(critic2, both, null);
+
+        ToDoList list = new ToDoList();
+        list.addElement(item1);
+        list.addElement(item2);
+
+        assertEquals(2, list.elementListForOffender(offender1).size());
+        assertEquals(1, list.elementListForOffender(offender2).size());
+        assertTrue(list.hasItemsForOffender(offender2));
+        assertEquals(1, list.elementListForPoster(critic1).size());
+        assertSame(item2, list.elementListForPoster(critic2).get(0));
+        assertEquals(1, list.elementListForDecision(Decision.UNSPEC).size());
+        assertEquals(2, list.getOffenders().size());
+        assertEquals(2, list.getPosters().size());
+        assertEquals(2, list.getToDoItemSnapshot().size());
+
+        list.removeElement(item2);
+        assertEquals(1, list.elementListForOffender(offender1).size());
+        assertFalse(list.hasItemsForOffender(offender2));
+        assertTrue(list.elementListForPoster(critic2).isEmpty());
+        assertEquals(1, list.getOffenders().size());
+        assertEquals(1, list.getPosters().size());
+        assertEquals(1, list.getToDoItemSnapshot().size());
+
+        // Sets of offenders and posters handed out are never changed, a
+        // new offender or poster gives new sets
+        ListSet offenders = list.getOffenders();
+        ListSet<Poster> posters = list.getPosters();
+        list.addElement(item2);
+        assertFalse(offenders.contains(offender2));
+        assertFalse(posters.contains(critic2));
+        assertTrue(list.getOffenders().contains(offender2));
+        assertTrue(list.getPosters().contains(critic2));
+        offenders = list.getOffenders();
+        list.removeElement(item2);
+        assertTrue(offenders.contains(offender2));
+        assertFalse(list.getOffenders().contains(offender2));
+        assertFalse(list.getPosters().contains(critic2));
+
+        // Removing keeps the order of the remaining items
+        ToDoItem item3 = new ToDoItem(critic2, offender2, null);
+        list.addElement(item2);
+        list.addElement(item3);
+        list.removeElement(item2);
+        assertSame(item1, list.get(0));
+        assertSame(item3, list.get(1));
+
+        list.removeAllElements();
+        assertTrue(list.elementListForOffender(offender1).isEmpty());
+        assertTrue(list.elementListForDecision(Decision.UNSPEC).isEmpty());
+        assertTrue(list.getToDoItemSnapshot().isEmpty());
+    }
+
+    /**
+     * Test that the list of items follows the changes of the ToDoList and
+     * that items removed through it leave the indexes too.
+     */
+    public void testLiveList() {
+        InitializeModel.initializeMDR();
+        Critic critic = new Critic() {
+            @Override
+            public List<Decision> getSupportedDecisions() {
+                return null;
+            }
+        };
+        critic.setHeadline("Headline");
+        Object offender = Model.getCoreFactory().createClass();
+        ToDoItem item = new ToDoItem(critic, offender, null);
+
+        ToDoList list = new ToDoList();
+        List<ToDoItem> items = list.getToDoItemList();
+        assertTrue(items.isEmpty());
+        list.addElement(item);
+        assertEquals(1, items.size());
+        synchronized (items) {
+            for (ToDoItem i : items) {
+                assertSame(item, i);
+            }
+        }
+
+        assertTrue(items.remove(item));
+        assertTrue(list.getToDoItemSnapshot().isEmpty());
+        assertFalse(list.hasItemsForOffender(offender));
+        assertTrue(list.elementListForPoster(critic).isEmpty());
+
+        assertTrue(items.add(item));
+        assertTrue(list.hasItemsForOffender(offender));
+        items.clear();
+        assertEquals(0, list.size());
+        assertFalse(list.hasItemsForOffender(offender));
+    }
 }
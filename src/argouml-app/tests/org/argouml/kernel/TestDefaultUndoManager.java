@@ -0,0 +1,162 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.kernel;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.argouml.model.InitializeModel;
+
+/**
+ * Tests the bounds of the history of the DefaultUndoManager.
+ */
+public class TestDefaultUndoManager extends TestCase {
+
+    private DefaultUndoManager undoManager;
+
+    private List<String> log;
+
+    private int undoSize;
+
+    /**
+     * The constructor.
+     *
+     * @param name the name of the test
+     */
+    public TestDefaultUndoManager(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        InitializeModel.initializeDefault();
+        undoManager = new DefaultUndoManager(null);
+        undoManager.setUndoMax(100);
+        log = new ArrayList<String>();
+        undoManager.addPropertyChangeListener(new PropertyChangeListener() {
+            public void propertyChange(PropertyChangeEvent evt) {
+                if ("undoSize".equals(evt.getPropertyName())) {
+                    undoSize = (Integer) evt.getNewValue();
+                }
+            }
+        });
+    }
+
+    /**
+     * Check that the oldest interactions are forgotten when the history
+     * holds too many bytes.
+     */
+    public void testBytesBound() {
+        undoManager.setUndoMaxBytes(10000);
+        for (int i = 0; i < 10; i++) {
+            undoManager.startInteraction("change " + i);
+            undoManager.execute(new SizedCommand("a" + i, 1000));
+            undoManager.execute(new SizedCommand("b" + i, 1000));
+        }
+        assertTrue(undoManager.getEstimatedSize() <= 10000);
+        assertEquals(4, undoSize);
+
+        for (int i = 0; i < 4; i++) {
+            undoManager.undo();
+        }
+        assertEquals(0, undoSize);
+        assertEquals("[a0, b0, a1, b1, a2, b2, a3, b3, a4, b4, a5, b5, "
+                + "a6, b6, a7, b7, a8, b8, a9, b9, "
+                + "undo b9, undo a9, undo b8, undo a8, "
+                + "undo b7, undo a7, undo b6, undo a6]",
+                log.toString());
+
+        undoManager.redo();
+        assertEquals(1, undoSize);
+        assertTrue(undoManager.getEstimatedSize() <= 10000);
+    }
+
+    /**
+     * Check that lowering the bound trims the history, but keeps the latest
+     * interaction.
+     */
+    public void testLatestInteractionKept() {
+        for (int i = 0; i < 3; i++) {
+            undoManager.startInteraction("change " + i);
+            undoManager.execute(new SizedCommand("c" + i, 5000));
+        }
+        assertEquals(3, undoSize);
+        long size = undoManager.getEstimatedSize();
+        assertTrue(size >= 15000);
+
+        undoManager.setUndoMaxBytes(1000);
+        assertEquals(1, undoSize);
+        assertTrue(undoManager.getEstimatedSize() < size);
+        undoManager.undo();
+        assertEquals("undo c2", log.get(log.size() - 1));
+        assertEquals(0, undoSize);
+    }
+
+    /**
+     * Check that the size of the history follows undo and redo and is
+     * released when the redo stack is cleared.
+     */
+    public void testSizeAccounting() {
+        undoManager.startInteraction("first");
+        undoManager.execute(new SizedCommand("d0", 2000));
+        undoManager.startInteraction("second");
+        undoManager.execute(new SizedCommand("d1", 3000));
+        long size = undoManager.getEstimatedSize();
+        assertTrue(size >= 5000);
+
+        undoManager.undo();
+        assertEquals(size, undoManager.getEstimatedSize());
+        undoManager.redo();
+        assertEquals(size, undoManager.getEstimatedSize());
+
+        undoManager.undo();
+        undoManager.startInteraction("third");
+        undoManager.execute(new SizedCommand("d2", 100));
+        assertTrue(undoManager.getEstimatedSize() < size - 2800);
+    }
+
+    /**
+     * A command which claims to hold a given number of bytes.
+     */
+    private class SizedCommand extends AbstractCommand {
+
+        private final String name;
+
+        private final int size;
+
+        SizedCommand(String theName, int theSize) {
+            name = theName;
+            size = theSize;
+        }
+
+        public Object execute() {
+            log.add(name);
+            return null;
+        }
+
+        public void undo() {
+            log.add("undo " + name);
+        }
+
+        @Override
+        public int getEstimatedSize() {
+            return size;
+        }
+    }
+}
@@ -41,6 +41,8 @@ package org.argouml.kernel;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 
 import junit.framework.TestCase;
@@ -67,6 +69,8 @@ import org.argouml.uml.diagram.static_structure.ui.InitClassDiagram;
 import org.argouml.uml.diagram.static_structure.ui.UMLClassDiagram;
 import org.argouml.uml.diagram.ui.InitDiagramAppearanceUI;
 import org.argouml.uml.diagram.use_case.ui.InitUseCaseDiagram;
+import org.tigris.gef.presentation.Fig;
+import org.tigris.gef.presentation.FigRect;
 
 
 /**
@@ -338,6 +342,129 @@ public class TestProject extends TestCase {
                 Model.getUmlFactory().isRemoved(bClass));
     }
 
+    /**
+     * Test finding types by simple and qualified name, and that renames
+     * and deletions are seen.
+     */
+    public void testFindTypeInModel() {
+        Project p = ProjectManager.getManager().getOpenProjects().get(0);
+        Object model = p.getUserDefinedModelList().get(0);
+        Object package1 =
+            Model.getModelManagementFactory().buildPackage("findtype");
+        Model.getCoreHelper().setNamespace(package1, model);
+        Object aClass = Model.getCoreFactory().buildClass("Foo", package1);
+        Model.getPump().flushModelEvents();
+
+        assertSame(aClass, p.findTypeInModel("Foo", model));
+        assertSame(aClass, p.findTypeInModel("findtype::Foo", model));
+        assertSame(aClass, p.findTypeInModel("Foo", package1));
+        assertSame(aClass, p.findType("Foo", false));
+
+        Model.getCoreHelper().setName(aClass, "Bar");
+        Model.getPump().flushModelEvents();
+        assertNull(p.findTypeInModel("Foo", model));
+        assertSame(aClass, p.findTypeInModel("Bar", model));
+        assertSame(aClass, p.findTypeInModel("findtype::Bar", model));
+
+        Model.getCoreHelper().setName(package1, "renamed");
+        assertSame(aClass, p.findTypeInModel("renamed::Bar", model));
+        assertNull(p.findTypeInModel("findtype::Bar", model));
+
+        Model.getUmlFactory().delete(aClass);
+        Model.getPump().flushModelEvents();
+        assertNull(p.findTypeInModel("Bar", model));
+        assertNull(p.findType("Bar", false));
+    }
+
+    /**
+     * Test that a type with the same name in two packages is found in the
+     * same order as a plain search of the model, and that profile types
+     * are found.
+     */
+    public void testFindTypePrecedence() {
+        Project p = ProjectManager.getManager().getOpenProjects().get(0);
+        Object model = p.getUserDefinedModelList().get(0);
+        Object package1 =
+            Model.getModelManagementFactory().buildPackage("precedence1");
+        Model.getCoreHelper().setNamespace(package1, model);
+        Object package2 =
+            Model.getModelManagementFactory().buildPackage("precedence2");
+        Model.getCoreHelper().setNamespace(package2, model);
+        Model.getCoreFactory().buildClass("Dup", package2);
+        Model.getCoreFactory().buildClass("Dup", package1);
+
+        Object first = null;
+        for (Object classifier : Model.getModelManagementHelper()
+                .getAllModelElementsOfKind(model,
+                        Model.getMetaTypes().getClassifier())) {
+            if ("Dup".equals(Model.getFacade().getName(classifier))) {
+                first = classifier;
+                break;
+            }
+        }
+        assertNotNull(first);
+        assertSame(first, p.findTypeInModel("Dup", model));
+
+        ProfileConfiguration pc = p.getProfileConfiguration();
+        Collection profileTypes =
+            pc.findByMetaType(Model.getMetaTypes().getDataType());
+        assertFalse("No profile types", profileTypes.isEmpty());
+        Object profileType = profileTypes.iterator().next();
+        String name = Model.getFacade().getName(profileType);
+        assertNotNull(pc.findType(name));
+        assertSame(pc.findType(name), p.findType(name, false));
+    }
+
+    /**
+     * Test that the presentations of an element are found as Figs are
+     * added to, moved between and removed from diagrams.
+     */
+    public void testFindPresentations() {
+        Project p = ProjectManager.getManager().getOpenProjects().get(0);
+        Object model = p.getUserDefinedModelList().get(0);
+        Object aClass = Model.getCoreFactory().buildClass("Shown", model);
+        Object attribute = Model.getCoreFactory().buildAttribute2(aClass,
+                p.getDefaultAttributeType());
+        Object otherClass = Model.getCoreFactory().buildClass("Other", model);
+
+        UMLClassDiagram d1 = new UMLClassDiagram(model);
+        p.addMember(d1);
+        UMLClassDiagram d2 = new UMLClassDiagram(model);
+        p.addMember(d2);
+        assertEquals(0, p.getPresentationCountFor(aClass));
+
+        Fig fig1 = new FigRect(0, 0, 10, 10);
+        fig1.setOwner(aClass);
+        d1.getLayer().add(fig1);
+        Fig fig2 = new FigRect(0, 0, 10, 10);
+        fig2.setOwner(aClass);
+        d2.getLayer().add(fig2);
+        Fig fig3 = new FigRect(20, 20, 10, 10);
+        fig3.setOwner(aClass);
+        d2.getLayer().add(fig3);
+
+        assertEquals(3, p.getPresentationCountFor(aClass));
+        assertEquals(Arrays.asList(fig1, fig2),
+                new ArrayList(p.findAllPresentationsFor(aClass)));
+        assertEquals(Arrays.asList(fig1, fig2),
+                new ArrayList<Fig>(p.findFigsForMember(attribute)));
+
+        fig2.setOwner(otherClass);
+        assertEquals(2, p.getPresentationCountFor(aClass));
+        assertEquals(Arrays.asList(fig1, fig3),
+                new ArrayList(p.findAllPresentationsFor(aClass)));
+        assertEquals(Arrays.asList(fig2),
+                new ArrayList(p.findAllPresentationsFor(otherClass)));
+
+        d1.getLayer().remove(fig1);
+        assertEquals(Arrays.asList(fig3),
+                new ArrayList(p.findAllPresentationsFor(aClass)));
+
+        p.moveToTrash(d2);
+        assertEquals(0, p.getPresentationCountFor(aClass));
+        assertTrue(p.findFigsForMember(attribute).isEmpty());
+    }
+
     /**
      * Test deleting a package that contains a Class.
      * The class should be deleted, too.
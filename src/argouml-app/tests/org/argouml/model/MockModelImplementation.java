@@ -677,6 +677,13 @@ class MockModelImplementation implements ModelImplementation {
         return (CopyHelper) controlCopyHelper.getMock();
     }
 
+    /*
+     * @see org.argouml.model.ModelImplementation#runReadOnly(java.lang.Runnable)
+     */
+    public void runReadOnly(Runnable task) {
+        task.run();
+    }
+
     public XmiWriter getXmiWriter(Object model, OutputStream stream,
             String version) throws UmlException {
         throw new NotImplementedException();
@@ -40,6 +40,9 @@ package org.argouml.model;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import junit.framework.TestCase;
 
@@ -311,6 +314,159 @@ public class TestModelEventPump extends TestCase {
         assertFalse(eventcalled);
     }
 
+    /**
+     * Tests that a listener which is removed while a batch is open doesn't
+     * receive the events collected for it.
+     */
+    public void testBatchRemovedListener() {
+        String[] map = new String[] {
+            "isAbstract",
+        };
+        Model.getPump().addModelEventListener(listener, elem, map);
+        Model.getPump().startBatch();
+        try {
+            Model.getCoreHelper().setAbstract(elem, true);
+            Model.getPump().flushModelEvents();
+            assertFalse(eventcalled);
+            Model.getPump().removeModelEventListener(listener, elem, map);
+        } finally {
+            Model.getPump().endBatch();
+        }
+        assertFalse(eventcalled);
+    }
+
+    /**
+     * Tests that events are only delivered when the outermost batch ends.
+     */
+    public void testNestedBatch() {
+        Model.getPump().addModelEventListener(listener, elem,
+                new String[] {"isAbstract"});
+        Model.getPump().startBatch();
+        try {
+            Model.getPump().startBatch();
+            try {
+                Model.getCoreHelper().setAbstract(elem, true);
+            } finally {
+                Model.getPump().endBatch();
+            }
+            assertFalse(eventcalled);
+        } finally {
+            Model.getPump().endBatch();
+        }
+        assertTrue(eventcalled);
+    }
+
+    /**
+     * Tests that batched events reach the listeners in the order they
+     * arrived, even when they are for different listeners.
+     */
+    public void testBatchOrder() {
+        final List<String> received = new ArrayList<String>();
+        PropertyChangeListener nameListener = new PropertyChangeListener() {
+            public void propertyChange(PropertyChangeEvent evt) {
+                received.add("name:" + evt.getPropertyName());
+            }
+        };
+        PropertyChangeListener flagListener = new PropertyChangeListener() {
+            public void propertyChange(PropertyChangeEvent evt) {
+                received.add("flag:" + evt.getPropertyName());
+            }
+        };
+        Model.getPump().addModelEventListener(flagListener, elem,
+                new String[] {"isAbstract", "isLeaf"});
+        Model.getPump().addModelEventListener(nameListener, elem,
+                new String[] {"name"});
+        Model.getPump().startBatch();
+        try {
+            Model.getCoreHelper().setAbstract(elem, true);
+            Model.getCoreHelper().setName(elem, "first");
+            Model.getCoreHelper().setLeaf(elem, true);
+            Model.getCoreHelper().setName(elem, "second");
+        } finally {
+            Model.getPump().endBatch();
+        }
+        Model.getPump().removeModelEventListener(flagListener, elem);
+        Model.getPump().removeModelEventListener(nameListener, elem);
 
+        // The two name changes are merged into one
+        assertEquals(3, received.size());
+        assertEquals("flag:isAbstract", received.get(0));
+        assertEquals("name:name", received.get(1));
+        assertEquals("flag:isLeaf", received.get(2));
+    }
+
+    /**
+     * Tests that an event caused while a batch is being delivered doesn't
+     * overtake the events of the batch which are still to be delivered.
+     */
+    public void testEventDuringBatchDelivery() throws InterruptedException {
+        final List<String> received =
+            Collections.synchronizedList(new ArrayList<String>());
+        PropertyChangeListener flagListener = new PropertyChangeListener() {
+            public void propertyChange(PropertyChangeEvent evt) {
+                received.add("flag:" + evt.getPropertyName());
+                if ("isAbstract".equals(evt.getPropertyName())) {
+                    Model.getCoreHelper().setLeaf(elem, true);
+                    try {
+                        // Give the event thread the chance to overtake us
+                        Thread.sleep(200);
+                    } catch (InterruptedException e) {
+                        // Just deliver the rest sooner
+                    }
+                }
+            }
+        };
+        PropertyChangeListener nameListener = new PropertyChangeListener() {
+            public void propertyChange(PropertyChangeEvent evt) {
+                received.add("name:" + evt.getPropertyName());
+            }
+        };
+        Model.getPump().addModelEventListener(flagListener, elem,
+                new String[] {"isAbstract", "isLeaf"});
+        Model.getPump().addModelEventListener(nameListener, elem,
+                new String[] {"name"});
+        Model.getPump().startBatch();
+        try {
+            Model.getCoreHelper().setAbstract(elem, true);
+            Model.getCoreHelper().setName(elem, "batched");
+        } finally {
+            Model.getPump().endBatch();
+        }
+        for (int i = 0; i < 50 && received.size() < 3; i++) {
+            Thread.sleep(20);
+        }
+        Model.getPump().removeModelEventListener(flagListener, elem);
+        Model.getPump().removeModelEventListener(nameListener, elem);
+
+        assertEquals(3, received.size());
+        assertEquals("flag:isAbstract", received.get(0));
+        assertEquals("name:name", received.get(1));
+        assertEquals("flag:isLeaf", received.get(2));
+    }
+
+    /**
+     * Tests that a listener which throws doesn't keep the other listeners
+     * from receiving their batched events.
+     */
+    public void testBatchThrowingListener() {
+        PropertyChangeListener thrower = new PropertyChangeListener() {
+            public void propertyChange(PropertyChangeEvent evt) {
+                throw new IllegalStateException("Intentional test failure");
+            }
+        };
+        String[] map = new String[] {
+            "isAbstract",
+        };
+        Model.getPump().addModelEventListener(thrower, elem, map);
+        Model.getPump().addModelEventListener(listener, elem, map);
+        Model.getPump().startBatch();
+        try {
+            Model.getCoreHelper().setAbstract(elem, true);
+        } finally {
+            Model.getPump().endBatch();
+        }
+        Model.getPump().removeModelEventListener(thrower, elem, map);
+        assertTrue(eventcalled);
+    }
 
 }
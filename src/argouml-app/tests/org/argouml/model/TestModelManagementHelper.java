@@ -40,6 +40,7 @@ package org.argouml.model;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 
 import junit.framework.TestCase;
@@ -154,6 +155,98 @@ public class TestModelManagementHelper extends TestCase {
         assertTrue("Elements not in namespace returned", elements.isEmpty());
     }
     
+    /**
+     * Test that repeated calls of getAllModelElementsOfKind() see the
+     * changes made to the namespace between them.
+     */
+    public void testGetAllModelElementsOfKindAfterChanges() {
+        setUpTestsOfTagDefinitionContainedInStereotype();
+        Object classType = Model.getMetaTypes().getUMLClass();
+        ModelManagementHelper helper = Model.getModelManagementHelper();
+        Collection elements =
+            helper.getAllModelElementsOfKind(theGoodPackage, classType);
+        assertEquals(1, elements.size());
+        assertEquals(elements,
+                helper.getAllModelElementsOfKind(theGoodPackage, classType));
+
+        Object inner = Model.getModelManagementFactory().createPackage();
+        Model.getCoreHelper().setNamespace(inner, theGoodPackage);
+        Object otherClass =
+            Model.getCoreFactory().buildClass("OtherClass", inner);
+        Model.getPump().flushModelEvents();
+        elements = helper.getAllModelElementsOfKind(theGoodPackage, classType);
+        assertEquals(2, elements.size());
+        assertTrue(elements.contains(otherClass));
+
+        Model.getCoreHelper().setNamespace(otherClass, theBadPackage);
+        Model.getPump().flushModelEvents();
+        elements = helper.getAllModelElementsOfKind(theGoodPackage, classType);
+        assertFalse(elements.contains(otherClass));
+        assertTrue(helper.getAllModelElementsOfKind(theBadPackage, classType)
+                .contains(otherClass));
+
+        Model.getUmlFactory().delete(theClass);
+        Model.getPump().flushModelEvents();
+        assertTrue(helper.getAllModelElementsOfKind(theGoodPackage, classType)
+                .isEmpty());
+    }
+
+    /**
+     * Test that moving a namespace moves the elements below it in the
+     * results of getAllModelElementsOfKind(), and that they match searching
+     * the model.
+     */
+    public void testGetAllModelElementsOfKindAfterMovingNamespace() {
+        setUpTestsOfTagDefinitionContainedInStereotype();
+        Object classType = Model.getMetaTypes().getUMLClass();
+        ModelManagementHelper helper = Model.getModelManagementHelper();
+        Object inner = Model.getModelManagementFactory().createPackage();
+        Model.getCoreHelper().setNamespace(inner, theGoodPackage);
+        Object first = Model.getCoreFactory().buildClass("First", inner);
+        Object second = Model.getCoreFactory().buildClass("Second", inner);
+        Model.getPump().flushModelEvents();
+        assertEquals(3, helper.getAllModelElementsOfKind(theModel, classType)
+                .size());
+        assertEquals(3, helper.getAllModelElementsOfKind(theGoodPackage,
+                classType).size());
+
+        Model.getCoreHelper().setNamespace(inner, theBadPackage);
+        Model.getPump().flushModelEvents();
+        Collection elements =
+            helper.getAllModelElementsOfKind(theBadPackage, classType);
+        assertEquals(2, elements.size());
+        assertTrue(elements.contains(first));
+        assertTrue(elements.contains(second));
+        elements = helper.getAllModelElementsOfKind(theGoodPackage, classType);
+        assertEquals(1, elements.size());
+        assertTrue(elements.contains(theClass));
+        assertEquals(3, helper.getAllModelElementsOfKind(theModel, classType)
+                .size());
+
+        Object third = Model.getCoreFactory().buildClass("Third", inner);
+        Model.getUmlFactory().delete(first);
+        Model.getPump().flushModelEvents();
+        elements = helper.getAllModelElementsOfKind(theBadPackage, classType);
+        assertEquals(2, elements.size());
+        assertTrue(elements.contains(second));
+        assertTrue(elements.contains(third));
+
+        // Without the pump the model is searched, so compare with that
+        List indexed =
+            new ArrayList(helper.getAllModelElementsOfKind(theModel,
+                    classType));
+        Model.getPump().stopPumpingEvents();
+        try {
+            List searched =
+                new ArrayList(helper.getAllModelElementsOfKind(theModel,
+                        classType));
+            assertEquals(new HashSet(searched), new HashSet(indexed));
+            assertEquals(searched.size(), indexed.size());
+        } finally {
+            Model.getPump().startPumpingEvents();
+        }
+    }
+
     /**
      * Test to make sure that we can get UmlClass since its name is different
      */
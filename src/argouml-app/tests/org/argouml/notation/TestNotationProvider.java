@@ -78,6 +78,10 @@ public class TestNotationProvider extends TestCase
 
     private class NPImpl extends NotationProvider {
 
+        private int rendered;
+
+        private boolean invalidateWhileRendering;
+
         /*
          * @see org.argouml.notation.providers.NotationProvider#getParsingHelp()
          */
@@ -86,6 +90,15 @@ public class TestNotationProvider extends TestCase
         }
 
         public String toString(Object modelElement, NotationSettings settings) {
+            rendered++;
+            if (invalidateWhileRendering) {
+                // As if an event arrived after the model was read
+                invalidateWhileRendering = false;
+                invalidate();
+            }
+            if (Model.getFacade().isAClass(modelElement)) {
+                return Model.getFacade().getName(modelElement);
+            }
             return modelElement.toString() + settings.isUseGuillemets();
         }
         
@@ -126,6 +139,72 @@ public class TestNotationProvider extends TestCase
         np.updateListener(aClass, null);
     }
 
+    /**
+     * Test that render() reuses the generated text until the element
+     * or the settings change.
+     */
+    public void testRender() {
+        Object model =
+            Model.getModelManagementFactory().createModel();
+        aClass = Model.getCoreFactory().buildClass("ClassA", model);
+
+        NPImpl np = new NPImpl();
+        NotationSettings settings = new NotationSettings();
+        assertEquals("ClassA", np.render(aClass, settings));
+        assertEquals("ClassA", np.render(aClass, settings));
+        assertEquals("Not listening, so nothing may be cached",
+                2, np.rendered);
+
+        np.initialiseListener(aClass);
+        np.rendered = 0;
+        assertEquals("ClassA", np.render(aClass, settings));
+        assertEquals("ClassA", np.render(aClass, settings));
+        assertEquals(1, np.rendered);
+
+        settings.setUseGuillemets(!settings.isUseGuillemets());
+        np.render(aClass, settings);
+        assertEquals("Changed settings must render again", 2, np.rendered);
+
+        Model.getCoreHelper().setName(aClass, "ClassB");
+        Model.getPump().flushModelEvents();
+        assertEquals("ClassB", np.render(aClass, settings));
+
+        // A renderer reacting to the change before this provider has
+        // seen it must invalidate first
+        np.rendered = 0;
+        np.render(aClass, settings);
+        assertEquals(0, np.rendered);
+        np.invalidate();
+        np.render(aClass, settings);
+        assertEquals(1, np.rendered);
+
+        np.cleanListener();
+        Model.getCoreHelper().setName(aClass, "ClassC");
+        assertEquals("ClassC", np.render(aClass, settings));
+    }
+
+    /**
+     * Test that a text generated while the provider is invalidated isn't
+     * cached, since it may have been read from the model before the change.
+     */
+    public void testRenderInvalidatedWhileRendering() {
+        Object model =
+            Model.getModelManagementFactory().createModel();
+        aClass = Model.getCoreFactory().buildClass("ClassA", model);
+
+        NPImpl np = new NPImpl();
+        NotationSettings settings = new NotationSettings();
+        np.initialiseListener(aClass);
+        np.invalidateWhileRendering = true;
+        np.render(aClass, settings);
+        np.render(aClass, settings);
+        assertEquals("Text of before the invalidation was cached",
+                2, np.rendered);
+        np.render(aClass, settings);
+        assertEquals(2, np.rendered);
+        np.cleanListener();
+    }
+
     public void notationRenderingChanged(NotationProvider np, 
             String rendering) {
         propChanged = true;
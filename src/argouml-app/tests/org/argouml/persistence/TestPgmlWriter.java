@@ -0,0 +1,174 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.persistence;
+
+import java.awt.Rectangle;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.argouml.application.api.Argo;
+import org.argouml.kernel.Project;
+import org.argouml.kernel.ProjectManager;
+import org.argouml.model.InitializeModel;
+import org.argouml.model.Model;
+import org.argouml.notation.InitNotation;
+import org.argouml.notation.providers.java.InitNotationJava;
+import org.argouml.notation.providers.uml.InitNotationUml;
+import org.argouml.profile.ProfileFacade;
+import org.argouml.profile.init.InitProfileSubsystem;
+import org.argouml.uml.diagram.ArgoDiagram;
+import org.argouml.uml.diagram.DiagramFactory;
+import org.argouml.uml.diagram.ProjectMemberDiagram;
+import org.argouml.uml.diagram.activity.ui.InitActivityDiagram;
+import org.argouml.uml.diagram.collaboration.ui.InitCollaborationDiagram;
+import org.argouml.uml.diagram.deployment.ui.InitDeploymentDiagram;
+import org.argouml.uml.diagram.state.ui.InitStateDiagram;
+import org.argouml.uml.diagram.static_structure.ui.FigClass;
+import org.argouml.uml.diagram.static_structure.ui.InitClassDiagram;
+import org.argouml.uml.diagram.ui.InitDiagramAppearanceUI;
+import org.argouml.uml.diagram.use_case.ui.InitUseCaseDiagram;
+import org.tigris.gef.ocl.OCLExpander;
+import org.tigris.gef.ocl.TemplateReader;
+
+/**
+ * Tests that the PgmlWriter writes the same bytes as the expansion of
+ * PGML.tee.
+ */
+public class TestPgmlWriter extends TestCase {
+
+    /**
+     * The constructor.
+     *
+     * @param name the name of the test
+     */
+    public TestPgmlWriter(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        InitializeModel.initializeDefault();
+        (new InitNotation()).init();
+        (new InitNotationUml()).init();
+        (new InitNotationJava()).init();
+        (new InitDiagramAppearanceUI()).init();
+        (new InitActivityDiagram()).init();
+        (new InitCollaborationDiagram()).init();
+        (new InitDeploymentDiagram()).init();
+        (new InitStateDiagram()).init();
+        (new InitClassDiagram()).init();
+        (new InitUseCaseDiagram()).init();
+        (new InitProfileSubsystem()).init();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ProfileFacade.reset();
+        super.tearDown();
+    }
+
+    /**
+     * Compare the diagrams of the UML 1.4 sample project.
+     *
+     * @throws Exception if the project can not be loaded or saved
+     */
+    public void testUml14Project() throws Exception {
+        checkProject("zargo");
+    }
+
+    /**
+     * Compare the diagrams of the UML 1.3 sample project, which are
+     * upgraded on loading.
+     *
+     * @throws Exception if the project can not be loaded or saved
+     */
+    public void testUml13Project() throws Exception {
+        checkProject("/testmodels/uml13/Alittlebitofeverything.zargo");
+    }
+
+    /**
+     * Compare a project with non-ASCII names.
+     *
+     * @throws Exception if the project can not be loaded or saved
+     */
+    public void testI18nProject() throws Exception {
+        checkProject("/testmodels/uml14/i18n.zargo");
+    }
+
+    /**
+     * Compare a diagram whose names need escaping.
+     *
+     * @throws Exception if the diagram can not be saved
+     */
+    public void testEscaping() throws Exception {
+        Project project = ProjectManager.getManager().makeEmptyProject();
+        Object model = project.getUserDefinedModelList().get(0);
+        ArgoDiagram diagram = DiagramFactory.getInstance().create(
+                DiagramFactory.DiagramType.Class, model,
+                project.getProjectSettings().getDefaultDiagramSettings());
+        diagram.setName("<\"Tom\" & 'Jerry'>");
+        Object cls = Model.getCoreFactory().buildClass("A<B> & C", model);
+        diagram.add(new FigClass(cls, new Rectangle(10, 10, 80, 60),
+                diagram.getDiagramSettings()));
+        project.addMember(diagram);
+
+        String pgml = new String(save(diagram, project), Argo.getEncoding());
+        assertTrue(pgml, pgml.indexOf(
+                "name=\"&lt;&quot;Tom&quot; &amp; &apos;Jerry&apos;&gt;\"")
+                > 0);
+        assertTrue(pgml, pgml.indexOf(">A&lt;B&gt; &amp; C</text>") > 0);
+        checkDiagram(diagram, project);
+        project.remove();
+    }
+
+    private void checkProject(String name) throws Exception {
+        ProjectFile file = new ProjectFile(name);
+        Project project = new ZargoFilePersister().doLoad(file.getFile());
+        assertFalse(project.getDiagramList().isEmpty());
+        for (ArgoDiagram diagram : project.getDiagramList()) {
+            checkDiagram(diagram, project);
+        }
+        project.remove();
+        file.delete();
+    }
+
+    private void checkDiagram(ArgoDiagram diagram, Project project)
+        throws Exception {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(expected, Argo.getEncoding());
+        new OCLExpander(TemplateReader.getInstance().read(
+                DiagramMemberFilePersister.PGML_TEE))
+            .expand(writer, diagram);
+        writer.flush();
+
+        byte[] actual = save(diagram, project);
+        String message = "PGML of " + diagram.getName();
+        assertEquals(message, expected.toString(Argo.getEncoding()),
+                new String(actual, Argo.getEncoding()));
+        assertTrue(message, Arrays.equals(expected.toByteArray(), actual));
+    }
+
+    private byte[] save(ArgoDiagram diagram, Project project)
+        throws SaveException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new DiagramMemberFilePersister().save(
+                new ProjectMemberDiagram(diagram, project), out);
+        return out.toByteArray();
+    }
+}
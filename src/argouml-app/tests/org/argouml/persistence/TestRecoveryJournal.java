@@ -0,0 +1,376 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.persistence;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+import junit.framework.TestCase;
+
+import org.argouml.kernel.Project;
+import org.argouml.kernel.ProjectManager;
+import org.argouml.kernel.TestProjectWithProfiles;
+import org.argouml.model.InitializeModel;
+import org.argouml.model.Model;
+import org.argouml.notation.InitNotation;
+import org.argouml.notation.providers.java.InitNotationJava;
+import org.argouml.notation.providers.uml.InitNotationUml;
+import org.argouml.profile.ProfileFacade;
+import org.argouml.profile.init.InitProfileSubsystem;
+import org.argouml.uml.diagram.ArgoDiagram;
+import org.argouml.uml.diagram.activity.ui.InitActivityDiagram;
+import org.argouml.uml.diagram.collaboration.ui.InitCollaborationDiagram;
+import org.argouml.uml.diagram.deployment.ui.InitDeploymentDiagram;
+import org.argouml.uml.diagram.state.ui.InitStateDiagram;
+import org.argouml.uml.diagram.static_structure.ui.InitClassDiagram;
+import org.argouml.uml.diagram.ui.InitDiagramAppearanceUI;
+import org.argouml.uml.diagram.use_case.ui.InitUseCaseDiagram;
+
+/**
+ * Tests the checkpoints of the RecoveryJournal and the recovery of a
+ * project from them.
+ */
+public class TestRecoveryJournal extends TestCase {
+
+    private File directory;
+
+    private RecoveryJournal journal;
+
+    /**
+     * The journal of the session started after a crash.
+     */
+    private RecoveryJournal next;
+
+    private Project project;
+
+    private Object cls;
+
+    /**
+     * The constructor.
+     *
+     * @param name the name of the test
+     */
+    public TestRecoveryJournal(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        InitializeModel.initializeDefault();
+        (new InitNotation()).init();
+        (new InitNotationUml()).init();
+        (new InitNotationJava()).init();
+        (new InitDiagramAppearanceUI()).init();
+        (new InitActivityDiagram()).init();
+        (new InitCollaborationDiagram()).init();
+        (new InitDeploymentDiagram()).init();
+        (new InitStateDiagram()).init();
+        (new InitClassDiagram()).init();
+        (new InitUseCaseDiagram()).init();
+        (new InitProfileSubsystem()).init();
+        TestProjectWithProfiles.initAppVersion();
+
+        directory = File.createTempFile("recovery", "");
+        directory.delete();
+        journal = new RecoveryJournal(directory);
+        journal.startListening();
+
+        project = ProjectManager.getManager().makeEmptyProject();
+        Object model = project.getUserDefinedModelList().get(0);
+        cls = Model.getCoreFactory().buildClass("Unsaved", model);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        journal.stopListening();
+        journal.close();
+        if (next != null) {
+            next.close();
+        }
+        delete(directory);
+        project.remove();
+        ProfileFacade.reset();
+        super.tearDown();
+    }
+
+    /**
+     * Check that only changes lead to a checkpoint and that the model is
+     * only written again when it changed.
+     *
+     * @throws Exception if a checkpoint can not be written
+     */
+    public void testIncrementalCheckpoints() throws Exception {
+        assertTrue(journal.checkpoint(project));
+        int chunks = countChunks();
+        assertTrue(chunks > 2);
+
+        assertFalse(journal.checkpoint(project));
+        assertEquals(chunks, countChunks());
+
+        Model.getCoreHelper().setName(cls, "Renamed");
+        assertTrue(journal.checkpoint(project));
+        assertEquals(chunks + 1, countChunks());
+        assertEquals(2, journal.getCheckpointCount());
+    }
+
+    /**
+     * Check that only the members which changed are serialized again.
+     *
+     * @throws Exception if a checkpoint can not be written
+     */
+    public void testChangedMembers() throws Exception {
+        assertTrue(journal.checkpoint(project));
+        assertEquals(project.getMembers().size(),
+                journal.getSerializedCount());
+
+        assertFalse(journal.checkpoint(project));
+        assertEquals(0, journal.getSerializedCount());
+
+        Model.getCoreHelper().setName(cls, "Renamed");
+        assertTrue(journal.checkpoint(project));
+        assertEquals(1, journal.getSerializedCount());
+
+        ArgoDiagram diagram = project.getDiagramList().get(0);
+        diagram.setName("Renamed diagram");
+        assertTrue(journal.checkpoint(project));
+        assertEquals(1, journal.getSerializedCount());
+    }
+
+    /**
+     * Check that a snapshot only touches the disk when it is written, and
+     * that a snapshot taken before the project was saved or the journal
+     * discarded is dropped.
+     *
+     * @throws Exception if the journal can not be written or read
+     */
+    public void testSnapshot() throws Exception {
+        RecoveryJournal.Checkpoint checkpoint = journal.snapshot(project);
+        assertNotNull(checkpoint);
+        assertNull(journal.getSessionDirectory());
+        assertTrue(journal.write(checkpoint));
+        int chunks = countChunks();
+        assertNull(journal.snapshot(project));
+
+        Model.getCoreHelper().setName(cls, "Saved meanwhile");
+        checkpoint = journal.snapshot(project);
+        journal.markSaved();
+        assertFalse(journal.write(checkpoint));
+        assertEquals(chunks, countChunks());
+        // the next checkpoint doesn't name the chunks never written
+        assertTrue(journal.checkpoint(project));
+
+        RecoveryJournal other = new RecoveryJournal(directory);
+        checkpoint = other.snapshot(project);
+        other.discard();
+        assertFalse(other.write(checkpoint));
+        assertNull(other.getSessionDirectory());
+
+        checkRecovered(recoverAfterCrash(), "Saved meanwhile");
+    }
+
+    /**
+     * Check that the last checkpoint is recovered as a project.
+     *
+     * @throws Exception if the project can not be written or read
+     */
+    public void testRecover() throws Exception {
+        assertNull(journal.recover());
+        journal.checkpoint(project);
+        Model.getCoreHelper().setName(cls, "Recovered");
+        journal.checkpoint(project);
+
+        File file = recoverAfterCrash();
+        assertNotNull(file);
+        assertNull(next.getRecoveredURI());
+        checkRecovered(file, "Recovered");
+
+        next.discardRecovered();
+        assertEquals(0, directory.list().length);
+    }
+
+    /**
+     * Check that a recovered journal is kept until the next save and is
+     * offered again if the session ends without one.
+     *
+     * @throws Exception if the journal can not be written or read
+     */
+    public void testRecoveredKeptUntilSaved() throws Exception {
+        Model.getCoreHelper().setName(cls, "Declined");
+        journal.checkpoint(project);
+        assertNotNull(recoverAfterCrash());
+
+        next.close();
+        next = new RecoveryJournal(directory);
+        assertNotNull(next.recover());
+        next.markSaved();
+        assertEquals(0, directory.list().length);
+    }
+
+    /**
+     * Check that a checkpoint writes the versions of this application
+     * without setting them in the project.
+     *
+     * @throws Exception if the journal can not be written or read
+     */
+    public void testVersions() throws Exception {
+        project.setPersistenceVersion(4);
+        project.setVersion("0.1");
+        journal.checkpoint(project);
+        assertEquals(4, project.getPersistenceVersion());
+        assertEquals("0.1", project.getVersion());
+
+        File file = recoverAfterCrash();
+        InputStream in = new FileInputStream(file);
+        try {
+            assertEquals(UmlFilePersister.PERSISTENCE_VERSION,
+                    new UmlFilePersister().getPersistenceVersion(in));
+        } finally {
+            in.close();
+        }
+        checkRecovered(file, "Unsaved");
+    }
+
+    /**
+     * Check that the journal of a session which still runs is not offered
+     * and that a session only deletes its own files.
+     *
+     * @throws Exception if the journal can not be written or read
+     */
+    public void testRunningSession() throws Exception {
+        journal.checkpoint(project);
+        int chunks = countChunks();
+
+        RecoveryJournal other = new RecoveryJournal(directory);
+        assertNull(other.recover());
+        other.checkpoint(project);
+        assertFalse(journal.getSessionDirectory().equals(
+                other.getSessionDirectory()));
+        other.discard();
+        other.compact();
+        other.close();
+        assertNull(other.getSessionDirectory());
+        assertEquals(chunks, countChunks());
+
+        journal.discard();
+        assertEquals(0, countChunks());
+        assertEquals(1, directory.list().length);
+    }
+
+    /**
+     * Check that nothing is recovered after the project has been saved,
+     * unless it changed again.
+     *
+     * @throws Exception if the journal can not be written or read
+     */
+    public void testSaved() throws Exception {
+        project.setUri(new URI("file:/tmp/saved.zargo"));
+        journal.checkpoint(project);
+        journal.markSaved();
+        assertNull(recoverAfterCrash());
+        // the directory of the crashed session is cleared
+        assertEquals(0, directory.list().length);
+
+        journal.checkpoint(project);
+        journal.markSaved();
+        Model.getCoreHelper().setName(cls, "Changed after save");
+        journal.checkpoint(project);
+        assertNotNull(recoverAfterCrash());
+        assertEquals(new URI("file:/tmp/saved.zargo"),
+                next.getRecoveredURI());
+    }
+
+    /**
+     * Check that compaction keeps only the chunks of the last checkpoint.
+     *
+     * @throws Exception if the project can not be written or read
+     */
+    public void testCompaction() throws Exception {
+        for (int i = 0; i < RecoveryJournal.COMPACT_AFTER + 3; i++) {
+            Model.getCoreHelper().setName(cls, "Name" + i);
+            assertTrue(journal.checkpoint(project));
+        }
+        assertEquals(4, journal.getCheckpointCount());
+
+        journal.compact();
+        assertEquals(1, journal.getCheckpointCount());
+        int members = project.getMembers().size();
+        assertEquals(members + 1, countChunks());
+        checkRecovered(recoverAfterCrash(),
+                "Name" + (RecoveryJournal.COMPACT_AFTER + 2));
+    }
+
+    /**
+     * Check that a checkpoint which was not completely written is ignored.
+     *
+     * @throws Exception if the project can not be written or read
+     */
+    public void testIncompleteCheckpoint() throws Exception {
+        Model.getCoreHelper().setName(cls, "Complete");
+        journal.checkpoint(project);
+
+        FileOutputStream out = new FileOutputStream(
+                new File(journal.getSessionDirectory(), "journal"), true);
+        out.write("checkpoint\t-\tmissing.chunk\tmiss".getBytes("UTF-8"));
+        out.close();
+
+        checkRecovered(recoverAfterCrash(), "Complete");
+    }
+
+    /**
+     * Let the session crash and recover its journal in the next one.
+     */
+    private File recoverAfterCrash() throws IOException {
+        journal.abandon();
+        if (next != null) {
+            next.close();
+        }
+        next = new RecoveryJournal(directory);
+        return next.recover();
+    }
+
+    private void checkRecovered(File file, String className)
+        throws Exception {
+        Project recovered = new UmlFilePersister().doLoad(file);
+        Object model = recovered.getUserDefinedModelList().get(0);
+        assertNotNull(Model.getFacade().lookupIn(model, className));
+        assertEquals(project.getDiagramList().size(),
+                recovered.getDiagramList().size());
+        recovered.remove();
+    }
+
+    private int countChunks() throws IOException {
+        int count = 0;
+        for (String name : journal.getSessionDirectory().list()) {
+            if (name.endsWith(".chunk")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,215 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.argouml.cognitive.Designer;
+import org.argouml.cognitive.ListSet;
+import org.argouml.cognitive.ResolvedCritic;
+import org.argouml.cognitive.ToDoItem;
+import org.argouml.cognitive.ToDoList;
+import org.argouml.cognitive.ToDoListEvent;
+import org.argouml.cognitive.ToDoListListener;
+import org.argouml.kernel.Project;
+import org.argouml.kernel.ProjectManager;
+import org.argouml.model.InitializeModel;
+import org.argouml.notation.InitNotation;
+import org.argouml.notation.providers.uml.InitNotationUml;
+import org.argouml.ocl.OCLExpander;
+import org.argouml.profile.init.InitProfileSubsystem;
+import org.argouml.uml.cognitive.ProjectMemberTodoList;
+import org.tigris.gef.ocl.TemplateReader;
+
+/**
+ * Tests that the TodoListWriter writes the same bytes as the expansion of
+ * todo.tee and that the TodoListReader reads them back.
+ */
+public class TestTodoListWriter extends TestCase {
+
+    private static final String ODD_TEXT =
+        "<a & b> 'quoted' \"twice\" 50% über\nsecond line";
+
+    /**
+     * Offenders are written as they are, without the encoding used for the
+     * items, so they only have to survive the XML escaping.
+     */
+    private static final String OFFENDER = "127-0-0-1-1f2e:<a & b> 'x' \"y\"";
+
+    private Project project;
+
+    private ToDoList toDoList;
+
+    /**
+     * The constructor.
+     *
+     * @param name the name of the test
+     */
+    public TestTodoListWriter(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        InitializeModel.initializeDefault();
+        (new InitNotation()).init();
+        (new InitNotationUml()).init();
+        (new InitProfileSubsystem()).init();
+        project = ProjectManager.getManager().makeEmptyProject();
+        toDoList = Designer.theDesigner().getToDoList();
+        toDoList.removeAllElements();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        toDoList.removeAllElements();
+        super.tearDown();
+    }
+
+    /**
+     * Compare the writer with the template.
+     *
+     * @throws Exception if the todo list can not be written
+     */
+    public void testSameAsTemplate() throws Exception {
+        addItems(3);
+        toDoList.addResolvedCritic(new ResolvedCritic("critic.Odd",
+                Arrays.asList(new String[] {ODD_TEXT, "uid-1"})));
+        toDoList.addResolvedCritic(new ResolvedCritic("critic.None", null));
+        ProjectMemberTodoList member = new ProjectMemberTodoList("", project);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        PrintWriter pw =
+            new PrintWriter(new OutputStreamWriter(expected, "UTF-8"));
+        new OCLExpander(TemplateReader.getInstance().read(
+                TodoListMemberFilePersister.TO_DO_TEE)).expand(pw, member);
+        pw.flush();
+
+        byte[] actual = save(member);
+        assertEquals(expected.toString("UTF-8"), new String(actual, "UTF-8"));
+        assertTrue(Arrays.equals(expected.toByteArray(), actual));
+    }
+
+    /**
+     * Write a todo list and read it back.
+     *
+     * @throws Exception if the todo list can not be written or read
+     */
+    public void testRoundTrip() throws Exception {
+        addItems(3);
+        ResolvedCritic resolved = new ResolvedCritic("critic.RoundTrip",
+                Arrays.asList(new String[] {"uid-1", OFFENDER}));
+        toDoList.addResolvedCritic(resolved);
+        byte[] saved = save(new ProjectMemberTodoList("", project));
+        toDoList.removeAllElements();
+        toDoList.getResolvedItems().remove(resolved);
+
+        new TodoListMemberFilePersister().load(project,
+                new ByteArrayInputStream(saved));
+
+        List<ToDoItem> items = toDoList.getToDoItemList();
+        assertEquals(3, items.size());
+        for (int i = 0; i < 3; i++) {
+            ToDoItem item = items.get(i);
+            assertEquals(ODD_TEXT.trim() + " " + i, item.getHeadline());
+            assertEquals(ODD_TEXT.trim(), item.getDescription());
+            assertEquals("http://argouml.tigris.org/?" + i,
+                    item.getMoreInfoURL());
+            assertEquals(getPriority(i), item.getPriority());
+            assertSame(Designer.theDesigner(), item.getPoster());
+        }
+        assertTrue(toDoList.getResolvedItems().contains(resolved));
+        assertEquals(Arrays.asList(new String[] {"uid-1", OFFENDER}),
+                getResolved("critic.RoundTrip").getOffenderList());
+    }
+
+    /**
+     * Check that a long todo list is read back completely and announced to
+     * the listeners in one event.
+     *
+     * @throws Exception if the todo list can not be written or read
+     */
+    public void testManyItems() throws Exception {
+        final int count = 20000;
+        addItems(count);
+        byte[] saved = save(new ProjectMemberTodoList("", project));
+        toDoList.removeAllElements();
+
+        final int[] events = new int[2];
+        ToDoListListener listener = new ToDoListListener() {
+            public void toDoItemsAdded(ToDoListEvent tde) {
+                events[0]++;
+                events[1] += tde.getToDoItemList().size();
+            }
+            public void toDoItemsChanged(ToDoListEvent tde) {
+            }
+            public void toDoItemsRemoved(ToDoListEvent tde) {
+            }
+            public void toDoListChanged(ToDoListEvent tde) {
+            }
+        };
+        toDoList.addToDoListListener(listener);
+        try {
+            new TodoListMemberFilePersister().load(project,
+                    new ByteArrayInputStream(saved));
+        } finally {
+            toDoList.removeToDoListListener(listener);
+        }
+        assertEquals(count, toDoList.size());
+        assertEquals(1, events[0]);
+        assertEquals(count, events[1]);
+    }
+
+    private void addItems(int count) {
+        for (int i = 0; i < count; i++) {
+            toDoList.addElement(new ToDoItem(Designer.theDesigner(),
+                    ODD_TEXT + " " + i, getPriority(i), ODD_TEXT,
+                    "http://argouml.tigris.org/?" + i, new ListSet()));
+        }
+    }
+
+    private static int getPriority(int i) {
+        switch (i % 3) {
+        case 0:
+            return ToDoItem.HIGH_PRIORITY;
+        case 1:
+            return ToDoItem.MED_PRIORITY;
+        default:
+            return ToDoItem.LOW_PRIORITY;
+        }
+    }
+
+    private ResolvedCritic getResolved(String critic) {
+        for (ResolvedCritic rc : toDoList.getResolvedItems()) {
+            if (critic.equals(rc.getCritic())) {
+                return rc;
+            }
+        }
+        return null;
+    }
+
+    private byte[] save(ProjectMemberTodoList member) throws SaveException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new TodoListMemberFilePersister().save(member, out);
+        return out.toByteArray();
+    }
+}
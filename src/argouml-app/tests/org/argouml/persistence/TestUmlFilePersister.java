@@ -0,0 +1,160 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.persistence;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+import org.argouml.application.api.Argo;
+import org.argouml.kernel.Project;
+import org.argouml.model.InitializeModel;
+import org.argouml.notation.InitNotation;
+import org.argouml.notation.providers.uml.InitNotationUml;
+import org.argouml.profile.ProfileFacade;
+import org.argouml.profile.init.InitProfileSubsystem;
+import org.argouml.uml.diagram.static_structure.ui.InitClassDiagram;
+import org.argouml.uml.diagram.ui.InitDiagramAppearanceUI;
+
+/**
+ * Tests for the upgrades of the {@link UmlFilePersister}.
+ */
+public class TestUmlFilePersister extends TestCase {
+
+    /**
+     * An id made by generate-id() in an upgrade stylesheet.
+     */
+    private static final Pattern GENERATED_ID =
+        Pattern.compile("(_id\\d+_)([^\"]+)\"");
+
+    /**
+     * The constructor.
+     *
+     * @param name the name of the test
+     */
+    public TestUmlFilePersister(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        InitializeModel.initializeDefault();
+        (new InitNotation()).init();
+        (new InitNotationUml()).init();
+        (new InitDiagramAppearanceUI()).init();
+        (new InitClassDiagram()).init();
+        (new InitProfileSubsystem()).init();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ProfileFacade.reset();
+        super.tearDown();
+    }
+
+    /**
+     * Test that chaining the upgrade stylesheets gives the same file as
+     * running them one after another.  Only the indentation and the ids
+     * made by generate-id() may differ, since the intermediate files hold
+     * whitespace nodes which the chain never sees.
+     *
+     * @throws Exception when e.g. the file is not found
+     */
+    public void testChainedUpgradeMatchesSequential() throws Exception {
+        File file = getCombinedFile(
+                new ProjectFile("/testmodels/uml13/Alittlebitofeverything.zargo")
+                    .getFile());
+        UmlFilePersister persister = new UmlFilePersister();
+        int fromVersion = persister.getPersistenceVersion(
+                new FileInputStream(file));
+        int toVersion = UmlFilePersister.PERSISTENCE_VERSION;
+        assertTrue(toVersion - fromVersion > 1);
+
+        File sequential = file;
+        for (int version = fromVersion + 1; version <= toVersion; ++version) {
+            sequential = persister.transform(sequential, version - 1, version);
+        }
+        File chained = persister.transform(file, fromVersion, toVersion);
+
+        assertEquals(normalize(read(sequential)), normalize(read(chained)));
+    }
+
+    /**
+     * Load an old zargo file and keep the combined uml file it is upgraded
+     * from.
+     */
+    private File getCombinedFile(File zargo) throws Exception {
+        final File[] combined = new File[1];
+        ZargoFilePersister persister = new ZargoFilePersister() {
+            @Override
+            protected Project doLoad(File originalFile, File file,
+                    ProgressMgr progressMgr)
+                throws OpenException, InterruptedException {
+                combined[0] = file;
+                return super.doLoad(originalFile, file, progressMgr);
+            }
+        };
+        persister.doLoad(zargo).remove();
+        assertNotNull("Old file not upgraded", combined[0]);
+        return combined[0];
+    }
+
+    /**
+     * Drop the whitespace between tags and number the generated ids in the
+     * order they appear.
+     */
+    private String normalize(String xml) {
+        String text = xml.replaceAll(">\\s+<", "><").trim();
+        Map<String, String> ids = new HashMap<String, String>();
+        Matcher matcher = GENERATED_ID.matcher(text);
+        StringBuffer result = new StringBuffer();
+        while (matcher.find()) {
+            String id = ids.get(matcher.group(2));
+            if (id == null) {
+                id = Integer.toString(ids.size());
+                ids.put(matcher.group(2), id);
+            }
+            matcher.appendReplacement(result, matcher.group(1) + id + "\"");
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    private String read(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        InputStream stream = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < bytes.length) {
+                int count =
+                    stream.read(bytes, offset, bytes.length - offset);
+                if (count < 0) {
+                    break;
+                }
+                offset += count;
+            }
+        } finally {
+            stream.close();
+        }
+        return new String(bytes, Argo.getEncoding());
+    }
+}
@@ -39,16 +39,21 @@
 package org.argouml.persistence;
 
 import java.io.File;
+import java.io.FilenameFilter;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import org.argouml.configuration.Configuration;
 import org.argouml.kernel.Project;
+import org.argouml.kernel.TestProjectWithProfiles;
 import org.argouml.model.Facade;
 import org.argouml.model.InitializeModel;
 import org.argouml.model.Model;
@@ -57,6 +62,7 @@ import org.argouml.notation.providers.java.InitNotationJava;
 import org.argouml.notation.providers.uml.InitNotationUml;
 import org.argouml.profile.ProfileFacade;
 import org.argouml.profile.init.InitProfileSubsystem;
+import org.argouml.uml.diagram.ArgoDiagram;
 import org.argouml.uml.diagram.activity.ui.InitActivityDiagram;
 import org.argouml.uml.diagram.collaboration.ui.InitCollaborationDiagram;
 import org.argouml.uml.diagram.deployment.ui.InitDeploymentDiagram;
@@ -189,6 +195,146 @@ public class TestZargoFilePersister extends TestCase {
         p.remove();
     }
 
+    /**
+     * Test that loading the diagrams on several threads gives the same
+     * diagrams, in the same order, as loading them one after another.
+     *
+     * @throws Exception when e.g. the file is not found
+     */
+    public void testDoLoadParallelDiagrams() throws Exception {
+        File oldFile =
+            new ProjectFile("/testmodels/uml13/Alittlebitofeverything.zargo")
+                .getFile();
+
+        // The old file runs through the upgrade stylesheets, a copy saved
+        // by this version doesn't.
+        File currentFile = saveCurrentVersion(oldFile);
+
+        for (File file : new File[] {oldFile, currentFile}) {
+            Project p = doLoad(file);
+            List<String> expected = getDiagramNames(p);
+            p.remove();
+
+            Configuration.setBoolean(
+                    PersistenceManager.KEY_PARALLEL_DIAGRAM_LOADING, true);
+            try {
+                p = doLoad(file);
+            } finally {
+                Configuration.removeKey(
+                        PersistenceManager.KEY_PARALLEL_DIAGRAM_LOADING);
+            }
+            assertEquals(expected, getDiagramNames(p));
+            p.remove();
+        }
+    }
+
+    /**
+     * Test that files of the current version are streamed straight from
+     * their members, without combining them into a temporary uml file, and
+     * give the same project as the upgraded original.  Older files are
+     * still combined and upgraded.
+     *
+     * @throws Exception when e.g. the file is not found
+     */
+    public void testDoLoadStreamsCurrentVersion() throws Exception {
+        final List<File> combined = new ArrayList<File>();
+        ZargoFilePersister persister = new ZargoFilePersister() {
+            @Override
+            protected Project doLoad(File originalFile, File file,
+                    ProgressMgr progressMgr)
+                throws OpenException, InterruptedException {
+                combined.add(file);
+                return super.doLoad(originalFile, file, progressMgr);
+            }
+        };
+
+        for (String name : new String[] {
+            "/testmodels/uml13/Alittlebitofeverything.zargo",
+            "/testmodels/uml14/Alittlebitofeverything.zargo",
+            "/testmodels/uml14/GUITestPropertyPanels.zargo",
+            "/testmodels/uml14/i18n.zargo",
+        }) {
+            File oldFile = new ProjectFile(name).getFile();
+            combined.clear();
+            Project p = persister.doLoad(oldFile);
+            assertEquals("Old version not combined: " + name,
+                    1, combined.size());
+            List<String> expected = describe(p);
+            p.remove();
+
+            File currentFile = saveCurrentVersion(oldFile);
+            combined.clear();
+            int tempFiles = countCombinedFiles();
+            p = persister.doLoad(currentFile);
+            assertTrue("Current version combined: " + name,
+                    combined.isEmpty());
+            assertEquals("Temporary uml file created: " + name,
+                    tempFiles, countCombinedFiles());
+            assertEquals(name, expected, describe(p));
+            p.remove();
+        }
+    }
+
+    /**
+     * @return the names and sizes of the diagrams, the number of elements
+     *         of the models and the number of profiles of a project
+     */
+    private List<String> describe(Project p) {
+        List<String> description = getDiagramNames(p);
+        for (Object model : p.getUserDefinedModelList()) {
+            description.add(Model.getFacade().getName(model) + " "
+                    + Model.getModelManagementHelper()
+                        .getAllModelElementsOfKind(model,
+                                Model.getMetaTypes().getModelElement())
+                        .size());
+        }
+        description.add(
+                p.getProfileConfiguration().getProfiles().size()
+                + " profiles");
+        return description;
+    }
+
+    /**
+     * @return the number of temporary uml files combined from zargo files
+     */
+    private static int countCombinedFiles() {
+        String[] names = new File(System.getProperty("java.io.tmpdir"))
+            .list(new FilenameFilter() {
+                public boolean accept(File dir, String name) {
+                    return name.startsWith("combinedzargo_");
+                }
+            });
+        return names == null ? 0 : names.length;
+    }
+
+    /**
+     * Load a project and save it again with this version.
+     *
+     * @param file the project to load
+     * @return the temporary file it was saved to
+     */
+    private File saveCurrentVersion(File file) throws Exception {
+        TestProjectWithProfiles.initAppVersion();
+        Project saved = doLoad(file);
+        saved.setActiveDiagram(saved.getDiagramList().get(0));
+        File currentFile = File.createTempFile(
+                "TestZargoFilePersister_Current", ".zargo");
+        currentFile.delete();
+        currentFile.deleteOnExit();
+        new OldZargoFilePersister().save(saved, currentFile);
+        saved.remove();
+        return currentFile;
+    }
+
+    private List<String> getDiagramNames(Project p) {
+        List<String> names = new ArrayList<String>();
+        for (ArgoDiagram d : p.getDiagramList()) {
+            names.add(d.getName() + " " + d.getNodes().size() + " "
+                    + d.getEdges().size());
+        }
+        return names;
+    }
+
     /**
      * Test loading a native UML 1.4 zargo with i18n character.
      *
@@ -38,12 +38,18 @@
 
 package org.argouml.profile.internal.ocl;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import junit.framework.TestCase;
 
 import org.argouml.cognitive.Critic;
 import org.argouml.cognitive.Designer;
 import org.argouml.model.InitializeModel;
 import org.argouml.model.Model;
+import org.argouml.profile.Profile;
+import org.argouml.profile.ProfileFacade;
+import org.argouml.profile.init.InitProfileSubsystem;
 
 /**
  * Tests for the CrOCL class.
@@ -77,4 +83,61 @@ public class TestCrOCL extends TestCase {
                 Critic.NO_PROBLEM);
 
     }
+
+    /**
+     * Run the OCL critics of the bundled profiles over a model, and check
+     * that evaluating them again gives the same results.
+     *
+     * @throws Exception if something goes wrong
+     */
+    public void testBundledProfileCritics() throws Exception {
+        new InitProfileSubsystem().init();
+        List<CrOCL> critics = new ArrayList<CrOCL>();
+        for (Profile profile : ProfileFacade.getManager()
+                .getRegisteredProfiles()) {
+            for (Critic critic : profile.getCritics()) {
+                if (critic instanceof CrOCL) {
+                    critics.add((CrOCL) critic);
+                }
+            }
+        }
+        assertFalse("No OCL critics found", critics.isEmpty());
+
+        Object model = Model.getModelManagementFactory().createModel();
+        List<Object> elements = new ArrayList<Object>();
+        for (int i = 0; i < 50; i++) {
+            Object cls = Model.getCoreFactory().buildClass("C" + i, model);
+            elements.add(cls);
+            elements.add(Model.getCoreFactory().buildAttribute2(cls, null));
+            Object actor = Model.getUseCasesFactory().createActor();
+            Model.getCoreHelper().setNamespace(actor, model);
+            elements.add(actor);
+            Object useCase = Model.getUseCasesFactory().createUseCase();
+            Model.getCoreHelper().setNamespace(useCase, model);
+            elements.add(useCase);
+        }
+        elements.add(model);
+
+        List<Boolean> first = new ArrayList<Boolean>();
+        long start = System.currentTimeMillis();
+        for (CrOCL critic : critics) {
+            for (Object element : elements) {
+                first.add(critic.predicate2(element, Designer.theDesigner()));
+            }
+        }
+        for (int round = 0; round < 3; round++) {
+            int i = 0;
+            for (CrOCL critic : critics) {
+                for (Object element : elements) {
+                    assertEquals(critic.getOCL(), first.get(i++),
+                            Boolean.valueOf(critic.predicate2(element,
+                                    Designer.theDesigner())));
+                }
+            }
+        }
+        long duration = System.currentTimeMillis() - start;
+        assertTrue("Evaluating " + critics.size() + " critics over "
+                + elements.size() + " elements 4 times took " + duration
+                + " msec", duration < 60000);
+    }
 }
@@ -0,0 +1,106 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.profile.internal.ocl.uml14;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.argouml.model.InitializeModel;
+import org.argouml.model.Model;
+
+/**
+ * Tests for the ModelAccessModelInterpreter.
+ */
+public class TestModelAccessModelInterpreter extends TestCase {
+
+    private ModelAccessModelInterpreter mi;
+
+    private Map<String, Object> vt;
+
+    /*
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        InitializeModel.initializeDefault();
+        mi = new ModelAccessModelInterpreter();
+        vt = new HashMap<String, Object>();
+    }
+
+    private Object invoke(Object subject, String feature) {
+        return mi.invokeFeature(vt, subject, feature, ".", new Object[0]);
+    }
+
+    /**
+     * Test that features are found for the metaclass and its parents, and
+     * that asking again for the same feature gives the current value.
+     */
+    public void testInvokeFeature() {
+        Object model = Model.getModelManagementFactory().createModel();
+        Object cls = Model.getCoreFactory().buildClass("A", model);
+        Object attr = Model.getCoreFactory().buildAttribute2(cls, null);
+
+        assertEquals("A", invoke(cls, "name"));
+        assertEquals(Boolean.FALSE, invoke(cls, "isActive"));
+        assertTrue(((Collection) invoke(cls, "feature")).contains(attr));
+        assertEquals(model, invoke(cls, "namespace"));
+
+        Model.getCoreHelper().setName(cls, "B");
+        assertEquals("B", invoke(cls, "name"));
+        Model.getCoreHelper().setName(cls, null);
+        assertEquals("", invoke(cls, "name"));
+
+        assertNull(invoke(cls, "noSuchFeature"));
+        assertNull(invoke(cls, "noSuchFeature"));
+        assertNull(mi.invokeFeature(vt, cls, "name", "->", new Object[0]));
+
+        vt.put("self", attr);
+        assertEquals(cls, mi.invokeFeature(vt, null, "owner", ".",
+                new Object[0]));
+    }
+
+    /**
+     * Test that a feature defined by several metaclasses is taken from the
+     * first one in the order of the specification.
+     */
+    public void testFirstDefinitionWins() {
+        Object model = Model.getModelManagementFactory().createModel();
+        Object cls = Model.getCoreFactory().buildClass("A", model);
+        Object other = Model.getCoreFactory().buildClass("B", model);
+        Object assocClass = Model.getCoreFactory().buildAssociationClass(cls,
+                other);
+
+        // defined by Association before Classifier
+        Collection connection = (Collection) invoke(assocClass, "connection");
+        assertEquals(2, connection.size());
+
+        // an Association is not a Classifier
+        Object assoc = Model.getCoreFactory().buildAssociation(cls, other);
+        assertNull(invoke(assoc, "isActive"));
+        assertEquals(Boolean.FALSE, invoke(assocClass, "isActive"));
+    }
+
+    /**
+     * Test the metatypes as built-in symbols.
+     */
+    public void testGetBuiltInSymbol() {
+        assertEquals("Class",
+                ((OclType) mi.getBuiltInSymbol("Class")).getName());
+        assertNull(mi.getBuiltInSymbol("NoSuchMetatype"));
+    }
+}
@@ -0,0 +1,114 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.uml.cognitive.critics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.argouml.cognitive.Agency;
+import org.argouml.cognitive.Designer;
+import org.argouml.model.InitializeModel;
+import org.argouml.model.Model;
+
+/**
+ * Tests for the {@link CritiqueTriggerListener}.
+ */
+public class TestCritiqueTriggerListener extends TestCase {
+
+    private List<String> changes = new ArrayList<String>();
+
+    private CrUML critic;
+
+    private CritiqueTriggerListener listener;
+
+    /**
+     * The constructor.
+     *
+     * @param arg0 the name of the test
+     */
+    public TestCritiqueTriggerListener(String arg0) {
+        super(arg0);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        InitializeModel.initializeDefault();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (listener != null) {
+            listener.stop();
+        }
+        if (critic != null) {
+            Agency.unregister(critic,
+                    (Class<?>) Model.getMetaTypes().getUMLClass());
+        }
+        super.tearDown();
+    }
+
+    /**
+     * Test that only the triggers of the registered critics are passed on,
+     * and that derived triggers reach the owner of the feature.
+     */
+    public void testTriggersOfRegisteredCritics() {
+        critic = new CrUML() {
+        };
+        critic.addTrigger("feature");
+        critic.addTrigger("feature_visibility");
+        Agency.register(critic, Model.getMetaTypes().getUMLClass());
+
+        listener = new CritiqueTriggerListener(Designer.theDesigner()) {
+            @Override
+            void critiqueASAP(Object dm, String reason) {
+                synchronized (changes) {
+                    changes.add(Model.getFacade().getName(dm) + "."
+                            + reason);
+                }
+            }
+        };
+        listener.start();
+
+        Object pack = Model.getModelManagementFactory().buildPackage("p");
+        Object cls = Model.getCoreFactory().buildClass("C", pack);
+        Object attr = Model.getCoreFactory().buildAttribute2(cls, null);
+        Model.getCoreHelper().setName(attr, "a");
+        waitForEvents();
+        assertTrue(contains("C.feature"));
+
+        changes.clear();
+        Model.getCoreHelper().setVisibility(attr,
+                Model.getVisibilityKind().getPrivate());
+        Model.getCoreHelper().setName(cls, "D");
+        waitForEvents();
+        assertTrue(contains("D.feature_visibility"));
+        // Nobody critiques the names of classes or features
+        assertFalse(contains("D.name"));
+        assertFalse(contains("D.feature_name"));
+        assertFalse(contains("a.name"));
+    }
+
+    private boolean contains(String change) {
+        synchronized (changes) {
+            return changes.contains(change);
+        }
+    }
+
+    private void waitForEvents() {
+        Model.getPump().flushModelEvents();
+    }
+}
@@ -0,0 +1,129 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.uml.diagram;
+
+import java.awt.Rectangle;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+
+import org.argouml.kernel.ProjectManager;
+import org.argouml.model.InitializeModel;
+import org.argouml.model.Model;
+import org.argouml.notation.InitNotation;
+import org.argouml.notation.providers.uml.InitNotationUml;
+import org.argouml.profile.init.InitProfileSubsystem;
+import org.argouml.uml.diagram.static_structure.ui.FigClass;
+import org.argouml.uml.diagram.static_structure.ui.UMLClassDiagram;
+import org.tigris.gef.graph.presentation.JGraph;
+
+/**
+ * Tests for the lazy re-rendering of diagrams in ArgoDiagramImpl.
+ */
+public class TestArgoDiagramImpl extends TestCase {
+
+    /**
+     * The constructor.
+     *
+     * @param name the name of the test
+     */
+    public TestArgoDiagramImpl(String name) {
+        super(name);
+    }
+
+    /*
+     * @see junit.framework.TestCase#setUp()
+     */
+    protected void setUp() throws Exception {
+        super.setUp();
+        InitializeModel.initializeDefault();
+        (new InitNotation()).init();
+        (new InitNotationUml()).init();
+        (new InitProfileSubsystem()).init();
+        ProjectManager.getManager().makeEmptyProject();
+    }
+
+    /**
+     * Test that only the shown diagram is re-rendered when the notation
+     * changes, and that the other one catches up once, when it is
+     * validated.
+     *
+     * @throws Exception if the Swing thread can't be drained
+     */
+    public void testLazyRendering() throws Exception {
+        Object model = Model.getModelManagementFactory().createModel();
+        ArgoDiagramImpl shown = new UMLClassDiagram(model);
+        ArgoDiagramImpl hidden = new UMLClassDiagram(model);
+        CountingFig shownFig = new CountingFig(model);
+        CountingFig hiddenFig = new CountingFig(model);
+        shown.add(shownFig);
+        hidden.add(hiddenFig);
+        new JGraph().setDiagram(shown);
+        assertTrue(shown.isShown());
+        assertFalse(hidden.isShown());
+        // the Figs also re-render for their own model events
+        settle();
+        shownFig.renderings = 0;
+        hiddenFig.renderings = 0;
+
+        shown.notationChanged(null);
+        hidden.notationChanged(null);
+        hidden.diagramFontChanged(null);
+        settle();
+        assertEquals(1, shownFig.renderings);
+        assertEquals(0, hiddenFig.renderings);
+
+        shown.validateRendering();
+        hidden.validateRendering();
+        settle();
+        assertEquals(1, shownFig.renderings);
+        assertEquals(1, hiddenFig.renderings);
+
+        hidden.validateRendering();
+        settle();
+        assertEquals(1, hiddenFig.renderings);
+    }
+
+    /**
+     * Deliver the pending model events and wait until the Swing thread has
+     * handled everything queued so far.
+     *
+     * @throws Exception if the Swing thread can't be drained
+     */
+    private static void settle() throws Exception {
+        Model.getPump().flushModelEvents();
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run() {
+            }
+        });
+    }
+
+    /**
+     * A Fig which counts how often it is re-rendered.
+     */
+    private static class CountingFig extends FigClass {
+        private volatile int renderings;
+
+        CountingFig(Object model) {
+            super(Model.getCoreFactory().buildClass("C", model),
+                    new Rectangle(0, 0, 50, 50), new DiagramSettings());
+        }
+
+        @Override
+        public void renderingChanged() {
+            renderings++;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.uml.diagram.layout;
+
+import java.awt.Dimension;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the LayeredLayout and the ForceDirectedLayout.
+ */
+public class TestLayeredLayout extends TestCase {
+
+    /**
+     * The number of nodes of the large graph.
+     */
+    private static final int NODES = 2000;
+
+    private static final int GAP = 80;
+
+    /**
+     * The constructor.
+     *
+     * @param name the name of the test
+     */
+    public TestLayeredLayout(String name) {
+        super(name);
+    }
+
+    /**
+     * Build a random hierarchy with some links across it.
+     *
+     * @param nodes the number of nodes
+     * @param seed the seed of the random numbers
+     * @return the graph
+     */
+    static LayoutGraph makeGraph(int nodes, long seed) {
+        Random random = new Random(seed);
+        LayoutGraph graph = new LayoutGraph();
+        for (int i = 0; i < nodes; i++) {
+            graph.addNode(new Dimension(80 + random.nextInt(120),
+                    40 + random.nextInt(110)));
+        }
+        for (int i = 1; i < nodes; i++) {
+            graph.addEdge(random.nextInt(i), i);
+        }
+        for (int i = 0; i < nodes / 5; i++) {
+            graph.addEdge(random.nextInt(nodes), random.nextInt(nodes));
+        }
+        return graph;
+    }
+
+    /**
+     * Test that a tree is drawn without crossings, with every parent
+     * above its children.
+     */
+    public void testTree() {
+        LayoutGraph graph = new LayoutGraph();
+        graph.addNode(new Dimension(100, 50));
+        for (int i = 1; i < 40; i++) {
+            graph.addNode(new Dimension(60 + i % 7 * 10, 40));
+            graph.addEdge((i - 1) / 3, i);
+        }
+        new LayeredLayout(GAP, GAP, 1200).layout(graph);
+        assertEquals(0, graph.countOverlaps());
+        assertEquals(0, graph.countCrossings());
+        for (int e = 0; e < graph.getEdgeCount(); e++) {
+            assertTrue(graph.getY(graph.getSource(e))
+                    < graph.getY(graph.getTarget(e)));
+        }
+    }
+
+    /**
+     * Test that cycles, self links and unlinked nodes are handled, and
+     * that unlinked nodes don't make the diagram wider than needed.
+     */
+    public void testCyclesAndSingles() {
+        LayoutGraph graph = new LayoutGraph();
+        for (int i = 0; i < 60; i++) {
+            graph.addNode(new Dimension(100, 50));
+        }
+        graph.addEdge(0, 1);
+        graph.addEdge(1, 2);
+        graph.addEdge(2, 0);
+        graph.addEdge(3, 3);
+        new LayeredLayout(GAP, GAP, 1200).layout(graph);
+        assertEquals(0, graph.countOverlaps());
+        assertTrue(graph.getSize().width <= 1200 + GAP + 100);
+        assertTrue(graph.getY(0) < graph.getY(1));
+        assertTrue(graph.getY(1) < graph.getY(2));
+    }
+
+    /**
+     * Lay out a graph of {@value #NODES} nodes with both algorithms and
+     * check that neither leaves overlapping nodes.
+     */
+    public void testLargeGraph() {
+        LayoutGraph graph = makeGraph(NODES, 42);
+        new LayeredLayout(GAP, GAP, 1200).layout(graph);
+        assertEquals(0, graph.countOverlaps());
+        new ForceDirectedLayout(GAP, GAP).layout(graph);
+        assertEquals(0, graph.countOverlaps());
+    }
+}
@@ -0,0 +1,224 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.uml.diagram.static_structure.layout;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+
+import org.argouml.kernel.ProjectManager;
+import org.argouml.model.InitializeModel;
+import org.argouml.model.Model;
+import org.argouml.notation.InitNotation;
+import org.argouml.notation.providers.uml.InitNotationUml;
+import org.argouml.profile.init.InitProfileSubsystem;
+import org.argouml.uml.diagram.ArgoDiagram;
+import org.argouml.uml.diagram.DiagramSettings;
+import org.argouml.uml.diagram.layout.LayoutGraph;
+import org.argouml.uml.diagram.static_structure.ui.FigClass;
+import org.argouml.uml.diagram.static_structure.ui.UMLClassDiagram;
+import org.argouml.uml.diagram.ui.FigGeneralization;
+import org.tigris.gef.presentation.Fig;
+
+/**
+ * Compares the class diagram layouters by the number of crossing edges they
+ * leave.
+ */
+public class TestClassdiagramLayouters extends TestCase {
+
+    private static final int CLASSES = 150;
+
+    /**
+     * The constructor.
+     *
+     * @param name the name of the test
+     */
+    public TestClassdiagramLayouters(String name) {
+        super(name);
+    }
+
+    /*
+     * @see junit.framework.TestCase#setUp()
+     */
+    protected void setUp() throws Exception {
+        super.setUp();
+        InitializeModel.initializeDefault();
+        (new InitNotation()).init();
+        (new InitNotationUml()).init();
+        (new InitProfileSubsystem()).init();
+        ProjectManager.getManager().makeEmptyProject();
+    }
+
+    /**
+     * Build a diagram with a random class hierarchy.
+     *
+     * @return the diagram
+     */
+    private ArgoDiagram makeDiagram() {
+        Object model = Model.getModelManagementFactory().createModel();
+        ArgoDiagram diagram = new UMLClassDiagram(model);
+        DiagramSettings settings = new DiagramSettings();
+        Random random = new Random(7);
+        List<FigClass> figs = new ArrayList<FigClass>();
+        for (int i = 0; i < CLASSES; i++) {
+            Object cls = Model.getCoreFactory().buildClass("C" + i, model);
+            FigClass fig = new FigClass(cls, new Rectangle(0, 0,
+                    60 + random.nextInt(100), 40 + random.nextInt(60)),
+                    settings);
+            diagram.add(fig);
+            figs.add(fig);
+            // a forest: some classes have no superclass
+            if (i > 0 && random.nextInt(8) > 0) {
+                FigClass parent = figs.get(random.nextInt(i));
+                Object generalization = Model.getCoreFactory()
+                        .buildGeneralization(cls, parent.getOwner());
+                FigGeneralization edge =
+                    new FigGeneralization(generalization, settings);
+                edge.setSourcePortFig(fig);
+                edge.setSourceFigNode(fig);
+                edge.setDestPortFig(parent);
+                edge.setDestFigNode(parent);
+                edge.computeRoute();
+                diagram.add(edge);
+            }
+        }
+        return diagram;
+    }
+
+    /**
+     * @param diagram the diagram
+     * @return the diagram as a graph, with the nodes in their places
+     */
+    private static LayoutGraph getGraph(ArgoDiagram diagram) {
+        return new ClassdiagramLayeredLayouter(diagram).prepare();
+    }
+
+    /**
+     * Lay out the same diagram with each layouter and compare the number of
+     * crossings. The layered layouter must not leave more crossings than the
+     * row based one and must place the superclasses above their subclasses.
+     */
+    public void testCompareLayouters() {
+        ArgoDiagram diagram = makeDiagram();
+
+        new ClassdiagramLayouter(diagram).layout();
+        LayoutGraph rows = getGraph(diagram);
+
+        new ClassdiagramLayeredLayouter(diagram).layout();
+        LayoutGraph layered = getGraph(diagram);
+
+        new ClassdiagramForceLayouter(diagram).layout();
+        LayoutGraph force = getGraph(diagram);
+
+        assertTrue(layered.countCrossings() <= rows.countCrossings());
+        assertEquals(0, layered.countOverlaps());
+        assertEquals(0, force.countOverlaps());
+        for (int e = 0; e < layered.getEdgeCount(); e++) {
+            assertTrue(layered.getY(layered.getSource(e))
+                    < layered.getY(layered.getTarget(e)));
+        }
+    }
+
+    /**
+     * Test that the objects of the diagram are found and can be removed.
+     */
+    public void testObjects() {
+        ArgoDiagram diagram = makeDiagram();
+        ClassdiagramGraphLayouter layouter =
+            new ClassdiagramLayeredLayouter(diagram);
+        int count = layouter.getObjects().length;
+        assertEquals(diagram.getLayer().getContents().size(), count);
+        layouter.remove(layouter.getObject(0));
+        assertEquals(count - 1, layouter.getObjects().length);
+        assertEquals(CLASSES - 1, layouter.prepare().getNodeCount());
+    }
+
+    /**
+     * Test that a layout computed in the background is applied only when the
+     * diagram has not changed meanwhile, and that a second layout of the
+     * same diagram is refused while the first one runs.
+     *
+     * @throws Exception if the layout does not finish
+     */
+    public void testLayoutInBackground() throws Exception {
+        ArgoDiagram diagram = makeDiagram();
+        assertEquals("computed", layoutInBackground(diagram, false));
+        assertEquals("discarded", layoutInBackground(diagram, true));
+    }
+
+    /**
+     * Start a background layout on the Swing thread and wait for its
+     * outcome.
+     *
+     * @param diagram the diagram to lay out
+     * @param move true if a Fig is moved before the layout finishes
+     * @return the outcome reported to the listener
+     * @throws Exception if the layout does not finish
+     */
+    private String layoutInBackground(final ArgoDiagram diagram,
+            final boolean move) throws Exception {
+        final RecordingListener listener = new RecordingListener();
+        final boolean[] started = new boolean[2];
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run() {
+                started[0] = new ClassdiagramLayeredLayouter(diagram)
+                        .layoutInBackground(listener);
+                started[1] = new ClassdiagramLayeredLayouter(diagram)
+                        .layoutInBackground(listener);
+                if (move) {
+                    // the result is handled on this thread, after the move
+                    Fig fig = diagram.getLayer().getContents().get(0);
+                    fig.setLocation(fig.getX() + 10, fig.getY());
+                }
+            }
+        });
+        assertTrue(started[0]);
+        assertFalse("A second layout must wait for the first", started[1]);
+        assertTrue(listener.done.await(60, TimeUnit.SECONDS));
+        return listener.outcome;
+    }
+
+    /**
+     * Records the outcome of a background layout.
+     */
+    private static class RecordingListener
+        implements ClassdiagramGraphLayouter.LayoutListener {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private volatile String outcome;
+
+        public void layoutComputed() {
+            outcome = "computed";
+            done.countDown();
+        }
+
+        public void layoutDiscarded() {
+            outcome = "discarded";
+            done.countDown();
+        }
+
+        public void layoutFailed(Throwable cause) {
+            outcome = "failed: " + cause;
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.uml.diagram.ui;
+
+import java.awt.Rectangle;
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.argouml.kernel.ProjectManager;
+import org.argouml.model.AddAssociationEvent;
+import org.argouml.model.AttributeChangeEvent;
+import org.argouml.model.InitializeModel;
+import org.argouml.model.Model;
+import org.argouml.model.UmlChangeEvent;
+import org.argouml.notation.InitNotation;
+import org.argouml.notation.providers.uml.InitNotationUml;
+import org.argouml.profile.init.InitProfileSubsystem;
+import org.argouml.uml.diagram.DiagramSettings;
+
+/**
+ * Tests for the FigUpdateScheduler.
+ */
+public class TestFigUpdateScheduler extends TestCase {
+
+    /**
+     * The constructor.
+     *
+     * @param name the name of the test
+     */
+    public TestFigUpdateScheduler(String name) {
+        super(name);
+    }
+
+    /*
+     * @see junit.framework.TestCase#setUp()
+     */
+    protected void setUp() throws Exception {
+        super.setUp();
+        InitializeModel.initializeDefault();
+        (new InitNotation()).init();
+        (new InitNotationUml()).init();
+        (new InitProfileSubsystem()).init();
+        ProjectManager.getManager().makeEmptyProject();
+    }
+
+    /**
+     * Test that the requests for one Fig are collected into one pass and
+     * that repeated requests are merged.
+     */
+    public void testCoalescing() {
+        Object model = Model.getModelManagementFactory().createModel();
+        Object cls1 = Model.getCoreFactory().buildClass("A", model);
+        Object cls2 = Model.getCoreFactory().buildClass("B", model);
+        Object op = Model.getCoreFactory().createOperation();
+        RecordingFig fig1 = new RecordingFig(cls1);
+        RecordingFig fig2 = new RecordingFig(cls2);
+
+        FigUpdateScheduler scheduler = new FigUpdateScheduler();
+        for (int i = 0; i < 100; i++) {
+            scheduler.scheduleLayout(fig1, new AttributeChangeEvent(cls1,
+                    "name", "A" + i, "A" + (i + 1), null));
+        }
+        UmlChangeEvent add = new AddAssociationEvent(cls1, "feature", null,
+                op, op, null);
+        scheduler.scheduleLayout(fig1, add);
+        scheduler.scheduleLayout(fig1, new AddAssociationEvent(cls1,
+                "feature", null, op, op, null));
+        scheduler.scheduleLayout(fig1, new AddAssociationEvent(cls1,
+                "feature", null, cls2, cls2, null));
+        scheduler.scheduleRendering(fig1,
+                new PropertyChangeEvent(cls1, "name", null, null));
+        scheduler.scheduleRendering(fig1,
+                new PropertyChangeEvent(cls1, "name", null, null));
+        scheduler.scheduleLayout(fig2, new AttributeChangeEvent(cls2,
+                "name", "B", "C", null));
+        assertTrue(fig1.events.isEmpty());
+
+        scheduler.run();
+
+        assertEquals(106, scheduler.getRequestCount());
+        assertEquals(101, scheduler.getCoalescedCount());
+        assertEquals(1, scheduler.getPassCount());
+        assertEquals(1, fig1.renderings);
+        assertEquals(3, fig1.events.size());
+        assertEquals("A100", fig1.events.get(0).getNewValue());
+        assertEquals(0, fig2.renderings);
+        assertEquals(1, fig2.events.size());
+
+        scheduler.run();
+        assertEquals(1, scheduler.getPassCount());
+        assertEquals(3, fig1.events.size());
+    }
+
+    /**
+     * A Fig which records the updates it is asked to do.
+     */
+    private static class RecordingFig extends FigNodeModelElement {
+        private List<UmlChangeEvent> events = new ArrayList<UmlChangeEvent>();
+        private int renderings;
+
+        RecordingFig(Object owner) {
+            super(owner, new Rectangle(0, 0, 50, 50), new DiagramSettings());
+        }
+
+        @Override
+        protected void updateLayout(UmlChangeEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public void delayedVetoableChange(PropertyChangeEvent pce) {
+            renderings++;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.uml.generator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.argouml.model.InitializeModel;
+import org.argouml.model.Model;
+
+/**
+ * Tests for the streaming and concurrent generation of GeneratorHelper.
+ */
+public class TestGeneratorHelper extends TestCase {
+
+    private static final List<String> ELEMENTS =
+        Arrays.asList("A1", "B1", "A2", "C1");
+
+    private Map<String, String> units = new HashMap<String, String>();
+
+    private SourceUnitListener listener = new SourceUnitListener() {
+        public void sourceUnitGenerated(SourceUnit unit) {
+            assertNull(units.put(unit.getName(), unit.getContent()));
+        }
+    };
+
+    /**
+     * The constructor.
+     *
+     * @param name the name of the test
+     */
+    public TestGeneratorHelper(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        InitializeModel.initializeDefault();
+    }
+
+    /**
+     * Check that a concurrent generator is called off the calling thread
+     * once per file, with all the elements which go into that file.
+     *
+     * @throws InterruptedException if the test is interrupted
+     */
+    public void testConcurrentGenerator() throws InterruptedException {
+        PlainGenerator gen = new ConcurrentGenerator();
+        GeneratorHelper.generate(gen, ELEMENTS, false, listener);
+        assertEquals(3, units.size());
+        assertEquals("A1 A2", units.get("A.txt"));
+        assertEquals("B1", units.get("B.txt"));
+        assertEquals("C1", units.get("C.txt"));
+        assertEquals(3, gen.calls.size());
+        for (String thread : gen.threads) {
+            assertTrue(thread, thread.startsWith("Code generator "));
+        }
+    }
+
+    /**
+     * Check that other generators are called once for all elements, and
+     * that a concurrent generator is too if dependencies are generated.
+     *
+     * @throws InterruptedException if the test is interrupted
+     */
+    public void testSingleCall() throws InterruptedException {
+        PlainGenerator gen = new PlainGenerator();
+        GeneratorHelper.generate(gen, ELEMENTS, false, listener);
+        assertEquals(1, gen.calls.size());
+        assertEquals(ELEMENTS, gen.calls.get(0));
+        assertEquals(Thread.currentThread().getName(), gen.threads.get(0));
+        assertEquals("A1 A2", units.get("A.txt"));
+
+        gen = new ConcurrentGenerator();
+        assertEquals(new HashSet<String>(
+                Arrays.asList("A.txt", "B.txt", "C.txt")),
+                new HashSet<String>(GeneratorHelper.generateFiles(
+                        gen, ELEMENTS, "src", true)));
+        assertEquals(1, gen.calls.size());
+    }
+
+    /**
+     * Check that the files of all groups are returned.
+     *
+     * @throws InterruptedException if the test is interrupted
+     */
+    public void testGenerateFiles() throws InterruptedException {
+        PlainGenerator gen = new ConcurrentGenerator();
+        Collection<String> files =
+            GeneratorHelper.generateFiles(gen, ELEMENTS, "src", false);
+        assertEquals(3, files.size());
+        assertEquals(new HashSet<String>(
+                Arrays.asList("A.txt", "B.txt", "C.txt")),
+                new HashSet<String>(files));
+        assertEquals(3, gen.calls.size());
+    }
+
+    /**
+     * Check that a failure of the generator is thrown to the caller.
+     *
+     * @throws InterruptedException if the test is interrupted
+     */
+    public void testFailure() throws InterruptedException {
+        PlainGenerator gen = new ConcurrentGenerator() {
+            @Override
+            Collection<SourceUnit> generate(List<String> elements) {
+                if (elements.contains("B1")) {
+                    throw new IllegalStateException("B1");
+                }
+                return super.generate(elements);
+            }
+        };
+        try {
+            GeneratorHelper.generate(gen, ELEMENTS, false, listener);
+            fail("The failure of the generator should be thrown");
+        } catch (IllegalStateException e) {
+            assertEquals("B1", e.getMessage());
+        }
+    }
+
+    /**
+     * Check that the model isn't changed while a concurrent generator
+     * runs.
+     *
+     * @throws InterruptedException if the test is interrupted
+     */
+    public void testModelUnchanged() throws InterruptedException {
+        Object pack = Model.getModelManagementFactory().buildPackage("p");
+        final Object cls = Model.getCoreFactory().buildClass("Before", pack);
+        final Thread writer = new Thread() {
+            public void run() {
+                Model.getCoreHelper().setName(cls, "After");
+            }
+        };
+        final List<String> names = new ArrayList<String>();
+        PlainGenerator gen = new ConcurrentGenerator() {
+            @Override
+            Collection<SourceUnit> generate(List<String> elements) {
+                if (elements.contains("A1")) {
+                    writer.start();
+                    try {
+                        writer.join(500);
+                    } catch (InterruptedException e) {
+                        return null;
+                    }
+                    synchronized (names) {
+                        names.add(writer.isAlive() ? "waiting" : "done");
+                        names.add(Model.getFacade().getName(cls));
+                    }
+                }
+                return super.generate(elements);
+            }
+        };
+        GeneratorHelper.generate(gen, ELEMENTS, false, listener);
+        writer.join(5000);
+        assertEquals(Arrays.asList("waiting", "Before"), names);
+        assertEquals("After", Model.getFacade().getName(cls));
+    }
+
+    /**
+     * A generator which puts the elements with the same first letter into
+     * one file and records how it is called.
+     */
+    private static class PlainGenerator implements CodeGenerator {
+
+        private List<List<String>> calls = new ArrayList<List<String>>();
+
+        private List<String> threads = new ArrayList<String>();
+
+        public Collection<SourceUnit> generate(Collection elements,
+                boolean deps) {
+            return generate(record(elements));
+        }
+
+        public Collection<String> generateFiles(Collection elements,
+                String path, boolean deps) {
+            return files(record(elements));
+        }
+
+        public Collection<String> generateFileList(Collection elements,
+                boolean deps) {
+            return files(toStrings(elements));
+        }
+
+        Collection<SourceUnit> generate(List<String> elements) {
+            Map<String, String> contents =
+                new HashMap<String, String>();
+            for (String element : elements) {
+                String file = file(element);
+                String content = contents.get(file);
+                contents.put(file,
+                        content == null ? element : content + " " + element);
+            }
+            List<SourceUnit> result = new ArrayList<SourceUnit>();
+            for (Map.Entry<String, String> entry : contents.entrySet()) {
+                result.add(new SourceUnit(entry.getKey(), "",
+                        entry.getValue()));
+            }
+            return result;
+        }
+
+        private synchronized List<String> record(Collection elements) {
+            List<String> list = toStrings(elements);
+            calls.add(list);
+            threads.add(Thread.currentThread().getName());
+            return list;
+        }
+
+        private static List<String> toStrings(Collection elements) {
+            List<String> list = new ArrayList<String>();
+            for (Object element : elements) {
+                list.add((String) element);
+            }
+            return list;
+        }
+
+        private static Collection<String> files(List<String> elements) {
+            Collection<String> files = new LinkedHashSet<String>();
+            for (String element : elements) {
+                files.add(file(element));
+            }
+            return files;
+        }
+
+        private static String file(String element) {
+            return element.substring(0, 1) + ".txt";
+        }
+    }
+
+    private static class ConcurrentGenerator extends PlainGenerator
+        implements ConcurrentCodeGenerator {
+    }
+}
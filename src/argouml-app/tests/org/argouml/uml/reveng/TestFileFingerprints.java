@@ -0,0 +1,152 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.uml.reveng;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the FileFingerprints.
+ */
+public class TestFileFingerprints extends TestCase {
+
+    private File dir;
+
+    private List<File> files;
+
+    /**
+     * The constructor.
+     *
+     * @param name the name of the test
+     */
+    public TestFileFingerprints(String name) {
+        super(name);
+    }
+
+    /*
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        dir = File.createTempFile("fingerprints", "");
+        dir.delete();
+        dir.mkdir();
+        files = new ArrayList<File>();
+        for (int i = 0; i < 20; i++) {
+            File file = new File(dir, "C" + i + ".java");
+            write(file, "class C" + i + " {}");
+            files.add(file);
+        }
+    }
+
+    /*
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+        super.tearDown();
+    }
+
+    private void write(File file, String contents) throws IOException {
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write(contents);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Test that only new and changed files are reported, and that touching
+     * a file does not count as a change.
+     *
+     * @throws IOException if a file can not be written
+     */
+    public void testGetChangedFiles() throws IOException {
+        FileFingerprints fingerprints = new FileFingerprints();
+        assertEquals(files, fingerprints.getChangedFiles(files));
+        assertEquals("Nothing recorded yet",
+                files, fingerprints.getChangedFiles(files));
+
+        fingerprints.record(files);
+        assertEquals(Collections.emptyList(),
+                fingerprints.getChangedFiles(files));
+
+        File touched = files.get(3);
+        assertTrue(touched.setLastModified(
+                touched.lastModified() - 60000));
+        File changed = files.get(7);
+        write(changed, "class C7 { int i; }");
+        File added = new File(dir, "D.java");
+        write(added, "class D {}");
+        List<File> all = new ArrayList<File>(files);
+        all.add(added);
+
+        List<File> result = fingerprints.getChangedFiles(all);
+        assertEquals(Arrays.asList(changed, added), result);
+
+        fingerprints.record(result);
+        assertEquals(Collections.emptyList(),
+                fingerprints.getChangedFiles(all));
+    }
+
+    /**
+     * Test that the fingerprints survive being written and read again.
+     *
+     * @throws IOException if a file can not be written
+     */
+    public void testSaveAndLoad() throws IOException {
+        FileFingerprints fingerprints = new FileFingerprints();
+        fingerprints.record(files);
+        File store = new File(dir, "test.zargo" + FileFingerprints.SUFFIX);
+        fingerprints.save(store);
+
+        FileFingerprints loaded = new FileFingerprints();
+        loaded.load(store);
+        assertEquals(Collections.emptyList(), loaded.getChangedFiles(files));
+
+        write(files.get(0), "class C0 extends C1 {}");
+        assertEquals(files.subList(0, 1), loaded.getChangedFiles(files));
+    }
+
+    /**
+     * Test that saving a project without imports over one with imports
+     * removes the fingerprints left by the old project.
+     *
+     * @throws IOException if a file can not be written
+     */
+    public void testSaveEmptyRemovesStore() throws IOException {
+        FileFingerprints fingerprints = new FileFingerprints();
+        fingerprints.record(files);
+        File store = new File(dir, "test.zargo" + FileFingerprints.SUFFIX);
+        fingerprints.save(store);
+        assertTrue(store.exists());
+
+        new FileFingerprints().save(store);
+        assertFalse(store.exists());
+    }
+}
@@ -383,6 +383,12 @@ public class EUMLModelImplementation implements ModelImplementation {
         return theCopyHelper;
     }
 
+    public void runReadOnly(Runnable task) {
+        // TODO: The editing domain isn't transactional, so nothing keeps
+        // changes out while the task runs.
+        task.run();
+    }
+
     public CoreFactoryEUMLImpl getCoreFactory() {
         if (theCoreFactory == null) {
             theCoreFactory = new CoreFactoryEUMLImpl(this);
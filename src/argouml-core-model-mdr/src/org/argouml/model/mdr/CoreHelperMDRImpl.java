@@ -58,7 +58,6 @@ import org.argouml.model.CoreFactory;
 import org.argouml.model.CoreHelper;
 import org.argouml.model.InvalidElementException;
 import org.argouml.model.Model;
-import org.argouml.model.ModelCommand;
 import org.argouml.model.ModelManagementHelper;
 import org.argouml.model.NotImplementedException;
 import org.argouml.model.mdr.UndoCoreHelperDecorator.StringSetter;
@@ -3084,10 +3083,12 @@ class CoreHelperMDRImpl implements CoreHelper {
                     public void set(String value) {
                         ((ModelElement) handle).setName(value);
                     }
+                    public String toString() {
+                        return "name = " + name;
+                    }
                 },
                 name,
-                Model.getFacade().getName(handle),
-                "name = " + name);
+                Model.getFacade().getName(handle));
 
             return;
         }
@@ -3587,8 +3588,7 @@ class CoreHelperMDRImpl implements CoreHelper {
     private void createCommand(
             final StringSetter accesser,
             final String newValue,
-            final String oldValue,
-            final String descr) {
+            final String oldValue) {
         if (newValue == oldValue) {
             return;
         }
@@ -3596,24 +3596,6 @@ class CoreHelperMDRImpl implements CoreHelper {
                 && newValue.equals(oldValue)) {
             return;
         }
-        ModelCommand command = new ModelCommand() {
-            public void undo() {
-                accesser.set(oldValue);
-            }
-            public Object execute() {
-                accesser.set(newValue);
-                return null;
-            }
-            public boolean isUndoable() {
-                return true;
-            }
-            public boolean isRedoable() {
-                return true;
-            }
-            public String toString() {
-                return descr;
-            }
-        };
-        Model.execute(command);
+        accesser.change(newValue, oldValue);
     }
 }
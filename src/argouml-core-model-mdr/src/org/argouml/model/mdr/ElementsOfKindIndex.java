@@ -0,0 +1,396 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2012 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    ArgoUML contributors - initial implementation
+ *****************************************************************************
+ */
+
+package org.argouml.model.mdr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.jmi.model.AggregationKindEnum;
+import javax.jmi.model.Association;
+import javax.jmi.model.AssociationEnd;
+import javax.jmi.reflect.InvalidObjectException;
+import javax.jmi.reflect.RefAssociation;
+import javax.jmi.reflect.RefClass;
+import javax.jmi.reflect.RefObject;
+import javax.jmi.reflect.RefPackage;
+
+import org.netbeans.api.mdr.events.AssociationEvent;
+import org.netbeans.api.mdr.events.AttributeEvent;
+import org.netbeans.api.mdr.events.InstanceEvent;
+import org.netbeans.api.mdr.events.MDRChangeEvent;
+
+/**
+ * Index for
+ * {@link ModelManagementHelperMDRImpl#getAllModelElementsOfKind(Object, Object)}
+ * from metatype and container to the elements of that kind the container
+ * holds, directly or further down.<p>
+ *
+ * The index of a metatype is built from one scan of its extent the first
+ * time it is asked for and then kept up to date from the pre-change events
+ * of the event pump.  A change to a composite association or a deletion
+ * marks the parts whose container changes.  Before the next query these
+ * parts, and the elements of the kind below them, are taken out of the
+ * containers they were filed under and filed under their current ones.  A
+ * query then costs the size of its result, and an edit the size of the
+ * subtree it moves.<p>
+ *
+ * The pre-change events arrive on the thread making the change while it
+ * holds the MDR write lock, so they only queue the marks and never wait for
+ * the index.  The index is looked up while holding the MDR read lock, so no
+ * other thread is in the middle of a change and the changes of the calling
+ * thread have been made.  A result is only returned if no change was
+ * planned while it was looked up; otherwise the caller scans the model.
+ * Cancelled changes clear the index because MDR undoes them without further
+ * pre-change events.  While the event pump is stopped the index can't see
+ * changes and is disabled.  Deleting an extent, as happens when a project is closed,
+ * clears the index so it doesn't keep elements of old projects alive.
+ */
+class ElementsOfKindIndex {
+
+    private static final Logger LOG =
+        Logger.getLogger(ElementsOfKindIndex.class.getName());
+
+    /**
+     * The index of each metatype, keyed by extent and metatype name.
+     */
+    private final Map<RefPackage, Map<String, KindIndex>> kinds =
+        new HashMap<RefPackage, Map<String, KindIndex>>();
+
+    /**
+     * The parts whose container changed since the last query.
+     */
+    private final Queue<RefObject> moved =
+        new ConcurrentLinkedQueue<RefObject>();
+
+    /**
+     * The name of the composite end of each association we've seen events
+     * for, or the empty string if it has none, keyed by MOF id of the
+     * metamodel association.
+     */
+    private final Map<String, String> compositeEnds =
+        new HashMap<String, String>();
+
+    /**
+     * Incremented for each planned change.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Set when the index can no longer be trusted.
+     */
+    private final AtomicBoolean invalid = new AtomicBoolean();
+
+    private volatile boolean enabled = true;
+
+    /**
+     * Look up the elements of a kind in a container.  The caller must hold
+     * the MDR read lock.
+     *
+     * @param container the namespace which is searched
+     * @param typeName the name of the metatype
+     * @param proxy the class proxy of the metatype in the extent of the
+     *            container
+     * @return the elements, or null if the index can't answer now and the
+     *         model must be searched
+     */
+    synchronized List<Object> get(RefObject container, String typeName,
+            RefClass proxy) {
+        if (!enabled) {
+            return null;
+        }
+        long expectedVersion = version.get();
+        if (invalid.getAndSet(false)) {
+            kinds.clear();
+            moved.clear();
+        }
+        List<Object> result;
+        try {
+            List<RefObject> parts = new ArrayList<RefObject>();
+            for (RefObject part = moved.poll(); part != null;
+                    part = moved.poll()) {
+                parts.add(part);
+            }
+            for (Map<String, KindIndex> extentKinds : kinds.values()) {
+                for (KindIndex kind : extentKinds.values()) {
+                    kind.relocate(parts);
+                }
+            }
+            RefPackage extent = container.refOutermostPackage();
+            Map<String, KindIndex> extentKinds = kinds.get(extent);
+            if (extentKinds == null) {
+                extentKinds = new HashMap<String, KindIndex>();
+                kinds.put(extent, extentKinds);
+            }
+            KindIndex kind = extentKinds.get(typeName);
+            if (kind == null) {
+                kind = new KindIndex(extent, proxy);
+                extentKinds.put(typeName, kind);
+            }
+            result = kind.get(container);
+        } catch (InvalidObjectException e) {
+            LOG.log(Level.FINE, "Clearing index after invalid object", e);
+            kinds.clear();
+            return null;
+        }
+        if (version.get() != expectedVersion) {
+            // The model changed meanwhile, the moves are found next time
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Called by the event pump for every planned change, before MDR makes
+     * it.
+     *
+     * @param e the pre-change event
+     */
+    void plannedChange(MDRChangeEvent e) {
+        version.incrementAndGet();
+        if (!enabled) {
+            return;
+        }
+        try {
+            if (e instanceof AssociationEvent) {
+                AssociationEvent ae = (AssociationEvent) e;
+                String compositeEnd =
+                    getCompositeEnd((RefAssociation) ae.getSource());
+                if (compositeEnd == null) {
+                    return;
+                }
+                // The end name is the end of the fixed element
+                if (compositeEnd.equals(ae.getEndName())) {
+                    mark(ae.getOldElement());
+                    mark(ae.getNewElement());
+                } else {
+                    mark(ae.getFixedElement());
+                }
+            } else if (e instanceof AttributeEvent) {
+                // Class typed attributes are composite in MOF
+                AttributeEvent ae = (AttributeEvent) e;
+                mark(ae.getOldElement());
+                mark(ae.getNewElement());
+            } else if (e instanceof InstanceEvent
+                    && e.isOfType(InstanceEvent.EVENT_INSTANCE_DELETE)) {
+                mark(((InstanceEvent) e).getInstance());
+            }
+        } catch (InvalidObjectException ex) {
+            LOG.log(Level.FINE, "Clearing index after invalid object", ex);
+            invalid.set(true);
+        }
+    }
+
+    /**
+     * Called by the event pump when a planned change has been cancelled.
+     * MDR rolls the change back without telling us what it touches, so
+     * nothing in the index can be trusted any more.
+     */
+    void changeCancelled() {
+        version.incrementAndGet();
+        invalid.set(true);
+    }
+
+    /**
+     * Enable or disable the index.  Disabling clears it, because the changes
+     * made while it is disabled aren't seen.
+     *
+     * @param enable true to enable
+     */
+    void setEnabled(boolean enable) {
+        enabled = enable;
+        if (!enable) {
+            clear();
+        }
+    }
+
+    /**
+     * Remove all entries.  Like the other notifications this doesn't wait
+     * for a running query, which may be waiting for the MDR lock of the
+     * caller; the entries are dropped before the next one.
+     */
+    void clear() {
+        version.incrementAndGet();
+        invalid.set(true);
+    }
+
+    private void mark(Object element) {
+        if (element instanceof RefObject) {
+            moved.add((RefObject) element);
+        }
+    }
+
+    /**
+     * @return the name of the composite end of the association, the empty
+     *         string if it has none or null if it isn't composite
+     */
+    private String getCompositeEnd(RefAssociation association) {
+        Association metaAssociation =
+            (Association) association.refMetaObject();
+        String key = metaAssociation.refMofId();
+        synchronized (compositeEnds) {
+            String end = compositeEnds.get(key);
+            if (end != null) {
+                return end.length() == 0 ? null : end;
+            }
+        }
+        String end = "";
+        for (Object content : metaAssociation.getContents()) {
+            if (content instanceof AssociationEnd
+                    && AggregationKindEnum.COMPOSITE.equals(
+                            ((AssociationEnd) content).getAggregation())) {
+                end = ((AssociationEnd) content).getName();
+            }
+        }
+        synchronized (compositeEnds) {
+            compositeEnds.put(key, end);
+        }
+        return end.length() == 0 ? null : end;
+    }
+
+    /**
+     * The elements of one metatype in one extent, filed under every
+     * container they are in.
+     */
+    private static class KindIndex {
+
+        private final RefPackage extent;
+
+        private final RefObject metaClass;
+
+        /**
+         * The elements of the kind each container holds, directly or
+         * further down, in the order they were filed.
+         */
+        private final Map<Object, Set<Object>> contents =
+            new HashMap<Object, Set<Object>>();
+
+        /**
+         * The containers each element is filed under, innermost first.
+         */
+        private final Map<Object, List<Object>> containers =
+            new HashMap<Object, List<Object>>();
+
+        /**
+         * Build the index from the elements of the kind in the extent.
+         *
+         * @param theExtent the extent
+         * @param proxy the class proxy of the metatype
+         */
+        KindIndex(RefPackage theExtent, RefClass proxy) {
+            extent = theExtent;
+            metaClass = proxy.refMetaObject();
+            for (Object element : proxy.refAllOfType()) {
+                file(element);
+            }
+        }
+
+        /**
+         * @param container the container
+         * @return the elements of the kind it holds
+         */
+        List<Object> get(Object container) {
+            Set<Object> elements = contents.get(container);
+            if (elements == null) {
+                return Collections.emptyList();
+            }
+            return new ArrayList<Object>(elements);
+        }
+
+        /**
+         * File the moved parts and the elements of the kind below them
+         * under their current containers.
+         *
+         * @param parts the parts whose container changed
+         */
+        void relocate(List<RefObject> parts) {
+            for (RefObject part : parts) {
+                Set<Object> affected = new LinkedHashSet<Object>();
+                if (containers.containsKey(part) || isOfKind(part)) {
+                    affected.add(part);
+                }
+                Set<Object> below = contents.get(part);
+                if (below != null) {
+                    affected.addAll(below);
+                }
+                for (Object element : affected) {
+                    unfile(element);
+                    file(element);
+                }
+            }
+        }
+
+        private boolean isOfKind(RefObject element) {
+            try {
+                return extent.equals(element.refOutermostPackage())
+                    && element.refIsInstanceOf(metaClass, true);
+            } catch (InvalidObjectException e) {
+                return false;
+            }
+        }
+
+        private void file(Object element) {
+            List<Object> chain = new ArrayList<Object>();
+            try {
+                Object current =
+                    ((RefObject) element).refImmediateComposite();
+                while (current != null) {
+                    chain.add(current);
+                    current = ((RefObject) current).refImmediateComposite();
+                }
+            } catch (InvalidObjectException e) {
+                // Deleted
+                return;
+            }
+            if (chain.isEmpty()) {
+                return;
+            }
+            containers.put(element, chain);
+            for (Object container : chain) {
+                Set<Object> elements = contents.get(container);
+                if (elements == null) {
+                    elements = new LinkedHashSet<Object>();
+                    contents.put(container, elements);
+                }
+                elements.add(element);
+            }
+        }
+
+        private void unfile(Object element) {
+            List<Object> chain = containers.remove(element);
+            if (chain == null) {
+                return;
+            }
+            for (Object container : chain) {
+                Set<Object> elements = contents.get(container);
+                if (elements != null) {
+                    elements.remove(element);
+                    if (elements.isEmpty()) {
+                        contents.remove(container);
+                    }
+                }
+            }
+        }
+    }
+}
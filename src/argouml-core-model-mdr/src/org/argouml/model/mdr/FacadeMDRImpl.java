@@ -44,15 +44,19 @@ package org.argouml.model.mdr;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.jmi.model.MofClass;
 import javax.jmi.model.Reference;
+import javax.jmi.reflect.InvalidNameException;
 import javax.jmi.reflect.InvalidObjectException;
 import javax.jmi.reflect.RefBaseObject;
 import javax.jmi.reflect.RefClass;
@@ -210,6 +214,13 @@ class FacadeMDRImpl implements Facade {
 
     private MDRModelImplementation modelImpl;
 
+    /**
+     * The metatype proxies of each extent, keyed by metatype name.  The
+     * extents are weakly held so that deleted extents can be collected.
+     */
+    private final Map<RefPackage, Map<String, RefClass>> proxies =
+        new WeakHashMap<RefPackage, Map<String, RefClass>>();
+
     // Shorthand notation for convenience
     private static final javax.jmi.model.AggregationKindEnum MOF_COMPOSITE =
         javax.jmi.model.AggregationKindEnum.COMPOSITE;
@@ -4691,9 +4702,7 @@ class FacadeMDRImpl implements Facade {
     }
 
     Collection<MofClass> getMetaClasses() {
-        Collection<MofClass> metaTypes = modelImpl.getModelPackage()
-                .getMofClass().refAllOfClass();
-        return metaTypes;
+        return modelImpl.getMetaClasses().values();
     }
 
     public boolean isA(String metatypeName, Object element) {
@@ -4703,27 +4712,50 @@ class FacadeMDRImpl implements Facade {
     }
 
     MofClass getMofClass(String metatypeName) {
-        Collection<MofClass> metaTypes = getMetaClasses();
-        for (MofClass mofClass : metaTypes) {
-            // TODO: Generalize - assumes UML type names are unique
-            // without the qualifying package names - true for UML 1.4
-            if (metatypeName.equals(mofClass.getName())) {
-                return mofClass;
+        return modelImpl.getMetaClasses().get(metatypeName);
+    }
+
+    RefClass getProxy(String metatypeName, RefPackage extent) {
+        Map<String, RefClass> extentProxies;
+        synchronized (proxies) {
+            extentProxies = proxies.get(extent);
+            if (extentProxies == null) {
+                extentProxies = Collections.unmodifiableMap(
+                        buildProxies(extent));
+                proxies.put(extent, extentProxies);
             }
         }
-        return null;
+        return extentProxies.get(metatypeName);
     }
 
-    RefClass getProxy(String metatypeName, RefPackage extent) {
-        Collection<MofClass> metaTypes = getMetaClasses();
-        MofClass mofClass = getMofClass(metatypeName);
-        List<String> names = mofClass.getQualifiedName();
-        // Although this only handles one level of package, it is
-        // OK for UML 1.4 because of clustering
-        // Get the right UML package in the extent
-        RefPackage pkg = extent.refPackage(names.get(0));
-        // Return the metatype proxy
-        return pkg.refClass(names.get(1));
+    /**
+     * Find the proxy of every metaclass in an extent.
+     */
+    private Map<String, RefClass> buildProxies(RefPackage extent) {
+        Map<String, RefClass> result = new HashMap<String, RefClass>();
+        for (Map.Entry<String, MofClass> entry
+                : modelImpl.getMetaClasses().entrySet()) {
+            List<String> names = entry.getValue().getQualifiedName();
+            // Although this only handles one level of package, it is
+            // OK for UML 1.4 because of clustering
+            if (names.size() < 2) {
+                continue;
+            }
+            // Get the right UML package in the extent
+            RefPackage pkg;
+            try {
+                pkg = extent.refPackage(names.get(0));
+            } catch (InvalidNameException e) {
+                continue;
+            }
+            // Get the metatype proxy
+            try {
+                result.put(entry.getKey(), pkg.refClass(names.get(1)));
+            } catch (InvalidNameException e) {
+                // Not a class of this extent
+            }
+        }
+        return result;
     }
 
 
@@ -47,12 +47,14 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.jmi.model.ModelPackage;
+import javax.jmi.model.MofClass;
 import javax.jmi.model.MofPackage;
 import javax.jmi.reflect.InvalidObjectException;
 import javax.jmi.reflect.RefObject;
@@ -120,6 +122,9 @@ public class MDRModelImplementation implements ModelImplementation {
 
     private ModelEventPumpMDRImpl theModelEventPump;
 
+    private ElementsOfKindIndex theElementsOfKindIndex =
+        new ElementsOfKindIndex();
+
     private CopyHelper theCopyHelper;
 
     private ActivityGraphsHelper theActivityGraphsHelper;
@@ -180,6 +185,12 @@ public class MDRModelImplementation implements ModelImplementation {
      */
     private MofPackage mofPackage;
 
+    /**
+     * The metaclasses of the MOF extent keyed by name.  This never changes
+     * once the metamodel has been read.
+     */
+    private Map<String, MofClass> metaClasses;
+
     /**
      * Top level MOF extent.
      */
@@ -314,6 +325,8 @@ public class MDRModelImplementation implements ModelImplementation {
     }
 
     private void deleteExtentUnchecked(UmlPackage extent) {
+        // Don't keep elements of closed projects alive in the index
+        theElementsOfKindIndex.clear();
         synchronized (extents) {
             Extent e = extents.get(extent);
             if (e == null) {
@@ -372,6 +385,14 @@ public class MDRModelImplementation implements ModelImplementation {
         return mofPackage;
     }
 
+    /**
+     * @return the metaclasses of the metamodel keyed by their unqualified
+     *         names.  The map can't be modified.
+     */
+    Map<String, MofClass> getMetaClasses() {
+        return metaClasses;
+    }
+
     /**
      * @return Top level MOF extent.
      */
@@ -504,6 +525,17 @@ public class MDRModelImplementation implements ModelImplementation {
                 break;
             }
         }
+
+        // TODO: Generalize - assumes UML type names are unique
+        // without the qualifying package names - true for UML 1.4
+        Map<String, MofClass> classes = new LinkedHashMap<String, MofClass>();
+        for (Object element : mofExtent.getMofClass().refAllOfClass()) {
+            MofClass mofClass = (MofClass) element;
+            if (!classes.containsKey(mofClass.getName())) {
+                classes.put(mofClass.getName(), mofClass);
+            }
+        }
+        metaClasses = Collections.unmodifiableMap(classes);
     }
 
     static String PROFILES_RESOURCE_PATH =
@@ -707,6 +739,21 @@ public class MDRModelImplementation implements ModelImplementation {
         return theCopyHelper;
     }
 
+    /*
+     * A read-only transaction keeps writers out until the task is done.
+     * A write nested in it fails instead of waiting forever.
+     *
+     * @see org.argouml.model.ModelImplementation#runReadOnly(java.lang.Runnable)
+     */
+    public void runReadOnly(Runnable task) {
+        getRepository().beginTrans(false);
+        try {
+            task.run();
+        } finally {
+            getRepository().endTrans();
+        }
+    }
+
     /*
      * @see org.argouml.model.ModelImplementation#getCoreFactory()
      */
@@ -895,6 +942,13 @@ public class MDRModelImplementation implements ModelImplementation {
         return new XmiWriterMDRImpl(this, model, stream, version);
     }
 
+    /**
+     * @return the index used by getAllModelElementsOfKind
+     */
+    ElementsOfKindIndex getElementsOfKindIndex() {
+        return theElementsOfKindIndex;
+    }
+
     /**
      * Return map of MOF ID to XmiReference (system id + xmi.id).
      *
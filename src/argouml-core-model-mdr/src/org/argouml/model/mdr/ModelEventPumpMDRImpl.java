@@ -45,9 +45,12 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -120,6 +123,26 @@ class ModelEventPumpMDRImpl extends AbstractModelEventPump implements
 
     private Thread eventThread;
 
+    private final Object batchMutex = new Object();
+
+    /**
+     * Held while events are delivered, directly or at the end of a batch,
+     * so that an event which arrives after a batch has ended is delivered
+     * only after the events of that batch.
+     */
+    private final Object deliveryMutex = new Object();
+
+    /**
+     * Nesting depth of batches.  Events are collected rather than delivered
+     * while this is greater than zero.
+     */
+    private int batchDepth = 0;
+
+    /**
+     * The events collected during the current batch.
+     */
+    private EventBatch pendingBatch = new EventBatch();
+
     /**
      * Map of Element/attribute tuples and the listeners they have registered.
      */
@@ -384,9 +407,10 @@ class ModelEventPumpMDRImpl extends AbstractModelEventPump implements
         }
 
         for (UmlChangeEvent event : events) {
-            fire(event);
-            // Unregister deleted instances after all events have been delivered
-            if (event instanceof DeleteInstanceEvent) {
+            boolean batched = fire(event, mdrEvent);
+            // Unregister deleted instances after all events have been
+            // delivered.  For batched events this happens in endBatch().
+            if (event instanceof DeleteInstanceEvent && !batched) {
                 elements.unregister(null, ((RefBaseObject) event.getSource())
                         .refMofId(), null);
             }
@@ -437,6 +461,7 @@ class ModelEventPumpMDRImpl extends AbstractModelEventPump implements
         synchronized (eventCountMutex) {
             pendingEvents++;
         }
+        modelImpl.getElementsOfKindIndex().plannedChange(e);
 
         // Prototypical logging code that can be enabled and modified to
         // discover who's creating certain types of events
@@ -459,6 +484,7 @@ class ModelEventPumpMDRImpl extends AbstractModelEventPump implements
      */
     public void changeCancelled(MDRChangeEvent e) {
         decrementEvents();
+        modelImpl.getElementsOfKindIndex().changeCancelled();
     }
 
     /**
@@ -476,23 +502,33 @@ class ModelEventPumpMDRImpl extends AbstractModelEventPump implements
     }
 
     /**
-     * Fire an event to any registered listeners.
+     * Fire an event to any registered listeners, or add it to the
+     * pending batch if a batch is active.
+     *
+     * @return true if the event was batched
      */
-    private void fire(UmlChangeEvent event) {
+    private boolean fire(UmlChangeEvent event, MDRChangeEvent mdrEvent) {
         String mofId = ((RefBaseObject) event.getSource()).refMofId();
         String className  = getClassName(event.getSource());
 
+        // The registries hand out shared snapshots, so no locking is needed
+        Collection<PropertyChangeListener> elementListeners =
+            elements.getMatches(mofId, event.getPropertyName());
+        // This will include all subtypes registered
+        Collection<PropertyChangeListener> classListeners =
+            listenedClasses.getMatches(className, event.getPropertyName());
+
         // Any given listener is only called once even if it is
         // registered for multiple relevant matches
-        Set<PropertyChangeListener> listeners =
-                new HashSet<PropertyChangeListener>();
-        synchronized (registrationMutex) {
-            listeners.addAll(elements.getMatches(mofId, event
-                    .getPropertyName()));
-
-            // This will include all subtypes registered
-            listeners.addAll(listenedClasses.getMatches(className, event
-                    .getPropertyName()));
+        Collection<PropertyChangeListener> listeners;
+        if (classListeners.isEmpty()) {
+            listeners = elementListeners;
+        } else if (elementListeners.isEmpty()) {
+            listeners = classListeners;
+        } else {
+            listeners = new LinkedHashSet<PropertyChangeListener>(
+                    elementListeners);
+            listeners.addAll(classListeners);
         }
 
         if (LOG.isLoggable(Level.FINE)) {
@@ -508,12 +544,19 @@ class ModelEventPumpMDRImpl extends AbstractModelEventPump implements
         }
 
         if (!listeners.isEmpty()) {
-            for (PropertyChangeListener pcl : listeners) {
-                if (false /*(LOG.isDebugEnabled()*/) {
-                    LOG.log(Level.FINE, "Firing event on " + pcl.getClass().getName()
-                            + "[" + pcl + "]");
+            synchronized (deliveryMutex) {
+                if (addToBatch(listeners, mofId, className, event,
+                        mdrEvent)) {
+                    return true;
+                }
+                for (PropertyChangeListener pcl : listeners) {
+                    if (false /*(LOG.isDebugEnabled()*/) {
+                        LOG.log(Level.FINE, "Firing event on "
+                                + pcl.getClass().getName()
+                                + "[" + pcl + "]");
+                    }
+                    pcl.propertyChange(event);
                 }
-                pcl.propertyChange(event);
             }
         } else {
             // For debugging you probably want either this
@@ -530,8 +573,123 @@ class ModelEventPumpMDRImpl extends AbstractModelEventPump implements
                         + "->" + event.getNewValue());
             }
         }
+        return false;
+    }
+
+
+    /**
+     * Add an event to the pending batch if a batch is active.
+     *
+     * @return true if the event was batched, false if it should be
+     * delivered now
+     */
+    private boolean addToBatch(Collection<PropertyChangeListener> listeners,
+            String mofId, String className, UmlChangeEvent event,
+            MDRChangeEvent mdrEvent) {
+        synchronized (batchMutex) {
+            if (batchDepth <= 0) {
+                return false;
+            }
+            pendingBatch.add(mofId, className, event, mdrEvent, listeners);
+            return true;
+        }
+    }
+
+    /**
+     * Check whether a listener is still registered for a batched event.
+     * Listeners which were removed after the event was collected, such
+     * as the Figs of deleted elements, must not receive it.
+     */
+    private boolean isRegistered(PropertyChangeListener listener,
+            EventBatch.Entry entry) {
+        String propertyName = entry.getEvent().getPropertyName();
+        return elements.getMatches(entry.getMofId(), propertyName)
+                .contains(listener)
+            || listenedClasses.getMatches(entry.getClassName(), propertyName)
+                .contains(listener);
+    }
+
+    /*
+     * @see org.argouml.model.ModelEventPump#startBatch()
+     */
+    public void startBatch() {
+        synchronized (batchMutex) {
+            batchDepth++;
+        }
+    }
+
+    /*
+     * @see org.argouml.model.ModelEventPump#endBatch()
+     */
+    public void endBatch() {
+        synchronized (batchMutex) {
+            if (batchDepth <= 0) {
+                throw new IllegalStateException(
+                        "endBatch() called without matching startBatch()");
+            }
+            if (batchDepth > 1) {
+                batchDepth--;
+                return;
+            }
+        }
+
+        // Make sure we've seen all events caused by changes in the batch
+        flushModelEvents();
+
+        // Swap the batch while holding the delivery lock, so that events
+        // which arrive from now on wait until the batch has been delivered
+        synchronized (deliveryMutex) {
+            EventBatch batch;
+            synchronized (batchMutex) {
+                batchDepth--;
+                if (batchDepth > 0) {
+                    // Another batch was started while we were waiting
+                    return;
+                }
+                batch = pendingBatch;
+                pendingBatch = new EventBatch();
+            }
+            deliver(batch);
+        }
     }
 
+    /**
+     * Deliver the events of a batch to the listeners which are still
+     * registered for them.  The caller holds the delivery lock.
+     */
+    private void deliver(EventBatch batch) {
+        int delivered = 0;
+        int dropped = 0;
+        for (EventBatch.Entry entry : batch.getEntries()) {
+            UmlChangeEvent event = entry.getEvent();
+            for (PropertyChangeListener pcl : entry.getListeners()) {
+                if (!isRegistered(pcl, entry)) {
+                    dropped++;
+                    continue;
+                }
+                try {
+                    pcl.propertyChange(event);
+                } catch (RuntimeException e) {
+                    // Don't let one listener spoil the batch for the others
+                    LOG.log(Level.SEVERE, "Exception delivering batched event "
+                            + event + " to " + pcl, e);
+                }
+                delivered++;
+            }
+        }
+
+        // Now that everybody has seen the delete events, forget the
+        // registrations of the deleted elements
+        for (String mofId : batch.getDeletedElements()) {
+            elements.unregister(null, mofId, null);
+        }
+
+        LOG.log(Level.FINE, "Delivered batch of {0} events ({1} merged)"
+                + " in {2} calls, {3} calls to removed listeners dropped",
+                new Object[] {batch.getEntries().size(),
+                    batch.getReceivedCount() - batch.getEntries().size(),
+                    delivered, dropped});
+    }
 
     /**
      * Register a listener for a Model Event.  The ModelElement's
@@ -667,6 +825,7 @@ class ModelEventPumpMDRImpl extends AbstractModelEventPump implements
     public void startPumpingEvents() {
         LOG.log(Level.FINE, "Start pumping events");
         repository.addListener(this);
+        modelImpl.getElementsOfKindIndex().setEnabled(true);
     }
 
     /*
@@ -675,6 +834,8 @@ class ModelEventPumpMDRImpl extends AbstractModelEventPump implements
     public void stopPumpingEvents() {
         LOG.log(Level.FINE, "Stop pumping events");
         repository.removeListener(this);
+        // We won't see changes, so the index can't be trusted
+        modelImpl.getElementsOfKindIndex().setEnabled(false);
     }
 
     /*
@@ -686,7 +847,9 @@ class ModelEventPumpMDRImpl extends AbstractModelEventPump implements
                 if (pendingEvents <= 0
                         // Don't wait on ourselves, we'll deadlock!
                         // TODO: We might want to throw an exception here
-                        || Thread.currentThread().equals(eventThread)) {
+                        || Thread.currentThread().equals(eventThread)
+                        // nor while the event thread waits for our delivery
+                        || Thread.holdsLock(deliveryMutex)) {
                     return;
                 }
                 try {
@@ -937,7 +1100,7 @@ class ModelEventPumpMDRImpl extends AbstractModelEventPump implements
             String item = entry.getKey().toString();
             List modelElementNode = newDebugNode(getDebugDescription(item));
             info.add(modelElementNode);
-            Map propertyMap = (Map) entry.getValue();
+            Map propertyMap = ((Registry.Entry) entry.getValue()).registrations;
             for (Iterator propertyIterator = propertyMap.entrySet().iterator();
                     propertyIterator.hasNext();) {
                 Map.Entry propertyEntry = (Map.Entry) propertyIterator.next();
@@ -980,7 +1143,146 @@ class ModelEventPumpMDRImpl extends AbstractModelEventPump implements
 
 
 /**
- * A simple typed registry which supports two levels of string keys.
+ * The events collected during a batch, in the order they arrived, together
+ * with the listeners they were destined for at the time.  Changes of the same
+ * single-valued attribute of the same element are merged into a single event
+ * which keeps the position and old value of the first change and the new value
+ * of the last.  All other events, including changes of multi-valued
+ * properties, are kept as they are.
+ */
+class EventBatch {
+
+    /**
+     * A single event of the batch.
+     */
+    static class Entry {
+        private final String mofId;
+        private final String className;
+        private UmlChangeEvent event;
+        private final Collection<PropertyChangeListener> listeners;
+
+        Entry(String id, String name, UmlChangeEvent e,
+                Collection<PropertyChangeListener> l) {
+            mofId = id;
+            className = name;
+            event = e;
+            listeners = new LinkedHashSet<PropertyChangeListener>(l);
+        }
+
+        String getMofId() {
+            return mofId;
+        }
+
+        String getClassName() {
+            return className;
+        }
+
+        UmlChangeEvent getEvent() {
+            return event;
+        }
+
+        Collection<PropertyChangeListener> getListeners() {
+            return listeners;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<Entry>();
+
+    /**
+     * The entry of the attribute change for each element/property pair.
+     */
+    private final Map<String, Entry> attributeChanges =
+        new HashMap<String, Entry>();
+
+    /**
+     * The MOF ids of the elements deleted during the batch.
+     */
+    private final List<String> deletedElements = new ArrayList<String>();
+
+    private int received = 0;
+
+    /**
+     * Add an event to the batch, merging it with an earlier change of the
+     * same single-valued attribute if possible.
+     *
+     * @param mofId the MOF id of the event source
+     * @param className the metatype name of the event source
+     * @param event the event
+     * @param mdrEvent the MDR event which caused it
+     * @param listeners the listeners currently registered for the event
+     */
+    void add(String mofId, String className, UmlChangeEvent event,
+            MDRChangeEvent mdrEvent,
+            Collection<PropertyChangeListener> listeners) {
+        received++;
+        if (event instanceof DeleteInstanceEvent) {
+            deletedElements.add(mofId);
+        }
+        if (!isSingleValuedSet(event, mdrEvent)) {
+            entries.add(new Entry(mofId, className, event, listeners));
+            return;
+        }
+        String key = mofId + ":" + event.getPropertyName();
+        Entry first = attributeChanges.get(key);
+        if (first == null) {
+            Entry entry = new Entry(mofId, className, event, listeners);
+            attributeChanges.put(key, entry);
+            entries.add(entry);
+        } else {
+            first.event = new AttributeChangeEvent(event.getSource(),
+                    event.getPropertyName(), first.event.getOldValue(),
+                    event.getNewValue(), mdrEvent);
+            first.listeners.addAll(listeners);
+        }
+    }
+
+    /**
+     * Only plain sets of single-valued attributes can be merged.  The
+     * attribute changes derived from association events and the additions
+     * and removals of multi-valued attributes each carry a delta which
+     * would be lost.
+     */
+    private static boolean isSingleValuedSet(UmlChangeEvent event,
+            MDRChangeEvent mdrEvent) {
+        return event instanceof AttributeChangeEvent
+            && mdrEvent instanceof AttributeEvent
+            && mdrEvent.isOfType(AttributeEvent.EVENT_ATTRIBUTE_SET)
+            && ((AttributeEvent) mdrEvent).getPosition()
+                == AttributeEvent.POSITION_NONE;
+    }
+
+    /**
+     * @return the events to deliver in order
+     */
+    List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return the MOF ids of the elements deleted during the batch
+     */
+    List<String> getDeletedElements() {
+        return deletedElements;
+    }
+
+    /**
+     * @return the number of events added before merging
+     */
+    int getReceivedCount() {
+        return received;
+    }
+}
+
+
+/**
+ * A simple typed registry which supports two levels of string keys.<p>
+ *
+ * Registrations for each primary key are held in an immutable snapshot
+ * which is replaced as a whole (copy-on-write) whenever a registration
+ * changes.  Lookups don't take any locks and return a precomputed,
+ * shared collection, so they don't allocate.  This matters because
+ * lookups happen for every model event while registration changes are
+ * comparatively rare.
  *
  * @param <T> type of object to be registered
  * @author Tom Morris
@@ -989,14 +1291,18 @@ class Registry<T> {
 
     private static final Logger LOG = Logger.getLogger(Registry.class.getName());
 
-    Map<String, Map<String, List<T>>> registry;
+    /**
+     * Special subkey used for registrations made with the primary key only.
+     */
+    private static final String PRIMARY = "";
+
+    final ConcurrentMap<String, Entry<T>> registry;
 
     /**
      * Construct a new registry for the given type of object.
      */
     Registry() {
-        registry = Collections
-                .synchronizedMap(new HashMap<String, Map<String, List<T>>>());
+        registry = new ConcurrentHashMap<String, Entry<T>>();
     }
 
     /**
@@ -1012,38 +1318,35 @@ class Registry<T> {
      *                only. The special value of the empty string ("") must not
      *                be used as a subkey by the caller.
      */
-    void register(T item, String key,
+    synchronized void register(T item, String key,
             String[] subkeys) {
 
-        // Lookup primary key, creating new entry if needed
-        Map<String, List<T>> entry = registry.get(key);
-        if (entry == null) {
-            entry = new HashMap<String, List<T>>();
-            registry.put(key, entry);
-        }
+        Map<String, List<T>> registrations = copyRegistrations(key);
 
         // If there are no subkeys, register using our special value
         // to indicate that this is a primary key only registration
         if (subkeys == null || subkeys.length < 1) {
             subkeys =
                 new String[] {
-                    "",
+                    PRIMARY,
                 };
         }
 
         for (int i = 0; i < subkeys.length; i++) {
-            List<T> list = entry.get(subkeys[i]);
+            List<T> list = registrations.get(subkeys[i]);
             if (list == null) {
-                list = new ArrayList<T>();
-                entry.put(subkeys[i], list);
-            }
-            if (!list.contains(item)) {
-                list.add(item);
-            } else {
+                list = new ArrayList<T>(1);
+            } else if (list.contains(item)) {
                 LOG.log(Level.FINE, "Duplicate registration attempt for {0}: {1} Listener: {2}",
                         new Object[]{key,subkeys,item});
+                continue;
+            } else {
+                list = new ArrayList<T>(list);
             }
+            list.add(item);
+            registrations.put(subkeys[i], Collections.unmodifiableList(list));
         }
+        registry.put(key, new Entry<T>(registrations));
     }
 
     /**
@@ -1055,22 +1358,30 @@ class Registry<T> {
      * @param subkeys array of subkeys.  If null, unregister under primary
      * key only.
      */
-    void unregister(T item, String key, String[] subkeys) {
-        Map<String, List<T>> entry = registry.get(key);
-        if (entry == null) {
+    synchronized void unregister(T item, String key, String[] subkeys) {
+        if (!registry.containsKey(key)) {
             return;
         }
 
-        if (subkeys != null && subkeys.length > 0) {
-            for (int i = 0; i < subkeys.length; i++) {
-                lookupRemoveItem(entry, subkeys[i], item);
-            }
-        } else {
+        if (subkeys == null || subkeys.length < 1) {
             if (item == null) {
                 registry.remove(key);
-            } else {
-                lookupRemoveItem(entry, "", item);
+                return;
             }
+            subkeys =
+                new String[] {
+                    PRIMARY,
+                };
+        }
+
+        Map<String, List<T>> registrations = copyRegistrations(key);
+        for (int i = 0; i < subkeys.length; i++) {
+            lookupRemoveItem(registrations, subkeys[i], item);
+        }
+        if (registrations.isEmpty()) {
+            registry.remove(key);
+        } else {
+            registry.put(key, new Entry<T>(registrations));
         }
     }
 
@@ -1084,41 +1395,106 @@ class Registry<T> {
             map.remove(key);
             return;
         }
-        if (LOG.isLoggable(Level.FINE)) {
-            if (!list.contains(item)) {
-                LOG.log(Level.FINE,
-                        "Attempt to unregister non-existant registration {0} Listener: {1}",
-                        new Object[]{key, item});
-            }
-        }
-        while (list.contains(item)) {
-            list.remove(item);
+        if (!list.contains(item)) {
+            LOG.log(Level.FINE,
+                    "Attempt to unregister non-existant registration {0} Listener: {1}",
+                    new Object[]{key, item});
+            return;
         }
-        if (list.isEmpty()) {
+        if (list.size() == 1) {
             map.remove(key);
+        } else {
+            List<T> copy = new ArrayList<T>(list);
+            copy.remove(item);
+            map.put(key, Collections.unmodifiableList(copy));
+        }
+    }
+
+    /**
+     * Return a mutable copy of the registrations for a primary key.  The
+     * lists it contains are the shared immutable ones and must be replaced,
+     * not modified.
+     */
+    private Map<String, List<T>> copyRegistrations(String key) {
+        Entry<T> entry = registry.get(key);
+        if (entry == null) {
+            return new HashMap<String, List<T>>();
         }
+        return new HashMap<String, List<T>>(entry.registrations);
     }
 
     /**
      * Return a list of items which have been registered for given key(s).
      * Returns items registered both for the key/subkey pair as well as
-     * those registered just for the primary key.
+     * those registered just for the primary key.  Each item is only
+     * returned once.<p>
+     *
+     * The returned collection is a shared, unmodifiable snapshot.  It
+     * doesn't reflect later registration changes.
+     *
      * @param key
      * @param subkey
      * @return collection of items previously registered.
      */
     Collection<T> getMatches(String key, String subkey) {
-        List<T> results = new ArrayList<T>();
-        Map<String, List<T>> entry = registry.get(key);
-        if (entry != null) {
-            if (entry.containsKey(subkey)) {
-                results.addAll(entry.get(subkey));
+        Entry<T> entry = registry.get(key);
+        if (entry == null) {
+            return Collections.emptyList();
+        }
+        List<T> results = entry.matches.get(subkey);
+        if (results == null) {
+            return entry.primaryMatches;
+        }
+        return results;
+    }
+
+    /**
+     * Immutable snapshot of all registrations for a single primary key,
+     * together with the precomputed results of the lookups.
+     *
+     * @param <T> type of object registered
+     */
+    static class Entry<T> {
+
+        /**
+         * The registrations by subkey as made by the callers.
+         */
+        final Map<String, List<T>> registrations;
+
+        /**
+         * The lookup result for each subkey.  This contains the items
+         * registered for the subkey followed by any items registered for the
+         * primary key only.
+         */
+        final Map<String, List<T>> matches;
+
+        /**
+         * The lookup result for a subkey which nobody registered for.
+         */
+        final List<T> primaryMatches;
+
+        Entry(Map<String, List<T>> subkeyRegistrations) {
+            registrations = subkeyRegistrations;
+            List<T> primary = registrations.get(PRIMARY);
+            if (primary == null) {
+                primary = Collections.emptyList();
             }
-            if (entry.containsKey("")) {
-                results.addAll(entry.get(""));
+            primaryMatches = primary;
+            matches = new HashMap<String, List<T>>(registrations.size());
+            for (Map.Entry<String, List<T>> e : registrations.entrySet()) {
+                if (PRIMARY.equals(e.getKey())) {
+                    continue;
+                }
+                if (primary.isEmpty()) {
+                    matches.put(e.getKey(), e.getValue());
+                } else {
+                    Set<T> merged = new LinkedHashSet<T>(e.getValue());
+                    merged.addAll(primary);
+                    matches.put(e.getKey(), Collections
+                            .unmodifiableList(new ArrayList<T>(merged)));
+                }
             }
         }
-        return results;
     }
 
 }
@@ -184,8 +184,16 @@ class ModelManagementHelperMDRImpl implements ModelManagementHelper {
     }
 
 
+    /*
+     * Performance critical method.  Results are kept in an index which is
+     * maintained from the model events, so repeated queries only cost the
+     * size of the result.  The index returns the elements in the order they
+     * were filed, that is in refAllOfType order for the elements present
+     * when the index was built and in the order they were added or moved
+     * into the namespace for the others, so the order can differ from that
+     * of a search of the model.
+     */
     public Collection getAllModelElementsOfKind(Object nsa, Object type) {
-        // TODO: Performance critical method
         long startTime = System.currentTimeMillis();
         if (nsa == null || type == null) {
             return Collections.EMPTY_LIST;
@@ -214,6 +222,18 @@ class ModelManagementHelperMDRImpl implements ModelManagementHelper {
             RefPackage extent = ((RefObject) nsa).refOutermostPackage();
             RefClass classProxy = ((FacadeMDRImpl) modelImpl.getFacade())
                     .getProxy(name, extent);
+            List<Object> indexed;
+            // Hold the read lock so no change is half made while we look
+            modelImpl.getRepository().beginTrans(false);
+            try {
+                indexed = modelImpl.getElementsOfKindIndex().get(
+                        (RefObject) nsa, name, classProxy);
+            } finally {
+                modelImpl.getRepository().endTrans();
+            }
+            if (indexed != null) {
+                return indexed;
+            }
             allOfType = classProxy.refAllOfType();
         } catch (InvalidObjectException e) {
             throw new InvalidElementException(e);
@@ -69,41 +69,141 @@ class UndoCoreHelperDecorator extends AbstractCoreHelperDecorator {
         super(component);
     }
 
-    // Helper interfaces and methods.
+    // Helper classes and methods.
     /**
-     * Interface to set a boolean value.
+     * A setter which is its own undoable command. It records the old and
+     * the new value itself, so that a change costs a single small object
+     * on the undo stack.
      */
-    protected interface BooleanSetter {
+    abstract static class UndoableSetter extends ModelCommand {
+
+        public boolean isUndoable() {
+            return true;
+        }
+
+        public boolean isRedoable() {
+            return true;
+        }
+    }
+
+    /**
+     * Command to set a boolean value.
+     */
+    protected abstract static class BooleanSetter extends UndoableSetter {
+
+        private boolean newValue;
+
+        private boolean oldValue;
+
         /**
          * Do the actual setting.
          *
          * @param value The new value.
          */
-        void set(boolean value);
+        public abstract void set(boolean value);
+
+        /**
+         * Record the change and execute it through the model.
+         *
+         * @param newVal The new value.
+         * @param oldVal The old value.
+         */
+        void change(boolean newVal, boolean oldVal) {
+            newValue = newVal;
+            oldValue = oldVal;
+            Model.execute(this);
+        }
+
+        public Object execute() {
+            set(newValue);
+            return null;
+        }
+
+        public void undo() {
+            set(oldValue);
+        }
     }
 
     /**
-     * Interface to set a Object value.
+     * Command to set a Object value.
      */
-    protected interface ObjectSetter {
+    protected abstract static class ObjectSetter extends UndoableSetter {
+
+        private Object newValue;
+
+        private Object oldValue;
+
         /**
          * Do the actual setting.
          *
          * @param value The new value.
          */
-        void set(Object value);
+        public abstract void set(Object value);
+
+        /**
+         * Record the change and execute it through the model.
+         *
+         * @param newVal The new value.
+         * @param oldVal The old value.
+         */
+        void change(Object newVal, Object oldVal) {
+            newValue = newVal;
+            oldValue = oldVal;
+            Model.execute(this);
+        }
+
+        public Object execute() {
+            set(newValue);
+            return null;
+        }
+
+        public void undo() {
+            set(oldValue);
+        }
     }
 
     /**
-     * Interface to set a String value.
+     * Command to set a String value.
      */
-    protected interface StringSetter {
+    protected abstract static class StringSetter extends UndoableSetter {
+
+        private String newValue;
+
+        private String oldValue;
+
         /**
          * Do the actual setting.
          *
          * @param value The new value.
          */
-        void set(String value);
+        public abstract void set(String value);
+
+        /**
+         * Record the change and execute it through the model.
+         *
+         * @param newVal The new value.
+         * @param oldVal The old value.
+         */
+        void change(String newVal, String oldVal) {
+            newValue = newVal;
+            oldValue = oldVal;
+            Model.execute(this);
+        }
+
+        public Object execute() {
+            set(newValue);
+            return null;
+        }
+
+        public void undo() {
+            set(oldValue);
+        }
+
+        @Override
+        public int getEstimatedSize() {
+            return super.getEstimatedSize() + getEstimatedSize(newValue)
+                + getEstimatedSize(oldValue);
+        }
     }
 
 
@@ -120,22 +220,7 @@ class UndoCoreHelperDecorator extends AbstractCoreHelperDecorator {
         if (newValue == oldValue) {
             return;
         }
-        ModelCommand command = new ModelCommand() {
-            public void undo() {
-                accesser.set(oldValue);
-            }
-            public Object execute() {
-                accesser.set(newValue);
-                return null;
-            }
-            public boolean isUndoable() {
-                return true;
-            }
-            public boolean isRedoable() {
-                return true;
-            }
-        };
-        Model.execute(command);
+        accesser.change(newValue, oldValue);
     }
 
     /**
@@ -155,22 +240,7 @@ class UndoCoreHelperDecorator extends AbstractCoreHelperDecorator {
                 && newValue.equals(oldValue)) {
             return;
         }
-        ModelCommand command = new ModelCommand() {
-            public void undo() {
-                accesser.set(oldValue);
-            }
-            public Object execute() {
-                accesser.set(newValue);
-                return null;
-            }
-            public boolean isUndoable() {
-                return true;
-            }
-            public boolean isRedoable() {
-                return true;
-            }
-        };
-        Model.execute(command);
+        accesser.change(newValue, oldValue);
     }
 
     /**
@@ -190,25 +260,9 @@ class UndoCoreHelperDecorator extends AbstractCoreHelperDecorator {
                 && newValue.equals(oldValue)) {
             return;
         }
-        ModelCommand command = new ModelCommand() {
-            public void undo() {
-                accesser.set(oldValue);
-            }
-            public Object execute() {
-                accesser.set(newValue);
-                return null;
-            }
-            public boolean isUndoable() {
-                return true;
-            }
-            public boolean isRedoable() {
-                return true;
-            }
-        };
-        Model.execute(command);
+        accesser.change(newValue, oldValue);
     }
 
-
     public void setAbstract(final Object handle, boolean flag) {
         createCommand(new BooleanSetter() {
             public void set(boolean value) {
@@ -41,8 +41,12 @@ package org.argouml.model.mdr;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.List;
 
+import javax.jmi.model.MofClass;
 import javax.jmi.reflect.InvalidObjectException;
+import javax.jmi.reflect.RefClass;
+import javax.jmi.reflect.RefPackage;
 
 import junit.framework.TestCase;
 
@@ -52,6 +56,7 @@ import org.omg.uml.behavioralelements.statemachines.State;
 import org.omg.uml.behavioralelements.statemachines.StateMachine;
 import org.omg.uml.behavioralelements.statemachines.StateMachinesPackage;
 import org.omg.uml.behavioralelements.statemachines.Transition;
+import org.omg.uml.foundation.core.ModelElement;
 import org.omg.uml.foundation.datatypes.VisibilityKindEnum;
 
 /**
@@ -371,4 +376,75 @@ public class TestMDRModelImplementation extends TestCase {
         } 
     }
 
+    /**
+     * Test that the precomputed metaclass and proxy lookups agree with the
+     * metamodel.
+     */
+    public void testMetaClassLookup() {
+        FacadeMDRImpl facade =
+            (FacadeMDRImpl) modelImplementation.getFacade();
+        RefPackage extent = modelImplementation.getUmlPackage();
+        String[] names = facade.getMetatypeNames();
+        assertTrue(names.length > 0);
+        for (String name : names) {
+            MofClass mofClass = facade.getMofClass(name);
+            assertNotNull(name, mofClass);
+            assertEquals(name, mofClass.getName());
+            List<String> qualifiedName = mofClass.getQualifiedName();
+            RefClass proxy = facade.getProxy(name, extent);
+            assertSame(name, extent.refPackage(qualifiedName.get(0))
+                    .refClass(qualifiedName.get(1)), proxy);
+            assertSame(name, proxy, facade.getProxy(name, extent));
+        }
+        assertNull(facade.getMofClass("NoSuchMetaclass"));
+        assertNull(facade.getProxy("NoSuchMetaclass", extent));
+    }
+
+    /**
+     * Check that a change waits until a read-only task is done and that the
+     * task itself can't change the model.
+     *
+     * @throws InterruptedException if the test is interrupted
+     */
+    public void testRunReadOnly() throws InterruptedException {
+        final ModelElement cls =
+            (ModelElement) modelImplementation.getCoreFactory().createClass();
+        cls.setName("Before");
+        final Thread writer = new Thread() {
+            public void run() {
+                cls.setName("After");
+            }
+        };
+        final boolean[] waited = new boolean[1];
+        final String[] name = new String[1];
+        modelImplementation.runReadOnly(new Runnable() {
+            public void run() {
+                writer.start();
+                try {
+                    writer.join(500);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                waited[0] = writer.isAlive();
+                name[0] = cls.getName();
+            }
+        });
+        writer.join(5000);
+        assertTrue(waited[0]);
+        assertEquals("Before", name[0]);
+        assertEquals("After", cls.getName());
+
+        try {
+            modelImplementation.runReadOnly(new Runnable() {
+                public void run() {
+                    cls.setName("Inside");
+                }
+            });
+            fail("A change in a read-only task should fail");
+        } catch (RuntimeException expected) {
+            // the change was refused
+        }
+        assertEquals("After", cls.getName());
+    }
+
 }
@@ -38,10 +38,25 @@
 
 package org.argouml.model.mdr;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import javax.jmi.reflect.RefFeatured;
 
 import junit.framework.TestCase;
 
+import org.argouml.model.AddAssociationEvent;
+import org.argouml.model.AttributeChangeEvent;
+import org.argouml.model.UmlChangeEvent;
+import org.netbeans.api.mdr.events.AttributeEvent;
+import org.netbeans.api.mdr.events.MDRChangeEvent;
+
 /**
  * Tests for the MDR implementation of the event pump
  * @author Tom Morris
@@ -152,6 +167,120 @@ public class TestModelEventPump extends TestCase {
 
     }
     
+    /**
+     * Test that lookups return shared snapshots which aren't affected
+     * by later registration changes.
+     */
+    public void testRegistrySnapshots() {
+        registry.register("main", "key", null);
+        registry.register("sub", "key", new String[] {"subkey"});
+        registry.register("main", "key", new String[] {"subkey"});
+
+        Collection<String> matches = registry.getMatches("key", "subkey");
+        assertEquals(2, matches.size());
+        assertSame(matches, registry.getMatches("key", "subkey"));
+        assertSame(registry.getMatches("key", "foo"),
+                registry.getMatches("key", "bar"));
+
+        registry.unregister("sub", "key", new String[] {"subkey"});
+        assertEquals(2, matches.size());
+        assertTrue(matches.contains("sub"));
+        checkSingle("main", registry.getMatches("key", "subkey"));
+
+        try {
+            matches.clear();
+            fail("Snapshots should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Test merging of events collected during a batch.
+     */
+    public void testEventBatch() {
+        PropertyChangeListener listener = new PropertyChangeListener() {
+            public void propertyChange(PropertyChangeEvent evt) {
+            }
+        };
+        List<PropertyChangeListener> listeners =
+            Collections.singletonList(listener);
+        EventBatch batch = new EventBatch();
+        batch.add("id1", "UmlClass",
+                new AttributeChangeEvent("element1", "name", "a", "b", null),
+                attributeSet("a", "b"), listeners);
+        batch.add("id1", "UmlClass",
+                new AddAssociationEvent("element1", "feature", null, "f1",
+                        "f1", null),
+                null, listeners);
+        batch.add("id2", "UmlClass",
+                new AttributeChangeEvent("element2", "name", "x", "y", null),
+                attributeSet("x", "y"), listeners);
+        batch.add("id1", "UmlClass",
+                new AttributeChangeEvent("element1", "name", "b", "c", null),
+                attributeSet("b", "c"), listeners);
+        batch.add("id1", "UmlClass",
+                new AttributeChangeEvent("element1", "isAbstract",
+                        Boolean.FALSE, Boolean.TRUE, null),
+                attributeSet(Boolean.FALSE, Boolean.TRUE), listeners);
+
+        assertEquals(5, batch.getReceivedCount());
+        List<EventBatch.Entry> entries = batch.getEntries();
+        assertEquals(4, entries.size());
+
+        UmlChangeEvent merged = entries.get(0).getEvent();
+        assertEquals("element1", merged.getSource());
+        assertEquals("name", merged.getPropertyName());
+        assertEquals("a", merged.getOldValue());
+        assertEquals("c", merged.getNewValue());
+        assertTrue(entries.get(1).getEvent() instanceof AddAssociationEvent);
+        assertEquals("element2", entries.get(2).getEvent().getSource());
+        assertEquals("isAbstract",
+                entries.get(3).getEvent().getPropertyName());
+        assertEquals(1, entries.get(0).getListeners().size());
+    }
+
+    /**
+     * Test that changes of multi-valued properties aren't merged, so no
+     * addition or removal gets lost.
+     */
+    public void testEventBatchMultiValued() {
+        List<PropertyChangeListener> listeners = Collections.emptyList();
+        EventBatch batch = new EventBatch();
+        // As derived from association events
+        batch.add("id1", "UmlClass",
+                new AttributeChangeEvent("element1", "feature", null, "f1",
+                        null),
+                null, listeners);
+        batch.add("id1", "UmlClass",
+                new AttributeChangeEvent("element1", "feature", null, "f2",
+                        null),
+                null, listeners);
+        batch.add("id1", "UmlClass",
+                new AttributeChangeEvent("element1", "feature", "f1", null,
+                        null),
+                null, listeners);
+
+        assertEquals(3, batch.getEntries().size());
+        assertEquals("f1", batch.getEntries().get(0).getEvent().getNewValue());
+        assertEquals("f2", batch.getEntries().get(1).getEvent().getNewValue());
+        assertEquals("f1", batch.getEntries().get(2).getEvent().getOldValue());
+    }
+
+    private MDRChangeEvent attributeSet(Object oldValue, Object newValue) {
+        // MDR events need a source, but the batch never looks at it
+        RefFeatured source = (RefFeatured) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] {RefFeatured.class},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method,
+                            Object[] args) {
+                        return null;
+                    }
+                });
+        return new AttributeEvent(source, AttributeEvent.EVENT_ATTRIBUTE_SET,
+                "name", oldValue, newValue, AttributeEvent.POSITION_NONE);
+    }
+
     private void checkSingle(String value, Collection<String> matches) {
         assertEquals(1, matches.size());
         assertEquals(value, matches.iterator().next()); 
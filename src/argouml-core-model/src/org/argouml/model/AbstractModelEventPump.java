@@ -179,4 +179,20 @@ public abstract class AbstractModelEventPump implements ModelEventPump {
 
     }
 
+    /*
+     * The default implementation doesn't batch events.
+     *
+     * @see org.argouml.model.ModelEventPump#startBatch()
+     */
+    public void startBatch() {
+        // Events are delivered immediately
+    }
+
+    /*
+     * @see org.argouml.model.ModelEventPump#endBatch()
+     */
+    public void endBatch() {
+        // Events are delivered immediately
+    }
+
 }
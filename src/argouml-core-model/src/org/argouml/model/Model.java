@@ -578,5 +578,15 @@ public final class Model {
     public static CopyHelper getCopyHelper() {
 	return impl.getCopyHelper();
     }
+
+    /**
+     * Run a task which reads the model while no change is made to it.
+     *
+     * @param task the task to run
+     * @see ModelImplementation#runReadOnly(Runnable)
+     */
+    public static void runReadOnly(Runnable task) {
+        impl.runReadOnly(task);
+    }
     
 }
@@ -48,6 +48,12 @@ package org.argouml.model;
  */
 public abstract class ModelCommand {
 
+    /**
+     * The estimated number of bytes held by a command which records
+     * nothing but references to model elements.
+     */
+    public static final int ESTIMATED_SIZE = 64;
+
     /**
      * Execute this command.
      * @return any result generated by this command
@@ -72,4 +78,28 @@ public abstract class ModelCommand {
      * Undo this command.
      */
     public abstract void undo();
+
+    /**
+     * Estimate the memory this command keeps alive while it is waiting on
+     * the undo or redo stack. Commands which record values of their own
+     * should add the size of these values.
+     *
+     * @return the estimated number of bytes
+     */
+    public int getEstimatedSize() {
+        return ESTIMATED_SIZE;
+    }
+
+    /**
+     * Estimate the memory held by a recorded String.
+     *
+     * @param value the String or null
+     * @return the estimated number of bytes
+     */
+    protected static int getEstimatedSize(String value) {
+        if (value == null) {
+            return 0;
+        }
+        return 40 + 2 * value.length();
+    }
 }
@@ -303,6 +303,33 @@ public interface ModelEventPump {
      * method which has been invoked by the ModelEventPump.
      */
     void flushModelEvents();
+
+    /**
+     * Start collecting events instead of delivering them one by one.
+     * Typically used around a command or bulk operation which makes
+     * many changes to the model.  Events collected in a batch are
+     * delivered when the outermost batch ends.  Repeated changes of the
+     * same single-valued attribute of the same element are merged into a
+     * single event with the first old value and the last new value.
+     * Listeners which are removed while the batch is open don't receive
+     * its events.
+     * <p>
+     * Batches may be nested.  Each call must be balanced by a call to
+     * {@link #endBatch()}, normally in a <code>finally</code> block.
+     * Implementations which don't support batching deliver events
+     * immediately.
+     */
+    void startBatch();
+
+    /**
+     * End a batch started with {@link #startBatch()}.  When the outermost
+     * batch ends, this blocks until all pending events have been received
+     * and then delivers the collected events in the order they arrived.
+     * <p>
+     * <em>NOTE: </em> Like {@link #flushModelEvents()}, this may not be
+     * called from a listener invoked by the ModelEventPump.
+     */
+    void endBatch();
     
     /**
      * Get debug info for the event pump. Information returned is implementation
@@ -318,6 +318,16 @@ public interface ModelImplementation {
      * @return the CopyHelper
      */
     CopyHelper getCopyHelper();
+
+    /**
+     * Run a task which reads the model while no change is made to it, so
+     * that it sees the model as it was when it started.  Tasks on other
+     * threads may read the model at the same time, but changes wait until
+     * all of them are finished.  The task must not change the model.
+     *
+     * @param task the task to run
+     */
+    void runReadOnly(Runnable task);
     
 
 }
@@ -94,6 +94,9 @@ public interface ModelManagementHelper {
      * Returns all modelelements found in this namespace and its containing
      * namespaces that are of some class kind.<p>
      *
+     * The order of the elements is unspecified and may change as the model
+     * is edited.<p>
+     *
      * @param namespace is the namespace
      * @param type is the class kind
      * @return Collection